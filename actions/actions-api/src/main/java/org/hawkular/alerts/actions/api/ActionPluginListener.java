@@ -51,4 +51,13 @@ public interface ActionPluginListener {
      * @throws Exception any problem
      */
     void process(ActionMessage msg) throws Exception;
+
+    /**
+     * This method is invoked by the alerts engine on shutdown, once no more actions are sent to the plugin.
+     * Plugins that buffer actions or hold connections should flush and release them here.
+     *
+     * @throws Exception any problem
+     */
+    default void close() throws Exception {
+    }
 }
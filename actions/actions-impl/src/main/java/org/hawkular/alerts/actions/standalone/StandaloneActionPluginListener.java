@@ -18,6 +18,7 @@ package org.hawkular.alerts.actions.standalone;
 
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.hawkular.alerts.actions.api.ActionMessage;
 import org.hawkular.alerts.actions.api.ActionPluginListener;
@@ -36,6 +37,8 @@ import org.hawkular.commons.log.MsgLogging;
 public class StandaloneActionPluginListener implements ActionListener {
     private static final AlertingLogger log = MsgLogging.getMsgLogger(AlertingLogger.class, StandaloneActionPluginRegister.class);
 
+    private static final long CLOSE_TIMEOUT = 10000;
+
     private DefinitionsService definitions;
 
     ExecutorService executorService;
@@ -91,6 +94,13 @@ public class StandaloneActionPluginListener implements ActionListener {
     public void close() {
         if (executorService != null) {
             executorService.shutdown();
+            try {
+                if (!executorService.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    log.warnf("Actions still in process after [%s] ms", CLOSE_TIMEOUT);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
     }
 
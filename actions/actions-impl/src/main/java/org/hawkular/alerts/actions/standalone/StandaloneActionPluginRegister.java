@@ -108,6 +108,16 @@ public class StandaloneActionPluginRegister {
                     log.debug(e.getMessage(), e);
                 }
             });
+            /*
+                Plugins are closed once the pending actions have been processed, so they can flush them
+             */
+            ActionPlugins.getPlugins().entrySet().stream().forEach(plugin -> {
+                try {
+                    plugin.getValue().close();
+                } catch (Exception e) {
+                    log.errorf("Error closing plugin [%s]: %s", plugin.getKey(), e.toString());
+                }
+            });
         }
         instance = null;
     }
@@ -22,12 +22,18 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -39,6 +45,7 @@ import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
 import org.elasticsearch.client.Response;
 import org.elasticsearch.client.RestClient;
 import org.hawkular.alerts.actions.api.ActionMessage;
@@ -66,6 +73,15 @@ import com.bazaarvoice.jolt.Shiftr;
  *
  * https://github.com/bazaarvoice/jolt/blob/master/jolt-core/src/main/java/com/bazaarvoice/jolt/Shiftr.java
  *
+ * A RestClient is kept per distinct url and credentials, and the Shiftr of a transform spec is built once. A client
+ * not used for hawkular-alerts.elasticsearch-client-idle milliseconds is closed, so clients of a previous
+ * configuration do not stay open after a change.
+ *
+ * With "bulk" enabled the documents are not indexed one by one, they are accumulated per target and indexed with
+ * the _bulk API when hawkular-alerts.elasticsearch-bulk-size documents are pending or after
+ * hawkular-alerts.elasticsearch-bulk-flush-ms. The result of each Action is the result of its item in the bulk.
+ * Pending documents are also indexed when the plugin is closed on shutdown.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -119,6 +135,11 @@ public class ElasticsearchPlugin implements ActionPluginListener {
      */
     public static final String PROP_TOKEN = "token";
 
+    /**
+     * "bulk" property is used to index the Events/Alerts with the _bulk API, true|false
+     */
+    public static final String PROP_BULK = "bulk";
+
     /**
      * "timestamp_pattern" used on ctime transformations
      */
@@ -148,6 +169,36 @@ public class ElasticsearchPlugin implements ActionPluginListener {
     private static final String ELASTICSEARCH_PROXY_REMOTE_USER_ENV = "ELASTICSEARCH_PROXY_REMOTE_USER";
     private static final String ELASTICSEARCH_PROXY_REMOTE_USER_DEFAULT = "";
 
+    private static final String ELASTICSEARCH_BULK = "hawkular-alerts.elasticsearch-bulk";
+    private static final String ELASTICSEARCH_BULK_ENV = "ELASTICSEARCH_BULK";
+    private static final String ELASTICSEARCH_BULK_DEFAULT = "false";
+
+    /*
+        Max number of documents pending on a bulk target before they are indexed
+     */
+    private static final String ELASTICSEARCH_BULK_SIZE = "hawkular-alerts.elasticsearch-bulk-size";
+    private static final String ELASTICSEARCH_BULK_SIZE_ENV = "ELASTICSEARCH_BULK_SIZE";
+    private static final String ELASTICSEARCH_BULK_SIZE_DEFAULT = "500";
+
+    /*
+        Max time in milliseconds a document is pending on a bulk target before it is indexed
+     */
+    private static final String ELASTICSEARCH_BULK_FLUSH_MS = "hawkular-alerts.elasticsearch-bulk-flush-ms";
+    private static final String ELASTICSEARCH_BULK_FLUSH_MS_ENV = "ELASTICSEARCH_BULK_FLUSH_MS";
+    private static final String ELASTICSEARCH_BULK_FLUSH_MS_DEFAULT = "1000";
+
+    /*
+        Time in milliseconds a client can be unused before it is closed
+     */
+    private static final String ELASTICSEARCH_CLIENT_IDLE = "hawkular-alerts.elasticsearch-client-idle";
+    private static final String ELASTICSEARCH_CLIENT_IDLE_ENV = "ELASTICSEARCH_CLIENT_IDLE";
+    private static final String ELASTICSEARCH_CLIENT_IDLE_DEFAULT = "600000";
+
+    /*
+        Max time in milliseconds to wait for a bulk flush in progress on close
+     */
+    private static final long CLOSE_TIMEOUT = 10000;
+
     /*
         Timestamp fields
      */
@@ -169,6 +220,29 @@ public class ElasticsearchPlugin implements ActionPluginListener {
 
     Map<String, String> defaultProperties = new HashMap<>();
 
+    /*
+        Clients by url, user and password
+     */
+    final Map<List<String>, PooledClient> clients = new ConcurrentHashMap<>();
+
+    /*
+        Transformers by spec
+     */
+    private final Map<String, Shiftr> transformers = new ConcurrentHashMap<>();
+
+    /*
+        Pending bulk documents by client and headers
+     */
+    private final Map<List<String>, BulkBuffer> bulks = new ConcurrentHashMap<>();
+
+    int bulkSize;
+
+    long bulkFlushMs;
+
+    long clientIdle;
+
+    private ScheduledExecutorService bulkScheduler;
+
     @Sender
     ActionPluginSender sender;
 
@@ -192,6 +266,14 @@ public class ElasticsearchPlugin implements ActionPluginListener {
         defaultProperties.put(PROP_USER, "");
         defaultProperties.put(PROP_PASS, "");
         defaultProperties.put(PROP_TIMESTAMP_PATTERN, "");
+        defaultProperties.put(PROP_BULK, HawkularProperties.getProperty(ELASTICSEARCH_BULK, ELASTICSEARCH_BULK_ENV,
+                ELASTICSEARCH_BULK_DEFAULT));
+        bulkSize = Integer.parseInt(HawkularProperties.getProperty(ELASTICSEARCH_BULK_SIZE,
+                ELASTICSEARCH_BULK_SIZE_ENV, ELASTICSEARCH_BULK_SIZE_DEFAULT));
+        bulkFlushMs = Long.parseLong(HawkularProperties.getProperty(ELASTICSEARCH_BULK_FLUSH_MS,
+                ELASTICSEARCH_BULK_FLUSH_MS_ENV, ELASTICSEARCH_BULK_FLUSH_MS_DEFAULT));
+        clientIdle = Long.parseLong(HawkularProperties.getProperty(ELASTICSEARCH_CLIENT_IDLE,
+                ELASTICSEARCH_CLIENT_IDLE_ENV, ELASTICSEARCH_CLIENT_IDLE_DEFAULT));
     }
 
     @Override
@@ -210,6 +292,12 @@ public class ElasticsearchPlugin implements ActionPluginListener {
             log.warnMessageReceivedWithoutPayload(PLUGIN_NAME);
         }
         try {
+            if (Boolean.parseBoolean(msg.getAction().getProperties().get(PROP_BULK))) {
+                // The result is sent when the bulk is indexed
+                bulkAlert(msg.getAction());
+                log.infoActionReceived(PLUGIN_NAME, msg.toString());
+                return;
+            }
             writeAlert(msg.getAction());
             log.infoActionReceived(PLUGIN_NAME, msg.toString());
             Action successAction = msg.getAction();
@@ -229,7 +317,7 @@ public class ElasticsearchPlugin implements ActionPluginListener {
             return JsonUtil.toJson(a.getEvent());
         }
         try {
-            Shiftr transformer = new Shiftr(JsonUtil.fromJson(spec, Map.class));
+            Shiftr transformer = transformers.computeIfAbsent(spec, s -> new Shiftr(JsonUtil.fromJson(s, Map.class)));
             Map<String, Object> eventMap = JsonUtil.getMap(a.getEvent());
             String timestampPattern = a.getProperties().get(PROP_TIMESTAMP_PATTERN);
             if (!isEmpty(timestampPattern)) {
@@ -272,15 +360,70 @@ public class ElasticsearchPlugin implements ActionPluginListener {
     }
 
     protected void writeAlert(Action a) throws Exception {
-        String url = a.getProperties().get(PROP_URL);
         String index = a.getProperties().get(PROP_INDEX);
         String type = a.getProperties().get(PROP_TYPE);
+        HttpEntity document = new NStringEntity(transform(a), ContentType.APPLICATION_JSON);
+        String endpoint = "/" + index + "/" + type;
+        Header[] headers = checkHeaders(a);
+        PooledClient pooled = acquireClient(a);
+        try {
+            RestClient client = pooled.client;
+            Response response = headers == null ?
+                    client.performRequest("POST", endpoint, Collections.EMPTY_MAP, document) :
+                    client.performRequest("POST", endpoint, Collections.EMPTY_MAP, document, headers);
+            log.debugf(response.toString());
+        } finally {
+            pooled.release();
+        }
+    }
+
+    /**
+     * Close the clients, pending bulk documents are indexed before.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (bulkScheduler != null) {
+                bulkScheduler.shutdown();
+                try {
+                    bulkScheduler.awaitTermination(CLOSE_TIMEOUT, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                bulkScheduler = null;
+            }
+        }
+        bulks.values().forEach(this::flushBulk);
+        bulks.clear();
+        clients.forEach((key, pooled) -> {
+            if (pooled.closeIfIdle(Long.MAX_VALUE)) {
+                clients.remove(key, pooled);
+                closeClient(pooled.client);
+            }
+        });
+    }
+
+    private PooledClient acquireClient(Action a) {
+        closeIdleClients();
+        List<String> key = Arrays.asList(a.getProperties().get(PROP_URL), a.getProperties().get(PROP_USER),
+                a.getProperties().get(PROP_PASS));
+        while (true) {
+            PooledClient pooled = clients.computeIfAbsent(key, k -> new PooledClient(createClient(k.get(0), a)));
+            if (pooled.acquire()) {
+                return pooled;
+            }
+            // Closed as idle after it was looked up, a new one is created
+            clients.remove(key, pooled);
+        }
+    }
+
+    private RestClient createClient(String url, Action a) {
         String[] urls = url.split(",");
         HttpHost[] hosts = new HttpHost[urls.length];
-        for (int i=0; i<urls.length; i++) {
-            hosts[i] = HttpHost.create(urls[0]);
+        for (int i = 0; i < urls.length; i++) {
+            hosts[i] = HttpHost.create(urls[i].trim());
         }
-        RestClient client = RestClient.builder(hosts)
+        return RestClient.builder(hosts)
                 .setHttpClientConfigCallback(httpClientBuilder -> {
                     httpClientBuilder.useSystemProperties();
                     CredentialsProvider credentialsProvider = checkBasicCredentials(a);
@@ -289,14 +432,114 @@ public class ElasticsearchPlugin implements ActionPluginListener {
                     }
                     return httpClientBuilder;
                 }).build();
+    }
 
-        HttpEntity document = new NStringEntity(transform(a), ContentType.APPLICATION_JSON);
-        String endpoint = "/" + index + "/" + type;
-        Header[] headers = checkHeaders(a);
-        Response response = headers == null ? client.performRequest("POST", endpoint, Collections.EMPTY_MAP, document) :
-                client.performRequest("POST", endpoint, Collections.EMPTY_MAP, document, headers);
-        log.debugf(response.toString());
-        client.close();
+    private void closeIdleClients() {
+        long idleSince = System.currentTimeMillis() - clientIdle;
+        clients.forEach((key, pooled) -> {
+            if (pooled.closeIfIdle(idleSince)) {
+                clients.remove(key, pooled);
+                closeClient(pooled.client);
+            }
+        });
+    }
+
+    private void closeClient(RestClient client) {
+        try {
+            client.close();
+        } catch (Exception e) {
+            log.debugf("Error closing client %s", e.getMessage());
+        }
+    }
+
+    protected void bulkAlert(Action a) throws Exception {
+        List<String> key = Arrays.asList(a.getProperties().get(PROP_URL), a.getProperties().get(PROP_USER),
+                a.getProperties().get(PROP_PASS), a.getProperties().get(PROP_TOKEN),
+                a.getProperties().get(PROP_FORWARDED_FOR), a.getProperties().get(PROP_PROXY_REMOTE_USER));
+        BulkItem item = new BulkItem(a, a.getProperties().get(PROP_INDEX), a.getProperties().get(PROP_TYPE),
+                transform(a));
+        BulkBuffer bulk = bulks.computeIfAbsent(key, k -> new BulkBuffer(a, checkHeaders(a)));
+        List<BulkItem> full = bulk.add(item, bulkSize);
+        if (full != null) {
+            indexBulk(bulk, full);
+        } else {
+            scheduleBulkFlush();
+        }
+    }
+
+    private synchronized void scheduleBulkFlush() {
+        if (bulkScheduler == null) {
+            bulkScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "ElasticsearchPlugin-Bulk");
+                t.setDaemon(true);
+                return t;
+            });
+            bulkScheduler.scheduleWithFixedDelay(() -> bulks.values().forEach(this::flushBulk),
+                    bulkFlushMs, bulkFlushMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flushBulk(BulkBuffer bulk) {
+        List<BulkItem> items = bulk.drain();
+        if (!items.isEmpty()) {
+            indexBulk(bulk, items);
+        }
+    }
+
+    /*
+        Index the items in a single _bulk request and send the result of each Action from its item status
+     */
+    private void indexBulk(BulkBuffer bulk, List<BulkItem> items) {
+        StringBuilder body = new StringBuilder();
+        for (BulkItem item : items) {
+            body.append("{\"index\":{\"_index\":").append(JsonUtil.toJson(item.index))
+                    .append(",\"_type\":").append(JsonUtil.toJson(item.type)).append("}}\n")
+                    .append(item.document).append("\n");
+        }
+        List<String> results = new ArrayList<>(items.size());
+        PooledClient pooled = null;
+        try {
+            pooled = acquireClient(bulk.source);
+            HttpEntity entity = new NStringEntity(body.toString(), ContentType.APPLICATION_JSON);
+            Response response = bulk.headers == null ?
+                    pooled.client.performRequest("POST", "/_bulk", Collections.EMPTY_MAP, entity) :
+                    pooled.client.performRequest("POST", "/_bulk", Collections.EMPTY_MAP, entity, bulk.headers);
+            Map<String, Object> bulkResponse = JsonUtil.fromJson(EntityUtils.toString(response.getEntity()),
+                    Map.class);
+            List<Map<String, Object>> responseItems = (List<Map<String, Object>>) bulkResponse.get("items");
+            for (int i = 0; i < items.size(); i++) {
+                results.add(isItemIndexed(responseItems, i) ? MESSAGE_PROCESSED : MESSAGE_FAILED);
+            }
+        } catch (Exception e) {
+            log.errorCannotProcessMessage(PLUGIN_NAME, e.getMessage());
+            results.clear();
+            items.forEach(item -> results.add(MESSAGE_FAILED));
+        } finally {
+            if (pooled != null) {
+                pooled.release();
+            }
+        }
+        for (int i = 0; i < items.size(); i++) {
+            Action action = items.get(i).action;
+            action.setResult(results.get(i));
+            sendResult(action);
+        }
+    }
+
+    private boolean isItemIndexed(List<Map<String, Object>> responseItems, int i) {
+        if (responseItems == null || i >= responseItems.size()) {
+            return false;
+        }
+        Map<String, Object> result = (Map<String, Object>) responseItems.get(i).get("index");
+        if (result == null || !(result.get("status") instanceof Number)) {
+            return false;
+        }
+        int status = ((Number) result.get("status")).intValue();
+        if (status < 200 || status >= 300) {
+            log.warnf("Bulk item %s failed with status %s: %s", i, status, result.get("error"));
+            return false;
+        }
+        return true;
     }
 
     private CredentialsProvider checkBasicCredentials(Action a) {
@@ -368,4 +611,85 @@ public class ElasticsearchPlugin implements ActionPluginListener {
             log.error("Error sending ActionResponseMessage", e);
         }
     }
+
+    private static class BulkItem {
+        private final Action action;
+        private final String index;
+        private final String type;
+        private final String document;
+
+        BulkItem(Action action, String index, String type, String document) {
+            this.action = action;
+            this.index = index;
+            this.type = type;
+            this.document = document;
+        }
+    }
+
+    /*
+        Documents pending to be indexed with the same client and headers.
+        The client is looked up from the source Action on each bulk, as it can be closed while idle.
+     */
+    private static class BulkBuffer {
+        private final Action source;
+        private final Header[] headers;
+        private List<BulkItem> items = new ArrayList<>();
+
+        BulkBuffer(Action source, Header[] headers) {
+            this.source = source;
+            this.headers = headers;
+        }
+
+        /*
+            Add an item, the pending items are returned to be indexed when the bulk size is reached
+         */
+        synchronized List<BulkItem> add(BulkItem item, int bulkSize) {
+            items.add(item);
+            return items.size() >= bulkSize ? drain() : null;
+        }
+
+        synchronized List<BulkItem> drain() {
+            List<BulkItem> drained = items;
+            items = new ArrayList<>();
+            return drained;
+        }
+    }
+
+    /*
+        A client of the pool, it counts the requests in progress so it is never closed in the middle of a request
+     */
+    static class PooledClient {
+        private final RestClient client;
+        private int inUse = 0;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean closed = false;
+
+        PooledClient(RestClient client) {
+            this.client = client;
+        }
+
+        synchronized boolean acquire() {
+            if (closed) {
+                return false;
+            }
+            inUse++;
+            return true;
+        }
+
+        synchronized void release() {
+            inUse--;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        /*
+            Mark the client closed if it is not in use since the given time, the caller closes it
+         */
+        synchronized boolean closeIfIdle(long idleSince) {
+            if (closed || inUse > 0 || lastUsed > idleSince) {
+                return false;
+            }
+            closed = true;
+            return true;
+        }
+    }
 }
@@ -18,16 +18,31 @@ package org.hawkular.alerts.actions.elasticsearch;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.hawkular.alerts.actions.api.ActionPluginSender;
+import org.hawkular.alerts.actions.api.ActionResponseMessage;
 import org.hawkular.alerts.actions.tests.JvmGarbageCollectionData;
+import org.hawkular.alerts.actions.tests.TestActionMessage;
 import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.action.Action;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.sun.net.httpserver.HttpServer;
+
 /**
  * @author Jay Shaughnessy
  * @author Lucas Ponce
@@ -84,4 +99,154 @@ public class ElasticsearchPluginTest {
         openAction.getProperties().put("url", "https://logging-es:9200");
         plugin.writeAlert(openAction);
     }
+
+    /*
+        A local HTTP stand-in for the _bulk API, the third item of each bulk fails
+     */
+    private HttpServer startServer(List<String> requests) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+                requests.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+            }
+            byte[] response = ("{\"took\":1,\"errors\":true,\"items\":[" +
+                    "{\"index\":{\"status\":201}}," +
+                    "{\"index\":{\"status\":201}}," +
+                    "{\"index\":{\"status\":400,\"error\":{\"type\":\"mapper_parsing_exception\"}}}]}")
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private ActionPluginSender sender(List<String> results) {
+        return new ActionPluginSender() {
+            @Override
+            public ActionResponseMessage createMessage(ActionResponseMessage.Operation operation) {
+                Map<String, String> payload = new HashMap<>();
+                return new ActionResponseMessage() {
+                    @Override
+                    public Operation getOperation() {
+                        return operation;
+                    }
+
+                    @Override
+                    public Map<String, String> getPayload() {
+                        return payload;
+                    }
+                };
+            }
+
+            @Override
+            public void send(ActionResponseMessage msg) throws Exception {
+                results.add(msg.getPayload().get("action"));
+            }
+        };
+    }
+
+    private Action action(ElasticsearchPlugin plugin, String actionId, String url, boolean bulk) {
+        Alert openAlert = JvmGarbageCollectionData.getOpenAlert();
+        Action openAction = new Action(openAlert.getTriggerId(), "elasticsearch", actionId, openAlert);
+        openAction.setProperties(new HashMap<>(plugin.getDefaultProperties()));
+        openAction.getProperties().put("url", url);
+        openAction.getProperties().put("bulk", String.valueOf(bulk));
+        return openAction;
+    }
+
+    @Test
+    public void bulkAlerts() throws Exception {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = startServer(requests);
+
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        ElasticsearchPlugin plugin = new ElasticsearchPlugin();
+        plugin.bulkSize = 3;
+        plugin.sender = sender(results);
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort();
+            for (int i = 0; i < 3; i++) {
+                plugin.process(new TestActionMessage(action(plugin, "action" + i, url, true)));
+            }
+
+            // The three documents are indexed in a single request
+            assertEquals(1, requests.size());
+            assertEquals(6, requests.get(0).split("\n").length);
+            assertEquals(3, results.size());
+            assertTrue(results.get(0).contains("\"result\":\"PROCESSED\""));
+            assertTrue(results.get(1).contains("\"result\":\"PROCESSED\""));
+            assertTrue(results.get(2).contains("\"result\":\"FAILED\""));
+        } finally {
+            plugin.close();
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void closeFlushesBulk() throws Exception {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = startServer(requests);
+
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        ElasticsearchPlugin plugin = new ElasticsearchPlugin();
+        plugin.bulkSize = 100;
+        plugin.bulkFlushMs = 60000;
+        plugin.sender = sender(results);
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort();
+            for (int i = 0; i < 2; i++) {
+                plugin.process(new TestActionMessage(action(plugin, "action" + i, url, true)));
+            }
+            assertEquals(0, requests.size());
+
+            // Pending documents are indexed and the clients closed
+            plugin.close();
+            assertEquals(1, requests.size());
+            assertEquals(4, requests.get(0).split("\n").length);
+            assertEquals(2, results.size());
+            assertTrue(plugin.clients.isEmpty());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void idleClientsClosed() throws Exception {
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = startServer(requests);
+
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        ElasticsearchPlugin plugin = new ElasticsearchPlugin();
+        plugin.sender = sender(results);
+        try {
+            String url1 = "http://localhost:" + server.getAddress().getPort();
+            String url2 = "http://127.0.0.1:" + server.getAddress().getPort();
+            plugin.process(new TestActionMessage(action(plugin, "action1", url1, false)));
+            plugin.process(new TestActionMessage(action(plugin, "action2", url1, false)));
+            assertEquals(1, plugin.clients.size());
+
+            // The client of url1 is not used since it was released
+            plugin.clientIdle = -1;
+            plugin.process(new TestActionMessage(action(plugin, "action3", url2, false)));
+            assertEquals(1, plugin.clients.size());
+            assertEquals(url2, plugin.clients.keySet().iterator().next().get(0));
+
+            assertEquals(3, requests.size());
+            assertEquals(3, results.size());
+            results.forEach(result -> assertTrue(result.contains("\"result\":\"PROCESSED\"")));
+        } finally {
+            plugin.close();
+            server.stop(0);
+        }
+    }
 }
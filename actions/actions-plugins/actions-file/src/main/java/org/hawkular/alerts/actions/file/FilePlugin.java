@@ -34,21 +34,77 @@ import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.action.Action;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.commons.log.MsgLogging;
+import org.hawkular.commons.properties.HawkularProperties;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
  * A simple file action plugin
  *
+ * By default each Event is written on its own file. With "mode" set to "rolling" the Events are appended as
+ * newline-delimited JSON on a rolling file per path, written in groups and rotated by size/age, see
+ * {@link RollingFileWriter}. In rolling mode the result of the action is reported once the Event is written on disk.
+ *
  * @author Lucas Ponce
  */
 @Plugin(name = "file")
 public class FilePlugin implements ActionPluginListener {
     private final AlertingLogger log = MsgLogging.getMsgLogger(AlertingLogger.class, FilePlugin.class);
 
+    /**
+     * "mode" property defines how the Events are written, "file" for a file per Event, "rolling" to append them on a
+     * rolling file.
+     */
+    public static final String PROP_MODE = "mode";
+    public static final String MODE_FILE = "file";
+    public static final String MODE_ROLLING = "rolling";
+
+    /*
+        Max size in bytes of a rolling file before it is rotated
+     */
+    private static final String FILE_ROLLING_MAX_SIZE = "hawkular-alerts.file-rolling-max-size";
+    private static final String FILE_ROLLING_MAX_SIZE_ENV = "FILE_ROLLING_MAX_SIZE";
+    private static final String FILE_ROLLING_MAX_SIZE_DEFAULT = "67108864";
+
+    /*
+        Max age in milliseconds of a rolling file before it is rotated
+     */
+    private static final String FILE_ROLLING_MAX_AGE = "hawkular-alerts.file-rolling-max-age";
+    private static final String FILE_ROLLING_MAX_AGE_ENV = "FILE_ROLLING_MAX_AGE";
+    private static final String FILE_ROLLING_MAX_AGE_DEFAULT = "3600000";
+
+    /*
+        Compress the rotated files with gzip
+     */
+    private static final String FILE_ROLLING_COMPRESS = "hawkular-alerts.file-rolling-compress";
+    private static final String FILE_ROLLING_COMPRESS_ENV = "FILE_ROLLING_COMPRESS";
+    private static final String FILE_ROLLING_COMPRESS_DEFAULT = "false";
+
+    /*
+        Force each group of writes to disk before the actions are reported as processed.
+        With false the Events are only handed to the OS before they are reported.
+     */
+    private static final String FILE_ROLLING_FSYNC = "hawkular-alerts.file-rolling-fsync";
+    private static final String FILE_ROLLING_FSYNC_ENV = "FILE_ROLLING_FSYNC";
+    private static final String FILE_ROLLING_FSYNC_DEFAULT = "true";
+
+    /*
+        Max number of Events waiting to be written on the rolling files
+     */
+    private static final String FILE_ROLLING_QUEUE_SIZE = "hawkular-alerts.file-rolling-queue-size";
+    private static final String FILE_ROLLING_QUEUE_SIZE_ENV = "FILE_ROLLING_QUEUE_SIZE";
+    private static final String FILE_ROLLING_QUEUE_SIZE_DEFAULT = "10000";
+
     private Map<String, String> defaultProperties = new HashMap<>();
     private ObjectMapper objectMapper;
 
+    long rollingMaxSize;
+    long rollingMaxAge;
+    boolean rollingCompress;
+    boolean rollingFsync;
+    int rollingQueueSize;
+    private RollingFileWriter rollingWriter;
+
     @Sender
     ActionPluginSender sender;
 
@@ -58,7 +114,18 @@ public class FilePlugin implements ActionPluginListener {
     public FilePlugin() {
         defaultProperties.put("path",
                 new File(System.getProperty("java.io.tmpdir"), "hawkular/alerts/actions/file").getAbsolutePath());
+        defaultProperties.put(PROP_MODE, MODE_FILE);
         objectMapper = new ObjectMapper();
+        rollingMaxSize = Long.parseLong(HawkularProperties.getProperty(FILE_ROLLING_MAX_SIZE,
+                FILE_ROLLING_MAX_SIZE_ENV, FILE_ROLLING_MAX_SIZE_DEFAULT));
+        rollingMaxAge = Long.parseLong(HawkularProperties.getProperty(FILE_ROLLING_MAX_AGE,
+                FILE_ROLLING_MAX_AGE_ENV, FILE_ROLLING_MAX_AGE_DEFAULT));
+        rollingCompress = Boolean.parseBoolean(HawkularProperties.getProperty(FILE_ROLLING_COMPRESS,
+                FILE_ROLLING_COMPRESS_ENV, FILE_ROLLING_COMPRESS_DEFAULT));
+        rollingFsync = Boolean.parseBoolean(HawkularProperties.getProperty(FILE_ROLLING_FSYNC,
+                FILE_ROLLING_FSYNC_ENV, FILE_ROLLING_FSYNC_DEFAULT));
+        rollingQueueSize = Integer.parseInt(HawkularProperties.getProperty(FILE_ROLLING_QUEUE_SIZE,
+                FILE_ROLLING_QUEUE_SIZE_ENV, FILE_ROLLING_QUEUE_SIZE_DEFAULT));
     }
 
     @Override
@@ -82,6 +149,13 @@ public class FilePlugin implements ActionPluginListener {
         path = path == null ? System.getProperty("user.home") : path;
 
         Event event = msg.getAction() != null ? msg.getAction().getEvent() : null;
+
+        String mode = msg.getAction().getProperties() != null ? msg.getAction().getProperties().get(PROP_MODE) : null;
+        if (MODE_ROLLING.equals(mode)) {
+            appendEvent(msg, path, event);
+            return;
+        }
+
         String fileName = event.getId() + "-timestamp-" + System.currentTimeMillis() + ".txt";
 
         BufferedWriter writer = null;
@@ -114,6 +188,45 @@ public class FilePlugin implements ActionPluginListener {
         }
     }
 
+    /**
+     * Close the rolling files, the queued Events are written and forced to disk before. Invoked on shutdown.
+     */
+    @Override
+    public synchronized void close() {
+        if (rollingWriter != null) {
+            rollingWriter.close();
+            rollingWriter = null;
+        }
+    }
+
+    private synchronized RollingFileWriter getRollingWriter() {
+        if (rollingWriter == null) {
+            rollingWriter = new RollingFileWriter(rollingMaxSize, rollingMaxAge, rollingCompress, rollingFsync,
+                    rollingQueueSize);
+        }
+        return rollingWriter;
+    }
+
+    private void appendEvent(ActionMessage msg, String path, Event event) {
+        Action action = msg.getAction();
+        try {
+            // Jackson does not indent by default, so the Event is written on a single line
+            String jsonEvent = objectMapper.writeValueAsString(event);
+            getRollingWriter().write(path, jsonEvent, written -> {
+                action.setResult(written ? MESSAGE_PROCESSED : MESSAGE_FAILED);
+                sendResult(action);
+            });
+            log.infoActionReceived("file", msg.toString());
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            log.errorCannotProcessMessage("file", e.getMessage());
+            action.setResult(MESSAGE_FAILED);
+            sendResult(action);
+        }
+    }
+
     private void sendResult(Action action) {
         if (sender == null) {
             throw new IllegalStateException("ActionPluginSender is not present in the plugin");
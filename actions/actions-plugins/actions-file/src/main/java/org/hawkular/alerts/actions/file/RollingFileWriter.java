@@ -0,0 +1,333 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.actions.file;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+import org.hawkular.alerts.log.AlertingLogger;
+import org.hawkular.commons.log.MsgLogging;
+
+/**
+ * Append-only writer of newline-delimited JSON, one rolling file per target directory.
+ *
+ * Lines are queued and written by a single thread. It drains the queue in groups, appends the lines of each target
+ * in one write on a channel kept open, forces the channel to disk once per group when fsync is enabled and then
+ * notifies the writers. A line is only acknowledged as written once it is durable under the fsync policy. Without
+ * fsync the files are forced to disk when they are rotated and when the writer is closed, the lines still queued
+ * when the writer stops are acknowledged as not written.
+ *
+ * The active file of a target is "events.ndjson". It is rotated to "events-&lt;millis&gt;.ndjson" when it reaches
+ * the max size or the max age, rotated files are optionally compressed with gzip in background.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class RollingFileWriter {
+    private static final AlertingLogger log = MsgLogging.getMsgLogger(AlertingLogger.class, RollingFileWriter.class);
+
+    static final String ACTIVE_FILE = "events.ndjson";
+    static final String ROTATED_PREFIX = "events-";
+    static final String ROTATED_SUFFIX = ".ndjson";
+
+    private static final int MAX_GROUP = 1000;
+    private static final long IDLE_CHECK_MS = 1000;
+
+    /*
+        Queued on close to wake up the writer thread. It is not interrupted, an interrupt during a write would close
+        the channel.
+     */
+    private static final Line CLOSE = new Line(null, null, null);
+
+    private final long maxSize;
+    private final long maxAge;
+    private final boolean compress;
+    private final boolean fsync;
+    private final BlockingQueue<Line> queue;
+    private final Map<String, RollingFile> files = new HashMap<>();
+    private final ExecutorService compressor;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    /**
+     * @param maxSize max size in bytes of a file before it is rotated
+     * @param maxAge max age in milliseconds of a file before it is rotated
+     * @param compress true to gzip the rotated files
+     * @param fsync true to force the written lines to disk before they are acknowledged
+     * @param capacity max number of lines waiting to be written, writers block when it is reached
+     */
+    public RollingFileWriter(long maxSize, long maxAge, boolean compress, boolean fsync, int capacity) {
+        if (maxSize < 1 || maxAge < 1 || capacity < 1) {
+            throw new IllegalArgumentException("Max size, max age and capacity must be positive");
+        }
+        this.maxSize = maxSize;
+        this.maxAge = maxAge;
+        this.compress = compress;
+        this.fsync = fsync;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.compressor = compress ? Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "FilePlugin-Compress");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+        writerThread = new Thread(this::writeLoop, "FilePlugin-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Queue a line to be appended on the rolling file of a directory.
+     *
+     * @param path the target directory
+     * @param json a json document, it must not contain line breaks
+     * @param onWritten invoked with true once the line is written, false if it could not be written
+     */
+    public void write(String path, String json, Consumer<Boolean> onWritten) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("RollingFileWriter is closed");
+        }
+        queue.put(new Line(path, json, onWritten));
+    }
+
+    /**
+     * Write the queued lines, force them to disk and close the files, waiting for the pending compressions.
+     */
+    public void close() {
+        running = false;
+        try {
+            queue.put(CLOSE);
+            writerThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.warnf("RollingFileWriter not stopped, [%s] lines not written", queue.size());
+        }
+        failQueued();
+        if (compressor != null) {
+            compressor.shutdown();
+            try {
+                compressor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void writeLoop() {
+        List<Line> group = new ArrayList<>(MAX_GROUP);
+        while (running || !queue.isEmpty()) {
+            try {
+                Line first = queue.poll(IDLE_CHECK_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    group.add(first);
+                    queue.drainTo(group, MAX_GROUP - 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            group.remove(CLOSE);
+            if (!group.isEmpty()) {
+                writeGroup(group);
+                group.clear();
+            }
+            rotateAged();
+        }
+        files.values().forEach(RollingFile::close);
+        files.clear();
+        // Lines queued by writers racing with close()
+        failQueued();
+        log.debug("RollingFileWriter stopped");
+    }
+
+    private void failQueued() {
+        List<Line> pending = new ArrayList<>();
+        queue.drainTo(pending);
+        pending.remove(CLOSE);
+        for (Line line : pending) {
+            notifyWritten(line, false);
+        }
+    }
+
+    private void notifyWritten(Line line, boolean written) {
+        try {
+            line.onWritten.accept(written);
+        } catch (Exception e) {
+            log.debug(e.getMessage(), e);
+        }
+    }
+
+    private void writeGroup(List<Line> group) {
+        Map<String, List<Line>> byPath = new LinkedHashMap<>();
+        for (Line line : group) {
+            byPath.computeIfAbsent(line.path, p -> new ArrayList<>()).add(line);
+        }
+        for (Map.Entry<String, List<Line>> entry : byPath.entrySet()) {
+            boolean written;
+            RollingFile file = files.computeIfAbsent(entry.getKey(), RollingFile::new);
+            try {
+                file.append(entry.getValue());
+                written = true;
+            } catch (Exception e) {
+                log.errorCannotProcessMessage("file", e.getMessage());
+                // Reopened on next write
+                file.close();
+                written = false;
+            }
+            for (Line line : entry.getValue()) {
+                notifyWritten(line, written);
+            }
+        }
+    }
+
+    private void rotateAged() {
+        long now = System.currentTimeMillis();
+        for (RollingFile file : files.values()) {
+            if (file.channel != null && file.size > 0 && now - file.opened >= maxAge) {
+                try {
+                    file.rotate();
+                } catch (Exception e) {
+                    log.errorCannotProcessMessage("file", e.getMessage());
+                    file.close();
+                }
+            }
+        }
+    }
+
+    private void gzip(File rotated) {
+        File compressed = new File(rotated.getParentFile(), rotated.getName() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed.toPath()))) {
+            Files.copy(rotated.toPath(), out);
+        } catch (IOException e) {
+            log.warnf("Cannot compress %s: %s", rotated, e.getMessage());
+            compressed.delete();
+            return;
+        }
+        rotated.delete();
+    }
+
+    private class RollingFile {
+        private final File dir;
+        private FileChannel channel;
+        private long size;
+        private long opened;
+
+        RollingFile(String path) {
+            this.dir = new File(path);
+        }
+
+        void append(List<Line> lines) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            for (Line line : lines) {
+                sb.append(line.json).append('\n');
+            }
+            byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+            if (channel == null) {
+                open();
+            }
+            if (size > 0 && (size + bytes.length > maxSize || System.currentTimeMillis() - opened >= maxAge)) {
+                rotate();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            if (fsync) {
+                channel.force(false);
+            }
+            size += bytes.length;
+        }
+
+        void open() throws IOException {
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            channel = FileChannel.open(new File(dir, ACTIVE_FILE).toPath(), CREATE, WRITE, APPEND);
+            size = channel.size();
+            opened = System.currentTimeMillis();
+        }
+
+        void rotate() throws IOException {
+            close();
+            File rotated = new File(dir, ROTATED_PREFIX + System.currentTimeMillis() + ROTATED_SUFFIX);
+            for (int i = 1; rotated.exists(); i++) {
+                rotated = new File(dir, ROTATED_PREFIX + System.currentTimeMillis() + "-" + i + ROTATED_SUFFIX);
+            }
+            Files.move(new File(dir, ACTIVE_FILE).toPath(), rotated.toPath());
+            if (compress) {
+                File toCompress = rotated;
+                compressor.execute(() -> gzip(toCompress));
+            }
+            open();
+        }
+
+        /*
+            Forced to disk also without fsync, so the rotated files and the files left on close are complete
+         */
+        void close() {
+            if (channel != null) {
+                try {
+                    if (!fsync) {
+                        channel.force(false);
+                    }
+                } catch (IOException e) {
+                    log.warnf("Cannot force %s to disk: %s", dir, e.getMessage());
+                }
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    log.debug(e.getMessage(), e);
+                }
+                channel = null;
+            }
+        }
+    }
+
+    private static class Line {
+        private final String path;
+        private final String json;
+        private final Consumer<Boolean> onWritten;
+
+        Line(String path, String json, Consumer<Boolean> onWritten) {
+            this.path = path;
+            this.json = json;
+            this.onWritten = onWritten;
+        }
+    }
+}
@@ -16,12 +16,23 @@
  */
 package org.hawkular.alerts.actions.file;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 import org.hawkular.alerts.actions.api.ActionMessage;
 import org.hawkular.alerts.actions.api.ActionPluginSender;
@@ -50,6 +61,8 @@ public class FilePluginTest {
 
     private FilePlugin filePlugin;
 
+    private List<String> results = Collections.synchronizedList(new ArrayList<>());
+
     private static ActionMessage openThresholdMsg;
     private static ActionMessage ackThresholdMsg;
     private static ActionMessage resolvedThresholdMsg;
@@ -353,6 +366,71 @@ public class FilePluginTest {
         filePlugin.process(resolvedTwoCondMsg);
     }
 
+    private ActionMessage rollingMsg(ActionMessage msg, String path) {
+        Map<String, String> props = new HashMap<>(msg.getAction().getProperties());
+        props.put(FilePlugin.PROP_MODE, FilePlugin.MODE_ROLLING);
+        props.put("path", path);
+        Action action = new Action(msg.getAction().getTenantId(), msg.getAction().getActionPlugin(),
+                msg.getAction().getActionId(), msg.getAction().getEvent());
+        action.setProperties(props);
+        return new TestActionMessage(action);
+    }
+
+    private int countLines(File file) throws Exception {
+        InputStream in = new FileInputStream(file);
+        if (file.getName().endsWith(".gz")) {
+            in = new GZIPInputStream(in);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return (int) reader.lines().filter(line -> line.startsWith("{")).count();
+        }
+    }
+
+    @Test
+    public void rollingTest() throws Exception {
+        String path = "target/file-tests/rolling-" + System.currentTimeMillis();
+        // Small files to force the rotation
+        filePlugin.rollingMaxSize = 4096;
+        filePlugin.rollingCompress = true;
+
+        ActionMessage[] msgs = { openThresholdMsg, ackThresholdMsg, resolvedThresholdMsg, openAvailMsg, ackAvailMsg,
+                resolvedAvailMsg, openTwoCondMsg, ackTwoCondMsg, resolvedTwoCondMsg };
+        for (ActionMessage msg : msgs) {
+            filePlugin.process(rollingMsg(msg, path));
+        }
+        filePlugin.close();
+
+        // Results are reported once the Events are written
+        assertEquals(msgs.length, results.size());
+        assertTrue(results.stream().allMatch(result -> result.contains("\"result\":\"PROCESSED\"")));
+
+        File[] files = new File(path).listFiles();
+        assertTrue(files.length > 1);
+        int lines = 0;
+        for (File file : files) {
+            assertTrue(file.getName().equals(RollingFileWriter.ACTIVE_FILE) || file.getName().endsWith(".gz"));
+            lines += countLines(file);
+        }
+        assertEquals(msgs.length, lines);
+    }
+
+    @Test
+    public void rollingCloseWritesQueued() throws Exception {
+        String path = "target/file-tests/rolling-close-" + System.currentTimeMillis();
+        filePlugin.rollingFsync = false;
+
+        int numMsgs = 500;
+        for (int i = 0; i < numMsgs; i++) {
+            filePlugin.process(rollingMsg(openThresholdMsg, path));
+        }
+        filePlugin.close();
+
+        // Events queued when the plugin is closed are written before close() returns
+        assertEquals(numMsgs, results.size());
+        assertTrue(results.stream().allMatch(result -> result.contains("\"result\":\"PROCESSED\"")));
+        assertEquals(numMsgs, countLines(new File(path, RollingFileWriter.ACTIVE_FILE)));
+    }
+
     public class TestActionResponseMessage implements ActionResponseMessage {
 
         ActionResponseMessage.Operation operation;
@@ -389,7 +467,7 @@ public class FilePluginTest {
 
         @Override
         public void send(ActionResponseMessage msg) throws Exception {
-            // Nothing to do
+            results.add(msg.getPayload().get("action"));
         }
     }
 
@@ -28,7 +28,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.ProducerRecord;
@@ -58,6 +62,12 @@ import com.bazaarvoice.jolt.Shiftr;
  *
  * https://github.com/bazaarvoice/jolt/blob/master/jolt-core/src/main/java/com/bazaarvoice/jolt/Shiftr.java
  *
+ * Producers are pooled by their effective "kafka.*" properties and shared across actions. Sends are asynchronous,
+ * the result of the action is reported when Kafka acknowledges the record, so the producer can batch records of
+ * several actions (linger.ms/batch.size). A producer not used for a while is closed, so producers of a previous
+ * configuration do not stay open after a change. On shutdown the producers are closed waiting up to
+ * hawkular-alerts.kafka-close-timeout milliseconds for their pending records.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -99,6 +109,29 @@ public class KafkaPlugin implements ActionPluginListener {
     private static final String KAFKA_TOPIC_DEFAULT = "alerts";
     private static final String KEY_SERIALIZER = "key.serializer";
     private static final String VALUE_SERIALIZER = "value.serializer";
+    private static final String LINGER_MS = "linger.ms";
+
+    /*
+        Default linger.ms for producers whose properties do not define it, so records of concurrent actions are
+        batched together.
+     */
+    private static final String KAFKA_LINGER_MS = "hawkular-alerts.kafka-linger-ms";
+    private static final String KAFKA_LINGER_MS_ENV = "KAFKA_LINGER_MS";
+    private static final String KAFKA_LINGER_MS_DEFAULT = "5";
+
+    /*
+        Time in milliseconds a pooled producer can be unused before it is closed
+     */
+    private static final String KAFKA_PRODUCER_IDLE = "hawkular-alerts.kafka-producer-idle";
+    private static final String KAFKA_PRODUCER_IDLE_ENV = "KAFKA_PRODUCER_IDLE";
+    private static final String KAFKA_PRODUCER_IDLE_DEFAULT = "600000";
+
+    /*
+        Max time in milliseconds to wait for the pending records of a producer when it is closed
+     */
+    private static final String KAFKA_CLOSE_TIMEOUT = "hawkular-alerts.kafka-close-timeout";
+    private static final String KAFKA_CLOSE_TIMEOUT_ENV = "KAFKA_CLOSE_TIMEOUT";
+    private static final String KAFKA_CLOSE_TIMEOUT_DEFAULT = "10000";
 
     /*
         Timestamp fields
@@ -116,6 +149,12 @@ public class KafkaPlugin implements ActionPluginListener {
 
     Map<String, String> defaultProperties = new HashMap<>();
 
+    private final Map<Properties, PooledProducer> producers = new ConcurrentHashMap<>();
+
+    private final long producerIdle;
+
+    private final long closeTimeout;
+
     @Sender
     ActionPluginSender sender;
 
@@ -127,6 +166,10 @@ public class KafkaPlugin implements ActionPluginListener {
         defaultProperties.put(PROP_TOPIC, KAFKA_TOPIC_DEFAULT);
         defaultProperties.put(PROP_TRANSFORM, "");
         defaultProperties.put(PROP_TIMESTAMP_PATTERN, "");
+        producerIdle = Long.parseLong(HawkularProperties.getProperty(KAFKA_PRODUCER_IDLE, KAFKA_PRODUCER_IDLE_ENV,
+                KAFKA_PRODUCER_IDLE_DEFAULT));
+        closeTimeout = Long.parseLong(HawkularProperties.getProperty(KAFKA_CLOSE_TIMEOUT, KAFKA_CLOSE_TIMEOUT_ENV,
+                KAFKA_CLOSE_TIMEOUT_DEFAULT));
     }
 
     @Override
@@ -144,29 +187,78 @@ public class KafkaPlugin implements ActionPluginListener {
         if (msg == null || msg.getAction() == null) {
             log.warnMessageReceivedWithoutPayload(PLUGIN_NAME);
         }
+        Action action = msg.getAction();
         try {
-            writeAlert(msg.getAction());
+            writeAlert(action, (metadata, exception) -> {
+                if (exception == null) {
+                    action.setResult(MESSAGE_PROCESSED);
+                } else {
+                    log.errorCannotProcessMessage(PLUGIN_NAME, exception.getMessage());
+                    action.setResult(MESSAGE_FAILED);
+                }
+                sendResult(action);
+            });
             log.infoActionReceived(PLUGIN_NAME, msg.toString());
-            Action successAction = msg.getAction();
-            successAction.setResult(MESSAGE_PROCESSED);
-            sendResult(successAction);
         } catch (Exception e) {
             log.errorCannotProcessMessage(PLUGIN_NAME, e.getMessage());
-            Action failedAction = msg.getAction();
-            failedAction.setResult(MESSAGE_FAILED);
-            sendResult(failedAction);
+            action.setResult(MESSAGE_FAILED);
+            sendResult(action);
         }
     }
 
-    protected void writeAlert(Action a) throws Exception {
+    /**
+     * Close the pooled producers, pending records are sent before.
+     */
+    @Override
+    public void close() {
+        producers.forEach((props, pooled) -> {
+            if (pooled.closeIfIdle(Long.MAX_VALUE)) {
+                producers.remove(props, pooled);
+                pooled.producer.close(closeTimeout, TimeUnit.MILLISECONDS);
+            }
+        });
+    }
+
+    protected void writeAlert(Action a, Callback callback) throws Exception {
         Properties props = initKafkaProperties(a.getProperties());
 
-        Producer<String, String> producer = new KafkaProducer<>(props);
         String topic = a.getProperties().getOrDefault(PROP_TOPIC,
                 HawkularProperties.getProperty(KAFKA_TOPIC, KAFKA_TOPIC_ENV, KAFKA_TOPIC_DEFAULT));
+        ProducerRecord<String, String> record = new ProducerRecord<>(topic, a.getActionId(), transform(a));
 
-        producer.send(new ProducerRecord<>(topic, a.getActionId(), transform(a)));
-        producer.close();
+        PooledProducer pooled = acquireProducer(props);
+        try {
+            pooled.producer.send(record, callback);
+        } finally {
+            pooled.release();
+        }
+    }
+
+    protected Producer<String, String> createProducer(Properties props) {
+        return new KafkaProducer<>(props);
+    }
+
+    private PooledProducer acquireProducer(Properties props) {
+        closeIdleProducers();
+        while (true) {
+            PooledProducer pooled = producers.computeIfAbsent(props, p -> new PooledProducer(createProducer(p)));
+            if (pooled.acquire()) {
+                return pooled;
+            }
+            // Closed as idle after it was looked up, a new one is created
+            producers.remove(props, pooled);
+        }
+    }
+
+    private void closeIdleProducers() {
+        long idleSince = System.currentTimeMillis() - producerIdle;
+        producers.forEach((props, pooled) -> {
+            if (pooled.closeIfIdle(idleSince)) {
+                producers.remove(props, pooled);
+                // Close waits for the pending records, it is not done on the action thread
+                CompletableFuture.runAsync(() -> pooled.producer.close(closeTimeout, TimeUnit.MILLISECONDS));
+            }
+        });
     }
 
     private Properties initKafkaProperties(Map<String, String> actionProperties) {
@@ -183,6 +275,10 @@ public class KafkaPlugin implements ActionPluginListener {
         if (!kafkaProperties.containsKey(VALUE_SERIALIZER)) {
             kafkaProperties.put(VALUE_SERIALIZER, StringSerializer.class.getName());
         }
+        if (!kafkaProperties.containsKey(LINGER_MS)) {
+            kafkaProperties.put(LINGER_MS, HawkularProperties.getProperty(KAFKA_LINGER_MS, KAFKA_LINGER_MS_ENV,
+                    KAFKA_LINGER_MS_DEFAULT));
+        }
         // TODO [lponce] implement a HawkularProperties.getAllProperties() and search all "kafka." properties there too
         return kafkaProperties;
     }
@@ -251,4 +347,41 @@ public class KafkaPlugin implements ActionPluginListener {
         }
     }
 
+    /*
+        A producer of the pool, it counts the sends in progress so it is never closed in the middle of a send
+     */
+    private static class PooledProducer {
+        private final Producer<String, String> producer;
+        private int inUse = 0;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean closed = false;
+
+        PooledProducer(Producer<String, String> producer) {
+            this.producer = producer;
+        }
+
+        synchronized boolean acquire() {
+            if (closed) {
+                return false;
+            }
+            inUse++;
+            return true;
+        }
+
+        synchronized void release() {
+            inUse--;
+            lastUsed = System.currentTimeMillis();
+        }
+
+        /*
+            Mark the producer closed if it is not in use since the given time, the caller closes it
+         */
+        synchronized boolean closeIfIdle(long idleSince) {
+            if (closed || inUse > 0 || lastUsed > idleSince) {
+                return false;
+            }
+            closed = true;
+            return true;
+        }
+    }
 }
@@ -16,15 +16,31 @@
  */
 package org.hawkular.alerts.actions.kafka;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.MockProducer;
 import org.apache.kafka.clients.producer.Producer;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.hawkular.alerts.actions.api.ActionPluginSender;
+import org.hawkular.alerts.actions.api.ActionResponseMessage;
+import org.hawkular.alerts.actions.tests.TestActionMessage;
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.model.event.Event;
 import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -93,4 +109,84 @@ public class KafkaPluginTest {
                 System.out.printf("offset = %d, key = %s, value = %s\n", record.offset(), record.key(), record.value());
         }
     }
+
+    /*
+        A KafkaPlugin writing into MockProducers, it keeps the producers created
+     */
+    static class MockKafkaPlugin extends KafkaPlugin {
+        List<MockProducer<String, String>> created = Collections.synchronizedList(new ArrayList<>());
+        List<Long> closeTimeouts = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        protected Producer<String, String> createProducer(Properties props) {
+            MockProducer<String, String> producer = new MockProducer<String, String>(true, new StringSerializer(),
+                    new StringSerializer()) {
+                @Override
+                public void close(long timeout, TimeUnit unit) {
+                    closeTimeouts.add(unit.toMillis(timeout));
+                    super.close(timeout, unit);
+                }
+            };
+            created.add(producer);
+            return producer;
+        }
+    }
+
+    private Action action(String actionId, String bootstrapServers) {
+        Action action = new Action("tenant", KafkaPlugin.PLUGIN_NAME, actionId,
+                new Event("tenant", "event-" + actionId, "category", "text"));
+        Map<String, String> props = new HashMap<>();
+        props.put("topic", "alerts");
+        props.put("kafka.bootstrap.servers", bootstrapServers);
+        action.setProperties(props);
+        return action;
+    }
+
+    @Test
+    public void pooledProducer() throws Exception {
+        MockKafkaPlugin plugin = new MockKafkaPlugin();
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+        plugin.sender = new ActionPluginSender() {
+            @Override
+            public ActionResponseMessage createMessage(ActionResponseMessage.Operation operation) {
+                Map<String, String> payload = new HashMap<>();
+                return new ActionResponseMessage() {
+                    @Override
+                    public Operation getOperation() {
+                        return operation;
+                    }
+
+                    @Override
+                    public Map<String, String> getPayload() {
+                        return payload;
+                    }
+                };
+            }
+
+            @Override
+            public void send(ActionResponseMessage msg) throws Exception {
+                results.add(msg.getPayload().get("action"));
+            }
+        };
+
+        for (int i = 0; i < 10; i++) {
+            plugin.process(new TestActionMessage(action("action-" + i, "localhost:9092")));
+        }
+        // Same kafka properties share the producer
+        assertEquals(1, plugin.created.size());
+        assertEquals(10, plugin.created.get(0).history().size());
+        assertEquals("alerts", plugin.created.get(0).history().get(0).topic());
+
+        // A different configuration gets its own producer
+        plugin.process(new TestActionMessage(action("action-10", "otherhost:9092")));
+        assertEquals(2, plugin.created.size());
+
+        assertEquals(11, results.size());
+        assertTrue(results.stream().allMatch(action -> action.contains("\"result\":\"PROCESSED\"")));
+
+        // Both producers are closed on shutdown with a bounded wait
+        plugin.close();
+        assertEquals(2, plugin.closeTimeouts.size());
+        assertTrue(plugin.closeTimeouts.stream().allMatch(timeout -> timeout == 10000L));
+    }
 }
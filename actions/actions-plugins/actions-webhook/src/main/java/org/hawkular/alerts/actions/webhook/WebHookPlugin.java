@@ -21,9 +21,18 @@ import static org.hawkular.alerts.api.util.Util.isEmpty;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.hawkular.alerts.actions.api.ActionMessage;
 import org.hawkular.alerts.actions.api.ActionPluginListener;
@@ -34,14 +43,35 @@ import org.hawkular.alerts.actions.api.Sender;
 import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.action.Action;
 import org.hawkular.alerts.log.AlertingLogger;
+import org.hawkular.alerts.vertx.VertxManager;
 import org.hawkular.commons.log.MsgLogging;
 import org.hawkular.commons.properties.HawkularProperties;
 
+import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+import io.vertx.core.http.HttpMethod;
+
 /**
  * Action Webhook plugin.
  *
  * An example of listener for basic webhook processing.
  *
+ * By default webhooks are invoked with a non-blocking HTTP client, a slow receiver does not hold a thread while the
+ * request is in progress. Connections are kept alive and pooled per host, the pool size limits the requests in
+ * flight per host. Requests failed by a connection error, a timeout, a 429 or a 5xx response are retried with
+ * exponential backoff and jitter. The result of the Action is sent when the request completes, on a worker thread
+ * as the update of the result blocks.
+ *
+ * Endpoints that accept an array of events can declare "batch", the events of their Actions are then posted
+ * together as a json array.
+ *
+ * The HTTP client runs on the Vertx shared by the plugins. On close the pending batches are posted and the requests
+ * in progress are given some time to complete.
+ *
+ * With hawkular-alerts.webhook-async=false webhooks are invoked with a blocking connection per Action.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -53,6 +83,41 @@ public class WebHookPlugin implements ActionPluginListener {
     private static final String DEFAULT_TIMEOUT = "5000";
     private static final String CONTENT_TYPE = "Content-Type";
     private static final String APPLICATION_JSON = "application/json";
+    private static final String DEFAULT_RETRIES = "2";
+    private static final long RETRY_BACKOFF_MAX = 30000;
+    private static final long CLOSE_TIMEOUT = 10000;
+
+    private static final String WEBHOOK_ASYNC = "hawkular-alerts.webhook-async";
+    private static final String WEBHOOK_ASYNC_ENV = "WEBHOOK_ASYNC";
+    private static final String WEBHOOK_ASYNC_DEFAULT = "true";
+
+    /*
+        Max number of requests in flight per host, it is the size of the connection pool of a host
+     */
+    private static final String WEBHOOK_MAX_IN_FLIGHT = "hawkular-alerts.webhook-max-in-flight";
+    private static final String WEBHOOK_MAX_IN_FLIGHT_ENV = "WEBHOOK_MAX_IN_FLIGHT";
+    private static final String WEBHOOK_MAX_IN_FLIGHT_DEFAULT = "10";
+
+    /*
+        Base delay in milliseconds of the first retry, doubled on each retry
+     */
+    private static final String WEBHOOK_RETRY_BACKOFF = "hawkular-alerts.webhook-retry-backoff";
+    private static final String WEBHOOK_RETRY_BACKOFF_ENV = "WEBHOOK_RETRY_BACKOFF";
+    private static final String WEBHOOK_RETRY_BACKOFF_DEFAULT = "500";
+
+    /*
+        Max number of events posted together to a batch endpoint
+     */
+    private static final String WEBHOOK_BATCH_SIZE = "hawkular-alerts.webhook-batch-size";
+    private static final String WEBHOOK_BATCH_SIZE_ENV = "WEBHOOK_BATCH_SIZE";
+    private static final String WEBHOOK_BATCH_SIZE_DEFAULT = "100";
+
+    /*
+        Max time in milliseconds an event waits to be posted to a batch endpoint
+     */
+    private static final String WEBHOOK_BATCH_FLUSH_MS = "hawkular-alerts.webhook-batch-flush-ms";
+    private static final String WEBHOOK_BATCH_FLUSH_MS_ENV = "WEBHOOK_BATCH_FLUSH_MS";
+    private static final String WEBHOOK_BATCH_FLUSH_MS_DEFAULT = "500";
 
     /*
         This is the list of properties supported for the WebHook plugin.
@@ -76,9 +141,40 @@ public class WebHookPlugin implements ActionPluginListener {
      */
     public static final String PROP_TIMEOUT = "timeout";
 
+    /**
+     * "retries" property defines the max number of retries of a failed request, only on async mode.
+     */
+    public static final String PROP_RETRIES = "retries";
+
+    /**
+     * "batch" property declares that the webhook url accepts a json array of events, true|false.
+     * Only on async mode.
+     */
+    public static final String PROP_BATCH = "batch";
+
     private final AlertingLogger log = MsgLogging.getMsgLogger(AlertingLogger.class, WebHookPlugin.class);
     Map<String, String> defaultProperties = new HashMap<>();
 
+    boolean async;
+    int maxInFlight;
+    long retryBackoff;
+    int batchSize;
+    long batchFlushMs;
+
+    private Vertx vertx;
+    private HttpClient client;
+    private long flushTimer;
+
+    /*
+        Actions and batches sent and waiting for their result
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /*
+        Pending Actions of batch endpoints by url, method, timeout and retries
+     */
+    private final Map<List<String>, WebHookBatch> batches = new ConcurrentHashMap<>();
+
     @Sender
     ActionPluginSender sender;
 
@@ -89,6 +185,18 @@ public class WebHookPlugin implements ActionPluginListener {
         defaultProperties.put(PROP_URL, HawkularProperties.getProperty(DEFAULT_URL_PROP, DEFAULT_URL));
         defaultProperties.put(PROP_METHOD, DEFAULT_METHOD);
         defaultProperties.put(PROP_TIMEOUT, DEFAULT_TIMEOUT);
+        defaultProperties.put(PROP_RETRIES, DEFAULT_RETRIES);
+        defaultProperties.put(PROP_BATCH, "false");
+        async = Boolean.parseBoolean(HawkularProperties.getProperty(WEBHOOK_ASYNC, WEBHOOK_ASYNC_ENV,
+                WEBHOOK_ASYNC_DEFAULT));
+        maxInFlight = Integer.parseInt(HawkularProperties.getProperty(WEBHOOK_MAX_IN_FLIGHT,
+                WEBHOOK_MAX_IN_FLIGHT_ENV, WEBHOOK_MAX_IN_FLIGHT_DEFAULT));
+        retryBackoff = Long.parseLong(HawkularProperties.getProperty(WEBHOOK_RETRY_BACKOFF,
+                WEBHOOK_RETRY_BACKOFF_ENV, WEBHOOK_RETRY_BACKOFF_DEFAULT));
+        batchSize = Integer.parseInt(HawkularProperties.getProperty(WEBHOOK_BATCH_SIZE, WEBHOOK_BATCH_SIZE_ENV,
+                WEBHOOK_BATCH_SIZE_DEFAULT));
+        batchFlushMs = Long.parseLong(HawkularProperties.getProperty(WEBHOOK_BATCH_FLUSH_MS,
+                WEBHOOK_BATCH_FLUSH_MS_ENV, WEBHOOK_BATCH_FLUSH_MS_DEFAULT));
     }
 
     @Override
@@ -105,6 +213,17 @@ public class WebHookPlugin implements ActionPluginListener {
     public void process(ActionMessage msg) throws Exception {
         log.infoActionReceived("webhook", msg.toString());
         Action receivedAction = msg.getAction();
+        if (async) {
+            try {
+                // The result is sent when the request completes
+                invokeWebhookAsync(receivedAction);
+            } catch (Exception e) {
+                log.errorCannotProcessMessage("webhook", e.getMessage());
+                receivedAction.setResult(MESSAGE_FAILED);
+                sendResult(receivedAction);
+            }
+            return;
+        }
         try {
             invokeWebhook(receivedAction);
         } catch (Exception e) {
@@ -151,6 +270,215 @@ public class WebHookPlugin implements ActionPluginListener {
         conn.disconnect();
     }
 
+    public void invokeWebhookAsync(Action action) {
+        if (action.getProperties() == null) {
+            throw new IllegalArgumentException("Received action without properties");
+        }
+        String url = isEmpty(action.getProperties().get(PROP_URL)) ? DEFAULT_URL : action.getProperties().get(PROP_URL);
+        String method = isEmpty(action.getProperties().get(PROP_METHOD)) ? DEFAULT_METHOD :
+                action.getProperties().get(PROP_METHOD);
+        int timeout = isEmpty(action.getProperties().get(PROP_TIMEOUT)) ? Integer.parseInt(DEFAULT_TIMEOUT) :
+                Integer.parseInt(action.getProperties().get(PROP_TIMEOUT));
+        int retries = isEmpty(action.getProperties().get(PROP_RETRIES)) ? Integer.parseInt(DEFAULT_RETRIES) :
+                Integer.parseInt(action.getProperties().get(PROP_RETRIES));
+        HttpMethod httpMethod = HttpMethod.valueOf(method.toUpperCase());
+
+        if (Boolean.parseBoolean(action.getProperties().get(PROP_BATCH))) {
+            List<String> key = Arrays.asList(url, httpMethod.name(), String.valueOf(timeout), String.valueOf(retries));
+            WebHookBatch batch = batches.computeIfAbsent(key,
+                    k -> new WebHookBatch(url, httpMethod, timeout, retries));
+            List<Action> full = batch.add(action, batchSize);
+            if (full != null) {
+                sendBatch(batch, full);
+            } else {
+                getClient();
+            }
+            return;
+        }
+
+        Consumer<String> onResult = tracked(result -> {
+            action.setResult(result);
+            sendResult(action);
+        });
+        try {
+            send(url, httpMethod, timeout, retries, JsonUtil.toJson(action.getEvent()), 0, onResult);
+        } catch (RuntimeException e) {
+            completed();
+            throw e;
+        }
+    }
+
+    /**
+     * Close the HTTP client. Pending batches are posted and the requests in progress are awaited up to a timeout,
+     * the ones not completed by then are aborted.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (client == null) {
+                return;
+            }
+            vertx.cancelTimer(flushTimer);
+            batches.values().forEach(this::flushBatch);
+        }
+        // Retries of the requests in progress need the client, it is not closed until they complete
+        awaitInFlight(CLOSE_TIMEOUT);
+        synchronized (this) {
+            client.close();
+            client = null;
+        }
+    }
+
+    /*
+        The client is created on first use, with a periodic flush of the batch endpoints
+     */
+    private synchronized HttpClient getClient() {
+        if (client == null) {
+            vertx = VertxManager.getVertx();
+            client = vertx.createHttpClient(new HttpClientOptions()
+                    .setKeepAlive(true)
+                    .setMaxPoolSize(maxInFlight)
+                    .setConnectTimeout(Integer.parseInt(DEFAULT_TIMEOUT)));
+            flushTimer = vertx.setPeriodic(batchFlushMs, id -> batches.values().forEach(this::flushBatch));
+        }
+        return client;
+    }
+
+    private synchronized boolean isClosed() {
+        return client == null;
+    }
+
+    /*
+        Count a request in flight until its result is reported.
+        Results are reported from the event loop, sending them updates the Action on the backend, so they are sent
+        on a worker thread, unordered as results of different requests are independent.
+     */
+    private Consumer<String> tracked(Consumer<String> onResult) {
+        inFlight.incrementAndGet();
+        return result -> vertx.<Void>executeBlocking(future -> {
+            try {
+                onResult.accept(result);
+                future.complete();
+            } finally {
+                completed();
+            }
+        }, false, res -> {
+            if (res.failed()) {
+                log.error("Error sending webhook result", res.cause());
+            }
+        });
+    }
+
+    private void completed() {
+        if (inFlight.decrementAndGet() == 0) {
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+    }
+
+    private void awaitInFlight(long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (inFlight) {
+            long remaining = timeout;
+            while (inFlight.get() > 0 && remaining > 0) {
+                try {
+                    inFlight.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+        if (inFlight.get() > 0) {
+            log.warnf("Webhook closed with [%s] requests in progress", inFlight.get());
+        }
+    }
+
+    private void flushBatch(WebHookBatch batch) {
+        List<Action> actions = batch.drain();
+        if (!actions.isEmpty()) {
+            sendBatch(batch, actions);
+        }
+    }
+
+    private void sendBatch(WebHookBatch batch, List<Action> actions) {
+        String events = JsonUtil.toJson(actions.stream().map(Action::getEvent).collect(Collectors.toList()));
+        Consumer<String> onResult = tracked(result -> {
+            for (Action action : actions) {
+                action.setResult(result);
+                sendResult(action);
+            }
+        });
+        try {
+            send(batch.url, batch.method, batch.timeout, batch.retries, events, 0, onResult);
+        } catch (RuntimeException e) {
+            completed();
+            throw e;
+        }
+    }
+
+    private void send(String url, HttpMethod method, int timeout, int retries, String body, int attempt,
+                      Consumer<String> onResult) {
+        // A timeout can be reported after a response, only the first outcome of an attempt counts
+        AtomicBoolean done = new AtomicBoolean(false);
+        HttpClientRequest request = getClient().requestAbs(method, url, response -> {
+            int status = response.statusCode();
+            // The body is consumed so the connection goes back to the pool
+            response.bodyHandler(responseBody -> {
+                if (!done.compareAndSet(false, true)) {
+                    return;
+                }
+                if (status < 400) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Webhook for " + url + " . Request code: " + status);
+                    }
+                    onResult.accept(MESSAGE_PROCESSED);
+                } else if ((status >= 500 || status == 429) && attempt < retries) {
+                    retry(url, method, timeout, retries, body, attempt, onResult);
+                } else {
+                    log.errorf("Webhook for %s. Failed with: [%s]. Response code: %s", url, status,
+                            response.statusMessage());
+                    onResult.accept(MESSAGE_FAILED);
+                }
+            });
+        });
+        request.setTimeout(timeout);
+        request.exceptionHandler(e -> {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            if (attempt < retries) {
+                retry(url, method, timeout, retries, body, attempt, onResult);
+            } else {
+                log.errorCannotProcessMessage("webhook", e.getMessage());
+                onResult.accept(MESSAGE_FAILED);
+            }
+        });
+        request.putHeader(CONTENT_TYPE, APPLICATION_JSON);
+        request.end(body);
+    }
+
+    /*
+        Exponential backoff with jitter, the delay is a random value between the half and the full backoff
+     */
+    private void retry(String url, HttpMethod method, int timeout, int retries, String body, int attempt,
+                       Consumer<String> onResult) {
+        long backoff = Math.min(RETRY_BACKOFF_MAX, retryBackoff << Math.min(attempt, 16));
+        long delay = Math.max(1, backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+        if (log.isDebugEnabled()) {
+            log.debug("Webhook for " + url + " . Retry " + (attempt + 1) + " in " + delay + " ms");
+        }
+        vertx.setTimer(delay, id -> {
+            if (isClosed()) {
+                onResult.accept(MESSAGE_FAILED);
+            } else {
+                send(url, method, timeout, retries, body, attempt + 1, onResult);
+            }
+        });
+    }
+
     private void sendResult(Action action) {
         if (sender == null) {
             throw new IllegalStateException("ActionPluginSender is not present in the plugin");
@@ -166,4 +494,36 @@ public class WebHookPlugin implements ActionPluginListener {
             log.error("Error sending ActionResponseMessage", e);
         }
     }
+
+    /*
+        Actions pending to be posted to a batch endpoint
+     */
+    private static class WebHookBatch {
+        private final String url;
+        private final HttpMethod method;
+        private final int timeout;
+        private final int retries;
+        private List<Action> actions = new ArrayList<>();
+
+        WebHookBatch(String url, HttpMethod method, int timeout, int retries) {
+            this.url = url;
+            this.method = method;
+            this.timeout = timeout;
+            this.retries = retries;
+        }
+
+        /*
+            Add an Action, the pending Actions are returned to be posted when the batch size is reached
+         */
+        synchronized List<Action> add(Action action, int batchSize) {
+            actions.add(action);
+            return actions.size() >= batchSize ? drain() : null;
+        }
+
+        synchronized List<Action> drain() {
+            List<Action> drained = actions;
+            actions = new ArrayList<>();
+            return drained;
+        }
+    }
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.actions.webhook;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.alerts.actions.api.ActionPluginSender;
+import org.hawkular.alerts.actions.api.ActionResponseMessage;
+import org.hawkular.alerts.actions.tests.TestActionMessage;
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.vertx.VertxManager;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.vertx.core.Context;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class WebHookPluginTest {
+
+    private HttpServer server;
+    private WebHookPlugin plugin;
+    private List<String> requests;
+    private List<String> results;
+    private CountDownLatch resultsLatch;
+    private AtomicInteger eventLoopResults;
+
+    @Before
+    public void startServer() throws Exception {
+        requests = Collections.synchronizedList(new ArrayList<>());
+        results = Collections.synchronizedList(new ArrayList<>());
+        eventLoopResults = new AtomicInteger();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.start();
+
+        plugin = new WebHookPlugin();
+        plugin.async = true;
+        plugin.retryBackoff = 10;
+        plugin.sender = new ActionPluginSender() {
+            @Override
+            public ActionResponseMessage createMessage(ActionResponseMessage.Operation operation) {
+                Map<String, String> payload = new HashMap<>();
+                return new ActionResponseMessage() {
+                    @Override
+                    public Operation getOperation() {
+                        return operation;
+                    }
+
+                    @Override
+                    public Map<String, String> getPayload() {
+                        return payload;
+                    }
+                };
+            }
+
+            @Override
+            public void send(ActionResponseMessage msg) throws Exception {
+                if (Context.isOnEventLoopThread()) {
+                    eventLoopResults.incrementAndGet();
+                }
+                results.add(msg.getPayload().get("action"));
+                resultsLatch.countDown();
+            }
+        };
+    }
+
+    @After
+    public void stopServer() {
+        plugin.close();
+        server.stop(0);
+    }
+
+    @AfterClass
+    public static void stopVertx() {
+        VertxManager.stop();
+    }
+
+    private void respond(HttpExchange exchange, int status) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            requests.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        }
+        exchange.sendResponseHeaders(status, -1);
+        exchange.close();
+    }
+
+    private Action action(String actionId, String path) {
+        Action action = new Action("tenant", "webhook", actionId,
+                new Event("tenant", "event-" + actionId, "category", "text"));
+        action.setProperties(new HashMap<>(plugin.getDefaultProperties()));
+        action.getProperties().put("url", "http://localhost:" + server.getAddress().getPort() + path);
+        return action;
+    }
+
+    private boolean processed(String result) {
+        return result.contains("\"result\":\"PROCESSED\"");
+    }
+
+    @Test
+    public void asyncWebhook() throws Exception {
+        server.createContext("/ok", exchange -> respond(exchange, 200));
+        resultsLatch = new CountDownLatch(5);
+
+        for (int i = 0; i < 5; i++) {
+            plugin.process(new TestActionMessage(action("action" + i, "/ok")));
+        }
+
+        assertTrue(resultsLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(5, requests.size());
+        assertTrue(results.stream().allMatch(this::processed));
+        // Results are sent from worker threads, the event loop is not blocked
+        assertEquals(0, eventLoopResults.get());
+    }
+
+    @Test
+    public void retryOnServerError() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        server.createContext("/unstable", exchange -> respond(exchange, calls.incrementAndGet() < 3 ? 503 : 200));
+        resultsLatch = new CountDownLatch(1);
+
+        plugin.process(new TestActionMessage(action("action1", "/unstable")));
+
+        assertTrue(resultsLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(3, calls.get());
+        assertTrue(processed(results.get(0)));
+    }
+
+    @Test
+    public void noRetryOnClientError() throws Exception {
+        server.createContext("/bad", exchange -> respond(exchange, 400));
+        resultsLatch = new CountDownLatch(1);
+
+        plugin.process(new TestActionMessage(action("action1", "/bad")));
+
+        assertTrue(resultsLatch.await(10, TimeUnit.SECONDS));
+        assertEquals(1, requests.size());
+        assertTrue(results.get(0).contains("\"result\":\"FAILED\""));
+    }
+
+    @Test
+    public void batchWebhook() throws Exception {
+        server.createContext("/batch", exchange -> respond(exchange, 200));
+        plugin.batchSize = 3;
+        resultsLatch = new CountDownLatch(3);
+
+        for (int i = 0; i < 3; i++) {
+            Action action = action("action" + i, "/batch");
+            action.getProperties().put("batch", "true");
+            plugin.process(new TestActionMessage(action));
+        }
+
+        assertTrue(resultsLatch.await(10, TimeUnit.SECONDS));
+        // The events of the three actions are posted together
+        assertEquals(1, requests.size());
+        assertEquals(3, JsonUtil.fromJson(requests.get(0), List.class).size());
+        assertTrue(results.stream().allMatch(this::processed));
+    }
+
+    @Test
+    public void closeFlushesBatch() throws Exception {
+        server.createContext("/batch", exchange -> respond(exchange, 200));
+        plugin.batchSize = 100;
+        plugin.batchFlushMs = 60000;
+        resultsLatch = new CountDownLatch(2);
+
+        for (int i = 0; i < 2; i++) {
+            Action action = action("action" + i, "/batch");
+            action.getProperties().put("batch", "true");
+            plugin.process(new TestActionMessage(action));
+        }
+        assertEquals(0, requests.size());
+
+        // Close posts the pending batch and waits for its result
+        plugin.close();
+        assertEquals(1, requests.size());
+        assertEquals(2, JsonUtil.fromJson(requests.get(0), List.class).size());
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(this::processed));
+    }
+}
@@ -147,6 +147,27 @@ import org.hawkular.commons.properties.HawkularProperties;
  *
  *      trigger.context["url"] = "http://host1:9200,http://host2:9200,http://host3:9200"
  *
+ * - [Optional]    trigger.context["page_size"] = "<number of documents fetched per request>"
+ *
+ *   Documents are fetched in pages sorted by the timestamp field, each page is sent to the engine before the next one
+ *   is fetched. By default a page has 1000 documents, at most 10000 (the default index.max_result_window).
+ *
+ * - [Optional]    trigger.context["tiebreaker"] = "<unique field used to sort documents with the same timestamp>"
+ *
+ *   Pages are fetched with search_after on the timestamp field. Without a tiebreaker a page starts again at the
+ *   timestamp of the last document of the previous page, and the documents of that timestamp already fetched are
+ *   skipped. If more than 10000 documents share a timestamp the rest of them are skipped. With a tiebreaker, a field
+ *   with doc values and a unique value per document, pages are fetched with search_after on both fields. By default
+ *   there is no tiebreaker, busy indices with many documents per timestamp should define one.
+ *
+ * - [Optional]    trigger.context["lag"] = "[0-9]+[smh]"  (i.e. 30s, 2h, 10m)
+ *
+ *   Defines how late a document can be indexed after its timestamp and still be found. A query only fetches the
+ *   documents older than the lag, the newer ones are left for a next query. The position of the last document sent
+ *   is kept per trigger and the next query resumes from there, so each document is fetched once. A document indexed
+ *   later than the lag after its timestamp is missed, and documents are sent to the engine at least the lag after
+ *   their timestamp. By default it is "1m".
+ *
  * </pre>
  *
  * @author Jay Shaughnessy
@@ -192,6 +213,7 @@ public class ElasticsearchAlerter implements AlerterPlugin {
 
     private ScheduledThreadPoolExecutor scheduledExecutor;
     private Map<TriggerKey, ScheduledFuture<?>> queryFutures = new HashMap<>();
+    private Map<TriggerKey, ElasticsearchQuery.HighWaterMark> highWaterMarks = new ConcurrentHashMap<>();
 
     private Map<String, String> defaultProperties;
 
@@ -298,6 +320,7 @@ public class ElasticsearchAlerter implements AlerterPlugin {
             if (canceled != null) {
                 canceled.cancel(false);
             }
+            highWaterMarks.remove(key);
         });
         updatedKeys.stream().forEach(key -> {
             ScheduledFuture updated = queryFutures.remove(key);
@@ -316,7 +339,7 @@ public class ElasticsearchAlerter implements AlerterPlugin {
             Trigger t = activeTriggers.get(key);
             String interval = t.getContext().get(INTERVAL) == null ? INTERVAL_DEFAULT : t.getContext().get(INTERVAL);
             queryFutures.put(key, scheduledExecutor
-                    .scheduleAtFixedRate(new ElasticsearchQuery(t, defaultProperties, alerts),0L,
+                    .scheduleAtFixedRate(new ElasticsearchQuery(t, defaultProperties, alerts, highWaterMarks),0L,
                             getIntervalValue(interval), getIntervalUnit(interval)));
 
         }
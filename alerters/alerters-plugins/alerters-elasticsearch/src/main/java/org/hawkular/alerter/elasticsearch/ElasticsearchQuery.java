@@ -29,11 +29,15 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -52,12 +56,24 @@ import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.event.EventField;
 import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.TriggerKey;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
 
 /**
  * This class performs a query into Elasticsearch system and parses results documents based on Trigger tags/context.
+ *
+ * Documents are fetched in pages sorted by the timestamp field, using search_after to go from a page to the next one,
+ * so a poll is not limited by the index result window. Without a unique tiebreaker field a page starts again at the
+ * timestamp of the last document of the previous page, and the documents already fetched with that timestamp are
+ * skipped. Each page is converted into Events and sent to the engine before the next page is fetched.
+ *
+ * A poll only fetches the documents older than the lag, so documents indexed late are found before the poll passes
+ * their timestamp. The position of the last document sent is kept as the high-water mark of the trigger, with the ids
+ * of the documents sent with its timestamp, and the next poll resumes from there. A document is fetched once, and the
+ * memory kept per trigger does not depend on the number of documents.
+ *
  * @see {@link ElasticsearchAlerter}
  *
  * @author Jay Shaughnessy
@@ -66,7 +82,10 @@ import org.hawkular.commons.log.MsgLogging;
 public class ElasticsearchQuery implements Runnable {
     private static final MsgLogger log = MsgLogging.getMsgLogger(ElasticsearchQuery.class);
 
-    private static final int SIZE_DEFAULT = 10;
+    private static final String PAGE_SIZE_DEFAULT = "1000";
+    // Default index.max_result_window, the largest page a search returns
+    private static final int MAX_RESULT_WINDOW = 10000;
+    private static final String LAG_DEFAULT = "1m";
 
     private static final String _ID = "_id";
     private static final String _INDEX = "_index";
@@ -83,7 +102,9 @@ public class ElasticsearchQuery implements Runnable {
     private static final String INDEX_NOT_FOUND = "index_not_found_exception";
     private static final String INTERVAL = "interval";
     private static final String INTERVAL_DEFAULT = "2m";
+    private static final String LAG = "lag";
     private static final String MAPPING = "mapping";
+    private static final String PAGE_SIZE = "page_size";
     private static final String PASS = "pass";
     private static final String PREFERENCE = "preference";
     private static final String PROXY_REMOTE_USER = "proxy-remote-user";
@@ -91,10 +112,11 @@ public class ElasticsearchQuery implements Runnable {
     private static final String TIMESTAMP = "timestamp";
     private static final String TIMESTAMP_PATTERN = "timestamp_pattern";
     private static final String TOKEN = "token";
-    private static final String TOTAL = "total";
     private static final String TYPE = "type";
     private static final String RESOURCE_ID = "resource.id";
+    private static final String SORT = "sort";
     private static final String SOURCE = "source";
+    private static final String TIEBREAKER = "tiebreaker";
     private static final String URL = "url";
     private static final String X_FORWARDED = "X-Forwarded-For";
     private static final String X_PROXY_REMOTE_USER = "X-Proxy-Remote-User";
@@ -115,10 +137,65 @@ public class ElasticsearchQuery implements Runnable {
 
     private Header[] headers = null;
 
+    private Map<TriggerKey, HighWaterMark> highWaterMarks;
+
+    /**
+     * Handler of a page of documents fetched from Elasticsearch.
+     */
+    @FunctionalInterface
+    public interface PageHandler {
+        void onPage(List<Map<String, Object>> hits) throws Exception;
+    }
+
+    /**
+     * The position of the last document sent for a trigger, valid while the trigger queries the same documents.
+     */
+    public static class HighWaterMark {
+        private final String signature;
+        private final long timestamp;
+        private final List<Object> last;
+        private final Set<String> boundary;
+
+        /**
+         * @param signature the documents and sort queried by the trigger
+         * @param timestamp the newest timestamp passed, the next poll fetches the documents from this timestamp
+         * @param last the sort values of the last document sent, null if no document was sent with the timestamp
+         * @param boundary the documents sent with the timestamp by _index and _id, empty with a tiebreaker
+         */
+        public HighWaterMark(String signature, long timestamp, List<Object> last, Set<String> boundary) {
+            this.signature = signature;
+            this.timestamp = timestamp;
+            this.last = last;
+            this.boundary = boundary;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public List<Object> getLast() {
+            return last;
+        }
+
+        public Set<String> getBoundary() {
+            return boundary;
+        }
+    }
+
     public ElasticsearchQuery(Trigger trigger, Map<String, String> properties, AlertsService alerts) {
+        this(trigger, properties, alerts, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * @param highWaterMarks the high-water marks by trigger, shared by the queries of all the triggers so a mark
+     *                       survives the re-creation of the query of a trigger
+     */
+    public ElasticsearchQuery(Trigger trigger, Map<String, String> properties, AlertsService alerts,
+                              Map<TriggerKey, HighWaterMark> highWaterMarks) {
         this.trigger = trigger;
         this.properties = properties == null ? new HashMap<>() : new HashMap<>(properties);
         this.alerts = alerts;
+        this.highWaterMarks = highWaterMarks;
     }
 
     public void parseProperties() throws Exception {
@@ -135,6 +212,9 @@ public class ElasticsearchQuery implements Runnable {
         checkContext(USER, false);
         checkContext(PASS, false);
         checkContext(TOKEN, false);
+        checkContext(PAGE_SIZE, PAGE_SIZE_DEFAULT);
+        checkContext(TIEBREAKER, false);
+        checkContext(LAG, LAG_DEFAULT);
     }
 
     public void parseMap() throws Exception {
@@ -251,31 +331,140 @@ public class ElasticsearchQuery implements Runnable {
     }
 
     public List<Map<String, Object>> query(String filter, String indices) throws Exception {
+        List<Map<String, Object>> results = new ArrayList<>();
+        query(filter, indices, null, new HashSet<>(), results::addAll);
+        log.debugf("Results %s", results.size());
+        return results;
+    }
+
+    /**
+     * Fetch the documents matching a query in pages sorted by the timestamp field and the tiebreaker field if defined.
+     *
+     * Without a tiebreaker the documents with the timestamp of the last document of a page are fetched again with the
+     * next page. A page holding only those documents is followed by a larger one, up to the index result window; if
+     * more documents than the result window share a timestamp, the rest of them are skipped. Busy indices should
+     * define a unique tiebreaker field with doc values.
+     *
+     * @param filter the filter of the query
+     * @param indices comma separated list of indices, null for all the indices
+     * @param searchAfter sort values of the document after which the documents are fetched, null to start from the
+     *                    first document
+     * @param boundary keys of the documents already passed with the timestamp of searchAfter, they are skipped if
+     *                 fetched again. It is updated before each page is handled, holding the keys of the documents
+     *                 passed with the timestamp of the last document. Not used with a tiebreaker.
+     * @param handler invoked with each page of documents, the next page is fetched once it returns. A document is
+     *                passed once, pages are never empty.
+     * @return the sort values of the last document fetched, or searchAfter if no document is fetched
+     */
+    public List<Object> query(String filter, String indices, List<Object> searchAfter, Set<String> boundary,
+                              PageHandler handler) throws Exception {
         if (filter == null || filter.isEmpty()) {
             throw new IllegalArgumentException("filter must be not null");
         }
-        List<Map<String, Object>> results = new ArrayList<>();
         String json = rawQuery(filter);
-
         List<String> index = indices == null ? EMPTY_LIST : new ArrayList<>(Arrays.asList(indices.split(",")));
-        Response response = null;
-        //  Using a loop in case results are greater than default results size
+        int pageSize = Math.min(Integer.parseInt(properties.getOrDefault(PAGE_SIZE, PAGE_SIZE_DEFAULT)),
+                MAX_RESULT_WINDOW);
+        boolean unique = !isEmpty(properties.get(TIEBREAKER));
+        String sort = sortFields();
+        // Same preference in all the pages, so they are served by the same shard copies
         Map<String, String> params = new HashMap<>();
         params.put(PREFERENCE, UUID.randomUUID().toString());
-        String jsonQuery = "{" +
-                "\"from\":0," +
-                "\"size\":" + SIZE_DEFAULT + "," +
-                "\"query\":" + json +
-                "}";
-        HttpEntity entity = new NStringEntity(jsonQuery, ContentType.APPLICATION_JSON);
-        boolean retry = false;
-        String endpoint = null;
+        List<Object> last = searchAfter;
+        // Timestamp of the documents in boundary, a page can start again at that timestamp
+        Long boundaryTimestamp = unique ? null : timestamp(searchAfter);
+        List<Object> after = boundaryTimestamp == null ? searchAfter : Arrays.asList(boundaryTimestamp - 1);
+        int size = pageSize;
+        int fetched = 0;
+        while (true) {
+            String jsonQuery = "{" +
+                    "\"size\":" + size + "," +
+                    "\"query\":" + json + "," +
+                    "\"sort\":" + sort +
+                    (after == null ? "" : ",\"search_after\":" + JsonUtil.toJson(after)) +
+                    "}";
+            List<Map<String, Object>> hits = search(index, params, jsonQuery);
+            if (hits.isEmpty()) {
+                break;
+            }
+            List<Map<String, Object>> page = hits;
+            if (!unique) {
+                page = new ArrayList<>(hits.size());
+                for (Map<String, Object> hit : hits) {
+                    Long timestamp = timestamp((List<Object>) hit.get(SORT));
+                    if (timestamp == null || !timestamp.equals(boundaryTimestamp)) {
+                        boundary.clear();
+                        boundaryTimestamp = timestamp;
+                    }
+                    if (boundary.add(documentKey(hit))) {
+                        page.add(hit);
+                    }
+                }
+            }
+            if (!page.isEmpty()) {
+                handler.onPage(page);
+                fetched += page.size();
+            }
+            last = (List<Object>) hits.get(hits.size() - 1).get(SORT);
+            log.debugf("Fetched [%s] documents, last sort values %s", fetched, last);
+            if (hits.size() < size || last == null) {
+                break;
+            }
+            if (unique || boundaryTimestamp == null) {
+                after = last;
+            } else if (!page.isEmpty() || size < MAX_RESULT_WINDOW) {
+                // The documents after the boundary can have its timestamp too, so the boundary is fetched again
+                after = Arrays.asList(boundaryTimestamp - 1);
+                // A page with only documents of the boundary does not move forward, the next one is larger
+                size = page.isEmpty() ? Math.min(size * 2, MAX_RESULT_WINDOW) : pageSize;
+            } else {
+                log.warnf("More than [%s] documents with timestamp [%s], the rest of them are skipped. " +
+                        "A unique tiebreaker field should be defined.", MAX_RESULT_WINDOW, boundaryTimestamp);
+                after = Arrays.asList(boundaryTimestamp);
+                boundary.clear();
+                boundaryTimestamp = null;
+                size = pageSize;
+            }
+        }
+        return last;
+    }
+
+    private String sortFields() {
+        StringBuilder sort = new StringBuilder("[");
+        sort.append("{\"").append(properties.get(TIMESTAMP)).append("\":\"asc\"}");
+        String tiebreaker = properties.get(TIEBREAKER);
+        if (!isEmpty(tiebreaker)) {
+            sort.append(",{\"").append(tiebreaker).append("\":\"asc\"}");
+        }
+        return sort.append("]").toString();
+    }
+
+    /*
+        Documents ids are unique per index
+     */
+    private static String documentKey(Map<String, Object> hit) {
+        return hit.get(_INDEX) + "#" + hit.get(_ID);
+    }
+
+    private static Long timestamp(List<Object> sort) {
+        return sort == null || sort.isEmpty() || !(sort.get(0) instanceof Number) ? null :
+                ((Number) sort.get(0)).longValue();
+    }
+
+    /*
+        Indices not found are removed from the search, an empty list is returned if there are no indices left
+     */
+    private List<Map<String, Object>> search(List<String> index, Map<String, String> params, String jsonQuery)
+            throws Exception {
+        Response response = null;
+        boolean retry;
         do {
+            retry = false;
             try {
-                endpoint = "/" + String.join(",", index) + "/_search";
+                String endpoint = "/" + String.join(",", index) + "/_search";
+                HttpEntity entity = new NStringEntity(jsonQuery, ContentType.APPLICATION_JSON);
                 response = headers == null ? client.performRequest(GET, endpoint, params, entity) :
                         client.performRequest(GET, endpoint, params, entity, headers);
-                retry = false;
             } catch (ResponseException e) {
                 log.warn(e.toString());
                 Map<String, Object> exception = JsonUtil.getMapper()
@@ -288,40 +477,18 @@ public class ElasticsearchQuery implements Runnable {
                         retry = true;
                         index.remove(badIndex);
                         if (index.isEmpty()) {
-                            return results;
+                            return EMPTY_LIST;
                         }
                     }
                 }
+                if (!retry) {
+                    throw e;
+                }
             }
-        } while(retry);
+        } while (retry);
         Map<String, Object> responseMap = JsonUtil.getMapper().readValue(response.getEntity().getContent(), Map.class);
         Map<String, Object> allHits = (Map<String, Object>) responseMap.get(HITS);
-        List<Map<String, Object>> hits = (List<Map<String, Object>>) allHits.get(HITS);
-        results.addAll(hits);
-        long totalHits = new Long((Integer) allHits.get(TOTAL));
-        long currentHits = hits.size();
-        while (currentHits < totalHits) {
-            long pageSize = SIZE_DEFAULT;
-            if ((currentHits + SIZE_DEFAULT) > totalHits) {
-                pageSize = totalHits - currentHits;
-            }
-            jsonQuery = "{" +
-                    "\"from\":" + currentHits + "," +
-                    "\"size\":" + pageSize + "," +
-                    "\"query\":" + json +
-                    "}";
-            entity = new NStringEntity(jsonQuery, ContentType.APPLICATION_JSON);
-            response = headers == null ? client.performRequest(GET, endpoint, params, entity) :
-                    client.performRequest(GET, endpoint, params, entity, headers);
-            responseMap = JsonUtil.getMapper().readValue(response.getEntity().getContent(), Map.class);
-            allHits = (Map<String, Object>) responseMap.get(HITS);
-            hits = (List<Map<String, Object>>) allHits.get(HITS);
-            currentHits += hits.size();
-            log.debugf("currentHits [%s] totalHits [%s]", currentHits, totalHits);
-            results.addAll(hits);
-        }
-        log.debugf("Results %s", results.size());
-        return results;
+        return (List<Map<String, Object>>) allHits.get(HITS);
     }
 
     public List<Event> parseEvents(List<Map<String, Object>> hits) {
@@ -474,9 +641,29 @@ public class ElasticsearchQuery implements Runnable {
         return cal.getTime();
     }
 
-    private String prepareQuery() {
-        String range = new StringBuilder("{\"range\":{\"").append(properties.get(TIMESTAMP))
-                .append("\":{\"gt\":\"").append(formatTimestamp(intervalDate())).append("\"}}}").toString();
+    private long lag() {
+        String lag = properties.getOrDefault(LAG, LAG_DEFAULT);
+        return getIntervalUnit(lag).toMillis(getIntervalValue(lag));
+    }
+
+    /*
+        The first poll of a trigger fetches the documents of the last interval. Next polls fetch the documents from
+        the timestamp of the high-water mark. Only the documents older than the upper bound are fetched.
+     */
+    private String prepareQuery(HighWaterMark mark, long upper) {
+        String range;
+        if (mark != null) {
+            range = new StringBuilder("{\"range\":{\"").append(properties.get(TIMESTAMP))
+                    .append("\":{\"gte\":").append(mark.timestamp)
+                    .append(",\"lte\":").append(upper)
+                    .append(",\"format\":\"epoch_millis\"}}}").toString();
+        } else {
+            range = new StringBuilder("{\"range\":{\"").append(properties.get(TIMESTAMP))
+                    .append("\":{\"gt\":\"").append(formatTimestamp(intervalDate())).append("\"}}},")
+                    .append("{\"range\":{\"").append(properties.get(TIMESTAMP))
+                    .append("\":{\"lte\":").append(upper)
+                    .append(",\"format\":\"epoch_millis\"}}}").toString();
+        }
         String filter = properties.get(FILTER);
         String filters;
         if (filter != null) {
@@ -493,21 +680,59 @@ public class ElasticsearchQuery implements Runnable {
         }
     }
 
+    /*
+        A mark is only valid for the same documents and sort, a change on the trigger starts from the interval again
+     */
+    private String signature() {
+        return properties.get(INDEX) + "|" + properties.get(FILTER) + "|" + properties.get(TIMESTAMP) + "|"
+                + properties.get(TIEBREAKER);
+    }
+
     @Override
     public void run() {
         try {
             parseProperties();
             parseMap();
             connect(properties.get(URL));
-            String preparedQuery = prepareQuery();
+            TriggerKey triggerKey = new TriggerKey(trigger.getTenantId(), trigger.getId());
+            String signature = signature();
+            HighWaterMark mark = highWaterMarks.get(triggerKey);
+            if (mark != null && !mark.signature.equals(signature)) {
+                mark = null;
+            }
+            // Documents newer than the lag are left for a next poll, so the ones indexed late are not passed
+            long upper = System.currentTimeMillis() - lag();
+            String preparedQuery = prepareQuery(mark, upper);
             log.debugf("Fetching documents from Elasticsearch [%s] %s", preparedQuery, trigger.getContext());
-            List<Event> events = parseEvents(query(preparedQuery, (String) properties.get(INDEX)));
-            log.debugf("Found [%s]", events.size());
-            disconnect();
-            events.stream().forEach(e -> e.setTenantId(trigger.getTenantId()));
-            alerts.sendEvents(events);
+            boolean unique = !isEmpty(properties.get(TIEBREAKER));
+            Set<String> boundary = mark == null ? new HashSet<>() : new HashSet<>(mark.boundary);
+            List<Object> last = query(preparedQuery, properties.get(INDEX), mark == null ? null : mark.last, boundary,
+                    hits -> {
+                        List<Event> events = parseEvents(hits);
+                        log.debugf("Found [%s]", events.size());
+                        events.stream().forEach(e -> e.setTenantId(trigger.getTenantId()));
+                        alerts.sendEvents(events);
+                        // The mark only moves once the engine has accepted the page
+                        List<Object> sort = (List<Object>) hits.get(hits.size() - 1).get(SORT);
+                        Long timestamp = timestamp(sort);
+                        if (timestamp != null) {
+                            highWaterMarks.put(triggerKey, new HighWaterMark(signature, timestamp, sort,
+                                    unique ? Collections.emptySet() : new HashSet<>(boundary)));
+                        }
+                    });
+            // All the documents up to the upper bound have been passed
+            Long newest = timestamp(last);
+            if (last == null || (newest != null && newest < upper)) {
+                highWaterMarks.put(triggerKey, new HighWaterMark(signature, upper, null, Collections.emptySet()));
+            }
         } catch (Exception e) {
             log.error("Error querying Elasticsearch.", e);
+        } finally {
+            try {
+                disconnect();
+            } catch (Exception e) {
+                log.debug(e.getMessage(), e);
+            }
         }
     }
 }
@@ -17,28 +17,48 @@
 package org.hawkular.alerter.elasticsearch;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLSocketFactory;
 
+import org.hawkular.alerts.api.exception.OverflowException;
+import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.TriggerKey;
+import org.hawkular.alerts.api.services.AlertsService;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.sun.net.httpserver.HttpServer;
+
 /**
  * @author Jay Shaughnessy
  * @author Lucas Ponce
@@ -199,4 +219,190 @@ public class ElasticsearchQueryTest {
             System.out.println("Received " + string);
         }
    }
+
+    private Map<String, Object> doc(long timestamp, String id) {
+        Map<String, Object> source = new HashMap<>();
+        source.put("@timestamp", String.valueOf(timestamp));
+        source.put("app", "app-1");
+        Map<String, Object> hit = new HashMap<>();
+        hit.put("_index", "log");
+        hit.put("_id", id);
+        hit.put("_source", source);
+        hit.put("sort", Arrays.asList(timestamp));
+        return hit;
+    }
+
+    private static long timestamp(Map<String, Object> hit) {
+        return (Long) ((List<Object>) hit.get("sort")).get(0);
+    }
+
+    /*
+        A local stand-in of the Elasticsearch search API, serving the documents sorted by timestamp after search_after.
+        Documents with the same timestamp are served in insertion order. Only the epoch_millis bounds of the ranges
+        are applied.
+     */
+    private HttpServer searchServer(List<Map<String, Object>> docs, List<String> requests) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/log/_search", exchange -> {
+            Map<String, Object> request = JsonUtil.getMapper().readValue(exchange.getRequestBody(), Map.class);
+            requests.add(JsonUtil.toJson(request));
+            int size = (Integer) request.get("size");
+            List<Object> searchAfter = (List<Object>) request.get("search_after");
+            long[] range = { Long.MIN_VALUE, Long.MAX_VALUE };
+            ranges(request.get("query"), range);
+            List<Map<String, Object>> hits;
+            synchronized (docs) {
+                hits = docs.stream()
+                        .sorted(Comparator.comparingLong(ElasticsearchQueryTest::timestamp))
+                        .filter(hit -> timestamp(hit) >= range[0] && timestamp(hit) <= range[1])
+                        .filter(hit -> searchAfter == null
+                                || timestamp(hit) > ((Number) searchAfter.get(0)).longValue())
+                        .limit(size)
+                        .collect(Collectors.toList());
+            }
+            Map<String, Object> allHits = new HashMap<>();
+            allHits.put("total", hits.size());
+            allHits.put("hits", hits);
+            byte[] body = JsonUtil.toJson(Collections.singletonMap("hits", allHits)).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static void ranges(Object query, long[] range) {
+        if (query instanceof List) {
+            ((List<Object>) query).forEach(clause -> ranges(clause, range));
+        } else if (query instanceof Map) {
+            Map<String, Object> clause = (Map<String, Object>) query;
+            if (clause.containsKey("range")) {
+                Map<String, Object> bounds = (Map<String, Object>) ((Map<String, Object>) clause.get("range"))
+                        .get("@timestamp");
+                if (bounds.get("gte") instanceof Number) {
+                    range[0] = ((Number) bounds.get("gte")).longValue();
+                }
+                if (bounds.get("lte") instanceof Number) {
+                    range[1] = ((Number) bounds.get("lte")).longValue();
+                }
+            } else {
+                clause.values().forEach(value -> ranges(value, range));
+            }
+        }
+    }
+
+    private AlertsService sentEvents(List<String> sent) {
+        return sentEvents(sent, Integer.MAX_VALUE);
+    }
+
+    /*
+        The calls after the accepted ones are rejected as if the engine was full
+     */
+    private AlertsService sentEvents(List<String> sent, int accepted) {
+        AtomicInteger calls = new AtomicInteger();
+        return (AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("sendEvents")) {
+                        if (calls.incrementAndGet() > accepted) {
+                            throw new OverflowException("Engine is full");
+                        }
+                        sent.addAll(((Collection<Event>) args[0]).stream().map(Event::getId)
+                                .collect(Collectors.toList()));
+                    }
+                    return null;
+                });
+    }
+
+    private Trigger logTrigger(HttpServer server) {
+        Trigger trigger = new Trigger("tenant", "trigger", "trigger");
+        trigger.getContext().put("timestamp", "@timestamp");
+        trigger.getContext().put("mapping", "@timestamp:ctime,app:dataId,id:id");
+        trigger.getContext().put("index", "log");
+        trigger.getContext().put("interval", "5m");
+        trigger.getContext().put("page_size", "10");
+        trigger.getContext().put("lag", "10s");
+        trigger.getContext().put("url", "http://localhost:" + server.getAddress().getPort());
+        return trigger;
+    }
+
+    @Test
+    public void searchAfterPolls() throws Exception {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> docs = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 25; i++) {
+            // Two documents per timestamp
+            docs.add(doc(now - 60000 + (i / 2), String.format("doc-%02d", i)));
+        }
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = searchServer(docs, requests);
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        Trigger trigger = logTrigger(server);
+        TriggerKey triggerKey = new TriggerKey("tenant", "trigger");
+        Map<TriggerKey, ElasticsearchQuery.HighWaterMark> marks = new ConcurrentHashMap<>();
+
+        // The engine rejects the second page, the mark stays at the last document of the first page
+        new ElasticsearchQuery(trigger, null, sentEvents(sent, 1), marks).run();
+        assertEquals(10, sent.size());
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(1).contains("\"search_after\":[" + (now - 60000 + 3) + "]"));
+        ElasticsearchQuery.HighWaterMark mark = marks.get(triggerKey);
+        assertEquals(now - 60000 + 4, mark.getTimestamp());
+        assertEquals(Arrays.asList(now - 60000 + 4), mark.getLast());
+        assertEquals(new HashSet<>(Arrays.asList("log#doc-08", "log#doc-09")), mark.getBoundary());
+
+        // Next poll, from a new query of the trigger, resumes from the mark. A page starts again at the last
+        // timestamp of the previous one, the documents already sent are skipped.
+        requests.clear();
+        new ElasticsearchQuery(trigger, null, sentEvents(sent), marks).run();
+        assertEquals(25, sent.size());
+        assertEquals(25, new HashSet<>(sent).size());
+        assertEquals(2, requests.size());
+        assertTrue(requests.get(0).contains("\"search_after\":[" + (now - 60000 + 3) + "]"));
+        assertTrue(requests.get(0).contains("\"gte\":" + (now - 60000 + 4)));
+        assertTrue(requests.get(1).contains("\"search_after\":[" + (now - 60000 + 7) + "]"));
+        // All the documents older than the lag are passed, the mark moves to the upper bound
+        mark = marks.get(triggerKey);
+        assertTrue(mark.getTimestamp() >= now - 10000);
+        assertNull(mark.getLast());
+        assertTrue(mark.getBoundary().isEmpty());
+
+        // A document with the timestamp of the mark is found. A document newer than the lag is left for a later
+        // poll, a document older than the mark is missed.
+        docs.add(doc(mark.getTimestamp(), "doc-25"));
+        docs.add(doc(now + 60000, "doc-26"));
+        docs.add(doc(now - 60000 + 5, "doc-late"));
+        sent.clear();
+        new ElasticsearchQuery(trigger, null, sentEvents(sent), marks).run();
+        assertEquals(Arrays.asList("doc-25"), sent);
+        server.stop(0);
+    }
+
+    @Test
+    public void pagesAcrossEqualTimestamps() throws Exception {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> docs = Collections.synchronizedList(new ArrayList<>());
+        // More documents with the same timestamp than a page
+        for (int i = 0; i < 30; i++) {
+            long timestamp = i < 3 ? now - 30000 : (i < 28 ? now - 20000 : now - 15000);
+            docs.add(doc(timestamp, String.format("doc-%02d", i)));
+        }
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = searchServer(docs, requests);
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        Map<TriggerKey, ElasticsearchQuery.HighWaterMark> marks = new ConcurrentHashMap<>();
+
+        new ElasticsearchQuery(logTrigger(server), null, sentEvents(sent), marks).run();
+        server.stop(0);
+
+        // Every document is sent once, the pages of the boundary grow until they pass it
+        assertEquals(30, sent.size());
+        assertEquals(30, new HashSet<>(sent).size());
+        assertTrue(requests.stream().anyMatch(request -> request.contains("\"size\":40")));
+        ElasticsearchQuery.HighWaterMark mark = marks.get(new TriggerKey("tenant", "trigger"));
+        assertTrue(mark.getTimestamp() >= now - 10000);
+        assertTrue(mark.getBoundary().isEmpty());
+    }
 }
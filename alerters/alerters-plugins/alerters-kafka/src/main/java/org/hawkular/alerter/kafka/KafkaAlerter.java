@@ -19,12 +19,15 @@ package org.hawkular.alerter.kafka;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
 import org.hawkular.alerts.alerters.api.Alerter;
 import org.hawkular.alerts.alerters.api.AlerterPlugin;
 import org.hawkular.alerts.api.model.trigger.Trigger;
@@ -106,6 +109,8 @@ import org.hawkular.commons.properties.HawkularProperties;
  *
  * </pre>
  *
+ * Triggers with the same topic and "kafka.*" properties share a single Kafka consumer, see {@link KafkaTopicConsumer}.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -125,6 +130,8 @@ public class KafkaAlerter implements AlerterPlugin {
 
     private Map<TriggerKey, KafkaQuery> kafkaQueries = new ConcurrentHashMap<>();
 
+    private Map<String, KafkaTopicConsumer> kafkaConsumers = new ConcurrentHashMap<>();
+
     private DefinitionsService definitions;
 
     private AlertsService alerts;
@@ -152,8 +159,8 @@ public class KafkaAlerter implements AlerterPlugin {
 
     @Override
     public void stop() {
-        if (kafkaQueries != null) {
-            kafkaQueries.values().stream().forEach(q -> q.shutdown());
+        if (kafkaConsumers != null) {
+            kafkaConsumers.values().stream().forEach(c -> c.shutdown());
         }
     }
 
@@ -184,27 +191,79 @@ public class KafkaAlerter implements AlerterPlugin {
         log.debugf("updatedKeys %s", updatedKeys);
         log.debugf("canceledKeys %s", canceledKeys);
 
-        canceledKeys.stream().forEach(key -> {
-            KafkaQuery canceled = kafkaQueries.remove(key);
-            if (canceled != null) {
-                canceled.shutdown();
-            }
-        });
-        updatedKeys.stream().forEach(key -> {
-            KafkaQuery updated = kafkaQueries.remove(key);
-            if (updated != null) {
-                updated.shutdown();
-            }
-        });
+        canceledKeys.stream().forEach(key -> removeQuery(key));
+        // Updated queries are removed and added again, a consumer is only stopped if it has no queries left
+        updatedKeys.stream().forEach(key -> removeQuery(key));
 
         newKeys.addAll(updatedKeys);
 
         for (TriggerKey key : newKeys) {
             Trigger trigger = activeTriggers.get(key);
-            KafkaQuery query = new KafkaQuery(alerts, trigger);
+            KafkaQuery query = new KafkaQuery(trigger);
+            if (!query.isValid()) {
+                continue;
+            }
             kafkaQueries.put(key, query);
-            kafkaExecutor.submit(query);
+            KafkaTopicConsumer consumer = kafkaConsumers.get(KafkaTopicConsumer.key(query));
+            if (consumer == null) {
+                consumer = new KafkaTopicConsumer(alerts, query.getTopic(), query.getConsumerProperties(),
+                        this::createConsumer);
+                consumer.addQuery(key, query);
+                start(KafkaTopicConsumer.key(query), consumer);
+            } else {
+                consumer.addQuery(key, query);
+            }
         }
+
+        kafkaConsumers.entrySet().removeIf(entry -> {
+            if (entry.getValue().isEmpty()) {
+                entry.getValue().shutdown();
+                return true;
+            }
+            return false;
+        });
+        log.debugf("Kafka consumers %s", kafkaConsumers.keySet());
+    }
+
+    private void start(String consumerKey, KafkaTopicConsumer consumer) {
+        kafkaConsumers.put(consumerKey, consumer);
+        kafkaExecutor.submit(() -> {
+            consumer.run();
+            if (consumer.isRunning()) {
+                try {
+                    Thread.sleep(KafkaQuery.POLL_TIMEOUT_DEFAULT);
+                    restart(consumerKey, consumer);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    /*
+        A consumer that finished without being shut down, i.e. after an unexpected error, is replaced by a new one
+        with the same queries
+     */
+    private synchronized void restart(String consumerKey, KafkaTopicConsumer consumer) {
+        if (!consumer.isRunning() || kafkaConsumers.get(consumerKey) != consumer) {
+            return;
+        }
+        log.warnf("Kafka consumer %s finished unexpectedly, restarting it", consumerKey);
+        start(consumerKey, consumer.restart());
+    }
+
+    private void removeQuery(TriggerKey key) {
+        KafkaQuery removed = kafkaQueries.remove(key);
+        if (removed != null) {
+            KafkaTopicConsumer consumer = kafkaConsumers.get(KafkaTopicConsumer.key(removed));
+            if (consumer != null) {
+                consumer.removeQuery(key);
+            }
+        }
+    }
+
+    protected Consumer<String, String> createConsumer(Properties consumerProperties) {
+        return new KafkaConsumer<>(consumerProperties);
     }
 
     private void refresh(Set<DistributedEvent> distEvents) {
@@ -21,31 +21,32 @@ import static org.hawkular.alerts.api.util.Util.isEmpty;
 
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
 
 import org.apache.kafka.clients.consumer.ConsumerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.common.errors.WakeupException;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.event.EventField;
 import org.hawkular.alerts.api.model.trigger.Trigger;
-import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
 
 /**
+ * The Kafka configuration of a Trigger and the conversion of the Kafka records into Data or Events for its tenant.
+ *
+ * Records are consumed by a {@link KafkaTopicConsumer} shared by the KafkaQueries with the same topic and consumer
+ * properties.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
-public class KafkaQuery implements Runnable {
+public class KafkaQuery {
     private static final MsgLogger log = MsgLogging.getMsgLogger(KafkaQuery.class);
 
     public static final String TOPIC = "topic";
@@ -62,32 +63,29 @@ public class KafkaQuery implements Runnable {
             DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssZ")
     };
 
-    AlertsService alerts;
     Properties consumerProperties;
     String topic;
     long pollTimeout;
-    boolean running;
+    boolean valid;
 
     boolean mappingData = true;
     private Map<String, EventField> mappings = new HashMap<>();
     String tenantId;
+    String definedMapping;
     String definedPattern;
 
-    KafkaConsumer<String, String> consumer;
-
-    public KafkaQuery(AlertsService alerts, Trigger trigger) {
-        this.alerts = alerts;
-        running = true;
+    public KafkaQuery(Trigger trigger) {
+        valid = true;
         if (trigger == null || isEmpty(trigger.getTenantId()) || isEmpty(trigger.getContext())) {
             log.warnf("Found an empty Kafka Trigger %s", trigger);
-            running = false;
+            valid = false;
             return;
         }
         tenantId = trigger.getTenantId();
         topic = trigger.getContext().get(TOPIC);
         if (isEmpty(topic)) {
             log.warnf("Found a Kafka Trigger without topic in context %s", trigger);
-            running = false;
+            valid = false;
             return;
         }
         pollTimeout = POLL_TIMEOUT_DEFAULT;
@@ -111,67 +109,77 @@ public class KafkaQuery implements Runnable {
         }
         if (consumerProperties.isEmpty()) {
             log.warnf("Found a Kafka Trigger without kafka consumer properties %s", trigger);
-            running = false;
+            valid = false;
             return;
         }
         if (trigger.getContext().get(MAPPING) != null) {
             mappingData = false;
+            definedMapping = trigger.getContext().get(MAPPING);
             definedPattern = trigger.getContext().get(TIMESTAMP_PATTERN);
             try {
                 parseMap(trigger.getContext());
             } catch (Exception e) {
                 log.errorf("Error fetching mapping on Kafka Trigger %s", trigger, e);
-                running = false;
+                valid = false;
                 return;
             }
         }
     }
 
-    @Override
-    public void run() {
-        if (running) {
+    /**
+     * @return true if the Trigger defines a valid Kafka configuration
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public Properties getConsumerProperties() {
+        return consumerProperties;
+    }
+
+    public long getPollTimeout() {
+        return pollTimeout;
+    }
+
+    /**
+     * KafkaQueries with the same converter key convert a record into the same Data or Event, so a record is converted
+     * and sent once for all of them. The engine fans out the Data/Events to all the Triggers of the tenant.
+     *
+     * @return a key of the conversion of this query
+     */
+    public String getConverterKey() {
+        return tenantId + "|" + definedMapping + "|" + definedPattern;
+    }
+
+    /**
+     * Convert a Kafka record into a Data or an Event of the Trigger tenant.
+     *
+     * @param record the Kafka record
+     * @param data the list where a converted Data is added
+     * @param events the list where a converted Event is added
+     */
+    public void convert(ConsumerRecord<String, String> record, List<Data> data, List<Event> events) {
+        if (mappingData) {
+            Data newData = new Data(tenantId, null, topic, record.timestamp(), record.value(), null);
+            log.debugf("Data %s", newData);
+            data.add(newData);
+        } else {
             try {
-                log.debugf("Starting Kafka Consumer %s %s ", topic, consumerProperties);
-                consumer = new KafkaConsumer<>(consumerProperties);
-                consumer.subscribe(Arrays.asList(topic));
-                while (running) {
-                    ConsumerRecords<String, String> records = consumer.poll(pollTimeout);
-                    for (ConsumerRecord<String, String> record : records) {
-                        if (mappingData) {
-                            Data data = new Data(tenantId, null, topic, record.timestamp(), record.value(), null);
-                            log.debugf("Data %s", data);
-                            if (alerts != null) {
-                                alerts.sendData(Arrays.asList(data));
-                            }
-                        } else {
-                            try {
-                                Map<String, Object> json = JsonUtil.fromJson(record.value(), Map.class);
-                                Event newEvent = new Event();
-                                newEvent.setTenantId(tenantId);
-                                newEvent.setCtime(record.timestamp());
-                                parseEvent(newEvent, json);
-                                log.infof("Event %s", newEvent);
-                                if (alerts != null) {
-                                    alerts.sendEvents(Arrays.asList(newEvent));
-                                }
-                            } catch (Exception e) {
-                                log.errorf("Error parsing an event from Kafka Alerter %s", record.value(), e);
-                            }
-                        }
-                    }
-                }
-            } catch (WakeupException e) {
-                // This is caught when consumer is stopped
+                Map<String, Object> json = JsonUtil.fromJson(record.value(), Map.class);
+                Event newEvent = new Event();
+                newEvent.setTenantId(tenantId);
+                newEvent.setCtime(record.timestamp());
+                parseEvent(newEvent, json);
+                log.debugf("Event %s", newEvent);
+                events.add(newEvent);
             } catch (Exception e) {
-                log.error("Unexpected error on Kafka Alerter", e);
+                log.errorf("Error parsing an event from Kafka Alerter %s", record.value(), e);
             }
         }
-        log.debugf("Finished");
-    }
-
-    public void shutdown() {
-        log.debugf("Shutting down");
-        running = false;
     }
 
     protected void parseMap(Map<String, String> context) throws Exception {
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerter.kafka;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.apache.kafka.clients.consumer.CommitFailedException;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.hawkular.alerts.api.exception.OverflowException;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.TriggerKey;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.commons.log.MsgLogger;
+import org.hawkular.commons.log.MsgLogging;
+
+/**
+ * A Kafka consumer of a topic shared by all the KafkaQueries with the same topic and consumer properties.
+ *
+ * Each poll() result is converted in bulk: a record is converted once per distinct conversion (tenant, mapping) of
+ * the queries, and the Data and Events of the poll are sent to the engine in a single sendData()/sendEvents() call.
+ * Offsets are committed once the engine has accepted the batch. If the engine overflows with the Data, the consumer
+ * goes back to the first offset of the batch and the records are polled again. If the engine accepts the Data but
+ * overflows with the Events, the partitions are paused and only the Events are sent again, the consumer keeps polling
+ * meanwhile so it is not evicted from its group. Any other error of the engine is logged and the records are skipped.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class KafkaTopicConsumer implements Runnable {
+    private static final MsgLogger log = MsgLogging.getMsgLogger(KafkaTopicConsumer.class);
+
+    private static final String ENABLE_AUTO_COMMIT = "enable.auto.commit";
+
+    private final AlertsService alerts;
+    private final String topic;
+    private final Properties consumerProperties;
+    private final Function<Properties, Consumer<String, String>> consumerFactory;
+    private final Map<TriggerKey, KafkaQuery> queries = new ConcurrentHashMap<>();
+    private final List<Event> pendingEvents = new ArrayList<>();
+    private volatile long pollTimeout = Long.MAX_VALUE;
+    private volatile boolean running = true;
+    private volatile Consumer<String, String> consumer;
+
+    /**
+     * @param alerts the AlertsService where Data and Events are sent
+     * @param topic the Kafka topic
+     * @param consumerProperties the Kafka consumer properties
+     * @param consumerFactory creates the Kafka consumer
+     */
+    public KafkaTopicConsumer(AlertsService alerts, String topic, Properties consumerProperties,
+            Function<Properties, Consumer<String, String>> consumerFactory) {
+        this.alerts = alerts;
+        this.topic = topic;
+        this.consumerProperties = new Properties();
+        this.consumerProperties.putAll(consumerProperties);
+        // Offsets are committed after the engine accepts the records
+        this.consumerProperties.put(ENABLE_AUTO_COMMIT, "false");
+        this.consumerFactory = consumerFactory;
+    }
+
+    /**
+     * @return the key of the consumer shared by a KafkaQuery, its topic and its consumer properties
+     */
+    public static String key(KafkaQuery query) {
+        return query.getTopic() + "|" + new TreeMap<>(query.getConsumerProperties());
+    }
+
+    public void addQuery(TriggerKey triggerKey, KafkaQuery query) {
+        queries.put(triggerKey, query);
+        updatePollTimeout();
+    }
+
+    public void removeQuery(TriggerKey triggerKey) {
+        queries.remove(triggerKey);
+        updatePollTimeout();
+    }
+
+    long getPollTimeout() {
+        return pollTimeout;
+    }
+
+    /*
+        The consumer polls with the shortest timeout of its queries
+     */
+    private void updatePollTimeout() {
+        pollTimeout = queries.values().stream()
+                .mapToLong(KafkaQuery::getPollTimeout)
+                .min()
+                .orElse(Long.MAX_VALUE);
+    }
+
+    public boolean isEmpty() {
+        return queries.isEmpty();
+    }
+
+    /**
+     * @return false once the consumer has been shut down
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return a new consumer with the same topic, consumer properties and queries
+     */
+    public KafkaTopicConsumer restart() {
+        KafkaTopicConsumer restarted = new KafkaTopicConsumer(alerts, topic, consumerProperties, consumerFactory);
+        restarted.queries.putAll(queries);
+        restarted.updatePollTimeout();
+        return restarted;
+    }
+
+    @Override
+    public void run() {
+        try {
+            log.debugf("Starting Kafka Consumer %s %s ", topic, consumerProperties);
+            consumer = consumerFactory.apply(consumerProperties);
+            consumer.subscribe(Arrays.asList(topic));
+            while (running) {
+                if (!pendingEvents.isEmpty()) {
+                    retryEvents();
+                    continue;
+                }
+                ConsumerRecords<String, String> records = consumer.poll(pollTimeout);
+                if (records.isEmpty()) {
+                    continue;
+                }
+                if (!send(records)) {
+                    rewind(records);
+                    pause();
+                } else if (pendingEvents.isEmpty()) {
+                    commit();
+                }
+            }
+        } catch (WakeupException | InterruptedException e) {
+            // This is caught when consumer is stopped
+        } catch (Exception e) {
+            log.error("Unexpected error on Kafka Alerter", e);
+        } finally {
+            if (consumer != null) {
+                consumer.close();
+            }
+        }
+        log.debugf("Finished %s", topic);
+    }
+
+    public void shutdown() {
+        log.debugf("Shutting down %s", topic);
+        running = false;
+        Consumer<String, String> current = consumer;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    /*
+        Convert the records once per distinct conversion of the queries and send them as one batch.
+        Return false if the engine overflows with the Data, so the batch is polled again. If it overflows with the
+        Events, they are kept as pending and the partitions are paused until they are accepted.
+     */
+    private boolean send(ConsumerRecords<String, String> records) {
+        Map<String, KafkaQuery> converters = new LinkedHashMap<>();
+        for (KafkaQuery query : queries.values()) {
+            converters.putIfAbsent(query.getConverterKey(), query);
+        }
+        List<Data> data = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        for (ConsumerRecord<String, String> record : records) {
+            for (KafkaQuery converter : converters.values()) {
+                converter.convert(record, data, events);
+            }
+        }
+        if (alerts == null) {
+            return true;
+        }
+        if (!data.isEmpty()) {
+            try {
+                alerts.sendData(data);
+            } catch (OverflowException e) {
+                log.warnf("Engine overflow with %s records from topic %s: %s", records.count(), topic, e.toString());
+                return false;
+            } catch (Exception e) {
+                log.errorf("Error sending %s Data from topic %s, skipping them: %s", data.size(), topic, e.toString());
+            }
+        }
+        if (!events.isEmpty() && !sendEvents(events)) {
+            // The Data is already accepted, the Events are retried alone instead of polling the records again
+            pendingEvents.addAll(events);
+            consumer.pause(consumer.assignment());
+        }
+        return true;
+    }
+
+    /*
+        Return false if the engine overflows with the Events, other errors are logged and the Events skipped.
+     */
+    private boolean sendEvents(List<Event> events) {
+        try {
+            alerts.sendEvents(events);
+        } catch (OverflowException e) {
+            log.warnf("Engine overflow with %s events from topic %s: %s", events.size(), topic, e.toString());
+            return false;
+        } catch (Exception e) {
+            log.errorf("Error sending %s Events from topic %s, skipping them: %s", events.size(), topic,
+                    e.toString());
+        }
+        return true;
+    }
+
+    /*
+        Retry the pending Events of the last batch. The partitions stay paused, but the consumer keeps polling so it
+        is not evicted from the group by max.poll.interval.ms. Records of partitions assigned meanwhile are polled
+        again once the partitions are resumed.
+     */
+    private void retryEvents() {
+        consumer.pause(consumer.assignment());
+        rewind(consumer.poll(retryTimeout()));
+        if (!running || !sendEvents(pendingEvents)) {
+            return;
+        }
+        pendingEvents.clear();
+        commit();
+        consumer.resume(consumer.paused());
+    }
+
+    /*
+        A commit fails if the group was rebalanced, the uncommitted records are polled again by the new owner
+     */
+    private void commit() {
+        try {
+            consumer.commitSync();
+        } catch (CommitFailedException e) {
+            log.warnf("Commit failed on topic %s, uncommitted records will be polled again: %s", topic,
+                    e.toString());
+        }
+    }
+
+    /*
+        Wait a poll timeout before retrying a batch rejected by the engine. The consumer is not woken up from it, so
+        the default timeout is used once the last query is removed.
+     */
+    private void pause() throws InterruptedException {
+        Thread.sleep(retryTimeout());
+    }
+
+    private long retryTimeout() {
+        return pollTimeout == Long.MAX_VALUE ? KafkaQuery.POLL_TIMEOUT_DEFAULT : pollTimeout;
+    }
+
+    /*
+        Go back to the first record of the batch on each partition, so it is polled again
+     */
+    private void rewind(ConsumerRecords<String, String> records) {
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<String, String>> partitionRecords = records.records(partition);
+            if (!partitionRecords.isEmpty()) {
+                consumer.seek(partition, partitionRecords.get(0).offset());
+            }
+        }
+    }
+}
@@ -16,11 +16,30 @@
  */
 package org.hawkular.alerter.kafka;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
+import org.hawkular.alerts.api.exception.OverflowException;
+import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.TriggerKey;
+import org.hawkular.alerts.api.services.AlertsService;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -40,10 +59,13 @@ public class KafkaAlerterTest {
         kafkaTrigger.addContext("kafka.value.deserializer", StringDeserializer.class.getName());
         kafkaTrigger.addContext("topic", "my-topic");
 
-        KafkaQuery kafkaQuery = new KafkaQuery(null, kafkaTrigger);
+        KafkaQuery kafkaQuery = new KafkaQuery(kafkaTrigger);
+        KafkaTopicConsumer kafkaConsumer = new KafkaTopicConsumer(null, kafkaQuery.getTopic(),
+                kafkaQuery.getConsumerProperties(), KafkaConsumer::new);
+        kafkaConsumer.addQuery(new TriggerKey("test-tenant", "kafka-trigger-id"), kafkaQuery);
 
         ExecutorService executor = Executors.newFixedThreadPool(1);
-        executor.submit(kafkaQuery);
+        executor.submit(kafkaConsumer);
 
         int seconds = 100;
         for (int i = 0; i < seconds; i++) {
@@ -51,7 +73,7 @@ public class KafkaAlerterTest {
             Thread.sleep(1000);
         }
 
-        kafkaQuery.shutdown();
+        kafkaConsumer.shutdown();
     }
 
     @Ignore
@@ -65,10 +87,13 @@ public class KafkaAlerterTest {
         kafkaTrigger.addContext("topic", "my-topic");
         kafkaTrigger.addContext("mapping", "origin:dataId,payload:text");
 
-        KafkaQuery kafkaQuery = new KafkaQuery(null, kafkaTrigger);
+        KafkaQuery kafkaQuery = new KafkaQuery(kafkaTrigger);
+        KafkaTopicConsumer kafkaConsumer = new KafkaTopicConsumer(null, kafkaQuery.getTopic(),
+                kafkaQuery.getConsumerProperties(), KafkaConsumer::new);
+        kafkaConsumer.addQuery(new TriggerKey("test-tenant", "kafka-trigger-id"), kafkaQuery);
 
         ExecutorService executor = Executors.newFixedThreadPool(1);
-        executor.submit(kafkaQuery);
+        executor.submit(kafkaConsumer);
 
         int seconds = 100;
         for (int i = 0; i < seconds; i++) {
@@ -76,7 +101,195 @@ public class KafkaAlerterTest {
             Thread.sleep(1000);
         }
 
-        kafkaQuery.shutdown();
+        kafkaConsumer.shutdown();
+    }
+
+    private Trigger topicTrigger(String tenantId, String triggerId) {
+        Trigger kafkaTrigger = new Trigger(tenantId, triggerId, triggerId);
+        kafkaTrigger.addContext("kafka.bootstrap.servers", "localhost:9092");
+        kafkaTrigger.addContext("kafka.group.id", "kafka-trigger-group");
+        kafkaTrigger.addContext("topic", "my-topic");
+        kafkaTrigger.addContext("poll_timeout", "10");
+        return kafkaTrigger;
+    }
+
+    @Test
+    public void sharedConsumerCommitsAcceptedBatches() throws Exception {
+        List<Integer> accepted = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger rejected = new AtomicInteger();
+        // The engine rejects the first batch
+        AlertsService alerts = (AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("sendData")) {
+                        if (rejected.getAndIncrement() == 0) {
+                            throw new OverflowException("Engine full");
+                        }
+                        accepted.add(((Collection<Data>) args[0]).size());
+                    }
+                    return null;
+                });
+
+        TopicPartition partition = new TopicPartition("my-topic", 0);
+        MockConsumer<String, String> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        mockConsumer.schedulePollTask(() -> {
+            mockConsumer.rebalance(Collections.singletonList(partition));
+            mockConsumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+            for (int i = 0; i < 3; i++) {
+                mockConsumer.addRecord(new ConsumerRecord<>("my-topic", 0, i, null, String.valueOf(i)));
+            }
+        });
+
+        // Two triggers of tenant1 and one of tenant2 on the same topic and group
+        KafkaQuery query1 = new KafkaQuery(topicTrigger("tenant1", "trigger1"));
+        KafkaQuery query2 = new KafkaQuery(topicTrigger("tenant1", "trigger2"));
+        KafkaQuery query3 = new KafkaQuery(topicTrigger("tenant2", "trigger3"));
+        assertEquals(KafkaTopicConsumer.key(query1), KafkaTopicConsumer.key(query3));
+
+        KafkaTopicConsumer kafkaConsumer = new KafkaTopicConsumer(alerts, query1.getTopic(),
+                query1.getConsumerProperties(), props -> mockConsumer);
+        kafkaConsumer.addQuery(new TriggerKey("tenant1", "trigger1"), query1);
+        kafkaConsumer.addQuery(new TriggerKey("tenant1", "trigger2"), query2);
+        kafkaConsumer.addQuery(new TriggerKey("tenant2", "trigger3"), query3);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(kafkaConsumer);
+
+        OffsetAndMetadata committed = null;
+        for (int i = 0; i < 100 && committed == null; i++) {
+            Thread.sleep(100);
+            committed = mockConsumer.committed(partition);
+        }
+        kafkaConsumer.shutdown();
+        executor.shutdown();
+
+        // Offsets are committed only after the batch is accepted, the rejected batch is polled again
+        assertTrue(committed != null);
+        assertEquals(3, committed.offset());
+        assertTrue(rejected.get() > 1);
+        // The records of a poll are sent together, once per tenant
+        assertEquals(6, accepted.get(0).intValue());
+    }
+
+    @Test
+    public void rejectedEventsAreSentAlone() throws Exception {
+        AtomicInteger dataCalls = new AtomicInteger();
+        AtomicInteger eventsCalls = new AtomicInteger();
+        // The engine accepts the Data and rejects the first Events
+        AlertsService alerts = (AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("sendData")) {
+                        dataCalls.incrementAndGet();
+                    }
+                    if (method.getName().equals("sendEvents") && eventsCalls.getAndIncrement() == 0) {
+                        throw new OverflowException("Engine full");
+                    }
+                    return null;
+                });
+
+        TopicPartition partition = new TopicPartition("my-topic", 0);
+        MockConsumer<String, String> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        mockConsumer.schedulePollTask(() -> {
+            mockConsumer.rebalance(Collections.singletonList(partition));
+            mockConsumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+            for (int i = 0; i < 3; i++) {
+                mockConsumer.addRecord(new ConsumerRecord<>("my-topic", 0, i, null, "{\"origin\":\"o" + i + "\"}"));
+            }
+        });
+
+        // A trigger on Data and a trigger on Events of the same topic
+        KafkaQuery dataQuery = new KafkaQuery(topicTrigger("tenant1", "trigger1"));
+        Trigger eventsTrigger = topicTrigger("tenant1", "trigger2");
+        eventsTrigger.addContext("mapping", "origin:dataId");
+        KafkaQuery eventsQuery = new KafkaQuery(eventsTrigger);
+
+        KafkaTopicConsumer kafkaConsumer = new KafkaTopicConsumer(alerts, dataQuery.getTopic(),
+                dataQuery.getConsumerProperties(), props -> mockConsumer);
+        kafkaConsumer.addQuery(new TriggerKey("tenant1", "trigger1"), dataQuery);
+        kafkaConsumer.addQuery(new TriggerKey("tenant1", "trigger2"), eventsQuery);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(kafkaConsumer);
+
+        OffsetAndMetadata committed = null;
+        for (int i = 0; i < 100 && committed == null; i++) {
+            Thread.sleep(100);
+            committed = mockConsumer.committed(partition);
+        }
+        kafkaConsumer.shutdown();
+        executor.shutdown();
+
+        assertTrue(committed != null);
+        assertEquals(3, committed.offset());
+        // The batch is not polled again, its Data is sent once
+        assertEquals(1, dataCalls.get());
+        assertEquals(2, eventsCalls.get());
+        // The partitions paused while the Events were retried are resumed
+        assertTrue(mockConsumer.paused().isEmpty());
+    }
+
+    @Test
+    public void failedDataIsSkipped() throws Exception {
+        AtomicInteger dataCalls = new AtomicInteger();
+        // The engine fails with an error that is not an overflow
+        AlertsService alerts = (AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("sendData")) {
+                        dataCalls.incrementAndGet();
+                        throw new IllegalArgumentException("Invalid data");
+                    }
+                    return null;
+                });
+
+        TopicPartition partition = new TopicPartition("my-topic", 0);
+        MockConsumer<String, String> mockConsumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        mockConsumer.schedulePollTask(() -> {
+            mockConsumer.rebalance(Collections.singletonList(partition));
+            mockConsumer.updateBeginningOffsets(Collections.singletonMap(partition, 0L));
+            for (int i = 0; i < 3; i++) {
+                mockConsumer.addRecord(new ConsumerRecord<>("my-topic", 0, i, null, String.valueOf(i)));
+            }
+        });
+
+        KafkaQuery query = new KafkaQuery(topicTrigger("tenant1", "trigger1"));
+        KafkaTopicConsumer kafkaConsumer = new KafkaTopicConsumer(alerts, query.getTopic(),
+                query.getConsumerProperties(), props -> mockConsumer);
+        kafkaConsumer.addQuery(new TriggerKey("tenant1", "trigger1"), query);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.submit(kafkaConsumer);
+
+        OffsetAndMetadata committed = null;
+        for (int i = 0; i < 100 && committed == null; i++) {
+            Thread.sleep(100);
+            committed = mockConsumer.committed(partition);
+        }
+        kafkaConsumer.shutdown();
+        executor.shutdown();
+
+        // The records are skipped and committed instead of being polled again
+        assertTrue(committed != null);
+        assertEquals(3, committed.offset());
+        assertEquals(1, dataCalls.get());
     }
 
+    @Test
+    public void pollTimeoutFollowsQueries() {
+        Trigger slowTrigger = topicTrigger("tenant1", "trigger1");
+        slowTrigger.addContext("poll_timeout", "1000");
+        KafkaQuery slowQuery = new KafkaQuery(slowTrigger);
+        KafkaQuery fastQuery = new KafkaQuery(topicTrigger("tenant1", "trigger2"));
+
+        KafkaTopicConsumer kafkaConsumer = new KafkaTopicConsumer(null, slowQuery.getTopic(),
+                slowQuery.getConsumerProperties(), KafkaConsumer::new);
+        kafkaConsumer.addQuery(new TriggerKey("tenant1", "trigger1"), slowQuery);
+        kafkaConsumer.addQuery(new TriggerKey("tenant1", "trigger2"), fastQuery);
+        assertEquals(10, kafkaConsumer.getPollTimeout());
+
+        // Removing the fastest query restores the timeout of the remaining ones
+        kafkaConsumer.removeQuery(new TriggerKey("tenant1", "trigger2"));
+        assertEquals(1000, kafkaConsumer.getPollTimeout());
+
+        kafkaConsumer.removeQuery(new TriggerKey("tenant1", "trigger1"));
+        assertEquals(Long.MAX_VALUE, kafkaConsumer.getPollTimeout());
+    }
 }
@@ -16,33 +16,20 @@
  */
 package org.hawkular.alerter.prometheus;
 
-import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.http.HttpResponse;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.utils.URLEncodedUtils;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicNameValuePair;
 import org.hawkular.alerts.alerters.api.Alerter;
 import org.hawkular.alerts.alerters.api.AlerterPlugin;
-import org.hawkular.alerts.api.json.JsonUtil;
 import org.hawkular.alerts.api.model.condition.Condition;
 import org.hawkular.alerts.api.model.condition.ExternalCondition;
-import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.model.trigger.TriggerKey;
 import org.hawkular.alerts.api.services.AlertsService;
@@ -52,8 +39,9 @@ import org.hawkular.commons.properties.HawkularProperties;
 import org.jboss.logging.Logger;
 
 /**
- * Manages the Prometheus evaluations and interacts with the Alerts system.  Sets up fixed rate thread
- * jobs to back each ExternalCondition.</p>
+ * Manages the Prometheus evaluations and interacts with the Alerts system.  Schedules the queries of the
+ * ExternalConditions with a {@link PrometheusQueryScheduler}, conditions with the same url, expression and frequency
+ * share a single query.</p>
  * <pre>
  * Defining a Trigger to be processed by the Prometheus External Alerter:
  *   [Required]    trigger.tags["prometheus"] // the value is ignored
@@ -87,17 +75,30 @@ public class PrometheusAlerter implements AlerterPlugin {
     private static final String PROMETHEUS_THREAD_POOL_SIZE_DEFAULT = "20";
     private static final String THREAD_POOL_SIZE = "thread-pool-size";
 
+    // Max number of concurrent connections to a Prometheus server
+    private static final String PROMETHEUS_MAX_IN_FLIGHT = "hawkular-alerts.prometheus-max-in-flight";
+    private static final String PROMETHEUS_MAX_IN_FLIGHT_ENV = "PROMETHEUS_MAX_IN_FLIGHT";
+    private static final String PROMETHEUS_MAX_IN_FLIGHT_DEFAULT = "20";
+    private static final String MAX_IN_FLIGHT = "max-in-flight";
+
+    // Timeout in milliseconds of a query to Prometheus
+    private static final String PROMETHEUS_TIMEOUT = "hawkular-alerts.prometheus-timeout";
+    private static final String PROMETHEUS_TIMEOUT_ENV = "PROMETHEUS_TIMEOUT";
+    private static final String PROMETHEUS_TIMEOUT_DEFAULT = "30000";
+    private static final String TIMEOUT = "timeout";
+
     private static final String CONTEXT_URL = "prometheus.url";
     private static final String CONTEXT_FREQUENCY = "prometheus.frequency";
     private static final String CONTEXT_FREQUENCY_DEFAULT = "120";
 
     private static final String ALERTER_ID = "prometheus";
-    private static final String UTF_8 = "UTF-8";
 
     private Map<TriggerKey, Trigger> activeTriggers = new ConcurrentHashMap<>();
 
-    ScheduledThreadPoolExecutor expressionExecutor;
-    Map<ExternalCondition, ScheduledFuture<?>> expressionFutures = new HashMap<>();
+    /*
+        The scheduler of the running alerter, its metrics are exposed on the status endpoint
+     */
+    private static volatile PrometheusQueryScheduler queryScheduler;
 
     private boolean prometheusAlerter;
     private Map<String, String> defaultProperties;
@@ -122,6 +123,11 @@ public class PrometheusAlerter implements AlerterPlugin {
         defaultProperties.put(THREAD_POOL_SIZE,
                 HawkularProperties.getProperty(PROMETHEUS_THREAD_POOL_SIZE, PROMETHEUS_THREAD_POOL_SIZE_ENV,
                         PROMETHEUS_THREAD_POOL_SIZE_DEFAULT));
+        defaultProperties.put(MAX_IN_FLIGHT,
+                HawkularProperties.getProperty(PROMETHEUS_MAX_IN_FLIGHT, PROMETHEUS_MAX_IN_FLIGHT_ENV,
+                        PROMETHEUS_MAX_IN_FLIGHT_DEFAULT));
+        defaultProperties.put(TIMEOUT, HawkularProperties.getProperty(PROMETHEUS_TIMEOUT, PROMETHEUS_TIMEOUT_ENV,
+                PROMETHEUS_TIMEOUT_DEFAULT));
 
         if (prometheusAlerter) {
             log.infof("Starting Hawkular Prometheus External Alerter");
@@ -134,15 +140,22 @@ public class PrometheusAlerter implements AlerterPlugin {
     public void stop() {
         log.infof("Stopping Hawkular Prometheus External Alerter");
 
-        if (null != expressionFutures) {
-            expressionFutures.values().forEach(f -> f.cancel(true));
-        }
-        if (null != expressionExecutor) {
-            expressionExecutor.shutdown();
-            expressionExecutor = null;
+        synchronized (this) {
+            if (null != queryScheduler) {
+                queryScheduler.stop();
+                queryScheduler = null;
+            }
         }
     }
 
+    /**
+     * @return the metrics of the Prometheus queries scheduled, by query
+     */
+    public static Map<String, Map<String, String>> getQueryMetrics() {
+        PrometheusQueryScheduler scheduler = queryScheduler;
+        return scheduler != null ? scheduler.getMetrics() : Collections.emptyMap();
+    }
+
     private void initialRefresh() {
         try {
             Collection<Trigger> triggers = definitions.getAllTriggersByTag(ALERTER_ID, "*");
@@ -191,15 +204,17 @@ public class PrometheusAlerter implements AlerterPlugin {
     private synchronized void update() {
         log.debug("Refreshing External Prometheus Triggers!");
         try {
-            if (expressionExecutor == null) {
-                expressionExecutor = new ScheduledThreadPoolExecutor(
-                        Integer.valueOf(defaultProperties.get(THREAD_POOL_SIZE)));
+            if (queryScheduler == null) {
+                queryScheduler = new PrometheusQueryScheduler(alerts,
+                        Integer.valueOf(defaultProperties.get(THREAD_POOL_SIZE)),
+                        Integer.valueOf(defaultProperties.get(MAX_IN_FLIGHT)),
+                        Integer.valueOf(defaultProperties.get(TIMEOUT)));
             }
 
             Set<ExternalCondition> activeConditions = new HashSet<>();
             log.debugf("Found [%d] active External Prometheus Triggers!", activeTriggers.size());
 
-            // for each trigger look for Prometheus Conditions and start running them
+            // for each trigger look for Prometheus Conditions and schedule their queries
             Collection<Condition> conditions = null;
             for (Trigger trigger : activeTriggers.values()) {
                 try {
@@ -210,37 +225,22 @@ public class PrometheusAlerter implements AlerterPlugin {
                     log.error("Failed to fetch Conditions when scheduling prometheus conditions for " + trigger, e);
                     continue;
                 }
+                String url = trigger.getContext().containsKey(CONTEXT_URL)
+                        ? trigger.getContext().get(CONTEXT_URL) : defaultProperties.get(URL);
+                String frequency = trigger.getContext().containsKey(CONTEXT_FREQUENCY)
+                        ? trigger.getContext().get(CONTEXT_FREQUENCY) : CONTEXT_FREQUENCY_DEFAULT;
                 for (Condition condition : conditions) {
                     if (condition instanceof ExternalCondition) {
                         ExternalCondition externalCondition = (ExternalCondition) condition;
                         if (ALERTER_ID.equals(externalCondition.getAlerterId())) {
                             log.debugf("Found Prometheus ExternalCondition %s", externalCondition);
                             activeConditions.add(externalCondition);
-                            if (expressionFutures.containsKey(externalCondition)) {
-                                log.debugf("Skipping, already evaluating %s", externalCondition);
-
-                            } else {
-                                try {
-                                    // start the job. TODO: Do we need a delay for any reason?
-                                    log.debugf("Adding runner for %s", externalCondition);
-
-                                    Map<String, String> properties = new HashMap<>(defaultProperties);
-                                    if (trigger.getContext().containsKey(CONTEXT_URL)) {
-                                        properties.put(URL, trigger.getContext().get(CONTEXT_URL));
-                                    }
-                                    String frequency = trigger.getContext().containsKey(CONTEXT_FREQUENCY)
-                                            ? trigger.getContext().get(CONTEXT_FREQUENCY) : CONTEXT_FREQUENCY_DEFAULT;
-
-                                    ExpressionRunner runner = new ExpressionRunner(alerts, properties,
-                                            externalCondition);
-                                    expressionFutures.put(
-                                            externalCondition,
-                                            expressionExecutor.scheduleAtFixedRate(runner, 0L, Long.valueOf(frequency),
-                                                    TimeUnit.SECONDS));
-                                } catch (Exception e) {
-                                    log.error("Failed to schedule expression for Prometheus condition "
-                                            + externalCondition, e);
-                                }
+                            try {
+                                queryScheduler.schedule(url, TimeUnit.SECONDS.toMillis(Long.valueOf(frequency)),
+                                        externalCondition);
+                            } catch (Exception e) {
+                                log.error("Failed to schedule expression for Prometheus condition "
+                                        + externalCondition, e);
                             }
                         }
                     }
@@ -248,103 +248,10 @@ public class PrometheusAlerter implements AlerterPlugin {
             }
 
             // cancel obsolete expressions
-            Set<ExternalCondition> temp = new HashSet<>();
-            for (Map.Entry<ExternalCondition, ScheduledFuture<?>> me : expressionFutures.entrySet()) {
-                ExternalCondition ec = me.getKey();
-                if (!activeConditions.contains(ec)) {
-                    log.debugf("Canceling evaluation of obsolete External Prometheus Condition %s", ec);
-
-                    me.getValue().cancel(true);
-                    temp.add(ec);
-                }
-            }
-            expressionFutures.keySet().removeAll(temp);
-            temp.clear();
+            queryScheduler.retain(activeConditions);
 
         } catch (Exception e) {
             log.error("Failed to fetch Triggers for scheduling Prometheus conditions.", e);
         }
     }
-
-    private static class ExpressionRunner implements Runnable {
-        private final Logger log = Logger.getLogger(PrometheusAlerter.ExpressionRunner.class);
-
-        private Map<String, String> properties;
-        private AlertsService alertsService;
-        private ExternalCondition externalCondition;
-
-        public ExpressionRunner(AlertsService alerts, Map<String, String> properties,
-                                ExternalCondition externalCondition) {
-            super();
-            this.alertsService = alerts;
-            this.externalCondition = externalCondition;
-            this.properties = properties;
-        }
-
-        @Override
-        public void run() {
-            CloseableHttpClient httpClient = null;
-            try {
-                httpClient = HttpClients.createDefault();
-
-                StringBuffer url = new StringBuffer(properties.get(URL));
-                BasicNameValuePair param = new BasicNameValuePair("query", externalCondition.getExpression());
-                url.append("/api/v1/query?").append(URLEncodedUtils.format(Arrays.asList(param), UTF_8));
-                HttpGet getRequest = new HttpGet(url.toString());
-                HttpResponse response = httpClient.execute(getRequest);
-                if (response.getStatusLine().getStatusCode() >= 300) {
-                    log.warnf("Prometheus GET failed. Status=[%d], message=[%s], url=[%s]", response.getStatusLine().getStatusCode(),
-                            response.getStatusLine().getReasonPhrase(), url.toString());
-                } else {
-                    QueryResponse queryResponse = JsonUtil.getMapper().readValue(response.getEntity().getContent(), QueryResponse.class);
-                    if (isValid(queryResponse, response)) {
-                        evaluate(queryResponse.getData().getResult());
-                    }
-                    return;
-                }
-            } catch (Throwable t) {
-                if (log.isDebugEnabled()) {
-                    t.printStackTrace();
-                }
-                log.warnf("Failed data fetch for %s: %s", externalCondition.getExpression(), t.getMessage());
-            } finally {
-                if (httpClient != null) {
-                    try {
-                        httpClient.close();
-                    } catch (IOException e) {
-                        log.debugf(e,"Failed closing http client");
-                    }
-                }
-            }
-        }
-
-        private boolean isValid(QueryResponse queryResponse, Object response) {
-            if (!"success".equals(queryResponse.getStatus())) {
-                log.warnf("Prometheus query did not return success, can not process external condition: [%s]",
-                        response);
-                return false;
-            }
-            if (!"vector".equals(queryResponse.getData().getResultType())) {
-                log.warnf("resultType [%s] is not yet supported. Supported resultTyes are [vector]: [%s]",
-                        queryResponse.getData().getResultType(), response);
-                return false;
-            }
-
-            return true;
-        }
-
-        private void evaluate(QueryResponse.Result[] result) throws Exception {
-            for (QueryResponse.Result r : result) {
-                // just send all of the time series labels as context for event
-                // TODO: Should these be tags or context?
-                Map<String, String> context = r.getMetric();
-
-                Event externalEvent = new Event(externalCondition.getTenantId(), UUID.randomUUID().toString(),
-                        System.currentTimeMillis(), externalCondition.getDataId(),
-                        ALERTER_ID, Arrays.toString(r.getValue()), context, null);
-                log.debugf("Sending External Condition Event to Alerting %s", externalEvent);
-                alertsService.sendEvents(Collections.singleton(externalEvent));
-            }
-        }
-    }
 }
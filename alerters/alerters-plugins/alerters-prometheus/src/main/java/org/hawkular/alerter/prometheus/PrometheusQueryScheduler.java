@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerter.prometheus;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.condition.ExternalCondition;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.vertx.VertxManager;
+import org.jboss.logging.Logger;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpClientRequest;
+
+/**
+ * Schedules the Prometheus queries of the ExternalConditions.
+ *
+ * Conditions are grouped by (url, expression, period): each distinct query is executed once per tick and its result
+ * is evaluated for every condition of the group, the Events of a tick are sent together. Queries are executed with a
+ * non-blocking HTTP client, a tick is skipped if the previous execution of the query has not finished. The first
+ * tick of a query is delayed by a random time within its period, so queries with the same period do not all fire at
+ * the same moment.
+ *
+ * The HTTP client runs on the Vertx shared by the plugins, stop() closes the client but not the Vertx.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class PrometheusQueryScheduler {
+    private static final Logger log = Logger.getLogger(PrometheusQueryScheduler.class);
+
+    private static final String ALERTER_ID = "prometheus";
+    private static final String UTF_8 = "UTF-8";
+
+    private final AlertsService alerts;
+    private final int timeout;
+    private final ScheduledThreadPoolExecutor executor;
+    private final HttpClient client;
+    private final Map<QueryKey, ScheduledQuery> queries = new ConcurrentHashMap<>();
+    private final Map<ExternalCondition, QueryKey> conditionKeys = new HashMap<>();
+
+    /**
+     * @param alerts the AlertsService where the Events are sent
+     * @param threadPoolSize number of threads scheduling the queries and evaluating their results
+     * @param maxInFlight max number of concurrent connections per Prometheus server
+     * @param timeout timeout in milliseconds of a query
+     */
+    public PrometheusQueryScheduler(AlertsService alerts, int threadPoolSize, int maxInFlight, int timeout) {
+        this.alerts = alerts;
+        this.timeout = timeout;
+        executor = new ScheduledThreadPoolExecutor(threadPoolSize);
+        client = VertxManager.getVertx().createHttpClient(new HttpClientOptions()
+                .setKeepAlive(true)
+                .setMaxPoolSize(maxInFlight)
+                .setConnectTimeout(timeout));
+    }
+
+    /**
+     * Evaluate a condition with the result of its query. A condition already scheduled with another url or period is
+     * moved to the new query.
+     *
+     * @param url the Prometheus server url
+     * @param period milliseconds between executions of the query
+     * @param condition the ExternalCondition whose expression is queried
+     */
+    public synchronized void schedule(String url, long period, ExternalCondition condition) {
+        QueryKey key = new QueryKey(url, condition.getExpression(), period);
+        QueryKey previous = conditionKeys.put(condition, key);
+        if (key.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            remove(previous, condition);
+        }
+        ScheduledQuery query = queries.get(key);
+        if (query == null) {
+            query = new ScheduledQuery(key);
+            long delay = ThreadLocalRandom.current().nextLong(period);
+            query.future = executor.scheduleAtFixedRate(query, delay, period, TimeUnit.MILLISECONDS);
+            queries.put(key, query);
+            log.debugf("Scheduled query %s with delay %s ms", key, delay);
+        }
+        query.conditions.add(condition);
+    }
+
+    /**
+     * Stop evaluating the conditions not included in the active ones. A query is canceled when it has no conditions.
+     *
+     * @param activeConditions the conditions to keep
+     */
+    public synchronized void retain(Set<ExternalCondition> activeConditions) {
+        conditionKeys.entrySet().removeIf(entry -> {
+            if (!activeConditions.contains(entry.getKey())) {
+                log.debugf("Canceling evaluation of obsolete External Prometheus Condition %s", entry.getKey());
+                remove(entry.getValue(), entry.getKey());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * @return the metrics of each scheduled query: number of conditions, executions, failures, skipped ticks and
+     * the last and average latency in milliseconds
+     */
+    public Map<String, Map<String, String>> getMetrics() {
+        Map<String, Map<String, String>> metrics = new TreeMap<>();
+        queries.values().forEach(query -> metrics.put(query.key.toString(), query.getMetrics()));
+        return metrics;
+    }
+
+    public synchronized void stop() {
+        queries.values().forEach(query -> query.future.cancel(false));
+        queries.clear();
+        conditionKeys.clear();
+        executor.shutdown();
+        client.close();
+    }
+
+    private void remove(QueryKey key, ExternalCondition condition) {
+        ScheduledQuery query = queries.get(key);
+        if (query != null) {
+            query.conditions.remove(condition);
+            if (query.conditions.isEmpty()) {
+                log.debugf("Canceling query %s", key);
+                query.future.cancel(false);
+                queries.remove(key);
+            }
+        }
+    }
+
+    private static class QueryKey {
+        private final String url;
+        private final String expression;
+        private final long period;
+
+        QueryKey(String url, String expression, long period) {
+            this.url = url;
+            this.expression = expression;
+            this.period = period;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            QueryKey queryKey = (QueryKey) o;
+            if (period != queryKey.period) return false;
+            if (url != null ? !url.equals(queryKey.url) : queryKey.url != null) return false;
+            return expression != null ? expression.equals(queryKey.expression) : queryKey.expression == null;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = url != null ? url.hashCode() : 0;
+            result = 31 * result + (expression != null ? expression.hashCode() : 0);
+            result = 31 * result + (int) (period ^ (period >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return url + " [" + expression + "] every " + period + " ms";
+        }
+    }
+
+    private class ScheduledQuery implements Runnable {
+        private final QueryKey key;
+        private final String uri;
+        private final Set<ExternalCondition> conditions = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean inFlight = new AtomicBoolean(false);
+        private final AtomicLong executions = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private volatile long lastLatency = 0;
+        private double avgLatency = 0;
+        private ScheduledFuture<?> future;
+
+        ScheduledQuery(QueryKey key) {
+            this.key = key;
+            BasicNameValuePair param = new BasicNameValuePair("query", key.expression);
+            this.uri = key.url + "/api/v1/query?" + URLEncodedUtils.format(Arrays.asList(param), UTF_8);
+        }
+
+        @Override
+        public void run() {
+            if (!inFlight.compareAndSet(false, true)) {
+                skipped.incrementAndGet();
+                log.debugf("Skipping tick of %s, previous query still running", key);
+                return;
+            }
+            long start = System.currentTimeMillis();
+            // A timeout can be reported after a response, only the first outcome counts
+            AtomicBoolean done = new AtomicBoolean(false);
+            try {
+                HttpClientRequest request = client.getAbs(uri, response -> {
+                    response.bodyHandler(body -> {
+                        if (!done.compareAndSet(false, true)) {
+                            return;
+                        }
+                        if (response.statusCode() >= 300) {
+                            log.warnf("Prometheus GET failed. Status=[%d], message=[%s], url=[%s]",
+                                    response.statusCode(), response.statusMessage(), uri);
+                            completed(start, false);
+                        } else {
+                            // The evaluation can block on the engine, it is moved out of the event loop
+                            executor.execute(() -> evaluate(start, body));
+                        }
+                    });
+                });
+                request.setTimeout(timeout);
+                request.exceptionHandler(e -> {
+                    if (done.compareAndSet(false, true)) {
+                        log.warnf("Failed data fetch for %s: %s", key.expression, e.getMessage());
+                        completed(start, false);
+                    }
+                });
+                request.end();
+            } catch (Exception e) {
+                log.warnf("Failed data fetch for %s: %s", key.expression, e.getMessage());
+                completed(start, false);
+            }
+        }
+
+        private void evaluate(long start, Buffer body) {
+            boolean success = false;
+            try {
+                QueryResponse queryResponse = JsonUtil.getMapper().readValue(body.getBytes(), QueryResponse.class);
+                if (isValid(queryResponse)) {
+                    List<Event> events = new ArrayList<>();
+                    for (ExternalCondition condition : conditions) {
+                        for (QueryResponse.Result r : queryResponse.getData().getResult()) {
+                            // just send all of the time series labels as context for event
+                            Event externalEvent = new Event(condition.getTenantId(), UUID.randomUUID().toString(),
+                                    System.currentTimeMillis(), condition.getDataId(),
+                                    ALERTER_ID, Arrays.toString(r.getValue()), new HashMap<>(r.getMetric()), null);
+                            events.add(externalEvent);
+                        }
+                    }
+                    if (!events.isEmpty()) {
+                        log.debugf("Sending %s External Condition Events to Alerting for %s", events.size(), key);
+                        alerts.sendEvents(events);
+                    }
+                    success = true;
+                }
+            } catch (Exception e) {
+                log.warnf("Failed evaluation for %s: %s", key.expression, e.getMessage());
+            }
+            completed(start, success);
+        }
+
+        private boolean isValid(QueryResponse queryResponse) {
+            if (!"success".equals(queryResponse.getStatus())) {
+                log.warnf("Prometheus query did not return success, can not process external condition: [%s]",
+                        key);
+                return false;
+            }
+            if (!"vector".equals(queryResponse.getData().getResultType())) {
+                log.warnf("resultType [%s] is not yet supported. Supported resultTyes are [vector]: [%s]",
+                        queryResponse.getData().getResultType(), key);
+                return false;
+            }
+            return true;
+        }
+
+        private void completed(long start, boolean success) {
+            long latency = System.currentTimeMillis() - start;
+            executions.incrementAndGet();
+            if (!success) {
+                failures.incrementAndGet();
+            }
+            lastLatency = latency;
+            synchronized (this) {
+                avgLatency = avgLatency == 0 ? latency : avgLatency * 0.9 + latency * 0.1;
+            }
+            inFlight.set(false);
+        }
+
+        private Map<String, String> getMetrics() {
+            Map<String, String> metrics = new HashMap<>();
+            metrics.put("conditions", String.valueOf(conditions.size()));
+            metrics.put("executions", String.valueOf(executions.get()));
+            metrics.put("failures", String.valueOf(failures.get()));
+            metrics.put("skipped", String.valueOf(skipped.get()));
+            metrics.put("latency-last", String.valueOf(lastLatency));
+            synchronized (this) {
+                metrics.put("latency-avg", String.valueOf(Math.round(avgLatency)));
+            }
+            return metrics;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+import org.hawkular.alerter.prometheus.PrometheusAlerter;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.engine.StandaloneAlerts;
@@ -41,6 +42,7 @@ public class PrometheusHandler implements RestHandler {
     @Override
     public void initRoutes(String baseUrl, Router router) {
         router.get(baseUrl + "/status").handler(this::status);
+        router.get(baseUrl + "/queries").handler(this::queries);
         router.post(baseUrl + "/notification").handler(this::notification);
     }
 
@@ -50,6 +52,13 @@ public class PrometheusHandler implements RestHandler {
                         res -> response(routing, OK.code(), res.result()));
     }
 
+    /*
+        Metrics of the scheduled queries: conditions, executions, failures, skipped ticks and latency
+     */
+    void queries(RoutingContext routing) {
+        response(routing, OK.code(), PrometheusAlerter.getQueryMetrics());
+    }
+
     void notification(RoutingContext routing) {
         routing.vertx()
                 .executeBlocking(future -> {
@@ -17,10 +17,23 @@
 package org.hawkular.alerter.prometheus;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -29,15 +42,28 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.message.BasicNameValuePair;
 import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.condition.ExternalCondition;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.vertx.VertxManager;
+import org.junit.AfterClass;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import com.sun.net.httpserver.HttpServer;
+
 /**
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 public class PrometheusQueryTest {
 
+    @AfterClass
+    public static void stopVertx() {
+        VertxManager.stop();
+    }
+
     @Ignore // Requires manually running Prom on localhost:9090
     @Test
     public void queryTest() throws Exception {
@@ -95,4 +121,64 @@ public class PrometheusQueryTest {
         client.close();
     }
 
+    @Test
+    public void scheduledQueriesTest() throws Exception {
+        // A local stand-in of the Prometheus query API
+        List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v1/query", exchange -> {
+            requests.add(exchange.getRequestURI().getQuery());
+            byte[] body = ("{\"status\":\"success\",\"data\":{\"resultType\":\"vector\",\"result\":[" +
+                    "{\"metric\":{\"__name__\":\"up\",\"job\":\"prometheus\"}," +
+                    "\"value\":[1435781451.781,\"1\"]}]}}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        String url = "http://localhost:" + server.getAddress().getPort();
+
+        List<Set<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        AlertsService alerts = (AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("sendEvents")) {
+                        batches.add(((Collection<Event>) args[0]).stream().map(Event::getDataId)
+                                .collect(Collectors.toSet()));
+                    }
+                    return null;
+                });
+
+        ExternalCondition up1 = new ExternalCondition("tenant", "trigger1", Mode.FIRING, "data-1", "prometheus", "up");
+        ExternalCondition up2 = new ExternalCondition("tenant", "trigger2", Mode.FIRING, "data-2", "prometheus", "up");
+        ExternalCondition up3 = new ExternalCondition("tenant", "trigger3", Mode.FIRING, "data-3", "prometheus",
+                "up > 0");
+
+        PrometheusQueryScheduler scheduler = new PrometheusQueryScheduler(alerts, 2, 5, 5000);
+        scheduler.schedule(url, 200, up1);
+        scheduler.schedule(url, 200, up2);
+        scheduler.schedule(url, 200, up3);
+        Thread.sleep(1500);
+
+        // Conditions with the same expression share a query
+        Map<String, Map<String, String>> metrics = scheduler.getMetrics();
+        assertEquals(2, metrics.size());
+        Map<String, String> upMetrics = metrics.get(url + " [up] every 200 ms");
+        assertEquals("2", upMetrics.get("conditions"));
+        assertTrue(Long.valueOf(upMetrics.get("executions")) > 0);
+        assertEquals("0", upMetrics.get("failures"));
+        assertTrue(upMetrics.containsKey("latency-avg"));
+
+        // A query is canceled when its conditions are gone
+        scheduler.retain(new HashSet<>(Arrays.asList(up3)));
+        assertEquals(1, scheduler.getMetrics().size());
+        scheduler.stop();
+        server.stop(0);
+
+        // The result of a query is evaluated for all its conditions and sent together
+        assertTrue(requests.stream().filter(query -> query.equals("query=up")).count() > 0);
+        Set<String> upBatch = new HashSet<>(Arrays.asList("data-1", "data-2"));
+        assertTrue(batches.stream().allMatch(batch -> batch.equals(upBatch)
+                || batch.equals(Collections.singleton("data-3"))));
+    }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Incremental reading of json arrays of Data or Events, used on bulk ingestion.
+ *
+ * The array is read element by element. The dataId of each element is checked with a filter before the element is
+ * fully built, elements not accepted are skipped. Accepted elements are handed to a consumer in chunks of a bounded
+ * size, so the memory used does not depend on the size of the array.
+ *
+ * Elements already handed to the consumer are not revoked if a later element is invalid.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class JsonStreamReader {
+
+    @FunctionalInterface
+    public interface ChunkConsumer<T> {
+        void accept(List<T> chunk) throws Exception;
+    }
+
+    private JsonStreamReader() {
+    }
+
+    /**
+     * @param json a json array of Data
+     * @param tenantId the tenantId assigned to the Data
+     * @param filter dataIds accepted
+     * @param chunkSize max number of Data handed to the consumer on each call
+     * @param consumer receiver of the accepted Data
+     * @return number of Data read, accepted or not
+     * @throws IllegalArgumentException if json is not a valid array of Data
+     */
+    public static int readData(InputStream json, String tenantId, Predicate<String> filter, int chunkSize,
+            ChunkConsumer<Data> consumer) throws Exception {
+        ObjectMapper mapper = JsonUtil.getMapper();
+        int read = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(json)) {
+            startArray(parser);
+            List<Data> chunk = new ArrayList<>(chunkSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                read++;
+                Data data = readData(parser, tenantId, filter);
+                if (data != null) {
+                    chunk.add(data);
+                    if (chunk.size() >= chunkSize) {
+                        consumer.accept(chunk);
+                        chunk = new ArrayList<>(chunkSize);
+                    }
+                }
+            }
+            endArray(parser);
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return read;
+    }
+
+    /**
+     * @param json a json array of Events
+     * @param tenantId the tenantId assigned to the Events
+     * @param filter dataIds accepted
+     * @param chunkSize max number of Events handed to the consumer on each call
+     * @param consumer receiver of the accepted Events
+     * @return number of Events read, accepted or not
+     * @throws IllegalArgumentException if json is not a valid array of Events
+     */
+    public static int readEvents(InputStream json, String tenantId, Predicate<String> filter, int chunkSize,
+            ChunkConsumer<Event> consumer) throws Exception {
+        ObjectMapper mapper = JsonUtil.getMapper();
+        int read = 0;
+        try (JsonParser parser = mapper.getFactory().createParser(json)) {
+            startArray(parser);
+            List<Event> chunk = new ArrayList<>(chunkSize);
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                read++;
+                /*
+                    An Event has many optional fields, the element is read as a tree and only the accepted ones are
+                    bound into an Event.
+                 */
+                JsonNode node = mapper.readTree(parser);
+                JsonNode dataId = node.get("dataId");
+                if (dataId == null || !filter.test(dataId.asText())) {
+                    continue;
+                }
+                Event event = mapper.treeToValue(node, Event.class);
+                event.setTenantId(tenantId);
+                chunk.add(event);
+                if (chunk.size() >= chunkSize) {
+                    consumer.accept(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            endArray(parser);
+            if (!chunk.isEmpty()) {
+                consumer.accept(chunk);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return read;
+    }
+
+    /*
+        Read the fields of a Data object, the context is only built if the dataId is not known to be rejected.
+        Values are kept as text, as the json binding does.
+     */
+    private static Data readData(JsonParser parser, String tenantId, Predicate<String> filter) throws IOException {
+        String source = null;
+        String id = null;
+        long timestamp = 0;
+        String value = null;
+        Map<String, String> context = null;
+        Boolean accepted = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            token = parser.nextToken();
+            if (token.isStructStart() && !field.equals("context")) {
+                throw new IOException("Unexpected " + token + " for field \"" + field + "\" in Data");
+            }
+            switch (field) {
+                case "tenantId":
+                    // Assigned from the request
+                    break;
+                case "source":
+                    source = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                    break;
+                case "id":
+                    id = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                    accepted = id != null && filter.test(id);
+                    break;
+                case "timestamp":
+                    timestamp = parser.getValueAsLong();
+                    break;
+                case "value":
+                    value = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                    break;
+                case "context":
+                    if (token == JsonToken.START_OBJECT && (accepted == null || accepted)) {
+                        context = readMap(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                default:
+                    throw new IOException("Unrecognized field \"" + field + "\" in Data");
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IOException("Unexpected token " + token + " in Data");
+        }
+        if (accepted == null || !accepted) {
+            return null;
+        }
+        return Data.forString(tenantId, source, id, timestamp, value, context);
+    }
+
+    private static Map<String, String> readMap(JsonParser parser) throws IOException {
+        Map<String, String> map = new HashMap<>();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token.isStructStart()) {
+                throw new IOException("Unexpected " + token + " for context \"" + name + "\" in Data");
+            }
+            map.put(name, token == JsonToken.VALUE_NULL ? null : parser.getText());
+        }
+        return map;
+    }
+
+    private static void startArray(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expected a json array");
+        }
+    }
+
+    private static void endArray(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+            throw new IOException("Expected a json object or the end of the array, found " +
+                    parser.getCurrentToken());
+        }
+        if (parser.nextToken() != null) {
+            throw new IOException("Unexpected content after the json array");
+        }
+    }
+}
@@ -20,7 +20,11 @@ import static org.hawkular.alerts.api.util.Util.isEmpty;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.DoublePredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import org.hawkular.alerts.api.doc.DocModel;
 import org.hawkular.alerts.api.doc.DocModelProperty;
@@ -204,10 +208,19 @@ public class EventCondition extends Condition {
 
     public void setExpression(String expression) {
         this.expression = expression;
+        this.compiledExpression = null;
     }
 
     private static Pattern cleanComma = Pattern.compile("\\\\,");
 
+    private static final Predicate<Event> NO_MATCH = e -> false;
+
+    /*
+        Compiled form of the expression, built on first use and reused on every evaluation.
+        It is reset when the expression changes.
+     */
+    private transient volatile Predicate<Event> compiledExpression;
+
     public boolean match(Event value) {
         if (null == value) {
             return false;
@@ -215,22 +228,12 @@ public class EventCondition extends Condition {
         if (isEmpty(expression)) {
             return true;
         }
-        List<String> expressions = new ArrayList<>();
-        int j = 0;
-        for (int i = 0; i < expression.length(); i++) {
-            if (expression.charAt(i) == ','
-                    && (i == 0 || (i > 0 && expression.charAt(i - 1) != '\\'))) {
-                expressions.add(cleanComma.matcher(expression.substring(j, i).trim()).replaceAll(","));
-                j = i + 1;
-            }
+        Predicate<Event> compiled = compiledExpression;
+        if (null == compiled) {
+            compiled = compile(expression);
+            compiledExpression = compiled;
         }
-        expressions.add(cleanComma.matcher(expression.substring(j).trim()).replaceAll(","));
-        for (String expression : expressions) {
-            if (!processExpression(expression, value)) {
-                return false;
-            }
-        }
-        return true;
+        return compiled.test(value);
     }
 
     private static final String TENANT_ID = "tenantId";
@@ -251,13 +254,41 @@ public class EventCondition extends Condition {
     private static final String GT = ">";
     private static final String GTE = ">=";
 
-    private boolean processExpression(String expression, Event value) {
-        if (isEmpty(expression) || null == value) {
-            return false;
+    /*
+        The comma separated expressions are compiled into a list of predicates, all of them must match.
+     */
+    private static Predicate<Event> compile(String expression) {
+        List<Predicate<Event>> predicates = new ArrayList<>();
+        int j = 0;
+        for (int i = 0; i < expression.length(); i++) {
+            if (expression.charAt(i) == ','
+                    && (i == 0 || (i > 0 && expression.charAt(i - 1) != '\\'))) {
+                predicates.add(compileExpression(
+                        cleanComma.matcher(expression.substring(j, i).trim()).replaceAll(",")));
+                j = i + 1;
+            }
+        }
+        predicates.add(compileExpression(cleanComma.matcher(expression.substring(j).trim()).replaceAll(",")));
+        if (predicates.size() == 1) {
+            return predicates.get(0);
+        }
+        return e -> {
+            for (Predicate<Event> predicate : predicates) {
+                if (!predicate.test(e)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    private static Predicate<Event> compileExpression(String expression) {
+        if (isEmpty(expression)) {
+            return NO_MATCH;
         }
         String[] tokens = expression.split(" ");
         if (tokens.length < 3) {
-            return false;
+            return NO_MATCH;
         }
         String eventField = tokens[0];
         String operator = tokens[1];
@@ -266,112 +297,122 @@ public class EventCondition extends Condition {
             constant += " ";
             constant += tokens[i];
         }
-        String sEventValue = null;
-        Long lEventValue = null;
-        String sConstantValue = null;
-        Double dConstantValue = null;
 
+        /*
+            A field is either the numeric ctime or a String field of the event
+         */
+        boolean ctimeField = false;
+        Function<Event, String> stringField = null;
         if (isEmpty(eventField)) {
-            return false;
+            return NO_MATCH;
         }
         if (TENANT_ID.equals(eventField)) {
-            sEventValue = value.getTenantId();
+            stringField = Event::getTenantId;
         } else if (ID.equals(eventField)) {
-            sEventValue = value.getId();
+            stringField = Event::getId;
         } else if (CTIME.equals(eventField)) {
-            lEventValue = value.getCtime();
+            ctimeField = true;
         } else if (TEXT.equals(eventField)) {
-            sEventValue = value.getText();
+            stringField = Event::getText;
         } else if (CATEGORY.equals(eventField)) {
-            sEventValue = value.getCategory();
+            stringField = Event::getCategory;
         } else if (eventField.startsWith(TAGS)) {
             // We get the key from tags.<key> string
             String key = eventField.substring(5);
-            sEventValue = value.getTags().get(key);
-        }
-        if (sEventValue == null && lEventValue == null) {
-            return false;
-        }
-        if (constant == null) {
-            return false;
+            stringField = e -> e.getTags().get(key);
+        } else {
+            return NO_MATCH;
         }
+
+        String sConstantValue = null;
+        Double dConstantValue = null;
         int constantLength = constant.length();
+        if (constantLength == 0) {
+            return NO_MATCH;
+        }
         if (constant.charAt(0) == '\'' && constant.charAt(constantLength - 1) == '\'') {
             sConstantValue = constant.substring(1, constantLength - 1);
         } else if (constant.charAt(0) == '\'' && constant.charAt(constantLength - 1) != '\'') {
-            return false;
+            return NO_MATCH;
         } else if (constant.charAt(0) != '\'' && constant.charAt(constantLength - 1) == '\'') {
-            return false;
+            return NO_MATCH;
         } else {
-            dConstantValue = Double.valueOf(constant);
+            try {
+                dConstantValue = Double.valueOf(constant);
+            } catch (NumberFormatException e) {
+                return NO_MATCH;
+            }
         }
 
-        if (EQ.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.equals(sConstantValue);
-            }
-            if (lEventValue != null && dConstantValue != null) {
-                return lEventValue.longValue() == dConstantValue.doubleValue();
+        if (EQ.equals(operator) || NON_EQ.equals(operator)) {
+            boolean eq = EQ.equals(operator);
+            if (stringField != null && sConstantValue != null) {
+                Function<Event, String> field = stringField;
+                String sConstant = sConstantValue;
+                return e -> {
+                    String sEventValue = field.apply(e);
+                    return sEventValue != null && (sEventValue.equals(sConstant) == eq);
+                };
             }
-            return false;
-        } else if (NON_EQ.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return !sEventValue.equals(sConstantValue);
-            }
-            if (lEventValue != null && dConstantValue != null) {
-                return lEventValue.longValue() != dConstantValue.doubleValue();
-            }
-            return false;
-        } else if (STARTS.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.startsWith(sConstantValue);
-            }
-            return false;
-        } else if (ENDS.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.endsWith(sConstantValue);
-            }
-            return false;
-        } else if (CONTAINS.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.contains(sConstantValue);
+            if (ctimeField && dConstantValue != null) {
+                double dConstant = dConstantValue;
+                return e -> (e.getCtime() == dConstant) == eq;
             }
-            return false;
-        } else if (MATCHES.equals(operator)) {
-            if (sEventValue != null && sConstantValue != null) {
-                return sEventValue.matches(sConstantValue);
+            return NO_MATCH;
+        }
+
+        if (STARTS.equals(operator) || ENDS.equals(operator) || CONTAINS.equals(operator)
+                || MATCHES.equals(operator)) {
+            if (stringField == null || sConstantValue == null) {
+                return NO_MATCH;
             }
-            return false;
-        } else if (GT.equals(operator)) {
-            Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
-            dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
-            if (dEventValue != null && dConstantValue != null) {
-                return dEventValue > dConstantValue;
+            String sConstant = sConstantValue;
+            Predicate<String> test;
+            if (STARTS.equals(operator)) {
+                test = v -> v.startsWith(sConstant);
+            } else if (ENDS.equals(operator)) {
+                test = v -> v.endsWith(sConstant);
+            } else if (CONTAINS.equals(operator)) {
+                test = v -> v.contains(sConstant);
+            } else {
+                try {
+                    Pattern regex = Pattern.compile(sConstant);
+                    test = v -> regex.matcher(v).matches();
+                } catch (PatternSyntaxException e) {
+                    return NO_MATCH;
+                }
             }
-            return false;
+            Function<Event, String> field = stringField;
+            return e -> {
+                String sEventValue = field.apply(e);
+                return sEventValue != null && test.test(sEventValue);
+            };
+        }
+
+        DoublePredicate test;
+        if (dConstantValue == null) {
+            return NO_MATCH;
+        }
+        double dConstant = dConstantValue;
+        if (GT.equals(operator)) {
+            test = v -> v > dConstant;
         } else if (GTE.equals(operator)) {
-            Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
-            dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
-            if (dEventValue != null && dConstantValue != null) {
-                return dEventValue >= dConstantValue;
-            }
-            return false;
+            test = v -> v >= dConstant;
         } else if (LT.equals(operator)) {
-            Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
-            dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
-            if (dEventValue != null && dConstantValue != null) {
-                return dEventValue < dConstantValue;
-            }
-            return false;
+            test = v -> v < dConstant;
         } else if (LTE.equals(operator)) {
-            Double dEventValue = lEventValue != null ? lEventValue.doubleValue() : null;
-            dEventValue = sEventValue != null ? Double.valueOf(sEventValue) : dEventValue;
-            if (dEventValue != null && dConstantValue != null) {
-                return dEventValue <= dConstantValue;
-            }
-            return false;
+            test = v -> v <= dConstant;
+        } else {
+            return NO_MATCH;
+        }
+        if (ctimeField) {
+            return e -> test.test(e.getCtime());
         }
-        return false;
+        Function<Event, String> field = stringField;
+        return e -> {
+            String sEventValue = field.apply(e);
+            return sEventValue != null && test.test(Double.valueOf(sEventValue));
+        };
     }
 
     @Override
@@ -16,6 +16,8 @@
  */
 package org.hawkular.alerts.api.model.condition;
 
+import java.util.regex.Pattern;
+
 import org.hawkular.alerts.api.doc.DocModel;
 import org.hawkular.alerts.api.doc.DocModelProperty;
 import org.hawkular.alerts.api.model.trigger.Mode;
@@ -60,6 +62,13 @@ public class StringCondition extends Condition {
     @JsonInclude
     private boolean ignoreCase;
 
+    /*
+        Compiled forms of the pattern, built on first use and reused on every evaluation.
+        They are reset when the pattern or the ignoreCase flag change.
+     */
+    private transient volatile Pattern compiledPattern;
+    private transient volatile String lowerCasePattern;
+
     public StringCondition() {
         /*
             Default constructor is needed for JSON libraries in JAX-RS context.
@@ -138,6 +147,7 @@ public class StringCondition extends Condition {
 
     public void setIgnoreCase(boolean ignoreCase) {
         this.ignoreCase = ignoreCase;
+        this.compiledPattern = null;
     }
 
     public Operator getOperator() {
@@ -154,12 +164,27 @@ public class StringCondition extends Condition {
 
     public void setPattern(String pattern) {
         this.pattern = pattern;
+        this.compiledPattern = null;
+        this.lowerCasePattern = null;
     }
 
     public boolean match(String value) {
 
-        if (ignoreCase && operator != Operator.MATCH) {
-            pattern = pattern.toLowerCase();
+        if (operator == Operator.MATCH) {
+            Pattern regex = compiledPattern;
+            if (null == regex) {
+                regex = Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
+                compiledPattern = regex;
+            }
+            return regex.matcher(value).matches();
+        }
+        String pattern = this.pattern;
+        if (ignoreCase) {
+            pattern = lowerCasePattern;
+            if (null == pattern) {
+                pattern = this.pattern.toLowerCase();
+                lowerCasePattern = pattern;
+            }
             value = value.toLowerCase();
         }
         switch (operator) {
@@ -173,8 +198,6 @@ public class StringCondition extends Condition {
                 return value.startsWith(pattern);
             case CONTAINS:
                 return value.contains(pattern);
-            case MATCH:
-                return value.matches(ignoreCase ? ("(?i)" + pattern) : pattern);
             default:
                 throw new IllegalStateException("Unknown operator: " + operator.name());
         }
@@ -49,10 +49,10 @@ public class ThresholdConditionEval extends ConditionEval {
     }
 
     public ThresholdConditionEval(ThresholdCondition condition, Data data) {
-        super(Type.THRESHOLD, condition.match(Double.valueOf(data.getValue())), data.getTimestamp(),
+        super(Type.THRESHOLD, condition.match(data.getNumericValue()), data.getTimestamp(),
                 data.getContext());
         this.condition = condition;
-        this.value = Double.valueOf(data.getValue());
+        this.value = data.getNumericValue();
     }
 
     public ThresholdCondition getCondition() {
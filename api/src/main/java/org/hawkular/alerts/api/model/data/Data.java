@@ -25,6 +25,7 @@ import java.util.Map;
 import org.hawkular.alerts.api.doc.DocModel;
 import org.hawkular.alerts.api.doc.DocModelProperty;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
@@ -92,6 +93,22 @@ public class Data implements Comparable<Data>, Serializable {
     @JsonInclude(Include.NON_EMPTY)
     protected Map<String, String> context;
 
+    /*
+        The numeric form of value, parsed once on first use and shared by all the conditions evaluating this datum.
+        It is not serialized, a deserialized datum parses its value again on first use.
+     */
+    private transient double numericValue;
+
+    /*
+        NUMERIC_UNKNOWN until value is parsed, then NUMERIC_VALID or NUMERIC_INVALID.
+        Written after numericValue so a reader seeing NUMERIC_VALID sees the parsed value.
+     */
+    private transient volatile byte numericState = NUMERIC_UNKNOWN;
+
+    private static final byte NUMERIC_UNKNOWN = 0;
+    private static final byte NUMERIC_VALID = 1;
+    private static final byte NUMERIC_INVALID = 2;
+
     /** For JSON Construction ONLY */
     public Data() {
         this(null, 0L, null);
@@ -174,21 +191,22 @@ public class Data implements Comparable<Data>, Serializable {
     }
 
     public static Data forNumeric(String tenantId, String id, long timestamp, Double value) {
-        return new Data(tenantId, null, id, timestamp, String.valueOf(value));
+        return new Data(tenantId, null, id, timestamp, String.valueOf(value)).withNumericValue(value);
     }
 
     public static Data forNumeric(String tenantId, String source, String id, long timestamp, Double value) {
-        return new Data(tenantId, source, id, timestamp, String.valueOf(value));
+        return new Data(tenantId, source, id, timestamp, String.valueOf(value)).withNumericValue(value);
     }
 
     public static Data forNumeric(String tenantId, String id, long timestamp, Double value,
             Map<String, String> context) {
-        return new Data(tenantId, null, id, timestamp, String.valueOf(value), null, context);
+        return new Data(tenantId, null, id, timestamp, String.valueOf(value), null, context).withNumericValue(value);
     }
 
     public static Data forNumeric(String tenantId, String source, String id, long timestamp, Double value,
             Map<String, String> context) {
-        return new Data(tenantId, source, id, timestamp, String.valueOf(value), null, context);
+        return new Data(tenantId, source, id, timestamp, String.valueOf(value), null, context)
+                .withNumericValue(value);
     }
 
     public static Data forString(String tenantId, String id, long timestamp, String value) {
@@ -269,6 +287,52 @@ public class Data implements Comparable<Data>, Serializable {
 
     public void setValue(String value) {
         this.value = value;
+        this.numericState = NUMERIC_UNKNOWN;
+    }
+
+    /**
+     * @return true if value is a valid double, as parsed by {@link Double#parseDouble(String)}.
+     */
+    @JsonIgnore
+    public boolean isNumeric() {
+        return parseNumericValue() == NUMERIC_VALID;
+    }
+
+    /**
+     * The value as a primitive double. The value is parsed on the first call and the result reused afterwards, so
+     * the conditions evaluating the same datum do not parse it again.
+     *
+     * @return the value as a double
+     * @throws NumberFormatException if value is not a valid double
+     */
+    @JsonIgnore
+    public double getNumericValue() {
+        if (parseNumericValue() != NUMERIC_VALID) {
+            throw new NumberFormatException("Data [" + id + "] has a non numeric value [" + value + "]");
+        }
+        return numericValue;
+    }
+
+    private byte parseNumericValue() {
+        byte state = numericState;
+        if (state == NUMERIC_UNKNOWN) {
+            try {
+                numericValue = Double.parseDouble(value);
+                state = NUMERIC_VALID;
+            } catch (NullPointerException | NumberFormatException e) {
+                state = NUMERIC_INVALID;
+            }
+            numericState = state;
+        }
+        return state;
+    }
+
+    private Data withNumericValue(Double value) {
+        if (value != null) {
+            this.numericValue = value;
+            this.numericState = NUMERIC_VALID;
+        }
+        return this;
     }
 
     public Map<String, String> getContext() {
@@ -171,6 +171,24 @@ public interface AlertsService {
      */
     Page<Event> getEvents(Set<String> tenantIds, EventsCriteria criteria, Pager pager) throws Exception;
 
+    /**
+     * Register a listener notified each time alerts matching the criteria are added, acknowledged or resolved.
+     * Time constraints of the criteria are not considered, every new change is notified.
+     * @param listener Not null. The listener to notify.
+     * @param tenantIds Not null. Collection of tenants where alerts are stored
+     * @param criteria If null all alerts of the tenants are notified
+     */
+    void registerListener(EventsChangeListener<Alert> listener, Set<String> tenantIds, AlertsCriteria criteria);
+
+    /**
+     * Register a listener notified each time events matching the criteria are persisted.
+     * Time constraints of the criteria are not considered, every new change is notified.
+     * @param listener Not null. The listener to notify.
+     * @param tenantIds Not null. Collection of tenants where events are stored
+     * @param criteria If null all events of the tenants are notified
+     */
+    void registerListener(EventsChangeListener<Event> listener, Set<String> tenantIds, EventsCriteria criteria);
+
     /**
      * Remove the provided tags from the specified alerts.
      * @param tenantId Tenant where alerts are stored
@@ -223,6 +241,7 @@ public interface AlertsService {
      * Send data into the alerting system for evaluation.
      *
      * @param data Not Null.  The data to be evaluated by the alerting engine.
+     * @throws org.hawkular.alerts.api.exception.OverflowException if the engine is full and rejects the data.
      * @throws Exception any problem.
      */
     void sendData(Collection<Data> data) throws Exception;
@@ -241,6 +260,7 @@ public interface AlertsService {
      * The event sent are not persisted into the alerts engine.
      *
      * @param events Not null. The events to be evaluated by the alerting engine.
+     * @throws org.hawkular.alerts.api.exception.OverflowException if the engine is full and rejects the events.
      * @throws Exception
      */
     void sendEvents(Collection<Event> events) throws Exception;
@@ -254,4 +274,10 @@ public interface AlertsService {
      * @throws Exception
      */
     void sendEvents(Collection<Event> events, boolean ignoreFiltering) throws Exception;
+
+    /**
+     * Unregister a listener previously registered with registerListener().
+     * @param listener the listener to remove. Unknown listeners are ignored.
+     */
+    void unregisterListener(EventsChangeListener<?> listener);
 }
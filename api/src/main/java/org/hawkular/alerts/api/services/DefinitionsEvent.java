@@ -42,6 +42,7 @@ public class DefinitionsEvent {
         ACTION_DEFINITION_CREATE,
         ACTION_DEFINITION_REMOVE,
         ACTION_DEFINITION_UPDATE,
+        ACTION_PLUGIN_CHANGE,
         DAMPENING_CHANGE,
         TRIGGER_CONDITION_CHANGE,
         TRIGGER_CREATE,
@@ -66,6 +67,10 @@ public class DefinitionsEvent {
         this(type, targetTenantId, targetActionId, null, targetActionPlugin, null, null);
     }
 
+    public DefinitionsEvent(Type type, String targetActionPlugin) {
+        this(type, null, null, null, targetActionPlugin, null, null);
+    }
+
     public DefinitionsEvent(Type type, Dampening dampening) {
         this(type, dampening.getTenantId(), dampening.getDampeningId(), null, null, null, null);
     }
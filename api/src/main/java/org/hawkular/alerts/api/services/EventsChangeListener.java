@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.services;
+
+import java.util.List;
+
+import org.hawkular.alerts.api.model.event.Event;
+
+/**
+ * A listener for reacting to alerts and events stored by the {@code AlertsService}.
+ *
+ * {@code EventsChangeListener} are registered via {@code AlertsService} together with the criteria the changes must
+ * match. Alerts are notified when they are added, acknowledged or resolved. Events are notified when they are
+ * persisted.
+ *
+ * {@code EventsChangeListener} are invoked on the node which performs the operation. In distributed scenarios these
+ * changes are also propagated to the other nodes, so listeners are invoked wherever they are registered.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public interface EventsChangeListener<T extends Event> {
+
+    /**
+     * React to one or more alerts or events matching the criteria of the listener. Multiple changes may be
+     * received in one notification due to several alerts or events being stored in a batch.
+     *
+     * @param changes alerts or events in their new state.
+     */
+    void onChange(List<T> changes);
+}
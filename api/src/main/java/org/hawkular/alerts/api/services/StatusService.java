@@ -49,4 +49,26 @@ public interface StatusService {
      * @return Map with currentNode and members information for distributed scenarios
      */
     Map<String, String> getDistributedStatus();
+
+    /**
+     * Show information about the alerts engine buffers.
+     *  - getEngineStatus().get("engine-shards") returns the number of rules engine shards
+     *  - getEngineStatus().get("engine-pending-data") returns the number of Data waiting for evaluation
+     *  - getEngineStatus().get("engine-pending-events") returns the number of Events waiting for evaluation
+     *  - getEngineStatus().get("engine-dropped-data") returns the number of Data dropped because of overflow
+     *  - getEngineStatus().get("engine-dropped-events") returns the number of Events dropped because of overflow
+     *  - getEngineStatus().get("engine-write-behind") returns true if Alerts/Events are persisted in background
+     *  - getEngineStatus().get("engine-write-pending") returns the number of Alerts/Events waiting to be persisted
+     *  - getEngineStatus().get("engine-write-committed") returns the number of Alerts/Events persisted
+     *  - getEngineStatus().get("engine-write-failed") returns the number of Alerts/Events failed to persist
+     *  - getEngineStatus().get("engine-write-last-commit") returns the time of the last persisted group
+     *  - getEngineStatus().get("engine-actions-async") returns true if Actions are dispatched in background
+     *  - getEngineStatus().get("engine-actions-pending") returns the number of events waiting for its Actions
+     *  - getEngineStatus().get("engine-actions-dispatched") returns the number of Actions sent to the plugins
+     *  - getEngineStatus().get("engine-actions-failed") returns the number of Actions failed to dispatch
+     *  - getEngineStatus().get("engine-actions-latency") returns the average dispatch latency in ms
+     *
+     * @return Map with the alerts engine information
+     */
+    Map<String, String> getEngineStatus();
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+
+/**
+ * Compact binary serialization/deserialization of Data and Event batches, an alternative to JSON for bulk ingestion.
+ *
+ * A batch is a header, a string dictionary and the records. Identifiers, sources, categories and context or tag
+ * entries repeat across a batch, so they are written once in the dictionary and the records reference them by index.
+ * Numeric values are written as doubles and decoded straight into numeric {@link Data}.
+ *
+ * <pre>
+ * batch      := magic(int) version(byte) type(byte) dictionary count(varint) record*
+ * dictionary := size(varint) string*
+ * string     := varint, 0 is null, otherwise 1 + length of the utf8-bytes, followed by the utf8-bytes
+ * ref        := varint, 0 is null, otherwise 1 + dictionary index
+ * context    := size(varint) (name(ref) value(ref))*
+ * data       := source(ref) id(ref) timestamp(long) valueType(byte) value context
+ *               valueType 0: no value, 1: numeric value(double), 2: string value(ref)
+ * event      := id(string) ctime(long) dataSource(ref) dataId(ref) category(ref) text(string) context tags(context)
+ * </pre>
+ *
+ * The tenant is not part of the batch, it is assigned from the request as with JSON.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class BinaryUtil {
+
+    public static final String APPLICATION_BINARY = "application/x-hawkular-data+binary";
+
+    private static final int MAGIC = 0x48414C42; // "HALB"
+    private static final byte VERSION = 1;
+    private static final byte TYPE_DATA = 'D';
+    private static final byte TYPE_EVENT = 'E';
+
+    private static final byte VALUE_NONE = 0;
+    private static final byte VALUE_NUMERIC = 1;
+    private static final byte VALUE_STRING = 2;
+
+    private BinaryUtil() {
+    }
+
+    /**
+     * @param data the Data to serialize. Numeric values are encoded as doubles.
+     * @return the binary batch
+     */
+    public static byte[] dataToBinary(Collection<Data> data) {
+        Dictionary dictionary = new Dictionary();
+        Writer records = new Writer();
+        for (Data d : data) {
+            records.writeVarint(dictionary.ref(d.getSource()));
+            records.writeVarint(dictionary.ref(d.getId()));
+            records.writeLong(d.getTimestamp());
+            if (d.getValue() == null) {
+                records.write(VALUE_NONE);
+            } else if (d.isNumeric() && String.valueOf(d.getNumericValue()).equals(d.getValue())) {
+                records.write(VALUE_NUMERIC);
+                records.writeLong(Double.doubleToRawLongBits(d.getNumericValue()));
+            } else {
+                records.write(VALUE_STRING);
+                records.writeVarint(dictionary.ref(d.getValue()));
+            }
+            writeMap(records, dictionary, d.getContext());
+        }
+        return batch(TYPE_DATA, dictionary, data.size(), records);
+    }
+
+    /**
+     * @param events the Events to serialize. Only the fields of an external Event are encoded: id, ctime,
+     *               dataSource, dataId, category, text, context and tags.
+     * @return the binary batch
+     */
+    public static byte[] eventsToBinary(Collection<Event> events) {
+        Dictionary dictionary = new Dictionary();
+        Writer records = new Writer();
+        for (Event e : events) {
+            records.writeString(e.getId());
+            records.writeLong(e.getCtime());
+            records.writeVarint(dictionary.ref(e.getDataSource()));
+            records.writeVarint(dictionary.ref(e.getDataId()));
+            records.writeVarint(dictionary.ref(e.getCategory()));
+            records.writeString(e.getText());
+            writeMap(records, dictionary, e.getContext());
+            writeMap(records, dictionary, e.getTags());
+        }
+        return batch(TYPE_EVENT, dictionary, events.size(), records);
+    }
+
+    /**
+     * @param bytes a binary batch of Data
+     * @return the decoded Data, without tenant
+     * @throws IllegalArgumentException if bytes is not a valid Data batch
+     */
+    public static Collection<Data> dataFromBinary(byte[] bytes) {
+        try {
+            Reader reader = new Reader(bytes, TYPE_DATA);
+            int count = reader.readCount();
+            List<Data> data = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String source = reader.readRef();
+                String id = reader.readRef();
+                long timestamp = reader.buffer.getLong();
+                byte valueType = reader.buffer.get();
+                Data d;
+                switch (valueType) {
+                    case VALUE_NONE:
+                        d = Data.forString(null, source, id, timestamp, null);
+                        break;
+                    case VALUE_NUMERIC:
+                        d = Data.forNumeric(null, source, id, timestamp, reader.buffer.getDouble());
+                        break;
+                    case VALUE_STRING:
+                        d = Data.forString(null, source, id, timestamp, reader.readRef());
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Invalid value type [" + valueType + "]");
+                }
+                d.setContext(reader.readMap());
+                data.add(d);
+            }
+            reader.checkEnd();
+            return data;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary data");
+        }
+    }
+
+    /**
+     * @param bytes a binary batch of Events
+     * @return the decoded Events, without tenant
+     * @throws IllegalArgumentException if bytes is not a valid Event batch
+     */
+    public static Collection<Event> eventsFromBinary(byte[] bytes) {
+        try {
+            Reader reader = new Reader(bytes, TYPE_EVENT);
+            int count = reader.readCount();
+            List<Event> events = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = reader.readString();
+                long ctime = reader.buffer.getLong();
+                String dataSource = reader.readRef();
+                String dataId = reader.readRef();
+                String category = reader.readRef();
+                String text = reader.readString();
+                Map<String, String> context = reader.readMap();
+                Map<String, String> tags = reader.readMap();
+                events.add(new Event(null, id, ctime, dataSource, dataId, category, text, context, tags));
+            }
+            reader.checkEnd();
+            return events;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary events");
+        }
+    }
+
+    private static void writeMap(Writer writer, Dictionary dictionary, Map<String, String> map) {
+        if (map == null) {
+            writer.writeVarint(0);
+            return;
+        }
+        writer.writeVarint(map.size());
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            writer.writeVarint(dictionary.ref(entry.getKey()));
+            writer.writeVarint(dictionary.ref(entry.getValue()));
+        }
+    }
+
+    private static byte[] batch(byte type, Dictionary dictionary, int count, Writer records) {
+        Writer writer = new Writer();
+        writer.writeInt(MAGIC);
+        writer.write(VERSION);
+        writer.write(type);
+        writer.writeVarint(dictionary.strings.size());
+        for (String s : dictionary.strings) {
+            writer.writeString(s);
+        }
+        writer.writeVarint(count);
+        records.writeTo(writer);
+        return writer.toByteArray();
+    }
+
+    private static class Dictionary {
+        private final Map<String, Integer> refs = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        int ref(String s) {
+            if (s == null) {
+                return 0;
+            }
+            return refs.computeIfAbsent(s, k -> {
+                strings.add(k);
+                return strings.size();
+            });
+        }
+    }
+
+    private static class Writer extends ByteArrayOutputStream {
+
+        Writer() {
+            super(4096);
+        }
+
+        void writeInt(int v) {
+            write(v >>> 24);
+            write(v >>> 16);
+            write(v >>> 8);
+            write(v);
+        }
+
+        void writeLong(long v) {
+            writeInt((int) (v >>> 32));
+            writeInt((int) v);
+        }
+
+        void writeVarint(int v) {
+            while ((v & ~0x7F) != 0) {
+                write((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write(v);
+        }
+
+        /*
+            Strings written inline, 0 is null, otherwise 1 + the length of the UTF-8 bytes
+         */
+        void writeString(String s) {
+            if (s == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeTo(Writer writer) {
+            writer.write(buf, 0, count);
+        }
+    }
+
+    private static class Reader {
+        private final ByteBuffer buffer;
+        private final String[] dictionary;
+
+        Reader(byte[] bytes, byte type) {
+            if (bytes == null) {
+                throw new IllegalArgumentException("Binary batch must be not null");
+            }
+            buffer = ByteBuffer.wrap(bytes);
+            if (buffer.remaining() < 6 || buffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Invalid binary batch");
+            }
+            byte version = buffer.get();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported binary batch version [" + version + "]");
+            }
+            byte batchType = buffer.get();
+            if (batchType != type) {
+                throw new IllegalArgumentException("Unexpected binary batch type [" + (char) batchType + "]");
+            }
+            dictionary = new String[readCount()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString();
+            }
+        }
+
+        int readVarint() {
+            int v = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = buffer.get();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return v;
+                }
+            }
+            throw new IllegalArgumentException("Invalid varint");
+        }
+
+        /*
+            Every element takes at least one byte, so a count greater than the remaining bytes is corrupted.
+            This avoids allocating for a bogus count.
+         */
+        int readCount() {
+            int count = readVarint();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid count [" + count + "]");
+            }
+            return count;
+        }
+
+        String readString() {
+            int length = readVarint();
+            if (length == 0) {
+                return null;
+            }
+            length--;
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid string length [" + length + "]");
+            }
+            String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                    StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+            return s;
+        }
+
+        String readRef() {
+            int ref = readVarint();
+            if (ref == 0) {
+                return null;
+            }
+            if (ref < 0 || ref > dictionary.length) {
+                throw new IllegalArgumentException("Invalid dictionary reference [" + ref + "]");
+            }
+            return dictionary[ref - 1];
+        }
+
+        Map<String, String> readMap() {
+            int size = readCount();
+            if (size == 0) {
+                return null;
+            }
+            Map<String, String> map = new HashMap<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                map.put(readRef(), readRef());
+            }
+            return map;
+        }
+
+        void checkEnd() {
+            if (buffer.hasRemaining()) {
+                throw new IllegalArgumentException("Unexpected " + buffer.remaining() + " bytes after the records");
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.util.BinaryUtil;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class BinaryUtilTest {
+
+    @Test
+    public void dataBinaryTest() {
+        List<Data> data = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            data.add(Data.forNumeric(null, "source-1", "data-" + (i % 10), 1000 + i, i * 1.5));
+        }
+        Data availability = Data.forAvailability(null, "data-avail", 2000, AvailabilityType.DOWN);
+        availability.addProperty("host", "node-1");
+        data.add(availability);
+        data.add(Data.forString(null, "data-string", 3000, "10"));
+
+        byte[] binary = BinaryUtil.dataToBinary(data);
+        Collection<Data> decoded = BinaryUtil.dataFromBinary(binary);
+
+        assertEquals(data.size(), decoded.size());
+        Iterator<Data> it = decoded.iterator();
+        for (Data d : data) {
+            Data other = it.next();
+            assertEquals(d, other);
+            assertEquals(d.getValue(), other.getValue());
+            assertEquals(d.getContext(), other.getContext());
+        }
+        assertTrue(decoded.iterator().next().isNumeric());
+        // The dictionary makes the batch much smaller than the json
+        assertTrue(binary.length * 2 < JsonUtil.toJson(data).length());
+    }
+
+    @Test
+    public void eventsBinaryTest() {
+        Event event = new Event("tenant", "event-1", 1000, "source-1", "data-1", "LOG", "Connection timeout");
+        event.addTag("level", "ERROR");
+        event.addContext("host", "node-1");
+        Event noTags = new Event(null, "event-2", 2000, null, null, "LOG", null);
+
+        Collection<Event> decoded = BinaryUtil.eventsFromBinary(BinaryUtil.eventsToBinary(Arrays.asList(event,
+                noTags)));
+
+        assertEquals(2, decoded.size());
+        Iterator<Event> it = decoded.iterator();
+        Event e1 = it.next();
+        assertNull(e1.getTenantId());
+        assertEquals("event-1", e1.getId());
+        assertEquals(1000, e1.getCtime());
+        assertEquals("source-1", e1.getDataSource());
+        assertEquals("data-1", e1.getDataId());
+        assertEquals("LOG", e1.getCategory());
+        assertEquals("Connection timeout", e1.getText());
+        assertEquals("ERROR", e1.getTags().get("level"));
+        assertEquals("node-1", e1.getContext().get("host"));
+        Event e2 = it.next();
+        assertEquals("event-2", e2.getId());
+        assertNull(e2.getText());
+        assertTrue(e2.getTags().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBatchTest() {
+        byte[] binary = BinaryUtil.dataToBinary(Arrays.asList(Data.forNumeric(null, "data-1", 1000, 1.0)));
+        BinaryUtil.dataFromBinary(Arrays.copyOf(binary, binary.length - 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongTypeTest() {
+        byte[] binary = BinaryUtil.dataToBinary(Arrays.asList(Data.forNumeric(null, "data-1", 1000, 1.0)));
+        BinaryUtil.eventsFromBinary(binary);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.alerts.api.json.JsonStreamReader;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class JsonStreamReaderTest {
+
+    private InputStream json(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void readDataTest() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 25; i++) {
+            if (i > 0) {
+                json.append(",");
+            }
+            json.append("{\"context\":{\"n1\":\"v1\"},\"id\":\"data-").append(i % 5).append("\",")
+                    .append("\"timestamp\":").append(i + 1).append(",\"value\":").append(i).append("}");
+        }
+        json.append("]");
+
+        List<Integer> chunks = new ArrayList<>();
+        List<Data> accepted = new ArrayList<>();
+        int read = JsonStreamReader.readData(json(json.toString()), "tenant",
+                dataId -> dataId.equals("data-1") || dataId.equals("data-2"), 3,
+                chunk -> {
+                    chunks.add(chunk.size());
+                    accepted.addAll(chunk);
+                });
+
+        assertEquals(25, read);
+        assertEquals(10, accepted.size());
+        assertTrue(chunks.stream().allMatch(size -> size <= 3));
+        Data d = accepted.get(0);
+        assertEquals("tenant", d.getTenantId());
+        assertEquals("data-1", d.getId());
+        assertEquals(Data.SOURCE_NONE, d.getSource());
+        assertEquals(2, d.getTimestamp());
+        assertEquals("1", d.getValue());
+        assertEquals(1.0, d.getNumericValue(), 0);
+        assertEquals("v1", d.getContext().get("n1"));
+    }
+
+    @Test
+    public void readEventsTest() throws Exception {
+        String json = "[" +
+                "{\"id\":\"event-1\",\"ctime\":1,\"dataId\":\"data-1\",\"category\":\"LOG\",\"text\":\"ERROR\"," +
+                "\"tags\":{\"level\":\"ERROR\"}}," +
+                "{\"id\":\"event-2\",\"ctime\":2,\"dataId\":\"data-2\",\"category\":\"LOG\",\"text\":\"INFO\"}," +
+                "{\"id\":\"event-3\",\"ctime\":3,\"category\":\"LOG\",\"text\":\"No dataId\"}" +
+                "]";
+
+        List<Event> accepted = new ArrayList<>();
+        int read = JsonStreamReader.readEvents(json(json), "tenant", dataId -> dataId.equals("data-1"), 10,
+                accepted::addAll);
+
+        assertEquals(3, read);
+        assertEquals(1, accepted.size());
+        assertEquals("tenant", accepted.get(0).getTenantId());
+        assertEquals("event-1", accepted.get(0).getId());
+        assertEquals("ERROR", accepted.get(0).getTags().get("level"));
+    }
+
+    @Test
+    public void emptyArrayTest() throws Exception {
+        List<Data> accepted = new ArrayList<>();
+        assertEquals(0, JsonStreamReader.readData(json("[]"), "tenant", dataId -> true, 10, accepted::addAll));
+        assertTrue(accepted.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownFieldTest() throws Exception {
+        JsonStreamReader.readData(json("[{\"id\":\"data-1\",\"unknown\":1}]"), "tenant", dataId -> true, 10,
+                chunk -> { });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void notArrayTest() throws Exception {
+        JsonStreamReader.readData(json("{\"id\":\"data-1\"}"), "tenant", dataId -> true, 10, chunk -> { });
+    }
+
+    @Test
+    public void nullValueTest() throws Exception {
+        List<Data> accepted = new ArrayList<>();
+        JsonStreamReader.readData(json("[{\"id\":\"data-1\",\"value\":null}]"), "tenant", dataId -> true, 10,
+                accepted::addAll);
+        assertEquals(1, accepted.size());
+        assertNull(accepted.get(0).getValue());
+    }
+}
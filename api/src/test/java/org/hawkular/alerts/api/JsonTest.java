@@ -86,6 +86,24 @@ public class JsonTest {
         objectMapper = new ObjectMapper();
     }
 
+    @Test
+    public void jsonNumericDataTest() throws Exception {
+        String str = "{\"tenantId\":\"tenantTest\",\"source\":\"_none_\",\"id\":\"data-id\"," +
+                "\"timestamp\":1234,\"value\":\"10.5\"}";
+        Data data = objectMapper.readValue(str, Data.class);
+
+        assertTrue(data.isNumeric());
+        assertEquals(10.5, data.getNumericValue(), 0);
+
+        String output = objectMapper.writeValueAsString(data);
+
+        assertEquals(str, output);
+
+        data.setValue("UP");
+
+        assertTrue(!data.isNumeric());
+    }
+
     @Test
     public void jsonActionTest() throws Exception {
         String str = "{\"tenantId\":\"tenantTest\",\"actionPlugin\":\"plugin\"," +
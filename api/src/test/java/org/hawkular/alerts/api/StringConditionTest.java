@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition.Operator;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class StringConditionTest {
+
+    @Test
+    public void testMatch() {
+        StringCondition condition = new StringCondition("tenant", "trigger-1", "log", Operator.MATCH,
+                ".*ERROR.*", false);
+
+        assertTrue(condition.match("2017 ERROR timeout"));
+        assertFalse(condition.match("2017 error timeout"));
+
+        condition.setIgnoreCase(true);
+
+        assertTrue(condition.match("2017 error timeout"));
+
+        condition.setPattern(".*WARN.*");
+
+        assertFalse(condition.match("2017 error timeout"));
+        assertTrue(condition.match("2017 warn timeout"));
+    }
+
+    @Test
+    public void testIgnoreCase() {
+        StringCondition condition = new StringCondition("tenant", "trigger-1", "log", Operator.STARTS_WITH,
+                "Error", true);
+
+        assertTrue(condition.match("ERROR timeout"));
+        assertTrue(condition.match("error timeout"));
+        // The pattern is not modified by the evaluation
+        assertEquals("Error", condition.getPattern());
+
+        condition.setPattern("Warn");
+
+        assertFalse(condition.match("ERROR timeout"));
+        assertTrue(condition.match("WARN timeout"));
+    }
+}
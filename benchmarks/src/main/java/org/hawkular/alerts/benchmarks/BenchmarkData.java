@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.RateCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+
+/**
+ * Helpers to create the triggers definitions and the Data used by the benchmarks.
+ *
+ * Trigger i has a single condition on dataId "data-i" (and "data2-i" for COMPARE). Data values alternate between
+ * matching and not matching the condition.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public final class BenchmarkData {
+
+    public static final String TENANT = "tenant";
+
+    private BenchmarkData() {
+    }
+
+    public static String triggerId(int i) {
+        return "trigger-" + i;
+    }
+
+    public static String dataId(int i) {
+        return "data-" + i;
+    }
+
+    public static Condition condition(Condition.Type type, String triggerId, int i) {
+        switch (type) {
+            case THRESHOLD:
+                return new ThresholdCondition(TENANT, triggerId, dataId(i), ThresholdCondition.Operator.GT, 50.0);
+            case RANGE:
+                return new ThresholdRangeCondition(TENANT, triggerId, dataId(i),
+                        ThresholdRangeCondition.Operator.INCLUSIVE, ThresholdRangeCondition.Operator.INCLUSIVE,
+                        50.0, 100.0, true);
+            case AVAILABILITY:
+                return new AvailabilityCondition(TENANT, triggerId, dataId(i), AvailabilityCondition.Operator.DOWN);
+            case STRING:
+                return new StringCondition(TENANT, triggerId, dataId(i), StringCondition.Operator.STARTS_WITH,
+                        "ERROR", false);
+            case COMPARE:
+                return new CompareCondition(TENANT, triggerId, dataId(i), CompareCondition.Operator.GT, 1.0,
+                        "data2-" + i);
+            case RATE:
+                return new RateCondition(TENANT, triggerId, dataId(i), RateCondition.Direction.INCREASING,
+                        RateCondition.Period.SECOND, RateCondition.Operator.GT, 50.0);
+            default:
+                throw new IllegalArgumentException("Unsupported condition type " + type);
+        }
+    }
+
+    /**
+     * @return one datum per trigger (two for COMPARE), matching the trigger condition on odd invocations
+     */
+    public static List<Data> data(Condition.Type type, int numTriggers, long timestamp, boolean match) {
+        List<Data> data = new ArrayList<>(type == Condition.Type.COMPARE ? 2 * numTriggers : numTriggers);
+        for (int i = 0; i < numTriggers; i++) {
+            switch (type) {
+                case THRESHOLD:
+                case RANGE:
+                    data.add(Data.forNumeric(TENANT, dataId(i), timestamp, match ? 75.0 : 25.0));
+                    break;
+                case AVAILABILITY:
+                    data.add(Data.forAvailability(TENANT, dataId(i), timestamp,
+                            match ? AvailabilityType.DOWN : AvailabilityType.UP));
+                    break;
+                case STRING:
+                    data.add(Data.forString(TENANT, dataId(i), timestamp, match ? "ERROR: failure" : "INFO: ok"));
+                    break;
+                case COMPARE:
+                    data.add(Data.forNumeric(TENANT, dataId(i), timestamp, match ? 75.0 : 25.0));
+                    data.add(Data.forNumeric(TENANT, "data2-" + i, timestamp, 50.0));
+                    break;
+                case RATE:
+                    // rate is computed per second, the value increases 100/s on odd invocations
+                    data.add(Data.forNumeric(TENANT, dataId(i), timestamp, match ? timestamp / 10.0 : 0.0));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported condition type " + type);
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import static org.hawkular.alerts.benchmarks.BenchmarkData.TENANT;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.dataId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.filter.CacheClient;
+import org.hawkular.alerts.filter.CacheKey;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CacheClient.filterData() front-line filtering, half of the incoming dataIds are published.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheClientBenchmark {
+
+    @Param({"100", "10000"})
+    int numDataIds;
+
+    @Param({"100", "1000"})
+    int batchSize;
+
+    DefaultCacheManager cacheManager;
+    CacheClient cacheClient;
+    List<Data> data;
+
+    @Setup
+    public void setup() {
+        cacheManager = new DefaultCacheManager();
+        cacheManager.defineConfiguration("publish", new ConfigurationBuilder().build());
+        cacheClient = new CacheClient();
+        cacheClient.setCache(cacheManager.getCache("publish"));
+        for (int i = 0; i < numDataIds; i += 2) {
+            cacheClient.addTestKey(new CacheKey(TENANT, dataId(i)), Collections.singleton("trigger-" + i));
+        }
+        data = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            data.add(Data.forNumeric(TENANT, dataId(i % numDataIds), i, (double) i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cacheManager.stop();
+    }
+
+    @Benchmark
+    public Collection<Data> filterData() {
+        return cacheClient.filterData(data);
+    }
+}
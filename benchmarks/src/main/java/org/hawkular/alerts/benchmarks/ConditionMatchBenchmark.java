@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import static org.hawkular.alerts.benchmarks.BenchmarkData.TENANT;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.EventCondition;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.event.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StringCondition and EventCondition evaluation of a log-like workload.
+ *
+ * The compiled benchmarks reuse the same condition, as the engine does. The uncompiled ones evaluate a fresh copy
+ * of the condition, so the pattern and the expression are compiled on every evaluation.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionMatchBenchmark {
+
+    StringCondition regexCondition;
+    StringCondition ignoreCaseCondition;
+    EventCondition eventCondition;
+    String log;
+    Event event;
+
+    @Setup
+    public void setup() {
+        regexCondition = new StringCondition(TENANT, "trigger-regex", "log", StringCondition.Operator.MATCH,
+                ".*(ERROR|FATAL) \\[org\\.hawkular\\..*\\] .*timeout.*", true);
+        ignoreCaseCondition = new StringCondition(TENANT, "trigger-contains", "log",
+                StringCondition.Operator.CONTAINS, "Connection TIMEOUT", true);
+        eventCondition = new EventCondition(TENANT, "trigger-event", "log",
+                "category == 'LOG', tags.level matches 'ERROR|FATAL', tags.host starts 'node-', ctime > 1000");
+
+        log = "2017-06-01 10:00:00,000 ERROR [org.hawkular.alerts.engine] Connection timeout on backend node-3";
+        event = new Event(TENANT, "event-1", "log", "LOG", log);
+        event.setCtime(System.currentTimeMillis());
+        event.addTag("level", "ERROR");
+        event.addTag("host", "node-3");
+    }
+
+    @Benchmark
+    public boolean stringRegexCompiled() {
+        return regexCondition.match(log);
+    }
+
+    @Benchmark
+    public boolean stringRegexUncompiled() {
+        return new StringCondition(regexCondition).match(log);
+    }
+
+    @Benchmark
+    public boolean stringIgnoreCaseCompiled() {
+        return ignoreCaseCondition.match(log);
+    }
+
+    @Benchmark
+    public boolean eventExpressionCompiled() {
+        return eventCondition.match(event);
+    }
+
+    @Benchmark
+    public boolean eventExpressionUncompiled() {
+        return new EventCondition(eventCondition).match(event);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import static org.hawkular.alerts.benchmarks.BenchmarkData.TENANT;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.dataId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DataDrivenGroupCacheManager;
+import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl;
+import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl.IncomingData;
+import org.hawkular.alerts.engine.service.AlertsEngine;
+import org.hawkular.alerts.filter.CacheClient;
+import org.hawkular.alerts.filter.CacheKey;
+import org.infinispan.configuration.cache.ConfigurationBuilder;
+import org.infinispan.manager.DefaultCacheManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * IncomingDataManagerImpl processing of raw incoming Data, from the front-line filtering up to the AlertsEngine.
+ * The processing runs on the caller thread and the AlertsEngine only consumes the Data.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IncomingDataManagerBenchmark {
+
+    @Param({"100", "1000"})
+    int batchSize;
+
+    DefaultCacheManager cacheManager;
+    IncomingDataManagerImpl incomingDataManager;
+    ConsumingAlertsEngine alertsEngine;
+    List<Data> data;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        cacheManager = new DefaultCacheManager();
+        cacheManager.defineConfiguration("publish", new ConfigurationBuilder().build());
+        CacheClient cacheClient = new CacheClient();
+        cacheClient.setCache(cacheManager.getCache("publish"));
+        for (int i = 0; i < batchSize; i += 2) {
+            cacheClient.addTestKey(new CacheKey(TENANT, dataId(i)), Collections.singleton("trigger-" + i));
+        }
+        alertsEngine = new ConsumingAlertsEngine(blackhole);
+
+        incomingDataManager = new IncomingDataManagerImpl();
+        incomingDataManager.setExecutor(new CallerExecutorService());
+        incomingDataManager.setDataDrivenGroupCacheManager(new DataDrivenGroupCacheManager());
+        incomingDataManager.setAlertsEngine(alertsEngine);
+        incomingDataManager.setDataIdCache(cacheClient);
+
+        data = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            data.add(Data.forNumeric(TENANT, dataId(i), i, (double) i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        cacheManager.stop();
+    }
+
+    @Benchmark
+    public void processData() {
+        incomingDataManager.bufferData(new IncomingData(data, true));
+    }
+
+    /*
+        Runs the submitted tasks on the caller thread
+     */
+    private static class CallerExecutorService extends AbstractExecutorService {
+        private boolean shutdown = false;
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+
+    private static class ConsumingAlertsEngine implements AlertsEngine {
+        private final Blackhole blackhole;
+
+        ConsumingAlertsEngine(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public Trigger getLoadedTrigger(Trigger trigger) {
+            return null;
+        }
+
+        @Override
+        public void sendData(Collection<Data> data) {
+            blackhole.consume(data);
+        }
+
+        @Override
+        public void sendEvents(Collection<Event> events) {
+            blackhole.consume(events);
+        }
+
+        @Override
+        public boolean isAcceptingData() {
+            return true;
+        }
+
+        @Override
+        public boolean rejectsOnOverflow() {
+            return false;
+        }
+
+        @Override
+        public Map<String, String> getStatus() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void reload() {
+        }
+
+        @Override
+        public void addTrigger(String tenantId, String triggerId) {
+        }
+
+        @Override
+        public void reloadTrigger(String tenantId, String triggerId) {
+        }
+
+        @Override
+        public void removeTrigger(String tenantId, String triggerId) {
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.AlertsCriteria;
+import org.hawkular.alerts.engine.impl.ispn.IspnAlertsServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * IspnAlertsServiceImpl.getAlerts() with tag queries on an embedded ISPN backend.
+ *
+ * Alert i is tagged with tag(i % 2)=value(i % 4).
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IspnAlertsServiceBenchmark {
+
+    private static final String TENANT = "tenant-benchmark";
+
+    @Param({"1000", "10000"})
+    int numAlerts;
+
+    @Param({"tag0", "tag0 = 'value2'", "tag1 IN ['value1', 'value3']", "tag0 = 'value.*'"})
+    String tagQuery;
+
+    IspnAlertsServiceImpl alerts;
+    Set<String> tenantIds = Collections.singleton(TENANT);
+    AlertsCriteria criteria;
+
+    @Setup
+    public void setup() throws Exception {
+        if (System.getProperty("hawkular.data") == null) {
+            System.setProperty("hawkular.data", "./target/ispn-benchmarks");
+        }
+        alerts = new IspnAlertsServiceImpl();
+        alerts.init();
+        alerts.deleteAlerts(TENANT, new AlertsCriteria());
+
+        List<Alert> newAlerts = new ArrayList<>(numAlerts);
+        for (int i = 0; i < numAlerts; i++) {
+            Trigger trigger = new Trigger(TENANT, "trigger" + (i % 10), "Trigger " + (i % 10));
+            Alert alert = new Alert(TENANT, trigger, new ArrayList<>());
+            alert.setCtime(i + 1);
+            alert.addTag("tag" + (i % 2), "value" + (i % 4));
+            newAlerts.add(alert);
+        }
+        alerts.addAlerts(newAlerts);
+
+        criteria = new AlertsCriteria();
+        criteria.setTagQuery(tagQuery);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        alerts.deleteAlerts(TENANT, new AlertsCriteria());
+    }
+
+    @Benchmark
+    public Page<Alert> getAlerts() throws Exception {
+        return alerts.getAlerts(tenantIds, criteria, null);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import static org.hawkular.alerts.benchmarks.BenchmarkData.TENANT;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.dataId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JsonUtil.collectionFromJson() parsing of Data and Event payloads, as received on the REST endpoints.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonUtilBenchmark {
+
+    @Param({"100", "1000"})
+    int size;
+
+    String dataJson;
+    String eventsJson;
+
+    @Setup
+    public void setup() {
+        List<Data> data = new ArrayList<>(size);
+        List<Event> events = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            data.add(Data.forNumeric(TENANT, dataId(i), i, (double) i));
+            Event event = new Event(TENANT, "event-" + i, dataId(i), "category", "text " + i);
+            event.addTag("tag", "value" + i);
+            events.add(event);
+        }
+        dataJson = JsonUtil.toJson(data);
+        eventsJson = JsonUtil.toJson(events);
+    }
+
+    @Benchmark
+    public Collection<Data> dataFromJson() {
+        return JsonUtil.collectionFromJson(dataJson, Data.class);
+    }
+
+    @Benchmark
+    public Collection<Event> eventsFromJson() {
+        return JsonUtil.collectionFromJson(eventsJson, Event.class);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import static org.hawkular.alerts.benchmarks.BenchmarkData.TENANT;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.condition;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.data;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.triggerId;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.NativeTriggerEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NativeTriggerEvaluator.evaluate() on the same workload as {@link RulesEngineBenchmark}, for the condition types
+ * evaluated natively.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NativeTriggerEvaluatorBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int numTriggers;
+
+    @Param({"THRESHOLD", "RANGE", "AVAILABILITY", "STRING"})
+    Condition.Type conditionType;
+
+    NativeTriggerEvaluator evaluator;
+    List<Alert> alerts = new ArrayList<>();
+    List<Event> events = new ArrayList<>();
+    long timestamp;
+
+    @Setup
+    public void setup() {
+        evaluator = new NativeTriggerEvaluator(null, alerts, events, new HashMap<>(), new HashSet<>());
+        for (int i = 0; i < numTriggers; i++) {
+            Trigger trigger = new Trigger(TENANT, triggerId(i), "Trigger " + i);
+            evaluator.addTrigger(trigger, Collections.singletonList(condition(conditionType, trigger.getId(), i)),
+                    Collections.emptyList());
+        }
+        timestamp = 0;
+    }
+
+    @Benchmark
+    public int evaluate() {
+        timestamp += 1000;
+        List<Data> data = data(conditionType, numTriggers, timestamp, (timestamp / 1000) % 2 == 1);
+        Collections.sort(data);
+        evaluator.evaluate(data, Collections.emptyList(), new ArrayList<>(), new ArrayList<>());
+        int generated = alerts.size();
+        alerts.clear();
+        events.clear();
+        return generated;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.NelsonCondition;
+import org.hawkular.alerts.api.model.condition.NelsonCondition.NelsonRule;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.engine.util.NelsonData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NelsonData.addData() with all the Nelson rules active on normally distributed values.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NelsonDataBenchmark {
+
+    private static final int NUM_VALUES = 4096;
+
+    @Param({"10", "50"})
+    int sampleSize;
+
+    NelsonData nelsonData;
+    Data[] data;
+    int next;
+
+    @Setup
+    public void setup() {
+        NelsonCondition condition = new NelsonCondition(BenchmarkData.TENANT, "trigger", "data",
+                EnumSet.allOf(NelsonRule.class), sampleSize);
+        nelsonData = new NelsonData(condition);
+
+        Random random = new Random(42);
+        data = new Data[NUM_VALUES];
+        for (int i = 0; i < NUM_VALUES; i++) {
+            data[i] = Data.forNumeric(BenchmarkData.TENANT, "data", i, 100.0 + 10.0 * random.nextGaussian());
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public boolean addData() {
+        nelsonData.addData(data[next]);
+        next = (next + 1) % NUM_VALUES;
+        return nelsonData.hasViolations();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import static org.hawkular.alerts.benchmarks.BenchmarkData.TENANT;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.condition;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.data;
+import static org.hawkular.alerts.benchmarks.BenchmarkData.triggerId;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.engine.impl.DroolsRulesEngineImpl;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * DroolsRulesEngineImpl.fire() with one datum per trigger on every firing.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesEngineBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int numTriggers;
+
+    @Param({"THRESHOLD", "RANGE", "AVAILABILITY", "STRING", "COMPARE", "RATE"})
+    Condition.Type conditionType;
+
+    RulesEngine rules;
+    List<Alert> alerts = new ArrayList<>();
+    List<Event> events = new ArrayList<>();
+    Set<Dampening> pendingTimeouts = new HashSet<>();
+    Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+    Set<Trigger> disabledTriggers = new HashSet<>();
+    long timestamp;
+
+    @Setup
+    public void setup() {
+        rules = new DroolsRulesEngineImpl();
+        rules.addGlobal("alerts", alerts);
+        rules.addGlobal("events", events);
+        rules.addGlobal("pendingTimeouts", pendingTimeouts);
+        rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+        rules.addGlobal("disabledTriggers", disabledTriggers);
+        for (int i = 0; i < numTriggers; i++) {
+            Trigger trigger = new Trigger(TENANT, triggerId(i), "Trigger " + i);
+            rules.addFact(trigger);
+            rules.addFact(condition(conditionType, trigger.getId(), i));
+        }
+        timestamp = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        rules.reset();
+    }
+
+    @Benchmark
+    public int fire() {
+        timestamp += 1000;
+        rules.addData(data(conditionType, numTriggers, timestamp, (timestamp / 1000) % 2 == 1));
+        rules.fire();
+        int generated = alerts.size();
+        alerts.clear();
+        events.clear();
+        return generated;
+    }
+}
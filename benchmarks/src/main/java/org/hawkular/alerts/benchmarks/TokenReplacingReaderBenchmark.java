@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.hawkular.alerts.engine.util.TokenReplacingReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * TokenReplacingReader resolving a template with plain, nested and escaped tokens.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenReplacingReaderBenchmark {
+
+    @Param({"1", "100"})
+    int repetitions;
+
+    String template;
+    Map<String, String> tokens;
+    char[] buffer = new char[1024];
+
+    @Setup
+    public void setup() {
+        tokens = new HashMap<>();
+        tokens.put("tenant", "my-tenant");
+        tokens.put("trigger", "my-trigger");
+        tokens.put("url", "http://${host}:${port}/hawkular/alerts/${trigger}");
+        tokens.put("host", "localhost");
+        tokens.put("port", "8080");
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < repetitions; i++) {
+            sb.append("Alert on tenant ${tenant} for trigger ${trigger}, see ${url}. ")
+                    .append("Unknown ${token} and escaped \\${tenant} are left as is.\n");
+        }
+        template = sb.toString();
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+        int total = 0;
+        try (TokenReplacingReader reader = new TokenReplacingReader(template, tokens)) {
+            int read;
+            while ((read = reader.read(buffer, 0, buffer.length)) != -1) {
+                total += read;
+            }
+        }
+        return total;
+    }
+}
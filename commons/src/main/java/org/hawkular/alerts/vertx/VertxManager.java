@@ -0,0 +1,29 @@
+package org.hawkular.alerts.vertx;
+
+import io.vertx.core.Vertx;
+
+/**
+ * Holds the Vertx instance shared by the plugins, so they do not create their own event loops and worker pools.
+ * Plugins must not close it, it is closed on shutdown once the plugins are closed.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class VertxManager {
+
+    private static Vertx vertx = null;
+
+    public static synchronized Vertx getVertx() {
+        if (vertx == null) {
+            vertx = Vertx.vertx();
+        }
+        return vertx;
+    }
+
+    public static synchronized void stop() {
+        if (vertx != null) {
+            vertx.close();
+            vertx = null;
+        }
+    }
+}
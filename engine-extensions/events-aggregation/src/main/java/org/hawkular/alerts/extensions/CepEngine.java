@@ -17,6 +17,7 @@
 package org.hawkular.alerts.extensions;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.TreeSet;
 
 import org.hawkular.alerts.api.model.event.Event;
@@ -37,4 +38,6 @@ public interface CepEngine {
     void sendResult(Event event);
 
     void stop();
+
+    Map<String, String> getStatus();
 }
@@ -16,19 +16,25 @@
  */
 package org.hawkular.alerts.extensions;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.trigger.FullTrigger;
+import org.hawkular.alerts.api.model.trigger.TriggerKey;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
-import org.kie.api.KieBase;
 import org.kie.api.KieBaseConfiguration;
 import org.kie.api.conf.EventProcessingOption;
 import org.kie.api.event.rule.AfterMatchFiredEvent;
@@ -48,21 +54,52 @@ import org.kie.api.io.ResourceType;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.KieSessionConfiguration;
 import org.kie.api.runtime.conf.ClockTypeOption;
+import org.kie.api.runtime.rule.FactHandle;
+import org.kie.internal.KnowledgeBase;
 import org.kie.internal.KnowledgeBaseFactory;
-import org.kie.internal.utils.KieHelper;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
 
 /**
  * It evaluates events externally and send data into alerting
  *
+ * The rules of each trigger are compiled into their own package. On a conditions update only the packages of the
+ * added, changed or removed triggers are added to or removed from the live KieBase, the running session keeps its
+ * events, so the windows of the unaffected triggers are preserved. The session is only rebuilt when the events
+ * expiration changes.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 public class CepEngineImpl implements CepEngine {
     private final MsgLogger log = MsgLogging.getMsgLogger(CepEngineImpl.class);
 
-    Expression expression;
-    List<Event> results;
-    KieSession kieSession;
+    private static final String TRIGGER_PACKAGE = Expression.DEFAULT_PACKAGE + ".trigger";
+
+    String expiration;
+    KnowledgeBase kieBase;
+    volatile KieSession kieSession;
+
+    /*
+        Rules deployed in the KieBase per trigger
+     */
+    Map<TriggerKey, TriggerRules> deployed = new ConcurrentHashMap<>();
+
+    /*
+        A new package name is used on each deploy, so a changed trigger never redefines the declared types of a
+        package already used in the session
+     */
+    private final AtomicLong packageSeq = new AtomicLong();
+
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong updateTimeLast = new AtomicLong();
+    private final AtomicLong updateTimeMax = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+    private final AtomicLong packagesAdded = new AtomicLong();
+    private final AtomicLong packagesRemoved = new AtomicLong();
+    private final AtomicLong packagesFailed = new AtomicLong();
+    private final AtomicLong lostEvents = new AtomicLong();
 
     private AlertsService alertsService;
 
@@ -77,8 +114,9 @@ public class CepEngineImpl implements CepEngine {
     }
 
     public void processEvents(TreeSet<Event> events) {
-        if (kieSession != null) {
-            events.stream().forEach(e -> kieSession.insert(e));
+        KieSession session = kieSession;
+        if (session != null) {
+            events.stream().forEach(e -> session.insert(e));
         }
     }
 
@@ -93,43 +131,161 @@ public class CepEngineImpl implements CepEngine {
         });
     }
 
-    public void updateConditions(String expiration, Collection<FullTrigger> activeTriggers) {
-        expression = new Expression(expiration, activeTriggers);
-        log.debugf("Rules: \n  %s", expression);
-        stop();
+    public synchronized void updateConditions(String expiration, Collection<FullTrigger> activeTriggers) {
+        long start = System.currentTimeMillis();
+        if (kieSession == null || !Objects.equals(this.expiration, expiration)) {
+            stop();
+            startSession(expiration);
+        }
+
+        Map<TriggerKey, FullTrigger> active = new HashMap<>();
+        activeTriggers.stream().forEach(t -> active.put(new TriggerKey(t.getTrigger().getTenantId(),
+                t.getTrigger().getId()), t));
+
+        Iterator<Map.Entry<TriggerKey, TriggerRules>> it = deployed.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<TriggerKey, TriggerRules> entry = it.next();
+            if (!active.containsKey(entry.getKey())) {
+                removePackage(entry.getValue());
+                it.remove();
+            }
+        }
+
+        for (Map.Entry<TriggerKey, FullTrigger> entry : active.entrySet()) {
+            String packageName = TRIGGER_PACKAGE + packageSeq.incrementAndGet();
+            Expression expression;
+            try {
+                expression = new Expression(packageName, expiration, Collections.singletonList(entry.getValue()));
+            } catch (Exception e) {
+                log.errorf("Invalid expression for trigger %s: %s", entry.getKey(), e.getMessage());
+                packagesFailed.incrementAndGet();
+                removeTrigger(entry.getKey());
+                continue;
+            }
+            TriggerRules current = deployed.get(entry.getKey());
+            if (current != null && current.rules.equals(expression.getRules())) {
+                continue;
+            }
+            // Old rules are removed first, both versions must not fire for the same events
+            removeTrigger(entry.getKey());
+            log.debugf("Rules: \n  %s", expression);
+            if (addPackage(packageName, expression)) {
+                deployed.put(entry.getKey(), new TriggerRules(packageName, expression.getRules()));
+            }
+        }
+
+        long updateTime = System.currentTimeMillis() - start;
+        updates.incrementAndGet();
+        updateTimeLast.set(updateTime);
+        updateTimeMax.accumulateAndGet(updateTime, Math::max);
+        log.infof("Updated rules for [%s] triggers in [%s ms]", deployed.size(), updateTime);
+    }
+
+    private void startSession(String expiration) {
+        this.expiration = expiration;
         KieBaseConfiguration kieBaseConfiguration = KnowledgeBaseFactory.newKnowledgeBaseConfiguration();
         kieBaseConfiguration.setOption( EventProcessingOption.STREAM );
-        KieBase kieBase = new KieHelper().addContent(expression.getDrl(), ResourceType.DRL).build(kieBaseConfiguration);
+        kieBase = KnowledgeBaseFactory.newKnowledgeBase(kieBaseConfiguration);
+        // Globals and Event declaration shared by all trigger packages
+        if (!addPackage(Expression.DEFAULT_PACKAGE, Expression.getBaseDrl(expiration))) {
+            throw new IllegalStateException("Base rules cannot be compiled");
+        }
         KieSessionConfiguration kieSessionConf = KnowledgeBaseFactory.newKnowledgeSessionConfiguration();
         kieSessionConf.setOption( ClockTypeOption.get( "realtime" ) );
 
-        kieSession = kieBase.newKieSession(kieSessionConf, null);
-        results = new ArrayList<>();
-        kieSession.setGlobal("results", this);
-        kieSession.setGlobal("log", log);
+        KieSession session = kieBase.newKieSession(kieSessionConf, null);
+        session.setGlobal("results", this);
+        session.setGlobal("log", log);
         if (log.isDebugEnabled()) {
-            kieSession.addEventListener(new CepAgendaEventListener());
-            kieSession.addEventListener(new CepRuleRuntimeEventListener());
+            session.addEventListener(new CepAgendaEventListener());
+            session.addEventListener(new CepRuleRuntimeEventListener());
         }
-        log.debugf("Clock time [%s] ", kieSession.getSessionClock().getCurrentTime());
-
-        kieSession.getKieBase().getKiePackages().stream().forEach(p -> log.debugf("Rules: %s", p.getRules()));
+        log.debugf("Clock time [%s] ", session.getSessionClock().getCurrentTime());
+        kieSession = session;
+        rebuilds.incrementAndGet();
 
         executor.submit(() -> {
             log.info("Starting fireUntilHalt()");
-            kieSession.fireUntilHalt();
+            session.fireUntilHalt();
             log.info("Stopping fireUntilHalt()");
         });
     }
 
+    private boolean addPackage(String packageName, Expression expression) {
+        if (addPackage(packageName, expression.getDrl())) {
+            packagesAdded.incrementAndGet();
+            return true;
+        }
+        packagesFailed.incrementAndGet();
+        return false;
+    }
+
+    private boolean addPackage(String packageName, String drl) {
+        KnowledgeBuilder kbuilder = KnowledgeBuilderFactory.newKnowledgeBuilder(kieBase);
+        kbuilder.add(ResourceFactory.newByteArrayResource(drl.getBytes(StandardCharsets.UTF_8)), ResourceType.DRL);
+        if (kbuilder.hasErrors()) {
+            log.errorf("Rules of package %s cannot be compiled: %s", packageName, kbuilder.getErrors());
+            return false;
+        }
+        kieBase.addKnowledgePackages(kbuilder.getKnowledgePackages());
+        return true;
+    }
+
+    private void removeTrigger(TriggerKey triggerKey) {
+        TriggerRules current = deployed.remove(triggerKey);
+        if (current != null) {
+            removePackage(current);
+        }
+    }
+
+    private void removePackage(TriggerRules triggerRules) {
+        // Group facts of the declared types of the package are removed with it, the events are kept
+        String prefix = triggerRules.packageName + ".";
+        Collection<FactHandle> handles = kieSession.getFactHandles(o -> o.getClass().getName().startsWith(prefix));
+        handles.stream().forEach(h -> kieSession.delete(h));
+        kieBase.removeKiePackage(triggerRules.packageName);
+        packagesRemoved.incrementAndGet();
+    }
+
     @Override
-    public void stop() {
+    public synchronized void stop() {
         if (kieSession != null) {
-            kieSession.halt();
-            kieSession.dispose();
-            kieSession.destroy();
+            KieSession session = kieSession;
             kieSession = null;
-            log.info("Sent halt() signal to CEP session");
+            long events = session.getObjects(o -> o instanceof Event).size();
+            session.halt();
+            session.dispose();
+            session.destroy();
+            deployed.clear();
+            kieBase = null;
+            expiration = null;
+            lostEvents.addAndGet(events);
+            log.infof("Sent halt() signal to CEP session, discarded [%s] events", events);
+        }
+    }
+
+    @Override
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        status.put("engine-cep-triggers", String.valueOf(deployed.size()));
+        status.put("engine-cep-updates", String.valueOf(updates.get()));
+        status.put("engine-cep-update-time-last", String.valueOf(updateTimeLast.get()));
+        status.put("engine-cep-update-time-max", String.valueOf(updateTimeMax.get()));
+        status.put("engine-cep-rebuilds", String.valueOf(rebuilds.get()));
+        status.put("engine-cep-packages-added", String.valueOf(packagesAdded.get()));
+        status.put("engine-cep-packages-removed", String.valueOf(packagesRemoved.get()));
+        status.put("engine-cep-packages-failed", String.valueOf(packagesFailed.get()));
+        status.put("engine-cep-lost-events", String.valueOf(lostEvents.get()));
+        return status;
+    }
+
+    static class TriggerRules {
+        final String packageName;
+        final String rules;
+
+        TriggerRules(String packageName, String rules) {
+            this.packageName = packageName;
+            this.rules = rules;
         }
     }
 
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.extensions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Compiles the constraints of the filter() and having() sections of an expression into Java predicates.
+ *
+ * Constraints syntax:
+ *
+ *  <constraints> ::= <or> { "," <or> }
+ *  <or> ::= <and> { "||" <and> }
+ *  <and> ::= <unary> { "&&" <unary> }
+ *  <unary> ::= "!" <unary> | "(" <or> ")" | <operand> <operator> <operand>
+ *  <operator> ::= "==" | "!=" | ">" | ">=" | "<" | "<="
+ *  <operand> ::= <string> | <number> | "null" | "true" | "false" | <identifier>
+ *
+ * Constraints separated by comma must all be true. Identifiers are resolved by the caller, a number is compared
+ * numerically with a value that can be parsed as a number, other values are compared as strings.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class Constraints {
+
+    private final String constraints;
+    private final List<String> tokens;
+    private int position;
+
+    private Constraints(String constraints) {
+        this.constraints = constraints;
+        this.tokens = tokenize(constraints);
+        this.position = 0;
+    }
+
+    /**
+     * @param constraints the constraints to compile
+     * @param resolver returns the accessor of the value of an identifier, it throws IllegalArgumentException if the
+     *                 identifier is not valid
+     * @return a predicate true when all the constraints are true
+     */
+    public static <T> Predicate<T> compile(String constraints, Function<String, Function<T, Object>> resolver) {
+        if (constraints == null || constraints.trim().isEmpty()) {
+            throw new IllegalArgumentException("Constraints must be not empty");
+        }
+        Constraints parser = new Constraints(constraints);
+        Predicate<T> predicate = parser.parseOr(resolver);
+        while (parser.accept(",")) {
+            predicate = predicate.and(parser.parseOr(resolver));
+        }
+        if (parser.position < parser.tokens.size()) {
+            throw parser.error("Unexpected token '" + parser.tokens.get(parser.position) + "'");
+        }
+        return predicate;
+    }
+
+    private <T> Predicate<T> parseOr(Function<String, Function<T, Object>> resolver) {
+        Predicate<T> predicate = parseAnd(resolver);
+        while (accept("||")) {
+            predicate = predicate.or(parseAnd(resolver));
+        }
+        return predicate;
+    }
+
+    private <T> Predicate<T> parseAnd(Function<String, Function<T, Object>> resolver) {
+        Predicate<T> predicate = parseUnary(resolver);
+        while (accept("&&")) {
+            predicate = predicate.and(parseUnary(resolver));
+        }
+        return predicate;
+    }
+
+    private <T> Predicate<T> parseUnary(Function<String, Function<T, Object>> resolver) {
+        if (accept("!")) {
+            return parseUnary(resolver).negate();
+        }
+        if (accept("(")) {
+            Predicate<T> predicate = parseOr(resolver);
+            if (!accept(")")) {
+                throw error("Missing ')'");
+            }
+            return predicate;
+        }
+        Function<T, Object> left = parseOperand(resolver);
+        String operator = next();
+        Function<T, Object> right = parseOperand(resolver);
+        switch (operator) {
+            case "==":
+                return t -> compare(left.apply(t), right.apply(t), 0, true);
+            case "!=":
+                return t -> !compare(left.apply(t), right.apply(t), 0, true);
+            case ">":
+                return t -> compare(left.apply(t), right.apply(t), 1, false);
+            case ">=":
+                return t -> compare(left.apply(t), right.apply(t), 1, true);
+            case "<":
+                return t -> compare(left.apply(t), right.apply(t), -1, false);
+            case "<=":
+                return t -> compare(left.apply(t), right.apply(t), -1, true);
+            default:
+                throw error("Invalid operator '" + operator + "'");
+        }
+    }
+
+    private <T> Function<T, Object> parseOperand(Function<String, Function<T, Object>> resolver) {
+        String token = next();
+        char first = token.charAt(0);
+        if (first == '"' || first == '\'') {
+            String value = token.substring(1, token.length() - 1);
+            return t -> value;
+        }
+        if (Character.isDigit(first) || (first == '-' && token.length() > 1)) {
+            try {
+                Double value = Double.valueOf(token);
+                return t -> value;
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + token + "'");
+            }
+        }
+        switch (token) {
+            case "null":
+                return t -> null;
+            case "true":
+                return t -> Boolean.TRUE;
+            case "false":
+                return t -> Boolean.FALSE;
+            default:
+                if (!Character.isJavaIdentifierStart(first)) {
+                    throw error("Invalid operand '" + token + "'");
+                }
+                return resolver.apply(token);
+        }
+    }
+
+    /*
+        Return true if the comparison of left and right is the expected sign, or zero when equal is accepted
+     */
+    private static boolean compare(Object left, Object right, int sign, boolean acceptEqual) {
+        if (left == null || right == null) {
+            return sign == 0 && left == right;
+        }
+        int result;
+        if (left instanceof Number || right instanceof Number) {
+            Double l = toDouble(left);
+            Double r = toDouble(right);
+            if (l == null || r == null) {
+                return false;
+            }
+            result = Double.compare(l, r);
+        } else if (left instanceof Boolean || right instanceof Boolean) {
+            if (sign != 0) {
+                return false;
+            }
+            result = left.toString().equals(right.toString()) ? 0 : 1;
+        } else {
+            result = left.toString().compareTo(right.toString());
+        }
+        return (acceptEqual && result == 0) || (sign != 0 && Integer.signum(result) == sign);
+    }
+
+    private static Double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        try {
+            return Double.valueOf(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private boolean accept(String token) {
+        if (position < tokens.size() && tokens.get(position).equals(token)) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private String next() {
+        if (position >= tokens.size()) {
+            throw error("Unexpected end");
+        }
+        return tokens.get(position++);
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " in constraints [" + constraints + "]");
+    }
+
+    private static List<String> tokenize(String str) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < str.length()) {
+            char c = str.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '"' || c == '\'') {
+                int end = str.indexOf(c, i + 1);
+                if (end == -1) {
+                    throw new IllegalArgumentException("Unterminated string in constraints [" + str + "]");
+                }
+                tokens.add(str.substring(i, end + 1));
+                i = end + 1;
+            } else if (str.startsWith("&&", i) || str.startsWith("||", i) || str.startsWith("==", i)
+                    || str.startsWith("!=", i) || str.startsWith(">=", i) || str.startsWith("<=", i)) {
+                tokens.add(str.substring(i, i + 2));
+                i += 2;
+            } else if ("()!<>,".indexOf(c) != -1) {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (Character.isJavaIdentifierPart(c) || c == '.' || c == '-') {
+                int end = i + 1;
+                while (end < str.length() && (Character.isJavaIdentifierPart(str.charAt(end))
+                        || str.charAt(end) == '.')) {
+                    end++;
+                }
+                tokens.add(str.substring(i, end));
+                i = end;
+            } else {
+                throw new IllegalArgumentException("Invalid character '" + c + "' in constraints [" + str + "]");
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.extensions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hawkular.alerts.api.model.event.Event;
+
+/**
+ * Sliding window of the events of a group, stored in a ring buffer.
+ *
+ * A length window keeps the last N events, other windows grow as needed and drop their oldest events by time.
+ * The count of events and the count of distinct values of the tracked tags and context fields are maintained on
+ * each add and eviction, so they are available without scanning the window.
+ *
+ * This class is not thread safe, a window is only accessed by the partition that owns its group.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class EventWindow {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final String TAGS = "tags.";
+    private static final String CONTEXT = "context.";
+
+    private final int length;
+    private final Map<String, Map<String, Integer>> distinct = new HashMap<>();
+    private Event[] buffer;
+    private int head;
+    private int size;
+
+    /**
+     * @param length max number of events of a length window, 0 for windows evicted only by time
+     * @param distinctFields fields whose distinct values are counted, as "tags.&lt;name&gt;" or
+     *                       "context.&lt;name&gt;"
+     */
+    public EventWindow(int length, Collection<String> distinctFields) {
+        if (length < 0) {
+            throw new IllegalArgumentException("Length must be positive");
+        }
+        this.length = length;
+        this.buffer = new Event[length > 0 ? length : INITIAL_CAPACITY];
+        distinctFields.stream().forEach(field -> distinct.put(field, new HashMap<>()));
+    }
+
+    public void add(Event event) {
+        if (length > 0 && size == length) {
+            evictFirst();
+        } else if (size == buffer.length) {
+            grow();
+        }
+        buffer[(head + size) % buffer.length] = event;
+        size++;
+        distinct.entrySet().stream().forEach(entry -> {
+            String value = value(entry.getKey(), event);
+            if (value != null) {
+                entry.getValue().merge(value, 1, Integer::sum);
+            }
+        });
+    }
+
+    /**
+     * @param time the oldest ctime kept in the window
+     * @return true if any event was evicted
+     */
+    public boolean evictBefore(long time) {
+        boolean evicted = false;
+        while (size > 0 && buffer[head].getCtime() < time) {
+            evictFirst();
+            evicted = true;
+        }
+        return evicted;
+    }
+
+    /**
+     * @return the ctime of the oldest event of the window, Long.MAX_VALUE if the window is empty
+     */
+    public long oldest() {
+        return size > 0 ? buffer[head].getCtime() : Long.MAX_VALUE;
+    }
+
+    public int count() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param field a field tracked by the window, as "tags.&lt;name&gt;" or "context.&lt;name&gt;"
+     * @return number of distinct values of the field in the window
+     */
+    public int countDistinct(String field) {
+        Map<String, Integer> values = distinct.get(field);
+        if (values == null) {
+            throw new IllegalArgumentException("Field [" + field + "] is not tracked by the window");
+        }
+        return values.size();
+    }
+
+    /**
+     * @return the events of the window, oldest first
+     */
+    public List<Event> events() {
+        List<Event> events = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            events.add(buffer[(head + i) % buffer.length]);
+        }
+        return events;
+    }
+
+    private void evictFirst() {
+        Event event = buffer[head];
+        buffer[head] = null;
+        head = (head + 1) % buffer.length;
+        size--;
+        distinct.entrySet().stream().forEach(entry -> {
+            String value = value(entry.getKey(), event);
+            if (value != null) {
+                entry.getValue().computeIfPresent(value, (k, count) -> count > 1 ? count - 1 : null);
+            }
+        });
+    }
+
+    private void grow() {
+        Event[] grown = new Event[buffer.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[i] = buffer[(head + i) % buffer.length];
+        }
+        buffer = grown;
+        head = 0;
+    }
+
+    private static String value(String field, Event event) {
+        if (field.startsWith(TAGS)) {
+            return event.getTags() == null ? null : event.getTags().get(field.substring(TAGS.length()));
+        }
+        if (field.startsWith(CONTEXT)) {
+            return event.getContext() == null ? null : event.getContext().get(field.substring(CONTEXT.length()));
+        }
+        return null;
+    }
+}
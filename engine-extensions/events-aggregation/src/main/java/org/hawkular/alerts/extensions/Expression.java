@@ -49,8 +49,9 @@ import org.hawkular.alerts.api.model.trigger.Trigger;
  */
 public class Expression {
 
-    private static final String DRL_HEADER = "  package org.hawkular.alerts.extension \n" +
-            "  import org.hawkular.alerts.api.model.event.Event; \n" +
+    public static final String DEFAULT_PACKAGE = "org.hawkular.alerts.extension";
+
+    private static final String DRL_IMPORTS = "  import org.hawkular.alerts.api.model.event.Event; \n" +
             "  import org.hawkular.alerts.api.json.JsonUtil; \n" +
             "  import org.hawkular.alerts.extensions.CepEngine; \n" +
             "  import org.kie.api.time.SessionClock; \n" +
@@ -115,24 +116,34 @@ public class Expression {
     private Set<String> drlFunctionsConstraints = new HashSet<>();
 
     private String drl;
+    private String header;
 
     public Expression(Collection<FullTrigger> activeTriggers) {
         this(null, activeTriggers);
     }
 
     public Expression(String expiration, Collection<FullTrigger> activeTriggers) {
+        this(DEFAULT_PACKAGE, expiration, activeTriggers);
+    }
+
+    /**
+     * @param packageName the package of the generated rules, rules and declared types of different packages can be
+     *                    added and removed independently from a KieBase
+     * @param expiration expiration of the events in the CEP session
+     * @param activeTriggers the triggers whose ExternalConditions are translated into rules
+     */
+    public Expression(String packageName, String expiration, Collection<FullTrigger> activeTriggers) {
+        if (isEmpty(packageName)) {
+            throw new IllegalArgumentException("PackageName must be not empty");
+        }
         if (isEmpty(expiration)) {
             expiration = DEFAULT_EXPIRATION;
         }
         if (isEmpty(activeTriggers)) {
             throw new IllegalArgumentException("ActiveTriggers must be not empty");
         }
-        drl = DRL_HEADER + "\n";
-        drl += "  declare Event \n" +
-               "    @role( event ) \n" +
-               "    @expires( " + expiration + " ) \n" +
-               "    @timestamp( ctime ) \n" +
-               "  end \n\n";
+        header = "  package " + packageName + " \n" + DRL_IMPORTS + "\n";
+        drl = declareEvent(expiration);
         activeTriggers.stream().forEach(fullTrigger -> {
             fullTrigger.getConditions().forEach(condition -> {
                 if (condition instanceof ExternalCondition) {
@@ -366,7 +377,33 @@ public class Expression {
                 "  end \n";
     }
 
+    /**
+     * @param expiration expiration of the events in the CEP session
+     * @return a DRL without rules that declares the globals and the Event type in the default package
+     */
+    public static String getBaseDrl(String expiration) {
+        if (isEmpty(expiration)) {
+            expiration = DEFAULT_EXPIRATION;
+        }
+        return "  package " + DEFAULT_PACKAGE + " \n" + DRL_IMPORTS + "\n" + declareEvent(expiration);
+    }
+
+    private static String declareEvent(String expiration) {
+        return "  declare Event \n" +
+               "    @role( event ) \n" +
+               "    @expires( " + expiration + " ) \n" +
+               "    @timestamp( ctime ) \n" +
+               "  end \n\n";
+    }
+
     public String getDrl() {
+        return header + drl;
+    }
+
+    /**
+     * @return the generated rules without the package header, it is equal for the same triggers under any package
+     */
+    public String getRules() {
         return drl;
     }
 
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.extensions;
+
+import static org.hawkular.alerts.api.util.Util.isEmpty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ExternalCondition;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.commons.log.MsgLogger;
+import org.hawkular.commons.log.MsgLogging;
+
+/**
+ * A CepEngine that evaluates the expressions natively, without a rules session.
+ *
+ * Each expression is compiled into a {@link WindowRule}. The groups of the rules are hash-partitioned: the events of
+ * a group are always processed by the same partition, partitions process their events in order and in parallel on
+ * the executor. A group keeps its events in an {@link EventWindow}, the having() constraints are evaluated on each
+ * event added to the window and on each eviction, a result Event is sent when they are true.
+ *
+ * There is no timer, windows are evicted by time each time a batch of events is processed. Rules not modified by an
+ * update of the active triggers keep their windows.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class WindowCepEngineImpl implements CepEngine {
+    private final MsgLogger log = MsgLogging.getMsgLogger(WindowCepEngineImpl.class);
+
+    private static final String DEFAULT_EXPIRATION = "30m";
+
+    /*
+        Rules indexed by tenantId and dataId of the events
+     */
+    private volatile Map<String, List<WindowRule>> rules = Collections.emptyMap();
+
+    private Partition[] partitions;
+
+    private int numPartitions = Runtime.getRuntime().availableProcessors();
+
+    LongSupplier clock = System::currentTimeMillis;
+
+    private final AtomicLong activeRules = new AtomicLong();
+    private final AtomicLong failedRules = new AtomicLong();
+    private final AtomicLong groups = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong results = new AtomicLong();
+
+    private AlertsService alertsService;
+
+    private ExecutorService executor;
+
+    public void setAlertsService(AlertsService alertsService) {
+        this.alertsService = alertsService;
+    }
+
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    public void setPartitions(int numPartitions) {
+        if (numPartitions < 1) {
+            throw new IllegalArgumentException("Partitions must be positive");
+        }
+        this.numPartitions = numPartitions;
+    }
+
+    @Override
+    public synchronized void updateConditions(String expiration, Collection<FullTrigger> activeTriggers) {
+        long expirationMs = WindowRule.parseDuration(isEmpty(expiration) ? DEFAULT_EXPIRATION : expiration);
+        Map<String, List<WindowRule>> updated = new HashMap<>();
+        Set<WindowRule> active = new HashSet<>();
+        for (FullTrigger fullTrigger : activeTriggers) {
+            for (Condition condition : fullTrigger.getConditions()) {
+                if (!(condition instanceof ExternalCondition)) {
+                    continue;
+                }
+                try {
+                    WindowRule rule = new WindowRule(fullTrigger.getTrigger(), (ExternalCondition) condition,
+                            expirationMs);
+                    if (active.add(rule)) {
+                        updated.computeIfAbsent(key(rule.getTenantId(), rule.getDataId()), k -> new ArrayList<>())
+                                .add(rule);
+                    }
+                } catch (Exception e) {
+                    log.errorf("Invalid expression for condition %s: %s", condition.getConditionId(),
+                            e.getMessage());
+                    failedRules.incrementAndGet();
+                }
+            }
+        }
+        rules = updated;
+        activeRules.set(active.size());
+        // The windows of the rules not modified are kept
+        for (Partition partition : partitions()) {
+            partition.submit(() -> partition.retain(active));
+        }
+        log.infof("Updated [%s] window rules", active.size());
+    }
+
+    @Override
+    public void processEvents(TreeSet<Event> events) {
+        Map<String, List<WindowRule>> current = rules;
+        if (current.isEmpty() || isEmpty(events)) {
+            return;
+        }
+        Partition[] partitions = partitions();
+        List<List<Match>> matches = new ArrayList<>(partitions.length);
+        for (int i = 0; i < partitions.length; i++) {
+            matches.add(new ArrayList<>());
+        }
+        for (Event event : events) {
+            List<WindowRule> eventRules = current.get(key(event.getTenantId(), event.getDataId()));
+            if (eventRules == null) {
+                continue;
+            }
+            for (WindowRule rule : eventRules) {
+                String group = rule.group(event);
+                if (group != null) {
+                    int hash = 31 * rule.hashCode() + group.hashCode();
+                    matches.get((hash & Integer.MAX_VALUE) % partitions.length).add(new Match(rule, group, event));
+                }
+            }
+        }
+        // Partitions without new events also evict their windows
+        for (int i = 0; i < partitions.length; i++) {
+            List<Match> partitionMatches = matches.get(i);
+            Partition partition = partitions[i];
+            partition.submit(() -> partition.process(partitionMatches));
+        }
+        this.events.addAndGet(events.size());
+    }
+
+    @Override
+    public void sendResult(Event event) {
+        sendResults(Arrays.asList(event));
+    }
+
+    private void sendResults(List<Event> resultEvents) {
+        log.debugf("Resulted events %s", resultEvents);
+        results.addAndGet(resultEvents.size());
+        executor.submit(() -> {
+            try {
+                alertsService.sendEvents(resultEvents);
+            } catch (Exception e) {
+                log.error("Error sending result events.", e);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void stop() {
+        rules = Collections.emptyMap();
+        activeRules.set(0);
+        if (partitions != null) {
+            for (Partition partition : partitions) {
+                partition.submit(() -> partition.retain(Collections.emptySet()));
+            }
+        }
+    }
+
+    @Override
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        status.put("engine-cep-partitions", String.valueOf(numPartitions));
+        status.put("engine-cep-rules", String.valueOf(activeRules.get()));
+        status.put("engine-cep-rules-failed", String.valueOf(failedRules.get()));
+        status.put("engine-cep-groups", String.valueOf(groups.get()));
+        status.put("engine-cep-events", String.valueOf(events.get()));
+        status.put("engine-cep-results", String.valueOf(results.get()));
+        return status;
+    }
+
+    private synchronized Partition[] partitions() {
+        if (partitions == null) {
+            partitions = new Partition[numPartitions];
+            for (int i = 0; i < numPartitions; i++) {
+                partitions[i] = new Partition();
+            }
+        }
+        return partitions;
+    }
+
+    private static String key(String tenantId, String dataId) {
+        return tenantId + "|" + dataId;
+    }
+
+    private static class Match {
+        private final WindowRule rule;
+        private final String group;
+        private final Event event;
+
+        Match(WindowRule rule, String group, Event event) {
+            this.rule = rule;
+            this.group = group;
+            this.event = event;
+        }
+    }
+
+    /*
+        Owner of the windows of a subset of the groups. Its tasks are executed in order, by one thread at a time.
+     */
+    private class Partition {
+        private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final Map<WindowRule, Map<String, EventWindow>> windows = new HashMap<>();
+
+        void submit(Runnable task) {
+            pending.add(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Runnable task;
+                while ((task = pending.poll()) != null) {
+                    try {
+                        task.run();
+                    } catch (Exception e) {
+                        log.error("Error processing events.", e);
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                if (!pending.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        void process(List<Match> matches) {
+            long now = clock.getAsLong();
+            List<Event> resultEvents = new ArrayList<>();
+            evict(now, resultEvents);
+            for (Match match : matches) {
+                if (match.event.getCtime() < now - match.rule.getSpan() || !match.rule.accepts(match.event)) {
+                    continue;
+                }
+                EventWindow window = windows.computeIfAbsent(match.rule, r -> new HashMap<>())
+                        .computeIfAbsent(match.group, g -> {
+                            groups.incrementAndGet();
+                            return match.rule.newWindow();
+                        });
+                window.add(match.event);
+                if (match.rule.isTriggered(window)) {
+                    resultEvents.add(match.rule.result(match.group, window));
+                }
+            }
+            if (!resultEvents.isEmpty()) {
+                sendResults(resultEvents);
+            }
+        }
+
+        private void evict(long now, List<Event> resultEvents) {
+            for (Map.Entry<WindowRule, Map<String, EventWindow>> entry : windows.entrySet()) {
+                WindowRule rule = entry.getKey();
+                long limit = now - rule.getSpan();
+                Iterator<Map.Entry<String, EventWindow>> it = entry.getValue().entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, EventWindow> group = it.next();
+                    EventWindow window = group.getValue();
+                    if (window.oldest() >= limit || !window.evictBefore(limit)) {
+                        continue;
+                    }
+                    if (window.isEmpty()) {
+                        it.remove();
+                        groups.decrementAndGet();
+                    } else if (rule.isTriggered(window)) {
+                        resultEvents.add(rule.result(group.getKey(), window));
+                    }
+                }
+            }
+        }
+
+        void retain(Set<WindowRule> active) {
+            Iterator<Map.Entry<WindowRule, Map<String, EventWindow>>> it = windows.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<WindowRule, Map<String, EventWindow>> entry = it.next();
+                if (!active.contains(entry.getKey())) {
+                    groups.addAndGet(-entry.getValue().size());
+                    it.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.extensions;
+
+import static org.hawkular.alerts.api.util.Util.isEmpty;
+
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.condition.ExternalCondition;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+
+/**
+ * An ExternalCondition expression compiled for the {@link WindowCepEngineImpl}.
+ *
+ * It supports the same syntax than {@link Expression}, the filter() and having() sections are compiled into
+ * predicates by {@link Constraints}. Filter identifiers are the Event fields, "tags.&lt;name&gt;" and
+ * "context.&lt;name&gt;". Having identifiers are "count", "count.tags.&lt;name&gt;" and
+ * "count.context.&lt;name&gt;".
+ *
+ * Rules are equal when they are generated from the same trigger and condition with the same expression, so the
+ * state of a rule can be kept across updates of the active triggers.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class WindowRule {
+
+    private static final String CONTEXT = "context";
+    private static final String TAGS = "tags";
+
+    private static final String TOKEN_CONTEXT = CONTEXT + ".";
+    private static final String TOKEN_COUNT = "count";
+    private static final String TOKEN_COUNT_CONTEXT = "count.context.";
+    private static final String TOKEN_COUNT_TAGS = "count.tags.";
+    private static final int    TOKEN_END_PARENTHESIS = ')';
+    private static final String TOKEN_EVENT = "event";
+    private static final String TOKEN_FILTER = "filter(";
+    private static final String TOKEN_GROUP_BY = "groupBy(";
+    private static final String TOKEN_HAVING = "having(";
+    private static final String TOKEN_LENGTH = "length,";
+    private static final String TOKEN_SEPARATOR = ":";
+    private static final String TOKEN_TAGS = TAGS + ".";
+    private static final String TOKEN_TIME = "time,";
+    private static final String TOKEN_WINDOW = "window(";
+
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(d|h|ms|m|s)?");
+
+    private final String triggerId;
+    private final String conditionId;
+    private final String tenantId;
+    private final String source;
+    private final String dataId;
+    private final String alerterId;
+    private final String expression;
+    private final long expiration;
+
+    private String field;
+    private Function<Event, Object> groupBy;
+    private long time = 0;
+    private int length = 0;
+    private Predicate<Event> filter = e -> true;
+    private Predicate<EventWindow> having = w -> true;
+    private Set<String> distinctFields = new HashSet<>();
+
+    /**
+     * @param trigger the trigger of the condition
+     * @param condition the ExternalCondition with the expression
+     * @param expiration max time in milliseconds that an event is kept in a window
+     */
+    public WindowRule(Trigger trigger, ExternalCondition condition, long expiration) {
+        if (trigger == null || condition == null) {
+            throw new IllegalArgumentException("Trigger or Condition must be not null");
+        }
+        this.triggerId = trigger.getId();
+        this.conditionId = condition.getConditionId();
+        this.tenantId = trigger.getTenantId();
+        this.source = trigger.getSource();
+        this.dataId = condition.getDataId();
+        this.alerterId = condition.getAlerterId();
+        this.expression = condition.getExpression();
+        this.expiration = expiration;
+
+        if (isEmpty(expression)) {
+            throw new IllegalArgumentException("Expression must be not null");
+        }
+        String[] section = expression.split(TOKEN_SEPARATOR);
+        if (section.length < 2 || section.length > 5) {
+            throw new IllegalArgumentException("Wrong sections for expression [" + expression + "]");
+        }
+        if (!section[0].equals(TOKEN_EVENT)) {
+            throw new IllegalArgumentException("Expression [" + expression + "] must start with 'event'");
+        }
+        if (!section[1].startsWith(TOKEN_GROUP_BY)) {
+            throw new IllegalArgumentException("Expression [" + expression + "] must contain a 'groupBy()' section");
+        }
+        parseGroupBy(inner(section[1], TOKEN_GROUP_BY));
+        for (int i = 2; i < section.length; i++) {
+            if (section[i].startsWith(TOKEN_WINDOW)) {
+                parseWindow(inner(section[i], TOKEN_WINDOW));
+            } else if (section[i].startsWith(TOKEN_FILTER)) {
+                filter = Constraints.compile(inner(section[i], TOKEN_FILTER), WindowRule::eventField);
+            } else if (section[i].startsWith(TOKEN_HAVING)) {
+                having = Constraints.compile(inner(section[i], TOKEN_HAVING), this::windowField);
+            } else {
+                throw new IllegalArgumentException("Expression [" + expression + "] contains an invalid '" + section[i]
+                        + "' section");
+            }
+        }
+    }
+
+    public String getTenantId() {
+        return tenantId;
+    }
+
+    public String getDataId() {
+        return dataId;
+    }
+
+    /**
+     * @return events with a ctime older than the current time minus the span are evicted from the windows
+     */
+    public long getSpan() {
+        return time > 0 ? Math.min(time, expiration) : expiration;
+    }
+
+    /**
+     * @return the group of an event or null if the event does not belong to the rule
+     */
+    public String group(Event event) {
+        if (!tenantId.equals(event.getTenantId()) || !Objects.equals(dataId, event.getDataId())
+                || !Objects.equals(source, event.getDataSource())) {
+            return null;
+        }
+        Object value = groupBy.apply(event);
+        return value == null ? null : value.toString();
+    }
+
+    public boolean accepts(Event event) {
+        return filter.test(event);
+    }
+
+    public EventWindow newWindow() {
+        return new EventWindow(length, distinctFields);
+    }
+
+    public boolean isTriggered(EventWindow window) {
+        return !window.isEmpty() && having.test(window);
+    }
+
+    /**
+     * @return the Event sent to the alerting engine when the window of a group triggers the rule
+     */
+    public Event result(String group, EventWindow window) {
+        Event result = new Event(tenantId,
+                UUID.randomUUID().toString(),
+                dataId,
+                alerterId,
+                expression.replaceAll("\"", "'"));
+        result.addContext("events", JsonUtil.toJson(window.events()));
+        result.addContext("processed", "true");
+        result.addContext(field, group);
+        return result;
+    }
+
+    private void parseGroupBy(String innerSection) {
+        if (innerSection.startsWith(TOKEN_TAGS)) {
+            field = innerSection.substring(TOKEN_TAGS.length());
+        } else if (innerSection.startsWith(TOKEN_CONTEXT)) {
+            field = innerSection.substring(TOKEN_CONTEXT.length());
+        } else {
+            field = innerSection;
+        }
+        groupBy = eventField(innerSection);
+    }
+
+    private void parseWindow(String innerSection) {
+        if (innerSection.startsWith(TOKEN_TIME)) {
+            time = parseDuration(innerSection.substring(TOKEN_TIME.length()).trim());
+        } else if (innerSection.startsWith(TOKEN_LENGTH)) {
+            try {
+                length = Integer.parseInt(innerSection.substring(TOKEN_LENGTH.length()).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Expression [" + expression + "] contains an invalid length");
+            }
+            if (length < 1) {
+                throw new IllegalArgumentException("Expression [" + expression + "] contains an invalid length");
+            }
+        } else {
+            throw new IllegalArgumentException("Expression [" + expression + "] must contain a valid 'time' or "
+                    + "'length' token");
+        }
+    }
+
+    private String inner(String section, String token) {
+        int endSection = section.lastIndexOf(TOKEN_END_PARENTHESIS);
+        if (endSection == -1) {
+            throw new IllegalArgumentException("Expression [" + section + " must contain a valid '" + token + ")'");
+        }
+        return section.substring(token.length(), endSection).trim();
+    }
+
+    private Function<EventWindow, Object> windowField(String name) {
+        if (name.equals(TOKEN_COUNT)) {
+            return w -> w.count();
+        }
+        String distinctField;
+        if (name.startsWith(TOKEN_COUNT_TAGS)) {
+            distinctField = TOKEN_TAGS + name.substring(TOKEN_COUNT_TAGS.length());
+        } else if (name.startsWith(TOKEN_COUNT_CONTEXT)) {
+            distinctField = TOKEN_CONTEXT + name.substring(TOKEN_COUNT_CONTEXT.length());
+        } else {
+            throw new IllegalArgumentException("Expression [" + expression + "] contains an invalid having field '"
+                    + name + "'");
+        }
+        distinctFields.add(distinctField);
+        return w -> w.countDistinct(distinctField);
+    }
+
+    static Function<Event, Object> eventField(String name) {
+        if (name.startsWith(TOKEN_TAGS)) {
+            String tag = name.substring(TOKEN_TAGS.length());
+            return e -> e.getTags() == null ? null : e.getTags().get(tag);
+        }
+        if (name.startsWith(TOKEN_CONTEXT)) {
+            String key = name.substring(TOKEN_CONTEXT.length());
+            return e -> e.getContext() == null ? null : e.getContext().get(key);
+        }
+        switch (name) {
+            case "tenantId":
+                return Event::getTenantId;
+            case "id":
+                return Event::getId;
+            case "ctime":
+                return Event::getCtime;
+            case "dataSource":
+                return Event::getDataSource;
+            case "dataId":
+                return Event::getDataId;
+            case "category":
+                return Event::getCategory;
+            case "text":
+                return Event::getText;
+            case "eventType":
+                return Event::getEventType;
+            default:
+                throw new IllegalArgumentException("Invalid event field '" + name + "'");
+        }
+    }
+
+    /**
+     * @param duration a time value as [ n "d" ][ n "h" ][ n "m" ][ n "s" ][ n [ "ms" ]]
+     * @return the duration in milliseconds
+     */
+    public static long parseDuration(String duration) {
+        if (isEmpty(duration)) {
+            throw new IllegalArgumentException("Duration must be not empty");
+        }
+        Matcher matcher = DURATION.matcher(duration);
+        long millis = 0;
+        int index = 0;
+        while (index < duration.length()) {
+            if (!matcher.find(index) || matcher.start() != index) {
+                throw new IllegalArgumentException("Invalid duration [" + duration + "]");
+            }
+            long value = Long.parseLong(matcher.group(1));
+            String unit = matcher.group(2) == null ? "ms" : matcher.group(2);
+            switch (unit) {
+                case "d":
+                    millis += value * 24 * 60 * 60 * 1000;
+                    break;
+                case "h":
+                    millis += value * 60 * 60 * 1000;
+                    break;
+                case "m":
+                    millis += value * 60 * 1000;
+                    break;
+                case "s":
+                    millis += value * 1000;
+                    break;
+                default:
+                    millis += value;
+            }
+            index = matcher.end();
+        }
+        return millis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        WindowRule that = (WindowRule) o;
+
+        if (expiration != that.expiration) return false;
+        if (!tenantId.equals(that.tenantId)) return false;
+        if (!triggerId.equals(that.triggerId)) return false;
+        if (conditionId != null ? !conditionId.equals(that.conditionId) : that.conditionId != null) return false;
+        if (source != null ? !source.equals(that.source) : that.source != null) return false;
+        if (dataId != null ? !dataId.equals(that.dataId) : that.dataId != null) return false;
+        if (alerterId != null ? !alerterId.equals(that.alerterId) : that.alerterId != null) return false;
+        return expression.equals(that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = tenantId.hashCode();
+        result = 31 * result + triggerId.hashCode();
+        result = 31 * result + (conditionId != null ? conditionId.hashCode() : 0);
+        result = 31 * result + (source != null ? source.hashCode() : 0);
+        result = 31 * result + (dataId != null ? dataId.hashCode() : 0);
+        result = 31 * result + (alerterId != null ? alerterId.hashCode() : 0);
+        result = 31 * result + expression.hashCode();
+        result = 31 * result + (int) (expiration ^ (expiration >>> 32));
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "WindowRule" + "[tenantId='" + tenantId + "', triggerId='" + triggerId + "', conditionId='"
+                + conditionId + "', expression='" + expression + "']";
+    }
+}
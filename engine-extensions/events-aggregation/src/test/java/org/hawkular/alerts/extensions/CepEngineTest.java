@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.extensions;
+
+import static org.hawkular.alerts.api.model.trigger.Mode.FIRING;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.hawkular.alerts.api.model.condition.ExternalCondition;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.model.trigger.TriggerKey;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class CepEngineTest {
+
+    public static final String TEST_TENANT = "28026b36-8fe4-4332-84c8-524e173a68bf";
+    public static final String DATA_ID = "data-id";
+    public static final String ALERTER_ID = "EventsAggregation";
+
+    ExecutorService executor;
+    CepEngineImpl cep;
+    List<Event> results;
+
+    public static String uuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void startEngine() {
+        // The session runs fireUntilHalt() on one of the threads
+        executor = Executors.newCachedThreadPool();
+        results = Collections.synchronizedList(new ArrayList<>());
+        cep = new CepEngineImpl();
+        cep.setExecutor(executor);
+        cep.setAlertsService((AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class[]{AlertsService.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendEvents")) {
+                        results.addAll((Collection<Event>) args[0]);
+                    }
+                    return null;
+                }));
+    }
+
+    @After
+    public void stopEngine() {
+        cep.stop();
+        executor.shutdownNow();
+    }
+
+    private FullTrigger trigger(String triggerId, String expression) {
+        Trigger trigger = new Trigger(TEST_TENANT, triggerId, "Trigger " + triggerId);
+        ExternalCondition condition = new ExternalCondition(trigger.getId(), FIRING, DATA_ID, ALERTER_ID,
+                expression);
+        return new FullTrigger(trigger, null, Arrays.asList(condition));
+    }
+
+    private Event event(String accountId, String location) {
+        Event event = new Event(TEST_TENANT, uuid(), System.currentTimeMillis(), DATA_ID, "TraceCompletion",
+                "Buy Book");
+        event.addTag("accountId", accountId);
+        event.addTag("location", location);
+        return event;
+    }
+
+    private String packageName(String triggerId) {
+        return cep.deployed.get(new TriggerKey(TEST_TENANT, triggerId)).packageName;
+    }
+
+    /*
+        Group facts of the declared types of a trigger package
+     */
+    private int groupFacts(String packageName) {
+        return cep.kieSession.getObjects(o -> o.getClass().getName().startsWith(packageName + ".")).size();
+    }
+
+    private void waitFor(BooleanSupplier condition) throws Exception {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Timeout waiting for the CEP session", System.currentTimeMillis() < timeout);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void updateOneTriggerKeepsOtherWindows() throws Exception {
+        String byAccount = "event:groupBy(tags.accountId):window(time,10m):having(count > 1)";
+        String byLocation = "event:groupBy(tags.location):window(time,10m):having(count > 1)";
+        String changed = "event:groupBy(tags.accountId):window(time,10m):having(count > 3)";
+        String updated = "event:groupBy(tags.accountId):window(time,10m):having(count > 4)";
+
+        cep.updateConditions("30m", Arrays.asList(trigger("trigger0", byAccount), trigger("trigger1", byLocation),
+                trigger("trigger2", changed)));
+        String package0 = packageName("trigger0");
+        String package1 = packageName("trigger1");
+        String package2 = packageName("trigger2");
+
+        cep.processEvents(new TreeSet<>(Arrays.asList(event("user1", "ip1"))));
+        waitFor(() -> groupFacts(package0) == 1 && groupFacts(package1) == 1 && groupFacts(package2) == 1);
+
+        // Only the changed trigger is redeployed, its group facts are removed with its old package
+        cep.updateConditions("30m", Arrays.asList(trigger("trigger0", byAccount), trigger("trigger1", byLocation),
+                trigger("trigger2", updated)));
+        Assert.assertEquals(package0, packageName("trigger0"));
+        Assert.assertEquals(package1, packageName("trigger1"));
+        Assert.assertNotEquals(package2, packageName("trigger2"));
+        Assert.assertEquals(0, groupFacts(package2));
+
+        Map<String, String> status = cep.getStatus();
+        Assert.assertEquals("3", status.get("engine-cep-triggers"));
+        Assert.assertEquals("2", status.get("engine-cep-updates"));
+        Assert.assertEquals("1", status.get("engine-cep-rebuilds"));
+        Assert.assertEquals("4", status.get("engine-cep-packages-added"));
+        Assert.assertEquals("1", status.get("engine-cep-packages-removed"));
+        Assert.assertEquals("0", status.get("engine-cep-packages-failed"));
+        Assert.assertEquals("0", status.get("engine-cep-lost-events"));
+
+        // The windows of the unchanged triggers kept the first event, the second one fires them
+        cep.processEvents(new TreeSet<>(Arrays.asList(event("user1", "ip1"))));
+        waitFor(() -> results.size() >= 2);
+        Thread.sleep(500);
+
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(byAccount, byLocation)),
+                results.stream().map(Event::getText).collect(Collectors.toSet()));
+        results.stream().forEach(e -> Assert.assertEquals(ALERTER_ID, e.getCategory()));
+    }
+
+    @Test
+    public void expirationChangeRebuildsSession() throws Exception {
+        String byAccount = "event:groupBy(tags.accountId):window(time,10m):having(count > 1)";
+
+        cep.updateConditions("30m", Arrays.asList(trigger("trigger0", byAccount)));
+        cep.processEvents(new TreeSet<>(Arrays.asList(event("user1", "ip1"))));
+        waitFor(() -> groupFacts(packageName("trigger0")) == 1);
+
+        // A new expiration needs a new session, the events of the old one are discarded
+        cep.updateConditions("10m", Arrays.asList(trigger("trigger0", byAccount)));
+        cep.processEvents(new TreeSet<>(Arrays.asList(event("user1", "ip1"))));
+        Thread.sleep(500);
+
+        Assert.assertTrue(results.isEmpty());
+        Map<String, String> status = cep.getStatus();
+        Assert.assertEquals("2", status.get("engine-cep-rebuilds"));
+        Assert.assertEquals("1", status.get("engine-cep-lost-events"));
+        Assert.assertEquals("2", status.get("engine-cep-packages-added"));
+    }
+}
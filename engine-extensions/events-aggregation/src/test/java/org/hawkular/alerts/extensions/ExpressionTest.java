@@ -21,7 +21,9 @@ import static org.hawkular.alerts.api.model.trigger.Mode.FIRING;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -41,7 +43,11 @@ import org.kie.api.io.ResourceType;
 import org.kie.api.runtime.KieSession;
 import org.kie.api.runtime.KieSessionConfiguration;
 import org.kie.api.runtime.conf.ClockTypeOption;
+import org.kie.internal.KnowledgeBase;
 import org.kie.internal.KnowledgeBaseFactory;
+import org.kie.internal.builder.KnowledgeBuilder;
+import org.kie.internal.builder.KnowledgeBuilderFactory;
+import org.kie.internal.io.ResourceFactory;
 import org.kie.internal.utils.KieHelper;
 
 /**
@@ -91,6 +97,11 @@ public class ExpressionTest {
 
             @Override
             public void stop() { }
+
+            @Override
+            public Map<String, String> getStatus() {
+                return Collections.emptyMap();
+            }
         });
     }
 
@@ -207,6 +218,79 @@ public class ExpressionTest {
         });
     }
 
+    private void addPackage(String drl) {
+        KnowledgeBuilder kbuilder = KnowledgeBuilderFactory.newKnowledgeBuilder((KnowledgeBase) kieBase);
+        kbuilder.add(ResourceFactory.newByteArrayResource(drl.getBytes()), ResourceType.DRL);
+        Assert.assertFalse(kbuilder.getErrors().toString(), kbuilder.hasErrors());
+        ((KnowledgeBase) kieBase).addKnowledgePackages(kbuilder.getKnowledgePackages());
+    }
+
+    @Test
+    public void incrementalTriggerPackages() {
+        Trigger triggerA = new Trigger(TEST_TENANT, "trigger-a", "Trigger A");
+        String expressionA = "event:groupBy(context.accountId):window(time,10s):having(count > 2)";
+        ExternalCondition conditionA = new ExternalCondition(triggerA.getId(), FIRING, DATA_ID, ALERTER_ID,
+                expressionA);
+        List<FullTrigger> fullTriggerA = Arrays.asList(new FullTrigger(triggerA, null, Arrays.asList(conditionA)));
+        Expression expA = new Expression("org.hawkular.alerts.extension.trigger1", "10m", fullTriggerA);
+
+        // Same trigger generates same rules under any package
+        Assert.assertEquals(expA.getRules(),
+                new Expression("org.hawkular.alerts.extension.trigger2", "10m", fullTriggerA).getRules());
+
+        Trigger triggerB = new Trigger(TEST_TENANT, "trigger-b", "Trigger B");
+        String expressionB = "event:groupBy(context.accountId):window(time,10s):having(count > 5)";
+        ExternalCondition conditionB = new ExternalCondition(triggerB.getId(), FIRING, DATA_ID, ALERTER_ID,
+                expressionB);
+        Expression expB = new Expression("org.hawkular.alerts.extension.trigger3", "10m",
+                Arrays.asList(new FullTrigger(triggerB, null, Arrays.asList(conditionB))));
+
+        startSession(Expression.getBaseDrl("10m"));
+        addPackage(expA.getDrl());
+
+        clock.setStartupTime(1);
+        long now = clock.getCurrentTime();
+
+        Event e1 = new Event(TEST_TENANT, uuid(), now, DATA_ID, "TraceCompletion", "E1 - Buy Book");
+        e1.addContext("accountId", "user1");
+
+        insert(e1);
+
+        now = clock.advanceTime(1000, TimeUnit.MILLISECONDS);
+
+        Event e2 = new Event(TEST_TENANT, uuid(), now, DATA_ID, "TraceCompletion", "E2 - Buy Music");
+        e2.addContext("accountId", "user1");
+
+        insert(e2);
+
+        // Adding a trigger keeps the window of the deployed ones
+        addPackage(expB.getDrl());
+
+        now = clock.advanceTime(1000, TimeUnit.MILLISECONDS);
+
+        Event e3 = new Event(TEST_TENANT, uuid(), now, DATA_ID, "TraceCompletion", "E3 - Buy Groceries");
+        e3.addContext("accountId", "user1");
+
+        insert(e3);
+
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(expressionA, results.get(0).getText());
+
+        // Removed trigger does not fire anymore
+        kieBase.removeKiePackage("org.hawkular.alerts.extension.trigger1");
+
+        now = clock.advanceTime(1000, TimeUnit.MILLISECONDS);
+
+        Event e4 = new Event(TEST_TENANT, uuid(), now, DATA_ID, "TraceCompletion", "E4 - Buy VideoGames");
+        e4.addContext("accountId", "user1");
+
+        insert(e4);
+
+        stopSession();
+
+        Assert.assertEquals(1, results.size());
+    }
+
     @Test
     public void fraudScenarioDsl() {
         Trigger trigger = new Trigger(TEST_TENANT, "fraud-scenario", "Fraud Scenario");
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.extensions;
+
+import static org.hawkular.alerts.api.model.trigger.Mode.FIRING;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.json.JsonUtil;
+import org.hawkular.alerts.api.model.condition.ExternalCondition;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.FullTrigger;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class WindowCepEngineTest {
+
+    public static final String TEST_TENANT = "28026b36-8fe4-4332-84c8-524e173a68bf";
+    public static final String DATA_ID = "data-id";
+    public static final String ALERTER_ID = "EventsAggregation";
+
+    ExecutorService executor;
+    WindowCepEngineImpl cep;
+    List<Event> results;
+    AtomicLong clock;
+
+    public static String uuid() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void startEngine() {
+        executor = Executors.newSingleThreadExecutor();
+        results = Collections.synchronizedList(new ArrayList<>());
+        clock = new AtomicLong(1);
+        cep = new WindowCepEngineImpl();
+        cep.setExecutor(executor);
+        cep.setPartitions(4);
+        cep.setAlertsService((AlertsService) Proxy.newProxyInstance(AlertsService.class.getClassLoader(),
+                new Class[]{AlertsService.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendEvents")) {
+                        results.addAll((Collection<Event>) args[0]);
+                    }
+                    return null;
+                }));
+        cep.clock = clock::get;
+    }
+
+    @After
+    public void stopEngine() {
+        cep.stop();
+        executor.shutdown();
+    }
+
+    private void updateConditions(String... expressions) {
+        List<FullTrigger> activeTriggers = new ArrayList<>();
+        for (int i = 0; i < expressions.length; i++) {
+            Trigger trigger = new Trigger(TEST_TENANT, "trigger" + i, "Trigger " + i);
+            ExternalCondition condition = new ExternalCondition(trigger.getId(), FIRING, DATA_ID, ALERTER_ID,
+                    expressions[i]);
+            activeTriggers.add(new FullTrigger(trigger, null, Arrays.asList(condition)));
+        }
+        cep.updateConditions("30m", activeTriggers);
+    }
+
+    private Event event(String category, String text, String... tags) {
+        Event event = new Event(TEST_TENANT, uuid(), clock.get(), DATA_ID, category, text);
+        for (int i = 0; i < tags.length; i += 2) {
+            event.addTag(tags[i], tags[i + 1]);
+        }
+        return event;
+    }
+
+    private void insert(Event... events) throws Exception {
+        cep.processEvents(new TreeSet<>(Arrays.asList(events)));
+        // First task waits for the partitions, second one for the results sent by them
+        executor.submit(() -> { }).get();
+        executor.submit(() -> { }).get();
+    }
+
+    @Test
+    public void marketingScenario() throws Exception {
+        updateConditions("event:groupBy(tags.accountId):window(time,10s):having(count > 2)");
+
+        insert(event("TraceCompletion", "E1 - Buy Book", "accountId", "user1"),
+                event("TraceCompletion", "E6 - Buy Book", "accountId", "user2"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "E2 - Buy Music", "accountId", "user1"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "E3 - Buy Groceries", "accountId", "user1"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "E4 - Buy VideoGames", "accountId", "user1"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "E5 - Buy VideoGames", "accountId", "user1"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "E7 - Buy Music", "accountId", "user2"));
+        clock.addAndGet(6000);
+        insert(event("TraceCompletion", "E8 - Buy Groceries", "accountId", "user2"));
+
+        // Fired by E3, E4, E5 and by the eviction of E1
+        Assert.assertEquals(4, results.size());
+        results.stream().forEach(e -> {
+            Assert.assertEquals("user1", e.getContext().get("accountId"));
+            Assert.assertEquals("true", e.getContext().get("processed"));
+            Assert.assertEquals(ALERTER_ID, e.getCategory());
+        });
+    }
+
+    @Test
+    public void fraudScenario() throws Exception {
+        updateConditions("event:groupBy(tags.accountId):window(time,10s):having(count > 1, count.tags.location > 1)");
+
+        insert(event("TraceCompletion", "Buy Book", "accountId", "user1", "location", "ip1"),
+                event("TraceCompletion", "Buy Book", "accountId", "user2", "location", "ip3"),
+                event("TraceCompletion", "Buy Book", "accountId", "user3", "location", "ip10"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "Buy Music", "accountId", "user1", "location", "ip1"),
+                event("TraceCompletion", "Buy Music", "accountId", "user3", "location", "ip10"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "Buy Groceries", "accountId", "user1", "location", "ip1"),
+                event("TraceCompletion", "Buy Groceries", "accountId", "user3", "location", "ip10"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "Buy VideoGames", "accountId", "user1", "location", "ip2"),
+                event("TraceCompletion", "Buy VideoGames", "accountId", "user3", "location", "ip10"));
+        clock.addAndGet(1000);
+        insert(event("TraceCompletion", "Buy VideoGames", "accountId", "user1", "location", "ip1"),
+                event("TraceCompletion", "Buy VideoGames", "accountId", "user3", "location", "ip10"));
+        clock.addAndGet(11000);
+        insert(event("TraceCompletion", "Buy Music", "accountId", "user2", "location", "ip4"));
+        clock.addAndGet(5000);
+        insert(event("TraceCompletion", "Buy Groceries", "accountId", "user2", "location", "ip5"));
+
+        Assert.assertEquals(3, results.size());
+        results.stream().forEach(e -> {
+            String accountId = e.getContext().get("accountId");
+            Assert.assertTrue(accountId.equals("user1") || accountId.equals("user2"));
+        });
+    }
+
+    @Test
+    public void customerRetentionScenario() throws Exception {
+        updateConditions("event:groupBy(tags.traceId):" +
+                "filter((category == \"Credit Check\" && text == \"Exceptionally Good\") || " +
+                "(category == \"Stock Check\" && text == \"Out of Stock\")):" +
+                "having(count > 1, count.tags.accountId == 1)");
+
+        insert(event("Credit Check", "Exceptionally Good", "traceId", "trace1", "accountId", "user1"),
+                event("Credit Check", "Exceptionally Good", "traceId", "trace4", "accountId", "user2"));
+        clock.addAndGet(1000);
+        insert(event("Stock Check", "Out of Stock", "traceId", "trace1", "accountId", "user1"),
+                event("Stock Check", "Out of Stock", "traceId", "trace4", "accountId", "user2"));
+        clock.addAndGet(1000);
+        insert(event("Credit Check", "Good", "traceId", "trace2", "accountId", "user1"),
+                event("Credit Check", "Good", "traceId", "trace5", "accountId", "user2"));
+        clock.addAndGet(1000);
+        insert(event("Stock Check", "Out of Stock", "traceId", "trace2", "accountId", "user1"),
+                event("Stock Check", "Out of Stock", "traceId", "trace5", "accountId", "user2"));
+        clock.addAndGet(1000);
+        insert(event("Credit Check", "Exceptionally Good", "traceId", "trace3", "accountId", "user1"),
+                event("Credit Check", "Exceptionally Good", "traceId", "trace6", "accountId", "user2"));
+        clock.addAndGet(1000);
+        insert(event("Stock Check", "Available", "traceId", "trace3", "accountId", "user1"),
+                event("Stock Check", "Available", "traceId", "trace6", "accountId", "user2"));
+
+        Assert.assertEquals(2, results.size());
+        results.stream().forEach(e -> {
+            String traceId = e.getContext().get("traceId");
+            Assert.assertTrue(traceId.equals("trace1") || traceId.equals("trace4"));
+        });
+    }
+
+    @Test
+    public void lengthWindow() throws Exception {
+        updateConditions("event:groupBy(tags.accountId):window(length,2):having(count.tags.location > 1)");
+
+        insert(event("TraceCompletion", "Buy Book", "accountId", "user1", "location", "ip1"));
+        insert(event("TraceCompletion", "Buy Book", "accountId", "user1", "location", "ip2"));
+        insert(event("TraceCompletion", "Buy Book", "accountId", "user1", "location", "ip2"));
+
+        // Third event pushes ip1 out of the window, only the second one fires
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals(2, JsonUtil.fromJson(results.get(0).getContext().get("events"), List.class).size());
+    }
+
+    @Test
+    public void windowsKeptOnUpdate() throws Exception {
+        String expression = "event:groupBy(tags.accountId):window(time,10s):having(count > 2)";
+        updateConditions(expression);
+
+        insert(event("TraceCompletion", "Buy Book", "accountId", "user1"));
+        insert(event("TraceCompletion", "Buy Music", "accountId", "user1"));
+
+        // A new trigger does not reset the window of the existing one
+        updateConditions(expression, "event:groupBy(tags.accountId):having(count > 5)");
+        insert(event("TraceCompletion", "Buy Groceries", "accountId", "user1"));
+
+        Assert.assertEquals(1, results.size());
+        Assert.assertEquals("3", cep.getStatus().get("engine-cep-events"));
+        Assert.assertEquals("2", cep.getStatus().get("engine-cep-rules"));
+    }
+
+    @Test
+    public void compileConstraints() {
+        Event event = new Event(TEST_TENANT, uuid(), 1, DATA_ID, "Credit Check", "Good");
+        event.addContext("duration", "1500");
+        event.addTag("location", "ip1");
+
+        Predicate<Event> predicate = Constraints.compile("context.duration > 1000, tags.location == 'ip1'",
+                WindowRule::eventField);
+        Assert.assertTrue(predicate.test(event));
+
+        predicate = Constraints.compile("!(category == \"Credit Check\") || context.missing != null",
+                WindowRule::eventField);
+        Assert.assertFalse(predicate.test(event));
+
+        try {
+            Constraints.compile("category = \"Credit Check\"", WindowRule::eventField);
+            Assert.fail("It should throw an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+
+        Assert.assertEquals(90061001L, WindowRule.parseDuration("1d1h1m1s1ms"));
+        Assert.assertEquals(500L, WindowRule.parseDuration("500"));
+    }
+}
@@ -39,12 +39,15 @@ import org.hawkular.alerts.engine.impl.StatusServiceImpl;
 import org.hawkular.alerts.engine.impl.ispn.IspnActionsServiceImpl;
 import org.hawkular.alerts.engine.impl.ispn.IspnAlertsServiceImpl;
 import org.hawkular.alerts.engine.impl.ispn.IspnDefinitionsServiceImpl;
+import org.hawkular.alerts.extensions.CepEngine;
 import org.hawkular.alerts.extensions.CepEngineImpl;
 import org.hawkular.alerts.extensions.EventsAggregationExtension;
+import org.hawkular.alerts.extensions.WindowCepEngineImpl;
 import org.hawkular.alerts.filter.CacheClient;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
 import org.hawkular.commons.properties.HawkularProperties;
+import org.infinispan.Cache;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.query.Search;
 import org.infinispan.query.SearchManager;
@@ -58,6 +61,16 @@ public class StandaloneAlerts {
     private static final MsgLogger log = MsgLogging.getMsgLogger(StandaloneAlerts.class);
     private static final String ISPN_BACKEND_REINDEX = "hawkular-alerts.backend-reindex";
     private static final String ISPN_BACKEND_REINDEX_DEFAULT = "false";
+    /*
+        Version of the indexed fields of the backend, it must be increased when a change needs a reindex of the
+        existing entries. 2: sortable fields and severity/status ordinals of IspnEvent.
+     */
+    private static final String ISPN_BACKEND_SCHEMA_PK = "Schema-backend";
+    private static final String ISPN_BACKEND_SCHEMA_VERSION = "2";
+    private static final String CEP_ENGINE = "hawkular-alerts.extension-cep-engine";
+    // "drools" evaluates the expressions as CEP rules, "window" evaluates them natively
+    private static final String CEP_ENGINE_DEFAULT = "drools";
+    private static final String CEP_ENGINE_WINDOW = "window";
     private static StandaloneAlerts instance;
     private static ExecutorService executor;
     private static boolean cass;
@@ -71,9 +84,8 @@ public class StandaloneAlerts {
     private AlertsContext alertsContext;
     private AlertsEngineImpl engine;
     private CacheClient dataIdCache;
-    private CepEngineImpl cepEngineImpl;
+    private CepEngine cepEngine;
     private DataDrivenGroupCacheManager dataDrivenGroupCacheManager;
-    private DroolsRulesEngineImpl rules;
     private EmbeddedCacheManager cacheManager;
     private EventsAggregationExtension eventsAggregationExtension;
     private ExtensionsServiceImpl extensions;
@@ -96,7 +108,6 @@ public class StandaloneAlerts {
         }
 
         dataIdCache = new CacheClient();
-        rules = new DroolsRulesEngineImpl();
         engine = new AlertsEngineImpl();
         properties = new PropertiesServiceImpl();
         alertsContext = new AlertsContext();
@@ -107,22 +118,33 @@ public class StandaloneAlerts {
         incoming = new IncomingDataManagerImpl();
         actionsCacheManager = new ActionsCacheManager();
         publishCacheManager = new PublishCacheManager();
-        cepEngineImpl = new CepEngineImpl();
         eventsAggregationExtension = new EventsAggregationExtension();
 
         log.info("Hawkular Alerting uses Infinispan backend");
         ispnReindex = HawkularProperties.getProperty(ISPN_BACKEND_REINDEX, ISPN_BACKEND_REINDEX_DEFAULT).equals("true");
-
         if (ispnReindex) {
             log.info("Hawkular Alerting started with hawkular-alerts.backend-reindex=true");
+        }
+
+        Cache<String, Object> backend = cacheManager.getCache("backend");
+        Object schemaVersion = backend.get(ISPN_BACKEND_SCHEMA_PK);
+        if (!ISPN_BACKEND_SCHEMA_VERSION.equals(schemaVersion) && !backend.isEmpty()) {
+            log.info("Ispn [backend] schema version [" + schemaVersion + "] differs from ["
+                    + ISPN_BACKEND_SCHEMA_VERSION + "], existing entries must be reindexed");
+            ispnReindex = true;
+        }
+
+        if (ispnReindex) {
             log.info("Reindexing Ispn [backend] started.");
             long startReindex = System.currentTimeMillis();
-            SearchManager searchManager = Search
-                    .getSearchManager(IspnCacheManager.getCacheManager().getCache("backend"));
+            SearchManager searchManager = Search.getSearchManager(backend);
             searchManager.getMassIndexer().start();
             long stopReindex = System.currentTimeMillis();
             log.info("Reindexing Ispn [backend] completed in [" + (stopReindex - startReindex) + " ms]");
         }
+        if (!ISPN_BACKEND_SCHEMA_VERSION.equals(schemaVersion)) {
+            backend.put(ISPN_BACKEND_SCHEMA_PK, ISPN_BACKEND_SCHEMA_VERSION);
+        }
 
         ispnActions = new IspnActionsServiceImpl();
         ispnAlerts = new IspnAlertsServiceImpl();
@@ -136,6 +158,7 @@ public class StandaloneAlerts {
         ispnAlerts.setAlertsEngine(engine);
         ispnAlerts.setDefinitionsService(ispnDefinitions);
         ispnAlerts.setIncomingDataManager(incoming);
+        ispnAlerts.setPartitionManager(partitionManager);
         ispnAlerts.setProperties(properties);
 
         ispnDefinitions.setAlertsEngine(engine);
@@ -145,6 +168,7 @@ public class StandaloneAlerts {
 
         actionsCacheManager.setDefinitions(ispnDefinitions);
         actionsCacheManager.setGlobalActionsCache(cacheManager.getCache("globalActions"));
+        actionsCacheManager.setActionsCache(cacheManager.getCache("actions"));
 
         alertsContext.setPartitionManager(partitionManager);
 
@@ -158,7 +182,7 @@ public class StandaloneAlerts {
         engine.setExecutor(executor);
         engine.setExtensionsService(extensions);
         engine.setPartitionManager(partitionManager);
-        engine.setRules(rules);
+        engine.setRulesFactory(DroolsRulesEngineImpl::new);
 
         incoming.setAlertsEngine(engine);
         incoming.setDataDrivenGroupCacheManager(dataDrivenGroupCacheManager);
@@ -171,18 +195,32 @@ public class StandaloneAlerts {
 
         actionsCacheManager.setDefinitions(ispnDefinitions);
         actionsCacheManager.setGlobalActionsCache(cacheManager.getCache("globalActions"));
+        actionsCacheManager.setActionsCache(cacheManager.getCache("actions"));
 
         publishCacheManager.setDefinitions(ispnDefinitions);
         publishCacheManager.setProperties(properties);
         publishCacheManager.setPublishCache(cacheManager.getCache("publish"));
         publishCacheManager.setPublishDataIdsCache(cacheManager.getCache("dataIds"));
 
+        status.setActionsService(ispnActions);
+        status.setAlertsEngine(engine);
         status.setPartitionManager(partitionManager);
 
-        cepEngineImpl.setAlertsService(ispnAlerts);
-        cepEngineImpl.setExecutor(executor);
+        if (CEP_ENGINE_WINDOW.equals(HawkularProperties.getProperty(CEP_ENGINE, CEP_ENGINE_DEFAULT))) {
+            WindowCepEngineImpl windowCepEngine = new WindowCepEngineImpl();
+            windowCepEngine.setAlertsService(ispnAlerts);
+            windowCepEngine.setExecutor(executor);
+            cepEngine = windowCepEngine;
+        } else {
+            CepEngineImpl cepEngineImpl = new CepEngineImpl();
+            cepEngineImpl.setAlertsService(ispnAlerts);
+            cepEngineImpl.setExecutor(executor);
+            cepEngine = cepEngineImpl;
+        }
+
+        status.setCepEngine(cepEngine);
 
-        eventsAggregationExtension.setCep(cepEngineImpl);
+        eventsAggregationExtension.setCep(cepEngine);
         eventsAggregationExtension.setDefinitions(ispnDefinitions);
         eventsAggregationExtension.setExtensions(extensions);
         eventsAggregationExtension.setProperties(properties);
@@ -223,6 +261,7 @@ public class StandaloneAlerts {
     public static void stop() {
         if (instance != null) {
             instance.engine.shutdown();
+            instance.ispnActions.shutdown();
             instance.partitionManager.shutdown();
             IspnCacheManager.stop();
             instance = null;
@@ -257,6 +296,13 @@ public class StandaloneAlerts {
         return instance.status;
     }
 
+    public static CacheClient getDataIdCache() {
+        if (instance == null) {
+            init();
+        }
+        return instance.dataIdCache;
+    }
+
     public class AlertsThreadFactory implements ThreadFactory {
         private int count = 0;
 
@@ -19,11 +19,15 @@ package org.hawkular.alerts.engine.cache;
 import static org.hawkular.alerts.api.services.DefinitionsEvent.Type.ACTION_DEFINITION_CREATE;
 import static org.hawkular.alerts.api.services.DefinitionsEvent.Type.ACTION_DEFINITION_REMOVE;
 import static org.hawkular.alerts.api.services.DefinitionsEvent.Type.ACTION_DEFINITION_UPDATE;
+import static org.hawkular.alerts.api.services.DefinitionsEvent.Type.ACTION_PLUGIN_CHANGE;
 
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import org.hawkular.alerts.api.model.action.ActionDefinition;
 import org.hawkular.alerts.api.services.DefinitionsService;
@@ -33,7 +37,12 @@ import org.hawkular.commons.log.MsgLogging;
 import org.infinispan.Cache;
 
 /**
- * It manages the cache of global actions.
+ * It manages the cache of global actions and the cache of resolved actions.
+ *
+ * A resolved action is the ActionDefinition with its properties already merged with the default properties of its
+ * plugin, it is what the ActionsService needs to send an action without backend lookups.
+ * Both caches are replicated in distributed mode. DefinitionsListeners are only invoked on the node that performs
+ * the change, that node updates the caches and the other nodes get the update through the replication.
  *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
@@ -45,6 +54,8 @@ public class ActionsCacheManager {
 
     private Cache<ActionKey, ActionDefinition> globalActionsCache;
 
+    private Cache<ActionKey, ActionDefinition> actionsCache;
+
     public void setDefinitions(DefinitionsService definitions) {
         this.definitions = definitions;
     }
@@ -53,10 +64,15 @@ public class ActionsCacheManager {
         this.globalActionsCache = globalActionsCache;
     }
 
+    public void setActionsCache(Cache<ActionKey, ActionDefinition> actionsCache) {
+        this.actionsCache = actionsCache;
+    }
+
     public void init() {
         log.infoInitActionsCache();
 
         globalActionsCache.clear();
+        actionsCache.clear();
 
         initialCacheUpdate();
 
@@ -69,13 +85,20 @@ public class ActionsCacheManager {
                         ActionDefinition actionDefinition = event.getActionDefinition();
                         if (actionDefinition.isGlobal()) {
                             globalActionsCache.put(key, actionDefinition);
+                        } else {
+                            globalActionsCache.remove(key);
                         }
+                        actionsCache.put(key, resolve(actionDefinition, getDefaultProperties(key.getActionPlugin())));
                         break;
                     case ACTION_DEFINITION_REMOVE:
                         globalActionsCache.remove(key);
+                        actionsCache.remove(key);
+                        break;
+                    case ACTION_PLUGIN_CHANGE:
+                        updateActionPlugin(event.getActionPlugin());
                 }
             });
-        }, ACTION_DEFINITION_CREATE, ACTION_DEFINITION_REMOVE, ACTION_DEFINITION_UPDATE);
+        }, ACTION_DEFINITION_CREATE, ACTION_DEFINITION_REMOVE, ACTION_DEFINITION_UPDATE, ACTION_PLUGIN_CHANGE);
     }
 
     public boolean hasGlobalActions() {
@@ -92,23 +115,101 @@ public class ActionsCacheManager {
         return globalActions;
     }
 
+    /**
+     * @return the ActionDefinition with its properties merged with the default properties of its plugin,
+     *         null if the ActionDefinition does not exist
+     */
+    public ActionDefinition getResolvedAction(String tenantId, String actionPlugin, String actionId) {
+        ActionKey key = new ActionKey(tenantId, actionPlugin, actionId);
+        ActionDefinition resolved = actionsCache.get(key);
+        if (resolved != null) {
+            return resolved;
+        }
+        // Not expected once the cache is loaded, but a miss must not lose an action
+        try {
+            ActionDefinition actionDefinition = definitions.getActionDefinition(tenantId, actionPlugin, actionId);
+            if (actionDefinition == null) {
+                return null;
+            }
+            resolved = resolve(actionDefinition, getDefaultProperties(actionPlugin));
+            actionsCache.put(key, resolved);
+            return resolved;
+        } catch (Exception e) {
+            log.errorDatabaseException(e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+        The default properties of a plugin are changed, the ActionDefinitions of the plugin are resolved again
+     */
+    private void updateActionPlugin(String actionPlugin) {
+        List<ActionKey> keys = actionsCache.keySet().stream()
+                .filter(key -> actionPlugin.equals(key.getActionPlugin()))
+                .collect(Collectors.toList());
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, String> defaultProperties = getDefaultProperties(actionPlugin);
+            actionsCache.startBatch();
+            for (ActionKey key : keys) {
+                ActionDefinition actionDefinition = definitions.getActionDefinition(key.getTenantId(),
+                        key.getActionPlugin(), key.getActionId());
+                if (actionDefinition == null) {
+                    actionsCache.remove(key);
+                } else {
+                    actionsCache.put(key, resolve(actionDefinition, defaultProperties));
+                }
+            }
+            actionsCache.endBatch(true);
+        } catch (Exception e) {
+            log.error("Failed to update actions of plugin " + actionPlugin, e);
+            actionsCache.endBatch(false);
+            // A stale entry is worse than a miss
+            keys.forEach(actionsCache::remove);
+        }
+    }
+
+    private Map<String, String> getDefaultProperties(String actionPlugin) {
+        try {
+            return definitions.getDefaultActionPlugin(actionPlugin);
+        } catch (Exception e) {
+            log.errorDatabaseException(e.getMessage());
+            return null;
+        }
+    }
+
+    private ActionDefinition resolve(ActionDefinition actionDefinition, Map<String, String> defaultProperties) {
+        ActionDefinition resolved = new ActionDefinition(actionDefinition);
+        if (defaultProperties != null) {
+            defaultProperties.forEach(resolved.getProperties()::putIfAbsent);
+        }
+        return resolved;
+    }
+
     private void initialCacheUpdate() {
         try {
             log.debug("Initial ActionsCacheManager update in progress..");
 
             globalActionsCache.startBatch();
             Collection<ActionDefinition> actionDefinitions = definitions.getAllActionDefinitions();
+            Map<String, Map<String, String>> defaultProperties = new HashMap<>();
+            Map<ActionKey, ActionDefinition> resolvedActions = new HashMap<>();
             for (ActionDefinition actionDefinition : actionDefinitions) {
+                ActionKey key = new ActionKey(actionDefinition.getTenantId(),
+                        actionDefinition.getActionPlugin(),
+                        actionDefinition.getActionId());
                 if (actionDefinition.isGlobal()) {
-                    ActionKey key = new ActionKey(actionDefinition.getTenantId(),
-                            actionDefinition.getActionPlugin(),
-                            actionDefinition.getActionId());
                     globalActionsCache.put(key, actionDefinition);
                 }
+                resolvedActions.put(key, resolve(actionDefinition,
+                        defaultProperties.computeIfAbsent(key.getActionPlugin(), this::getDefaultProperties)));
             }
             globalActionsCache.endBatch(true);
+            actionsCache.putAll(resolvedActions);
         } catch (Exception e) {
-            log.error("Failed to load global actions", e);
+            log.error("Failed to load actions", e);
             globalActionsCache.endBatch(false);
             return;
         }
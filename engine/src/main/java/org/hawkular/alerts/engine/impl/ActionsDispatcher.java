@@ -0,0 +1,368 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.ActionListener;
+import org.hawkular.alerts.log.AlertingLogger;
+import org.hawkular.commons.log.MsgLogging;
+
+/**
+ * Dispatch of the Actions generated by the rules engine, out of the firing threads.
+ *
+ * The firing threads hand the (Trigger, Event) pairs to a bounded queue and go on with the rules evaluation, they
+ * only block when the queue is full. A dispatcher thread drains the queue in batches: it resolves the Actions of
+ * each pair, stores the Actions of the batch in a single backend operation and hands each Action to a worker of its
+ * plugin, where the ActionListeners are invoked. Actions are stored before they reach the listeners, so a plugin
+ * result always finds its Action.
+ *
+ * A plugin has several workers, each one invokes the listeners of its Actions one at a time. The Actions of a Trigger
+ * always go to the same worker of a plugin, so they reach the plugin in the order they were dispatched.
+ *
+ * With async disabled the Actions are resolved, stored and sent on the caller thread.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class ActionsDispatcher {
+    private static final AlertingLogger log = MsgLogging.getMsgLogger(AlertingLogger.class, ActionsDispatcher.class);
+
+    /**
+     * Resolve the Actions to send for an Event of a Trigger: properties, constraints and validation.
+     */
+    @FunctionalInterface
+    public interface ActionsResolver {
+        List<Action> resolve(Trigger trigger, Event event);
+    }
+
+    /**
+     * Store a group of Actions in the backend.
+     */
+    @FunctionalInterface
+    public interface ActionsStore {
+        void store(List<Action> actions) throws Exception;
+    }
+
+    private final ActionsResolver resolver;
+    private final ActionsStore store;
+    private final Supplier<List<ActionListener>> listeners;
+    private final boolean async;
+    private final int batchSize;
+    private final int pluginWorkers;
+    private final int pluginQueueSize;
+    private final BlockingQueue<Request> queue;
+    private final Map<String, PluginWorker[]> workers = new ConcurrentHashMap<>();
+
+    /*
+        Requests queued/processed by the dispatcher thread, and Actions handed to the workers/completed.
+        A flush waits until the processed count reaches the queued count observed at the flush call and the workers
+        have no Actions in progress.
+     */
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final Object processedLock = new Object();
+    private long processed = 0;
+
+    /*
+        Exponential moving average of the time in milliseconds from the send() of the Trigger to the invocation of
+        the listeners of its Actions.
+     */
+    private double latency = 0;
+
+    private volatile boolean running = true;
+    private final Thread dispatcherThread;
+
+    /**
+     * @param resolver resolves the Actions of a (Trigger, Event)
+     * @param store stores a group of Actions
+     * @param listeners the ActionListeners to invoke for each Action
+     * @param async true to dispatch in background, false to dispatch on the caller thread
+     * @param capacity max number of (Trigger, Event) waiting to be dispatched
+     * @param batchSize max number of (Trigger, Event) dispatched together
+     * @param pluginWorkers number of threads invoking the listeners, per plugin. The Actions of a Trigger are always
+     *                      sent by the same thread.
+     */
+    public ActionsDispatcher(ActionsResolver resolver, ActionsStore store, Supplier<List<ActionListener>> listeners,
+            boolean async, int capacity, int batchSize, int pluginWorkers) {
+        if (resolver == null || store == null || listeners == null) {
+            throw new IllegalArgumentException("Resolver, store and listeners must be not null");
+        }
+        if (capacity < 1 || batchSize < 1 || pluginWorkers < 1) {
+            throw new IllegalArgumentException("Capacity, batch size and plugin workers must be positive");
+        }
+        this.resolver = resolver;
+        this.store = store;
+        this.listeners = listeners;
+        this.async = async;
+        this.batchSize = batchSize;
+        this.pluginWorkers = pluginWorkers;
+        this.pluginQueueSize = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        if (async) {
+            dispatcherThread = new Thread(this::dispatchLoop, "AlertsEngineImpl-Actions");
+            dispatcherThread.start();
+        } else {
+            dispatcherThread = null;
+        }
+    }
+
+    /**
+     * Dispatch the Actions of a Trigger for an Event. With async the request is queued, blocking while the queue is
+     * full.
+     */
+    public void dispatch(Trigger trigger, Event event) {
+        queued.incrementAndGet();
+        if (!async) {
+            List<Request> requests = new ArrayList<>(1);
+            requests.add(new Request(trigger, event));
+            process(requests);
+            return;
+        }
+        if (!running) {
+            throw new IllegalStateException("ActionsDispatcher is stopped");
+        }
+        try {
+            queue.put(new Request(trigger, event));
+        } catch (InterruptedException e) {
+            queued.decrementAndGet();
+            Thread.currentThread().interrupt();
+            log.errorCannotUpdateAction("Interrupted while queueing actions of " + event.getId());
+        }
+    }
+
+    /**
+     * Wait until the Actions of the Triggers dispatched before this call are stored and sent to the listeners.
+     */
+    public void flush() throws InterruptedException {
+        if (!async) {
+            return;
+        }
+        long target = queued.get();
+        synchronized (processedLock) {
+            while ((processed < target || inProgress.get() > 0) && dispatcherThread.isAlive()) {
+                processedLock.wait(10);
+            }
+        }
+    }
+
+    /**
+     * Stop the dispatcher once the queued Actions are sent.
+     */
+    public void shutdown() {
+        if (async) {
+            try {
+                flush();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running = false;
+            dispatcherThread.interrupt();
+        }
+        workers.values().forEach(pluginWorkers -> {
+            for (PluginWorker worker : pluginWorkers) {
+                worker.stop();
+            }
+        });
+    }
+
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        status.put("engine-actions-async", String.valueOf(async));
+        status.put("engine-actions-pending", String.valueOf(queue.size() + inProgress.get()));
+        status.put("engine-actions-dispatched", String.valueOf(dispatched.get()));
+        status.put("engine-actions-failed", String.valueOf(failed.get()));
+        synchronized (this) {
+            status.put("engine-actions-latency", String.valueOf(Math.round(latency)));
+        }
+        return status;
+    }
+
+    private void dispatchLoop() {
+        List<Request> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+            if (!batch.isEmpty()) {
+                process(batch);
+                batch.clear();
+            }
+        }
+        log.debug("ActionsDispatcher stopped");
+    }
+
+    private void process(List<Request> batch) {
+        List<Action> actions = new ArrayList<>();
+        List<Trigger> triggers = new ArrayList<>();
+        List<Long> sendTimes = new ArrayList<>();
+        for (Request request : batch) {
+            try {
+                List<Action> resolved = resolver.resolve(request.trigger, request.event);
+                for (Action action : resolved) {
+                    actions.add(action);
+                    triggers.add(request.trigger);
+                    sendTimes.add(request.time);
+                }
+            } catch (Exception e) {
+                failed.incrementAndGet();
+                log.debug(e.getMessage(), e);
+                log.errorCannotUpdateAction(e.getMessage());
+            }
+        }
+        if (!actions.isEmpty()) {
+            try {
+                store.store(actions);
+            } catch (Exception e) {
+                // As before, an Action not stored is still sent to the plugins
+                log.errorDatabaseException(e.getMessage());
+            }
+            for (int i = 0; i < actions.size(); i++) {
+                send(actions.get(i), triggers.get(i), sendTimes.get(i));
+            }
+        }
+        if (async) {
+            synchronized (processedLock) {
+                processed += batch.size();
+                processedLock.notifyAll();
+            }
+        }
+    }
+
+    private void send(Action action, Trigger trigger, long sendTime) {
+        if (!async) {
+            invokeListeners(action, sendTime);
+            return;
+        }
+        PluginWorker[] pluginWorkers = workers.computeIfAbsent(action.getActionPlugin(), this::newWorkers);
+        int partition = trigger == null ? 0 :
+                Math.floorMod((trigger.getTenantId() + "|" + trigger.getId()).hashCode(), pluginWorkers.length);
+        inProgress.incrementAndGet();
+        try {
+            pluginWorkers[partition].send(action, sendTime);
+        } catch (InterruptedException e) {
+            inProgress.decrementAndGet();
+            failed.incrementAndGet();
+            Thread.currentThread().interrupt();
+            log.errorCannotUpdateAction("Interrupted while sending action " + action.getActionId());
+        }
+    }
+
+    private void invokeListeners(Action action, long sendTime) {
+        try {
+            for (ActionListener listener : listeners.get()) {
+                listener.process(action);
+            }
+            dispatched.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.debug(e.getMessage(), e);
+            log.errorCannotUpdateAction(e.getMessage());
+        }
+        updateLatency(System.currentTimeMillis() - sendTime);
+    }
+
+    private synchronized void updateLatency(long millis) {
+        latency = latency == 0 ? millis : latency * 0.9 + millis * 0.1;
+    }
+
+    private PluginWorker[] newWorkers(String actionPlugin) {
+        PluginWorker[] pluginWorkers = new PluginWorker[this.pluginWorkers];
+        for (int i = 0; i < pluginWorkers.length; i++) {
+            pluginWorkers[i] = new PluginWorker("AlertsEngineImpl-Actions-" + actionPlugin + "-" + (i + 1));
+        }
+        return pluginWorkers;
+    }
+
+    /*
+        A plugin worker invokes the listeners of its Actions one at a time, in the order they were sent. Its queue is
+        bounded, when it is full the dispatcher thread waits for room, which slows down the dispatch until the plugin
+        catches up, instead of dropping Actions or running the listeners on the dispatcher thread.
+     */
+    private class PluginWorker implements Runnable {
+        private final BlockingQueue<Runnable> tasks = new ArrayBlockingQueue<>(pluginQueueSize);
+        private final Thread thread;
+        private volatile boolean stopped = false;
+
+        PluginWorker(String name) {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void send(Action action, long sendTime) throws InterruptedException {
+            tasks.put(() -> {
+                try {
+                    invokeListeners(action, sendTime);
+                } finally {
+                    inProgress.decrementAndGet();
+                }
+            });
+        }
+
+        void stop() {
+            stopped = true;
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            while (!stopped || !tasks.isEmpty()) {
+                Runnable task;
+                try {
+                    task = tasks.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+                task.run();
+            }
+        }
+    }
+
+    private static class Request {
+        private final Trigger trigger;
+        private final Event event;
+        private final long time;
+
+        Request(Trigger trigger, Event event) {
+            this.trigger = trigger;
+            // The Alert status is validated on dispatch, keep the status it has when it is sent
+            this.event = event instanceof Alert ? new Alert((Alert) event) : event;
+            this.time = System.currentTimeMillis();
+        }
+    }
+}
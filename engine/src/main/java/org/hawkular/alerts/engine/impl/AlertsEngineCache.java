@@ -16,8 +16,11 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Auxiliary cache for AlertsEngine implementation.
@@ -41,12 +44,13 @@ public class AlertsEngineCache {
 
     /**
      * A cache of the dataIds hold. Used to filter if a data has a dataId on this node or not.
+     * It is read concurrently by the incoming data and by the publication of the dataIds to other nodes.
      */
     private Set<DataId> activeDataIds;
 
     public AlertsEngineCache() {
         activeDataEntries = new HashSet<>();
-        activeDataIds = new HashSet<>();
+        activeDataIds = ConcurrentHashMap.newKeySet();
     }
 
     /**
@@ -114,6 +118,19 @@ public class AlertsEngineCache {
         activeDataIds.removeAll(dataIdToRemove);
     }
 
+    /**
+     * Return a copy of the active dataIds on this node.
+     *
+     * @return a map of active dataIds indexed by tenantId
+     */
+    public Map<String, Set<String>> getActiveDataIds() {
+        Map<String, Set<String>> dataIds = new HashMap<>();
+        activeDataIds.stream().forEach(d -> {
+            dataIds.computeIfAbsent(d.getTenantId(), tenantId -> new HashSet<>()).add(d.getDataId());
+        });
+        return dataIds;
+    }
+
     /**
      * Clear all cache entries.
      */
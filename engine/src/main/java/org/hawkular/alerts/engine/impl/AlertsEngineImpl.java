@@ -20,6 +20,7 @@ import static org.hawkular.alerts.api.util.Util.isEmpty;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -27,11 +28,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.hawkular.alerts.api.exception.OverflowException;
 import org.hawkular.alerts.api.model.condition.CompareCondition;
 import org.hawkular.alerts.api.model.condition.Condition;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
@@ -56,6 +62,7 @@ import org.hawkular.alerts.engine.service.PartitionManager.Operation;
 import org.hawkular.alerts.engine.service.PartitionTriggerListener;
 import org.hawkular.alerts.engine.service.RulesEngine;
 import org.hawkular.alerts.engine.util.MissingState;
+import org.hawkular.alerts.engine.util.RingBuffer;
 import org.hawkular.alerts.log.AlertingLogger;
 import org.hawkular.commons.log.MsgLogging;
 import org.hawkular.commons.properties.HawkularProperties;
@@ -68,6 +75,22 @@ import org.hawkular.commons.properties.HawkularProperties;
  * By design this class handles both and it should be transparent to callers which mode
  * is currently in use.
  *
+ * Triggers can be spread across several independent rules engine sessions (shards). A trigger is assigned to a
+ * shard hashing its (tenantId, triggerId) and incoming Data and Events are routed only to the shards holding
+ * triggers interested on them. Each shard buffers its own pending Data/Events and fires its rules on its own
+ * thread. By default a single shard is used.
+ *
+ * Rules are fired as soon as new Data or Events arrive. Bursts of incoming Data/Events are coalesced within a
+ * micro-batch window. A periodic firing is still performed to process dampening timeouts and missing conditions.
+ *
+ * Incoming Data and Events are buffered on bounded lock-free ring buffers per shard. They are not ordered on
+ * arrival, the shard sorts the Data once before firing. When a buffer is full the configured overflow policy
+ * applies: block the producer until the shard fires its rules, drop the oldest pending element, or reject the
+ * incoming element.
+ *
+ * Simple triggers (a single Threshold, ThresholdRange, Availability or String condition with default dampening) are
+ * evaluated natively by a {@link NativeTriggerEvaluator} per shard, the RulesEngine is reserved for the rest.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -80,25 +103,109 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     private static final String ENGINE_DELAY = "hawkular-alerts.engine-delay";
 
     /*
-        ENGINE_PERIOD defined in milliseconds
+        ENGINE_PERIOD defined in milliseconds. Max time between firings when no new Data/Events arrive.
      */
     private static final String ENGINE_PERIOD = "hawkular-alerts.engine-period";
 
+    /*
+        ENGINE_BATCH_WINDOW defined in milliseconds. Min time between firings triggered by new Data/Events, used to
+        coalesce bursts of incoming Data/Events into a single firing.
+     */
+    private static final String ENGINE_BATCH_WINDOW = "hawkular-alerts.engine-batch-window";
+    private static final String ENGINE_BATCH_WINDOW_ENV = "HAWKULAR_ENGINE_BATCH_WINDOW";
+    private static final String ENGINE_BATCH_WINDOW_DEFAULT = "10";
+
+    /*
+        ENGINE_MAX_PENDING defines the capacity of the pending Data and pending Events buffers of a shard.
+     */
+    private static final String ENGINE_MAX_PENDING = "hawkular-alerts.engine-max-pending";
+    private static final String ENGINE_MAX_PENDING_ENV = "HAWKULAR_ENGINE_MAX_PENDING";
+    private static final String ENGINE_MAX_PENDING_DEFAULT = "100000";
+
+    /*
+        ENGINE_OVERFLOW_POLICY defines how incoming Data/Events are handled when the pending buffers are full.
+     */
+    private static final String ENGINE_OVERFLOW_POLICY = "hawkular-alerts.engine-overflow-policy";
+    private static final String ENGINE_OVERFLOW_POLICY_ENV = "HAWKULAR_ENGINE_OVERFLOW_POLICY";
+    private static final String ENGINE_OVERFLOW_POLICY_DEFAULT = "BLOCK";
+
+    /**
+     * Policy applied when incoming Data/Events do not fit on the pending buffers.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Block the producer until the shard fires its rules
+         */
+        BLOCK,
+        /**
+         * Drop the oldest pending element to make room for the incoming one
+         */
+        DROP_OLDEST,
+        /**
+         * Reject the incoming batch to the caller with an OverflowException if it does not fit on the buffers.
+         * A batch is accepted or rejected as a whole.
+         */
+        REJECT
+    }
+
+    /*
+        ENGINE_SHARDS defines the number of independent rules engine sessions used to evaluate the triggers
+     */
+    private static final String ENGINE_SHARDS = "hawkular-alerts.engine-shards";
+    private static final String ENGINE_SHARDS_ENV = "HAWKULAR_ENGINE_SHARDS";
+    private static final String ENGINE_SHARDS_DEFAULT = "1";
+
+    /*
+        ENGINE_NATIVE_TRIGGERS enables the native evaluation of simple triggers outside of the rules engine
+     */
+    private static final String ENGINE_NATIVE_TRIGGERS = "hawkular-alerts.engine-native-triggers";
+    private static final String ENGINE_NATIVE_TRIGGERS_ENV = "HAWKULAR_ENGINE_NATIVE_TRIGGERS";
+    private static final String ENGINE_NATIVE_TRIGGERS_DEFAULT = "true";
+
+    /*
+        ENGINE_WRITE_BEHIND persists the generated Alerts/Events in background instead of on the firing threads
+     */
+    private static final String ENGINE_WRITE_BEHIND = "hawkular-alerts.engine-write-behind";
+    private static final String ENGINE_WRITE_BEHIND_ENV = "HAWKULAR_ENGINE_WRITE_BEHIND";
+    private static final String ENGINE_WRITE_BEHIND_DEFAULT = "true";
+
+    /*
+        ENGINE_WRITE_QUEUE_SIZE defines the max number of generated Alerts/Events waiting to be persisted.
+        Firing threads block when the queue is full.
+     */
+    private static final String ENGINE_WRITE_QUEUE_SIZE = "hawkular-alerts.engine-write-queue-size";
+    private static final String ENGINE_WRITE_QUEUE_SIZE_ENV = "HAWKULAR_ENGINE_WRITE_QUEUE_SIZE";
+    private static final String ENGINE_WRITE_QUEUE_SIZE_DEFAULT = "100000";
+
+    /*
+        ENGINE_GROUP_COMMIT_SIZE defines the max number of Alerts/Events persisted in a single backend batch
+     */
+    private static final String ENGINE_GROUP_COMMIT_SIZE = "hawkular-alerts.engine-group-commit-size";
+    private static final String ENGINE_GROUP_COMMIT_SIZE_ENV = "HAWKULAR_ENGINE_GROUP_COMMIT_SIZE";
+    private static final String ENGINE_GROUP_COMMIT_SIZE_DEFAULT = "1000";
+
+    /*
+        ENGINE_GROUP_COMMIT_LATENCY defined in milliseconds. Max time a generated Alert/Event waits to be persisted.
+     */
+    private static final String ENGINE_GROUP_COMMIT_LATENCY = "hawkular-alerts.engine-group-commit-latency";
+    private static final String ENGINE_GROUP_COMMIT_LATENCY_ENV = "HAWKULAR_ENGINE_GROUP_COMMIT_LATENCY";
+    private static final String ENGINE_GROUP_COMMIT_LATENCY_DEFAULT = "50";
+
     private int delay;
     private int period;
+    private int batchWindow;
+    private int maxPending;
+    private OverflowPolicy overflowPolicy;
+    private int numShards;
+    private boolean nativeTriggers;
+    private boolean writeBehind;
+    private int writeQueueSize;
+    private int groupCommitSize;
+    private long groupCommitLatency;
 
-    private TreeSet<Data> pendingData;
-    private TreeSet<Event> pendingEvents;
-
-    private final List<Alert> alerts;
-    private final List<Event> events;
-    private final Set<Dampening> pendingTimeouts;
-    private final Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers;
-    private final Set<Trigger> disabledTriggers;
-    private final Set<MissingState> missingStates;
+    private EngineShard[] shards;
 
-    private final Timer wakeUpTimer;
-    private TimerTask rulesTask;
+    private EventsWriter eventsWriter;
 
     /*
         All incoming Data and Events go through front-line global filtering (via IncomingDataManager)
@@ -106,6 +213,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         filtering. As such we don't need to filter via nodeSpecificDataIdCache.
      */
     private AlertsEngineCache alertsEngineCache = null;
+    private final AtomicBoolean dataIdsChanged = new AtomicBoolean(false);
     boolean distributed = false;
 
     private static final String ENGINE_EXTENSIONS = "hawkular-alerts.engine-extensions";
@@ -113,7 +221,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     private static final String ENGINE_EXTENSIONS_DEFAULT = "true";
     private boolean engineExtensions;
 
-    RulesEngine rules;
+    Supplier<RulesEngine> rulesFactory;
 
     DefinitionsService definitions;
 
@@ -128,29 +236,35 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     private ExecutorService executor;
 
     public AlertsEngineImpl() {
-        pendingData = new TreeSet<>();
-        pendingEvents = new TreeSet<>();
-        alerts = new ArrayList<>();
-        events = new ArrayList<>();
-        pendingTimeouts = new HashSet<>();
-        autoResolvedTriggers = new HashMap<>();
-        disabledTriggers = new HashSet<>();
-        missingStates = new HashSet<>();
-
-        wakeUpTimer = new Timer("AlertsEngineImpl-Timer");
-
         delay = new Integer(HawkularProperties.getProperty(ENGINE_DELAY, "1000"));
         period = new Integer(HawkularProperties.getProperty(ENGINE_PERIOD, "2000"));
+        batchWindow = new Integer(HawkularProperties.getProperty(ENGINE_BATCH_WINDOW, ENGINE_BATCH_WINDOW_ENV,
+                ENGINE_BATCH_WINDOW_DEFAULT));
+        maxPending = new Integer(HawkularProperties.getProperty(ENGINE_MAX_PENDING, ENGINE_MAX_PENDING_ENV,
+                ENGINE_MAX_PENDING_DEFAULT));
+        overflowPolicy = OverflowPolicy.valueOf(HawkularProperties.getProperty(ENGINE_OVERFLOW_POLICY,
+                ENGINE_OVERFLOW_POLICY_ENV, ENGINE_OVERFLOW_POLICY_DEFAULT).toUpperCase());
+        numShards = Math.max(1, new Integer(HawkularProperties.getProperty(ENGINE_SHARDS, ENGINE_SHARDS_ENV,
+                ENGINE_SHARDS_DEFAULT)));
+        nativeTriggers = Boolean.parseBoolean(HawkularProperties.getProperty(ENGINE_NATIVE_TRIGGERS,
+                ENGINE_NATIVE_TRIGGERS_ENV, ENGINE_NATIVE_TRIGGERS_DEFAULT));
+        writeBehind = Boolean.parseBoolean(HawkularProperties.getProperty(ENGINE_WRITE_BEHIND,
+                ENGINE_WRITE_BEHIND_ENV, ENGINE_WRITE_BEHIND_DEFAULT));
+        writeQueueSize = new Integer(HawkularProperties.getProperty(ENGINE_WRITE_QUEUE_SIZE,
+                ENGINE_WRITE_QUEUE_SIZE_ENV, ENGINE_WRITE_QUEUE_SIZE_DEFAULT));
+        groupCommitSize = new Integer(HawkularProperties.getProperty(ENGINE_GROUP_COMMIT_SIZE,
+                ENGINE_GROUP_COMMIT_SIZE_ENV, ENGINE_GROUP_COMMIT_SIZE_DEFAULT));
+        groupCommitLatency = new Long(HawkularProperties.getProperty(ENGINE_GROUP_COMMIT_LATENCY,
+                ENGINE_GROUP_COMMIT_LATENCY_ENV, ENGINE_GROUP_COMMIT_LATENCY_DEFAULT));
         engineExtensions = Boolean.parseBoolean(HawkularProperties.getProperty(ENGINE_EXTENSIONS, ENGINE_EXTENSIONS_ENV,
                 ENGINE_EXTENSIONS_DEFAULT));
     }
 
-    public RulesEngine getRules() {
-        return rules;
-    }
-
-    public void setRules(RulesEngine rules) {
-        this.rules = rules;
+    /**
+     * @param rulesFactory creates a new RulesEngine session for every shard of the engine
+     */
+    public void setRulesFactory(Supplier<RulesEngine> rulesFactory) {
+        this.rulesFactory = rulesFactory;
     }
 
     public void setDefinitions(DefinitionsService definitions) {
@@ -179,6 +293,13 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
     public void initServices() {
         try {
+            eventsWriter = new EventsWriter(alertsService, writeBehind, writeQueueSize, groupCommitSize,
+                    groupCommitLatency);
+            shards = new EngineShard[numShards];
+            for (int i = 0; i < numShards; i++) {
+                shards[i] = new EngineShard(i, rulesFactory.get());
+            }
+            log.debugf("AlertsEngine initialized with [%s] shard(s)", numShards);
             distributed = partitionManager.isDistributed();
             if (distributed) {
                 log.debug("Registering PartitionManager listeners...");
@@ -203,39 +324,28 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     }
 
     public void shutdown() {
-        rulesTask.cancel();
-        wakeUpTimer.cancel();
+        for (EngineShard shard : shards) {
+            shard.shutdown();
+        }
+        eventsWriter.shutdown();
     }
 
     @Override
     public void clear() {
-        rulesTask.cancel();
-
-        rules.clear();
-
-        pendingData.clear();
-        pendingEvents.clear();
-        alerts.clear();
-        events.clear();
-        pendingTimeouts.clear();
-        autoResolvedTriggers.clear();
-        disabledTriggers.clear();
-        missingStates.clear();
-
-        rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, delay, period);
+        for (EngineShard shard : shards) {
+            shard.clear();
+        }
     }
 
     @Override
     public void reload() {
         log.debug("Start a full reload of the AlertsEngine");
-        rules.reset();
+        for (EngineShard shard : shards) {
+            shard.reset();
+        }
         if (distributed) {
             alertsEngineCache.clear();
         }
-        if (rulesTask != null) {
-            rulesTask.cancel();
-        }
 
         Collection<Trigger> triggers = null;
         try {
@@ -260,16 +370,9 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
             });
         }
 
-        rules.addGlobal("log", log);
-        rules.addGlobal("actions", actions);
-        rules.addGlobal("alerts", alerts);
-        rules.addGlobal("events", events);
-        rules.addGlobal("pendingTimeouts", pendingTimeouts);
-        rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
-        rules.addGlobal("disabledTriggers", disabledTriggers);
-
-        rulesTask = new RulesInvoker();
-        wakeUpTimer.schedule(rulesTask, delay, period);
+        for (EngineShard shard : shards) {
+            shard.start();
+        }
     }
 
     @Override
@@ -355,6 +458,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         // Note that removeTrigger relies only on tenatId+triggerId.
         removeTrigger(trigger);
 
+        EngineShard shard = getShard(trigger.getTenantId(), trigger.getId());
         try {
             if (distributed) {
                 trigger = definitions.getTrigger(trigger.getTenantId(), trigger.getId());
@@ -369,31 +473,37 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                     Cache dataId from conditions, Handle MissingCondition's MissingState
                  */
                 for (Condition c : conditionSet) {
-                    if (distributed) {
+                    if (distributed || shards.length > 1) {
                         DataEntry entry = new DataEntry(c.getTenantId(), c.getTriggerId(), c.getDataId());
-                        alertsEngineCache.add(entry);
+                        addDataEntry(shard, entry);
                         if (Condition.Type.COMPARE == c.getType()) {
                             String data2Id = ((CompareCondition) c).getData2Id();
                             DataEntry entry2 = new DataEntry(c.getTenantId(), c.getTriggerId(), data2Id);
-                            alertsEngineCache.add(entry2);
+                            addDataEntry(shard, entry2);
                         }
                     }
                     if (c instanceof MissingCondition) {
                         // MissingState keeps a reference to the Trigger fact to check active trigger mode
                         MissingState missingState = new MissingState(trigger, (MissingCondition) c);
                         // MissingStates are modified inside the rules engine
-                        synchronized (missingStates) {
-                            missingStates.remove(missingState);
-                            missingStates.add(missingState);
-                            rules.addFact(missingState);
+                        synchronized (shard.missingStates) {
+                            shard.missingStates.remove(missingState);
+                            shard.missingStates.add(missingState);
+                            shard.rules.addFact(missingState);
                         }
                     }
                 }
 
-                rules.addFact(trigger);
-                rules.addFacts(conditionSet);
+                if (null != shard.nativeEvaluator
+                        && shard.nativeEvaluator.addTrigger(trigger, conditionSet, dampenings)) {
+                    log.debugf("Trigger evaluated natively %s", trigger);
+                    return;
+                }
+
+                shard.rules.addFact(trigger);
+                shard.rules.addFacts(conditionSet);
                 if (!dampenings.isEmpty()) {
-                    rules.addFacts(dampenings);
+                    shard.rules.addFacts(dampenings);
                 }
             }
         } catch (Exception e) {
@@ -402,6 +512,15 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
+    private void addDataEntry(EngineShard shard, DataEntry entry) {
+        if (distributed) {
+            alertsEngineCache.add(entry);
+        }
+        if (shards.length > 1) {
+            shard.addDataEntry(entry);
+        }
+    }
+
     @Override
     public Trigger getLoadedTrigger(Trigger trigger) {
         if (null == trigger) {
@@ -410,7 +529,13 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
 
         Trigger loadedTrigger = null;
         try {
-            loadedTrigger = (Trigger) rules.getFact(trigger);
+            EngineShard shard = getShard(trigger.getTenantId(), trigger.getId());
+            if (null != shard.nativeEvaluator) {
+                loadedTrigger = shard.nativeEvaluator.getNativeTrigger(trigger.getTenantId(), trigger.getId());
+            }
+            if (null == loadedTrigger) {
+                loadedTrigger = (Trigger) shard.rules.getFact(trigger);
+            }
 
         } catch (Exception e) {
             log.errorf("Failed to get Trigger from engine %s: %s", trigger, e);
@@ -438,6 +563,12 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
     private void removeTrigger(Trigger trigger) {
         final String tenantId = trigger.getTenantId();
         final String triggerId = trigger.getId();
+        final EngineShard shard = getShard(tenantId, triggerId);
+        final RulesEngine rules = shard.rules;
+
+        if (null != shard.nativeEvaluator) {
+            shard.nativeEvaluator.removeTrigger(tenantId, triggerId);
+        }
 
         // If necessary, clean up working memory
         if (null != rules.getFact(trigger)) {
@@ -466,9 +597,12 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         if (distributed) {
             alertsEngineCache.remove(trigger.getTenantId(), trigger.getId());
         }
+        if (shards.length > 1) {
+            shard.removeDataEntries(tenantId, triggerId);
+        }
         // Remove any MissingState being managed for the trigger
-        synchronized (missingStates) {
-            Iterator<MissingState> it = missingStates.iterator();
+        synchronized (shard.missingStates) {
+            Iterator<MissingState> it = shard.missingStates.iterator();
             while (it.hasNext()) {
                 MissingState missingState = it.next();
                 if (missingState.getTenantId().equals(trigger.getTenantId()) &&
@@ -479,10 +613,25 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
-    // We allow concurrent threads to make this call in order to process distributed data in parallel. We
-    // use synchronized blocks to protect pendingData.
+    private EngineShard getShard(String tenantId, String triggerId) {
+        return shards[shardIndex(tenantId, triggerId, shards.length)];
+    }
+
+    /**
+     * @return the shard owning the trigger (tenantId, triggerId). The hash is stable across nodes and restarts.
+     */
+    static int shardIndex(String tenantId, String triggerId, int numShards) {
+        if (numShards <= 1) {
+            return 0;
+        }
+        int hash = 31 * tenantId.hashCode() + triggerId.hashCode();
+        return (hash & Integer.MAX_VALUE) % numShards;
+    }
+
+    // We allow concurrent threads to make this call in order to process distributed data in parallel. The
+    // pendingData buffers are safe for concurrent producers.
     @Override
-    public void sendData(TreeSet<Data> data) {
+    public void sendData(Collection<Data> data) {
         if (data == null) {
             throw new IllegalArgumentException("Data must be not null");
         }
@@ -497,7 +646,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
-    private void addData(TreeSet<Data> data) {
+    private void addData(Collection<Data> data) {
         if (distributed) {
             data = filterIncomingDataForNode(data);
         }
@@ -506,37 +655,61 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
             data = processDataExtensions(data);
         }
 
-        synchronized (pendingData) {
-            log.debugf("Adding [%s] to pendingData [%s]", data, pendingData);
-            pendingData.addAll(data);
+        Collection<Data>[] shardsData = new Collection[shards.length];
+        if (shards.length == 1) {
+            shardsData[0] = data;
+        } else {
+            // Route every datum to the shards holding triggers with conditions on its dataId
+            for (Data d : data) {
+                for (int i = 0; i < shards.length; i++) {
+                    if (shards[i].isDataIdActive(d.getTenantId(), d.getId())) {
+                        if (null == shardsData[i]) {
+                            shardsData[i] = new ArrayList<>();
+                        }
+                        shardsData[i].add(d);
+                    }
+                }
+            }
+        }
+        if (overflowPolicy == OverflowPolicy.REJECT) {
+            reserve(shardsData, true);
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (null != shardsData[i]) {
+                shards[i].addData(shardsData[i]);
+            }
         }
     }
 
-    private TreeSet<Data> filterIncomingDataForNode(TreeSet<Data> data) {
-        TreeSet<Data> filteredData = new TreeSet<>(data);
-        for (Iterator<Data> i = filteredData.iterator(); i.hasNext();) {
-            Data d = i.next();
-            if (!alertsEngineCache.isDataIdActive(d.getTenantId(), d.getId())) {
-                i.remove();
+    private Collection<Data> filterIncomingDataForNode(Collection<Data> data) {
+        List<Data> filteredData = new ArrayList<>(data.size());
+        for (Data d : data) {
+            if (alertsEngineCache.isDataIdActive(d.getTenantId(), d.getId())) {
+                filteredData.add(d);
             }
         }
         return filteredData;
     }
 
-    private TreeSet<Data> processDataExtensions(TreeSet<Data> data) {
+    /*
+        Extensions work on ordered Data, so the Data is sorted only when there are extensions to process it.
+     */
+    private Collection<Data> processDataExtensions(Collection<Data> data) {
         Set<DataExtension> extensions = extensionsService.getDataExtensions();
         if (!extensions.isEmpty()) {
+            TreeSet<Data> orderedData = new TreeSet<>(data);
             for (DataExtension extension : extensions) {
-                data = extension.processData(data);
+                orderedData = extension.processData(orderedData);
             }
+            return orderedData;
         }
         return data;
     }
 
-    // We allow concurrent threads to make this call in order to process distributed data in parallel. We
-    // use synchronized blocks to protect pendingEvents.
+    // We allow concurrent threads to make this call in order to process distributed data in parallel. The
+    // pendingEvents buffers are safe for concurrent producers.
     @Override
-    public void sendEvents(TreeSet<Event> events) {
+    public void sendEvents(Collection<Event> events) {
         if (events == null) {
             throw new IllegalArgumentException("Events must be not null");
         }
@@ -551,7 +724,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         }
     }
 
-    private void addEvents(TreeSet<Event> events) {
+    private void addEvents(Collection<Event> events) {
         if (distributed) {
             events = filterIncomingEventsForNode(events);
         }
@@ -560,239 +733,708 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
             events = processEventsExtensions(events);
         }
 
-        synchronized (pendingEvents) {
-            log.debugf("Adding [%s] to pendingEvents [%s]", events, pendingEvents);
-            pendingEvents.addAll(events);
+        Collection<Event>[] shardsEvents = new Collection[shards.length];
+        if (shards.length == 1) {
+            shardsEvents[0] = events;
+        } else {
+            // Route every event to the shards holding triggers with conditions on its dataId
+            for (Event e : events) {
+                for (int i = 0; i < shards.length; i++) {
+                    if (shards[i].isDataIdActive(e.getTenantId(), e.getDataId())) {
+                        if (null == shardsEvents[i]) {
+                            shardsEvents[i] = new ArrayList<>();
+                        }
+                        shardsEvents[i].add(e);
+                    }
+                }
+            }
+        }
+        if (overflowPolicy == OverflowPolicy.REJECT) {
+            reserve(shardsEvents, false);
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (null != shardsEvents[i]) {
+                shards[i].addEvents(shardsEvents[i]);
+            }
         }
     }
 
-    private TreeSet<Event> filterIncomingEventsForNode(TreeSet<Event> events) {
-        TreeSet<Event> filteredEvents = new TreeSet<>(events);
-        for (Iterator<Event> i = filteredEvents.iterator(); i.hasNext();) {
-            Event e = i.next();
-            if (!alertsEngineCache.isDataIdActive(e.getTenantId(), e.getDataId())) {
-                i.remove();
+    private Collection<Event> filterIncomingEventsForNode(Collection<Event> events) {
+        List<Event> filteredEvents = new ArrayList<>(events.size());
+        for (Event e : events) {
+            if (alertsEngineCache.isDataIdActive(e.getTenantId(), e.getDataId())) {
+                filteredEvents.add(e);
             }
         }
         return filteredEvents;
     }
 
-    private TreeSet<Event> processEventsExtensions(TreeSet<Event> events) {
+    /*
+        Extensions work on ordered Events, so the Events are sorted only when there are extensions to process them.
+     */
+    private Collection<Event> processEventsExtensions(Collection<Event> events) {
         Set<EventExtension> extensions = extensionsService.getEventExtensions();
         if (!extensions.isEmpty()) {
+            TreeSet<Event> orderedEvents = new TreeSet<>(events);
             for (EventExtension extension : extensions) {
-                events = extension.processEvents(events);
+                orderedEvents = extension.processEvents(orderedEvents);
             }
+            return orderedEvents;
         }
         return events;
     }
 
-    private TreeSet<Data> getAndClearPendingData() {
-        TreeSet<Data> result;
-        synchronized (pendingData) {
-            result = pendingData;
-            pendingData = new TreeSet<>();
+    /*
+        With the REJECT policy a batch is accepted or rejected as a whole. Room for it is reserved on all the target
+        shards before any element is added, if a shard can not hold its part the batch is rejected to the caller.
+        The reservations are released once the elements are added to the shards.
+     */
+    private void reserve(Collection<?>[] shardsElements, boolean data) {
+        for (int i = 0; i < shards.length; i++) {
+            if (null != shardsElements[i] && !shards[i].reserve(shardsElements[i].size(), data)) {
+                for (int j = 0; j < i; j++) {
+                    if (null != shardsElements[j]) {
+                        shards[j].release(shardsElements[j].size(), data);
+                    }
+                }
+                int rejected = 0;
+                for (Collection<?> elements : shardsElements) {
+                    rejected += null != elements ? elements.size() : 0;
+                }
+                (data ? shards[i].droppedData : shards[i].droppedEvents).addAndGet(rejected);
+                throw new OverflowException("AlertsEngine shard [" + i + "] is full, rejecting [" + rejected + "] "
+                        + (data ? "datums" : "events"));
+            }
+        }
+    }
+
+    @Override
+    public boolean rejectsOnOverflow() {
+        return overflowPolicy == OverflowPolicy.REJECT;
+    }
+
+    @Override
+    public boolean isAcceptingData() {
+        if (overflowPolicy != OverflowPolicy.REJECT) {
+            return true;
+        }
+        for (EngineShard shard : shards) {
+            if (shard.isFull()) {
+                return false;
+            }
         }
-        return result;
+        return true;
     }
 
-    private TreeSet<Event> getAndClearPendingEvents() {
-        TreeSet<Event> result;
-        synchronized (pendingEvents) {
-            result = pendingEvents;
-            pendingEvents = new TreeSet<>();
+    @Override
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        long pendingData = 0;
+        long pendingEvents = 0;
+        long droppedData = 0;
+        long droppedEvents = 0;
+        for (EngineShard shard : shards) {
+            pendingData += shard.pendingData.size();
+            pendingEvents += shard.pendingEvents.size();
+            droppedData += shard.droppedData.get();
+            droppedEvents += shard.droppedEvents.get();
         }
-        return result;
+        status.put("engine-shards", String.valueOf(shards.length));
+        status.put("engine-overflow-policy", overflowPolicy.name());
+        status.put("engine-pending-data", String.valueOf(pendingData));
+        status.put("engine-pending-events", String.valueOf(pendingEvents));
+        status.put("engine-dropped-data", String.valueOf(droppedData));
+        status.put("engine-dropped-events", String.valueOf(droppedEvents));
+        status.putAll(eventsWriter.getStatus());
+        return status;
     }
 
-    private class RulesInvoker extends TimerTask {
-        @Override
-        public void run() {
-            int numTimeouts = checkPendingTimeouts();
+    /*
+        A shard holds an independent RulesEngine session with its own pending Data/Events, its own rules globals
+        and its own firing thread. Triggers are assigned to a single shard.
+     */
+    private class EngineShard {
+        private final int index;
+        private final RulesEngine rules;
 
-            int numMissingEvals = checkMissingStates();
+        /*
+            Evaluates the simple triggers of the shard, null if native evaluation is disabled
+         */
+        private final NativeTriggerEvaluator nativeEvaluator;
 
-            if (!pendingData.isEmpty() || !pendingEvents.isEmpty() || numTimeouts > 0 || numMissingEvals > 0) {
-                TreeSet<Data> newData = getAndClearPendingData();
-                TreeSet<Event> newEvents = getAndClearPendingEvents();
+        private final RingBuffer<Data> pendingData;
+        private final RingBuffer<Event> pendingEvents;
 
-                log.debugf("Executing rules engine on %s datums, %s events, %s dampening timeouts.", newData.size(),
-                        newEvents.size(), numTimeouts);
+        /*
+            Data/Events dropped or rejected because of buffer overflow
+         */
+        private final AtomicLong droppedData = new AtomicLong();
+        private final AtomicLong droppedEvents = new AtomicLong();
 
-                try {
-                    if (newData.isEmpty() && newEvents.isEmpty()) {
-                        rules.fireNoData();
+        /*
+            Room reserved on the pending buffers by the producers about to add a batch, only with the REJECT policy
+         */
+        private final AtomicInteger reservedData = new AtomicInteger();
+        private final AtomicInteger reservedEvents = new AtomicInteger();
 
-                    } else {
-                        if (!newData.isEmpty()) {
-                            rules.addData(newData);
-                        }
-                        if (!newEvents.isEmpty()) {
-                            rules.addEvents(newEvents);
-                        }
+        private final List<Alert> alerts;
+        private final List<Event> events;
+        private final Set<Dampening> pendingTimeouts;
+        private final Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers;
+        private final Set<Trigger> disabledTriggers;
+        private final Set<MissingState> missingStates;
 
-                        // release to GC
-                        newData = null;
-                        newEvents = null;
+        /*
+            Used only when the engine runs several shards, to route Data and Events to the interested shards
+         */
+        private final AlertsEngineCache shardCache;
 
-                        rules.fire();
-                    }
+        /*
+            Coordinates the firing thread with the producers of Data/Events.
+            wakeUp is signaled when new Data/Events are pending, drained when the pending Data/Events are taken.
+         */
+        private final ReentrantLock firingLock = new ReentrantLock();
+        private final java.util.concurrent.locks.Condition wakeUp = firingLock.newCondition();
+        private final java.util.concurrent.locks.Condition drained = firingLock.newCondition();
+        private boolean signaled = false;
+        private boolean active = false;
+        private boolean running = true;
+        private long nextFiring;
+        private long lastFiring;
+
+        private final Thread firingThread;
+
+        EngineShard(int index, RulesEngine rules) {
+            this.index = index;
+            this.rules = rules;
+            pendingData = new RingBuffer<>(maxPending);
+            pendingEvents = new RingBuffer<>(maxPending);
+            alerts = new ArrayList<>();
+            events = new ArrayList<>();
+            pendingTimeouts = new HashSet<>();
+            autoResolvedTriggers = new HashMap<>();
+            disabledTriggers = new HashSet<>();
+            missingStates = new HashSet<>();
+            shardCache = new AlertsEngineCache();
+            nativeEvaluator = nativeTriggers ? new NativeTriggerEvaluator(actions, alerts, events,
+                    autoResolvedTriggers, disabledTriggers) : null;
+
+            firingThread = new Thread(new RulesInvoker(),
+                    numShards == 1 ? "AlertsEngineImpl-Rules" : "AlertsEngineImpl-Rules-" + index);
+            firingThread.start();
+        }
 
-                    alertsService.addAlerts(alerts);
-                    alerts.clear();
-                    alertsService.persistEvents(events);
-                    if (distributed && !events.isEmpty()) {
-                        /*
-                            Generated events on a node should be notified to other nodes for chained triggers
-                         */
-                        partitionManager.notifyEvents(new ArrayList<>(events));
-                    }
-                    events.clear();
-                    handleDisabledTriggers();
-                    handleAutoResolvedTriggers();
-
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    log.debugf("Error on rules processing: %s", e);
-                    log.errorProcessingRules(e.getMessage());
-                } finally {
-                    alerts.clear();
-                    events.clear();
+        void start() {
+            rules.addGlobal("log", log);
+            rules.addGlobal("actions", actions);
+            rules.addGlobal("alerts", alerts);
+            rules.addGlobal("events", events);
+            rules.addGlobal("pendingTimeouts", pendingTimeouts);
+            rules.addGlobal("autoResolvedTriggers", autoResolvedTriggers);
+            rules.addGlobal("disabledTriggers", disabledTriggers);
+
+            activate(delay);
+        }
+
+        void reset() {
+            rules.reset();
+            if (null != nativeEvaluator) {
+                nativeEvaluator.clear();
+            }
+            synchronized (shardCache) {
+                shardCache.clear();
+            }
+            deactivate();
+        }
+
+        void clear() {
+            deactivate();
+
+            rules.clear();
+            if (null != nativeEvaluator) {
+                nativeEvaluator.clear();
+            }
+
+            pendingData.clear();
+            pendingEvents.clear();
+            alerts.clear();
+            events.clear();
+            pendingTimeouts.clear();
+            autoResolvedTriggers.clear();
+            disabledTriggers.clear();
+            missingStates.clear();
+
+            activate(delay);
+        }
+
+        void shutdown() {
+            firingLock.lock();
+            try {
+                running = false;
+                active = false;
+                wakeUp.signalAll();
+                drained.signalAll();
+            } finally {
+                firingLock.unlock();
+            }
+            firingThread.interrupt();
+        }
+
+        private void activate(long firstFiringDelay) {
+            firingLock.lock();
+            try {
+                active = true;
+                nextFiring = System.currentTimeMillis() + firstFiringDelay;
+                wakeUp.signalAll();
+            } finally {
+                firingLock.unlock();
+            }
+        }
+
+        private void deactivate() {
+            firingLock.lock();
+            try {
+                active = false;
+                drained.signalAll();
+            } finally {
+                firingLock.unlock();
+            }
+        }
+
+        /*
+            Wake up the firing thread as new Data/Events are pending
+         */
+        private void signal() {
+            firingLock.lock();
+            try {
+                signaled = true;
+                wakeUp.signalAll();
+            } finally {
+                firingLock.unlock();
+            }
+        }
+
+        boolean isFull() {
+            return pendingData.size() >= pendingData.capacity() || pendingEvents.size() >= pendingEvents.capacity();
+        }
+
+        /*
+            Backpressure: block the producer until the shard takes the pending Data/Events.
+            The firing thread itself is never blocked.
+
+            @return true if the producer can try again, false if the shard is not active or the producer can not block
+         */
+        private boolean awaitCapacity(RingBuffer<?> buffer) {
+            if (Thread.currentThread() == firingThread) {
+                return false;
+            }
+            firingLock.lock();
+            try {
+                if (running && active && buffer.size() >= buffer.capacity()) {
+                    log.debugf("Shard [%s] has [%s] pending elements, waiting for rules firing", index,
+                            buffer.size());
+                    signaled = true;
+                    wakeUp.signalAll();
+                    drained.await(period, TimeUnit.MILLISECONDS);
                 }
+                return running && active;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                firingLock.unlock();
             }
         }
 
-        private int checkPendingTimeouts() {
-            if (pendingTimeouts.isEmpty()) {
-                return 0;
+        /*
+            Reserve room for a batch on a pending buffer. Producers only add the elements covered by their
+            reservations, so the reserved elements always fit.
+         */
+        boolean reserve(int size, boolean data) {
+            RingBuffer<?> buffer = data ? pendingData : pendingEvents;
+            AtomicInteger reserved = data ? reservedData : reservedEvents;
+            for (;;) {
+                int current = reserved.get();
+                if (buffer.size() + current + size > buffer.capacity()) {
+                    return false;
+                }
+                if (reserved.compareAndSet(current, current + size)) {
+                    return true;
+                }
             }
+        }
 
-            long now = System.currentTimeMillis();
-            Set<Dampening> timeouts = null;
-            for (Dampening d : pendingTimeouts) {
-                if (now < d.getTrueEvalsStartTime() + d.getEvalTimeSetting()) {
-                    continue;
+        void release(int size, boolean data) {
+            (data ? reservedData : reservedEvents).addAndGet(-size);
+        }
+
+        /*
+            Add an element into a pending buffer applying the overflow policy.
+         */
+        private <T> void offer(RingBuffer<T> buffer, T element, AtomicLong dropped) {
+            while (!buffer.offer(element)) {
+                switch (overflowPolicy) {
+                    case DROP_OLDEST:
+                        if (null != buffer.poll()) {
+                            dropped.incrementAndGet();
+                        }
+                        break;
+                    case BLOCK:
+                        if (awaitCapacity(buffer)) {
+                            break;
+                        }
+                        // Shard is not firing, fall through and discard the element
+                    case REJECT:
+                    default:
+                        dropped.incrementAndGet();
+                        log.tracef("Shard [%s] overflow, removed: %s", index, element);
+                        return;
                 }
+            }
+        }
+
+        /*
+            Wait until the shard should fire its rules: new Data/Events are pending or the period is reached.
+            Bursts of Data/Events are coalesced so consecutive firings triggered by new Data/Events are
+            separated at least batchWindow ms, unless the pending bound is reached.
 
-                d.setSatisfied(true);
-                try {
-                    log.debugf("Dampening Timeout Hit! %s", d.toString());
-                    rules.updateFact(d);
-                    if (null == timeouts) {
-                        timeouts = new HashSet<>();
+            @return false if the shard has been shutdown
+         */
+        private boolean awaitFiring() throws InterruptedException {
+            firingLock.lock();
+            try {
+                while (running) {
+                    long now = System.currentTimeMillis();
+                    if (!active) {
+                        wakeUp.await(period, TimeUnit.MILLISECONDS);
+                        continue;
+                    }
+                    if (now >= nextFiring) {
+                        break;
+                    }
+                    if (signaled) {
+                        long nextBatch = lastFiring + batchWindow;
+                        if (now >= nextBatch || isFull()) {
+                            break;
+                        }
+                        wakeUp.await(nextBatch - now, TimeUnit.MILLISECONDS);
+                    } else {
+                        wakeUp.await(nextFiring - now, TimeUnit.MILLISECONDS);
                     }
-                    timeouts.add(d);
-                } catch (Exception e) {
-                    log.errorf(e, "Unable to update Dampening Fact on Timeout! %s", d.toString());
                 }
+                if (!running) {
+                    return false;
+                }
+                signaled = false;
+                lastFiring = System.currentTimeMillis();
+                nextFiring = lastFiring + period;
+                return true;
+            } finally {
+                firingLock.unlock();
+            }
+        }
 
+        private void signalDrained() {
+            firingLock.lock();
+            try {
+                drained.signalAll();
+            } finally {
+                firingLock.unlock();
             }
+        }
 
-            if (null == timeouts) {
-                return 0;
+        boolean isDataIdActive(String tenantId, String dataId) {
+            synchronized (shardCache) {
+                return shardCache.isDataIdActive(tenantId, dataId);
+            }
+        }
+
+        void addDataEntry(DataEntry entry) {
+            synchronized (shardCache) {
+                shardCache.add(entry);
             }
+        }
 
-            pendingTimeouts.removeAll(timeouts);
-            return timeouts.size();
+        void removeDataEntries(String tenantId, String triggerId) {
+            synchronized (shardCache) {
+                shardCache.remove(tenantId, triggerId);
+            }
         }
-    }
 
-    private void handleDisabledTriggers() {
-        try {
-            for (Trigger t : disabledTriggers) {
-                try {
-                    definitions.updateTriggerEnablement(t.getTenantId(), t.getId(), false);
+        void addData(Collection<Data> data) {
+            log.debugf("Adding [%s] to pendingData on shard [%s]", data, index);
+            for (Data d : data) {
+                offer(pendingData, d, droppedData);
+            }
+            if (overflowPolicy == OverflowPolicy.REJECT) {
+                release(data.size(), true);
+            }
+            signal();
+        }
 
-                } catch (Exception e) {
-                    log.errorf(e, "Failed to persist updated trigger. Could not autoDisable %s.", t);
-                }
+        void addEvents(Collection<Event> events) {
+            log.debugf("Adding [%s] to pendingEvents on shard [%s]", events, index);
+            for (Event e : events) {
+                offer(pendingEvents, e, droppedEvents);
             }
-        } finally {
-            disabledTriggers.clear();
+            if (overflowPolicy == OverflowPolicy.REJECT) {
+                release(events.size(), false);
+            }
+            signal();
         }
-    }
 
-    private void handleAutoResolvedTriggers() {
-        try {
-            for (Entry<Trigger, List<Set<ConditionEval>>> entry : autoResolvedTriggers.entrySet()) {
-                Trigger t = entry.getKey();
-                boolean manualReload = !t.isAutoResolveAlerts();
+        boolean hasPending() {
+            return !pendingData.isEmpty() || !pendingEvents.isEmpty();
+        }
+
+        private List<Data> getAndClearPendingData() {
+            List<Data> result = new ArrayList<>(pendingData.size());
+            pendingData.drainTo(result);
+            return result;
+        }
+
+        private List<Event> getAndClearPendingEvents() {
+            List<Event> result = new ArrayList<>(pendingEvents.size());
+            pendingEvents.drainTo(result);
+            return result;
+        }
+
+        private class RulesInvoker implements Runnable {
+            @Override
+            public void run() {
+                while (running) {
+                    try {
+                        if (awaitFiring()) {
+                            fireRules();
+                        }
+                    } catch (InterruptedException e) {
+                        if (running) {
+                            log.debugf("Rules firing on shard [%s] interrupted", index);
+                        }
+                    } catch (Throwable t) {
+                        log.errorProcessingRules(t.getMessage());
+                    }
+                }
+                log.debugf("Rules firing on shard [%s] stopped", index);
+            }
+
+            private void fireRules() {
+                int numTimeouts = checkPendingTimeouts();
+
+                int numMissingEvals = checkMissingStates();
+
+                if (!pendingData.isEmpty() || !pendingEvents.isEmpty() || numTimeouts > 0 || numMissingEvals > 0) {
+                    List<Data> newData = getAndClearPendingData();
+                    List<Event> newEvents = getAndClearPendingEvents();
+                    signalDrained();
+
+                    log.debugf("Executing rules engine on shard [%s] on %s datums, %s events, %s dampening timeouts.",
+                            index, newData.size(), newEvents.size(), numTimeouts);
+
+                    // Sorted once per firing cycle, for both the native triggers and the rules engine
+                    Collections.sort(newData);
 
-                // calling resolveAlertsForTrigger will result in a trigger reload (unless it fails),
-                // otherwise, manually reload the trigger back into the engine (in firing mode).
-                if (t.isAutoResolveAlerts()) {
                     try {
-                        alertsService.resolveAlertsForTrigger(t.getTenantId(), t.getId(), "AutoResolve",
-                                "Trigger AutoResolve=True", entry.getValue());
+                        if (null != nativeEvaluator && (!newData.isEmpty() || !newEvents.isEmpty())) {
+                            List<Data> rulesData = new ArrayList<>();
+                            List<Event> rulesEvents = new ArrayList<>();
+                            nativeEvaluator.evaluate(newData, newEvents, rulesData, rulesEvents);
+                            newData = rulesData;
+                            newEvents = rulesEvents;
+                        }
+
+                        if (newData.isEmpty() && newEvents.isEmpty()) {
+                            if (numTimeouts > 0 || numMissingEvals > 0) {
+                                rules.fireNoData();
+                            }
+
+                        } else {
+                            if (!newData.isEmpty()) {
+                                rules.addData(newData);
+                            }
+                            if (!newEvents.isEmpty()) {
+                                rules.addEvents(newEvents);
+                            }
+
+                            // release to GC
+                            newData = null;
+                            newEvents = null;
+
+                            rules.fire();
+                        }
+
+                        eventsWriter.write(alerts, events);
+                        alerts.clear();
+                        if (distributed && !events.isEmpty()) {
+                            /*
+                                Generated events on a node should be notified to other nodes for chained triggers
+                             */
+                            partitionManager.notifyEvents(new ArrayList<>(events));
+                        }
+                        events.clear();
+                        handleDisabledTriggers();
+                        handleAutoResolvedTriggers();
+
                     } catch (Exception e) {
-                        manualReload = true;
-                        log.errorf("Failed to resolve Alerts. Could not AutoResolve alerts for trigger %s.", t);
+                        e.printStackTrace();
+                        log.debugf("Error on rules processing: %s", e);
+                        log.errorProcessingRules(e.getMessage());
+                    } finally {
+                        alerts.clear();
+                        events.clear();
                     }
                 }
+            }
+
+            private int checkPendingTimeouts() {
+                if (pendingTimeouts.isEmpty()) {
+                    return 0;
+                }
+
+                long now = System.currentTimeMillis();
+                Set<Dampening> timeouts = null;
+                for (Dampening d : pendingTimeouts) {
+                    if (now < d.getTrueEvalsStartTime() + d.getEvalTimeSetting()) {
+                        continue;
+                    }
 
-                if (manualReload) {
+                    d.setSatisfied(true);
                     try {
-                        reloadTrigger(t.getTenantId(), t.getId());
+                        log.debugf("Dampening Timeout Hit! %s", d.toString());
+                        rules.updateFact(d);
+                        if (null == timeouts) {
+                            timeouts = new HashSet<>();
+                        }
+                        timeouts.add(d);
                     } catch (Exception e) {
-                        log.errorf("Failed to reload AutoResolved Trigger: %s.", t);
+                        log.errorf(e, "Unable to update Dampening Fact on Timeout! %s", d.toString());
                     }
+
                 }
+
+                if (null == timeouts) {
+                    return 0;
+                }
+
+                pendingTimeouts.removeAll(timeouts);
+                return timeouts.size();
             }
-        } finally {
-            autoResolvedTriggers.clear();
         }
-    }
 
-    private int checkMissingStates() {
-        if (missingStates.isEmpty()) {
-            return 0;
+        private void handleDisabledTriggers() {
+            try {
+                for (Trigger t : disabledTriggers) {
+                    try {
+                        definitions.updateTriggerEnablement(t.getTenantId(), t.getId(), false);
+
+                    } catch (Exception e) {
+                        log.errorf(e, "Failed to persist updated trigger. Could not autoDisable %s.", t);
+                    }
+                }
+            } finally {
+                disabledTriggers.clear();
+            }
         }
 
-        int numMatchingEvals = 0;
-        for (MissingState missingState : missingStates) {
-            if (missingState.getTriggerMode() != missingState.getTrigger().getMode()) {
-                continue;
+        private void handleAutoResolvedTriggers() throws InterruptedException {
+            if (autoResolvedTriggers.isEmpty()) {
+                return;
             }
+            // The alerts to resolve may be still waiting to be persisted
+            eventsWriter.flush();
+            try {
+                for (Entry<Trigger, List<Set<ConditionEval>>> entry : autoResolvedTriggers.entrySet()) {
+                    Trigger t = entry.getKey();
+                    boolean manualReload = !t.isAutoResolveAlerts();
+
+                    // calling resolveAlertsForTrigger will result in a trigger reload (unless it fails),
+                    // otherwise, manually reload the trigger back into the engine (in firing mode).
+                    if (t.isAutoResolveAlerts()) {
+                        try {
+                            alertsService.resolveAlertsForTrigger(t.getTenantId(), t.getId(), "AutoResolve",
+                                    "Trigger AutoResolve=True", entry.getValue());
+                        } catch (Exception e) {
+                            manualReload = true;
+                            log.errorf("Failed to resolve Alerts. Could not AutoResolve alerts for trigger %s.", t);
+                        }
+                    }
 
-            long now = System.currentTimeMillis();
-            rules.removeFact(missingState);
-            missingState.setTime(now);
-            if (missingState.getCondition().match(missingState.getPreviousTime(), now)) {
-                MissingConditionEval eval = new MissingConditionEval(missingState.getCondition(),
-                        missingState.getPreviousTime(),
-                        now);
-                missingState.setPreviousTime(now);
-                rules.addFact(eval);
-                numMatchingEvals++;
+                    if (manualReload) {
+                        try {
+                            reloadTrigger(t.getTenantId(), t.getId());
+                        } catch (Exception e) {
+                            log.errorf("Failed to reload AutoResolved Trigger: %s.", t);
+                        }
+                    }
+                }
+            } finally {
+                autoResolvedTriggers.clear();
             }
-            rules.addFact(missingState);
         }
 
-        return numMatchingEvals;
+        private int checkMissingStates() {
+            if (missingStates.isEmpty()) {
+                return 0;
+            }
+
+            int numMatchingEvals = 0;
+            for (MissingState missingState : missingStates) {
+                if (missingState.getTriggerMode() != missingState.getTrigger().getMode()) {
+                    continue;
+                }
+
+                long now = System.currentTimeMillis();
+                rules.removeFact(missingState);
+                missingState.setTime(now);
+                if (missingState.getCondition().match(missingState.getPreviousTime(), now)) {
+                    MissingConditionEval eval = new MissingConditionEval(missingState.getCondition(),
+                            missingState.getPreviousTime(),
+                            now);
+                    missingState.setPreviousTime(now);
+                    rules.addFact(eval);
+                    numMatchingEvals++;
+                }
+                rules.addFact(missingState);
+            }
+
+            return numMatchingEvals;
+        }
     }
 
     /*
-        Data incoming from a different node.  This has already been globally filtered but not locally filtered.
+        Data incoming from a different node.  This has already been globally filtered and routed to this node
+        because its dataIds are used here, it is still locally filtered in case the routing index was outdated.
         It does not need to be re-propagated.
 
-        We allow concurrent threads to make this call in order to process distributed data in parallel. We
-        use synchronized blocks to protect pendingData.
+        We allow concurrent threads to make this call in order to process distributed data in parallel. The
+        pendingData buffers are safe for concurrent producers.
      */
     @Override
     public void onNewData(Collection<Data> data) {
-        addData(new TreeSet<>(data));
+        try {
+            addData(data);
+        } catch (OverflowException e) {
+            // The sender has already accepted the Data, it is counted as dropped on this node
+            log.warnf("Data from other node rejected: %s", e.getMessage());
+        }
     }
 
     /*
-        Events incoming from a different node.  This has already been globally filtered but not locally filtered.
+        Events incoming from a different node.  This has already been globally filtered and routed to this node
+        because its dataIds are used here, it is still locally filtered in case the routing index was outdated.
         It does not need to be re-propagated.
 
-        We allow concurrent threads to make this call in order to process distributed data in parallel. We
-        use synchronized blocks to protect pendingEvents.
+        We allow concurrent threads to make this call in order to process distributed data in parallel. The
+        pendingEvents buffers are safe for concurrent producers.
      */
     @Override
     public void onNewEvents(Collection<Event> events) {
-        addEvents(new TreeSet<>(events));
+        try {
+            addEvents(events);
+        } catch (OverflowException e) {
+            // The sender has already accepted the Events, they are counted as dropped on this node
+            log.warnf("Events from other node rejected: %s", e.getMessage());
+        }
     }
 
     /*
@@ -814,6 +1456,7 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                 removeTrigger(removeTrigger);
                 break;
         }
+        publishDataIds();
     }
 
     /*
@@ -831,12 +1474,14 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
         log.debugf("Removed: %s", removed);
         log.debugf("Added: %s", added);
 
-        if (!pendingData.isEmpty() || !pendingEvents.isEmpty()) {
-            if (!pendingData.isEmpty()) {
-                log.warnf("Pending Data onPartitionChange: %s.", pendingData);
-            }
-            if (!!pendingEvents.isEmpty()) {
-                log.warnf("Pending Events onPartitionChange: %s.", pendingData);
+        for (EngineShard shard : shards) {
+            if (shard.hasPending()) {
+                if (!shard.pendingData.isEmpty()) {
+                    log.warnf("Pending Data onPartitionChange: [%s] datums.", shard.pendingData.size());
+                }
+                if (!shard.pendingEvents.isEmpty()) {
+                    log.warnf("Pending Events onPartitionChange: [%s] events.", shard.pendingEvents.size());
+                }
             }
         }
 
@@ -860,5 +1505,20 @@ public class AlertsEngineImpl implements AlertsEngine, PartitionTriggerListener,
                 reloadTrigger(tenantId, triggerId);
             });
         }
+        publishDataIds();
+    }
+
+    /*
+        Other nodes send new data and events to this node only when its dataIds are used by local triggers,
+        so the dataIds are published once the triggers of the node have changed.
+        Changes are coalesced, a reload of many triggers publishes the dataIds once instead of once per trigger.
+     */
+    private void publishDataIds() {
+        if (dataIdsChanged.compareAndSet(false, true)) {
+            executor.submit(() -> {
+                dataIdsChanged.set(false);
+                partitionManager.notifyDataIds(alertsEngineCache.getActiveDataIds());
+            });
+        }
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.hawkular.alerts.engine.service.RulesEngine.MIN_REPORTING_INTERVAL_DATA;
+import static org.hawkular.alerts.engine.service.RulesEngine.MIN_REPORTING_INTERVAL_DATA_DEFAULT;
+import static org.hawkular.alerts.engine.service.RulesEngine.MIN_REPORTING_INTERVAL_DATA_ENV;
+import static org.hawkular.alerts.engine.service.RulesEngine.MIN_REPORTING_INTERVAL_EVENTS;
+import static org.hawkular.alerts.engine.service.RulesEngine.MIN_REPORTING_INTERVAL_EVENTS_DEFAULT;
+import static org.hawkular.alerts.engine.service.RulesEngine.MIN_REPORTING_INTERVAL_EVENTS_ENV;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.commons.log.MsgLogger;
+import org.hawkular.commons.log.MsgLogging;
+import org.hawkular.commons.properties.HawkularProperties;
+
+/**
+ * Splits the pending Data and Events of a firing into the batches of the firing cycles.
+ *
+ * For any dataId only the oldest Data/Event is processed in one firing cycle. Duplicates and minReportingInterval
+ * violators are removed, the rest is deferred to a subsequent cycle. The same batching is applied by the rules
+ * engine and by the native evaluation of the triggers.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DataBatcher {
+    private final MsgLogger log = MsgLogging.getMsgLogger(DataBatcher.class);
+
+    private final int minReportingIntervalData;
+    private final int minReportingIntervalEvents;
+
+    public DataBatcher() {
+        this(new Integer(HawkularProperties.getProperty(MIN_REPORTING_INTERVAL_DATA,
+                        MIN_REPORTING_INTERVAL_DATA_ENV,
+                        MIN_REPORTING_INTERVAL_DATA_DEFAULT)),
+                new Integer(HawkularProperties.getProperty(MIN_REPORTING_INTERVAL_EVENTS,
+                        MIN_REPORTING_INTERVAL_EVENTS_ENV,
+                        MIN_REPORTING_INTERVAL_EVENTS_DEFAULT)));
+    }
+
+    public DataBatcher(int minReportingIntervalData, int minReportingIntervalEvents) {
+        this.minReportingIntervalData = minReportingIntervalData;
+        this.minReportingIntervalEvents = minReportingIntervalEvents;
+    }
+
+    /**
+     * @param data the pending Data, sorted by (id ASC, timestamp ASC)
+     * @param deferred output, the Data deferred to the next firing cycle, in the same order
+     * @return the Data to process in this firing cycle, at most one datum per dataId
+     */
+    public List<Data> batchData(List<Data> data, List<Data> deferred) {
+        List<Data> batch = new ArrayList<>();
+        Data previousData = null;
+        Data lastData = null;
+        for (Data d : data) {
+            // Remove duplicates
+            if (lastData != null && d.compareTo(lastData) == 0) {
+                continue;
+            }
+            lastData = d;
+            if (!d.same(previousData)) {
+                previousData = d;
+                batch.add(d);
+
+            } else {
+                if ((d.getTimestamp() - previousData.getTimestamp()) < minReportingIntervalData) {
+                    log.tracef("MinReportingInterval violation, prev: %s, removed: %s", previousData, d);
+                } else {
+                    deferred.add(d);
+                    log.tracef("Deferring data, keep: %s, defer: %s", previousData, d);
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * @param events the pending Events, sorted by (dataId ASC, ctime ASC)
+     * @param deferred output, the Events deferred to the next firing cycle, in the same order
+     * @return the Events to process in this firing cycle, at most one event per dataId
+     */
+    public List<Event> batchEvents(List<Event> events, List<Event> deferred) {
+        List<Event> batch = new ArrayList<>();
+        Event previousEvent = null;
+        Event lastEvent = null;
+        for (Event e : events) {
+            // Remove duplicates
+            if (lastEvent != null && e.compareTo(lastEvent) == 0) {
+                continue;
+            }
+            lastEvent = e;
+            if (!e.same(previousEvent)) {
+                previousEvent = e;
+                batch.add(e);
+
+            } else {
+                if ((e.getCtime() - previousEvent.getCtime()) < minReportingIntervalEvents) {
+                    log.tracef("MinReportingInterval violation, prev: %s, removed: %s", previousEvent, e);
+                } else {
+                    deferred.add(e);
+                    log.tracef("Deferring event, keep: %s, defer: %s", previousEvent, e);
+                }
+            }
+        }
+        return batch;
+    }
+}
@@ -16,9 +16,10 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.TreeSet;
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Predicate;
 
 import org.drools.core.event.DebugAgendaEventListener;
@@ -28,7 +29,6 @@ import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.engine.service.RulesEngine;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
-import org.hawkular.commons.properties.HawkularProperties;
 import org.kie.api.KieServices;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
@@ -53,15 +53,21 @@ public class DroolsRulesEngineImpl implements RulesEngine {
     private static final long PERF_BATCHING_THRESHOLD = 3000L; // 3 seconds
     private static final long PERF_FIRING_THRESHOLD = 5000L; // 5 seconds
 
-    private int minReportingIntervalData;
-    private int minReportingIntervalEvents;
+    /*
+        Keeps only the least recent Data/Event for any dataId on a firing cycle, shared with the native evaluation
+     */
+    private final DataBatcher batcher = new DataBatcher();
 
     private KieServices ks;
     private KieContainer kc;
     private KieSession kSession;
 
-    TreeSet<Data> pendingData = new TreeSet<>();
-    TreeSet<Event> pendingEvents = new TreeSet<>();
+    /*
+        Pending Data/Events are sorted before a firing cycle only when they are not ordered yet. The engine shards
+        add the Data already sorted, and the Data/Events deferred by the batcher keep their order.
+     */
+    List<Data> pendingData = new ArrayList<>();
+    List<Event> pendingEvents = new ArrayList<>();
 
     public DroolsRulesEngineImpl() {
         log.debug("Creating instance.");
@@ -73,16 +79,6 @@ public class DroolsRulesEngineImpl implements RulesEngine {
             kSession.addEventListener(new DebugAgendaEventListener());
             kSession.addEventListener(new DebugRuleRuntimeEventListener());
         }
-
-        minReportingIntervalData = new Integer(
-                HawkularProperties.getProperty(MIN_REPORTING_INTERVAL_DATA,
-                        MIN_REPORTING_INTERVAL_DATA_ENV,
-                        MIN_REPORTING_INTERVAL_DATA_DEFAULT));
-
-        minReportingIntervalEvents = new Integer(
-                HawkularProperties.getProperty(MIN_REPORTING_INTERVAL_EVENTS,
-                        MIN_REPORTING_INTERVAL_EVENTS_ENV,
-                        MIN_REPORTING_INTERVAL_EVENTS_DEFAULT));
     }
 
     @Override
@@ -127,12 +123,12 @@ public class DroolsRulesEngineImpl implements RulesEngine {
     }
 
     @Override
-    public void addData(TreeSet<Data> data) {
+    public void addData(Collection<Data> data) {
         pendingData.addAll(data);
     }
 
     @Override
-    public void addEvents(TreeSet<Event> events) {
+    public void addEvents(Collection<Event> events) {
         pendingEvents.addAll(events);
     }
 
@@ -154,8 +150,8 @@ public class DroolsRulesEngineImpl implements RulesEngine {
     public void fire() {
         // The rules engine requires that for any DataId only the oldest Data instance is processed in one
         // execution of the rules.  So, if we find multiple Data instances for the same Id, defer all but
-        // the oldest to a subsequent run. Note that pendingData is already sorted by (id ASC, timestamp ASC) so
-        // the iterator will present Data with the same id together, and time-ordered.
+        // the oldest to a subsequent run. Note that pendingData is sorted by (id ASC, timestamp ASC) before each
+        // firing cycle so the iteration will present Data with the same id together, and time-ordered.
         int initialPendingData = pendingData.size();
         int initialPendingEvents = pendingEvents.size();
         int fireCycle = 0;
@@ -188,29 +184,16 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
     private void batchData() {
         long startBatching = System.currentTimeMillis();
-        TreeSet<Data> batchData = pendingData;
-        pendingData = new TreeSet<>();
-
-        // Keep only the least recent datum for any dataId. Remove minReportingInterval violators, defer the rest
-        Data previousData = null;
-        for (Iterator<Data> i = batchData.iterator(); i.hasNext();) {
-            Data d = i.next();
-            if (!d.same(previousData)) {
-                previousData = d;
-                kSession.insert(d);
-
-            } else {
-                if ((d.getTimestamp() - previousData.getTimestamp()) < minReportingIntervalData) {
-                    log.tracef("MinReportingInterval violation, prev: %s, removed: %s", previousData, d);
-                } else {
-                    pendingData.add(d);
-                    log.tracef("Deferring data, keep: %s, defer: %s", previousData, d);
-                }
-            }
+        List<Data> batchData = pendingData;
+        pendingData = new ArrayList<>();
+        sort(batchData);
 
-            if (!pendingData.isEmpty()) {
-                log.debugf("Deferring [%s] Datum(s) to next firing !!", pendingData.size());
-            }
+        for (Data d : batcher.batchData(batchData, pendingData)) {
+            kSession.insert(d);
+        }
+
+        if (!pendingData.isEmpty()) {
+            log.debugf("Deferring [%s] Datum(s) to next firing !!", pendingData.size());
         }
 
         long batchingTime = System.currentTimeMillis() - startBatching;
@@ -223,25 +206,12 @@ public class DroolsRulesEngineImpl implements RulesEngine {
 
     private void batchEvents() {
         long startBatching = System.currentTimeMillis();
-        TreeSet<Event> batchEvents = pendingEvents;
-        pendingEvents = new TreeSet<>();
-
-        // Keep only the least recent datum for any dataId. Remove minReportingInterval violators, defer the rest
-        Event previousEvent = null;
-        for (Iterator<Event> i = batchEvents.iterator(); i.hasNext();) {
-            Event e = i.next();
-            if (!e.same(previousEvent)) {
-                previousEvent = e;
-                kSession.insert(e);
-
-            } else {
-                if ((e.getCtime() - previousEvent.getCtime()) < minReportingIntervalEvents) {
-                    log.tracef("MinReportingInterval violation, prev: %s, removed: %s", previousEvent, e);
-                } else {
-                    pendingEvents.add(e);
-                    log.tracef("Deferring event, keep: %s, defer: %s", previousEvent, e);
-                }
-            }
+        List<Event> batchEvents = pendingEvents;
+        pendingEvents = new ArrayList<>();
+        sort(batchEvents);
+
+        for (Event e : batcher.batchEvents(batchEvents, pendingEvents)) {
+            kSession.insert(e);
         }
 
         if (!pendingEvents.isEmpty()) {
@@ -256,6 +226,15 @@ public class DroolsRulesEngineImpl implements RulesEngine {
         }
     }
 
+    private static <T extends Comparable<? super T>> void sort(List<T> facts) {
+        for (int i = 1; i < facts.size(); i++) {
+            if (facts.get(i - 1).compareTo(facts.get(i)) > 0) {
+                Collections.sort(facts);
+                return;
+            }
+        }
+    }
+
     @Override
     public void fireNoData() {
         kSession.fireAllRules();
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.hawkular.alerts.api.util.Util.isEmpty;
+import static org.hawkular.alerts.engine.util.Utils.extractAlertIds;
+import static org.hawkular.alerts.engine.util.Utils.extractCategories;
+import static org.hawkular.alerts.engine.util.Utils.extractEventIds;
+import static org.hawkular.alerts.engine.util.Utils.extractSeverities;
+import static org.hawkular.alerts.engine.util.Utils.extractStatus;
+import static org.hawkular.alerts.engine.util.Utils.extractTriggerIds;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+
+import org.hawkular.alerts.api.model.Severity;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Alert.Status;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.event.EventType;
+import org.hawkular.alerts.api.services.AlertsCriteria;
+import org.hawkular.alerts.api.services.EventsChangeListener;
+import org.hawkular.alerts.api.services.EventsCriteria;
+import org.hawkular.commons.log.MsgLogger;
+import org.hawkular.commons.log.MsgLogging;
+
+/**
+ * Notify {@link EventsChangeListener} instances of the alerts and events stored on this node. In distributed mode
+ * the changes stored on other nodes are received through the PartitionManager and notified here too.
+ *
+ * AlertsCriteria and EventsCriteria are compiled into predicates at registration time so each change is matched
+ * in memory without querying the backend. Tag queries can not be evaluated in memory, for those criteria the
+ * candidates are confirmed with a {@link ChangesVerifier} which performs a query restricted to the candidate ids.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class EventsChangeNotifier {
+    private final MsgLogger log = MsgLogging.getMsgLogger(EventsChangeNotifier.class);
+
+    private final List<Subscription<Alert>> alertsSubscriptions = new CopyOnWriteArrayList<>();
+
+    private final List<Subscription<Event>> eventsSubscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Confirm candidates that passed the compiled predicate of a subscription.
+     */
+    public interface ChangesVerifier<T extends Event> {
+        List<T> verify(List<T> candidates) throws Exception;
+    }
+
+    public void registerAlertsListener(EventsChangeListener<Alert> listener, Set<String> tenantIds,
+            AlertsCriteria criteria, ChangesVerifier<Alert> verifier) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must be not null");
+        }
+        if (isEmpty(tenantIds)) {
+            throw new IllegalArgumentException("TenantIds must be not null");
+        }
+        boolean thin = criteria != null && criteria.isThin();
+        alertsSubscriptions.add(new Subscription<>(listener, compile(tenantIds, criteria), verifier, thin));
+    }
+
+    public void registerEventsListener(EventsChangeListener<Event> listener, Set<String> tenantIds,
+            EventsCriteria criteria, ChangesVerifier<Event> verifier) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must be not null");
+        }
+        if (isEmpty(tenantIds)) {
+            throw new IllegalArgumentException("TenantIds must be not null");
+        }
+        eventsSubscriptions.add(new Subscription<>(listener, compile(tenantIds, criteria), verifier, false));
+    }
+
+    public void unregisterListener(EventsChangeListener<?> listener) {
+        alertsSubscriptions.removeIf(s -> s.listener == listener);
+        eventsSubscriptions.removeIf(s -> s.listener == listener);
+    }
+
+    /**
+     * @return true if any listener is registered for alerts or events changes.
+     */
+    public boolean hasListeners() {
+        return !alertsSubscriptions.isEmpty() || !eventsSubscriptions.isEmpty();
+    }
+
+    /**
+     * @param alerts alerts added, acknowledged or resolved.
+     */
+    public void notifyAlerts(Collection<Alert> alerts) {
+        notify(alertsSubscriptions, alerts);
+    }
+
+    /**
+     * @param events events or alerts stored for the first time.
+     */
+    public void notifyEvents(Collection<? extends Event> events) {
+        notify(eventsSubscriptions, events);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Event> void notify(List<Subscription<T>> subscriptions, Collection<? extends Event> changes) {
+        if (subscriptions.isEmpty() || isEmpty(changes)) {
+            return;
+        }
+        for (Subscription<T> subscription : subscriptions) {
+            List<T> matching = new ArrayList<>();
+            for (Event change : changes) {
+                if (subscription.predicate.test(change)) {
+                    matching.add((T) change);
+                }
+            }
+            if (matching.isEmpty()) {
+                continue;
+            }
+            try {
+                if (subscription.verifier != null) {
+                    matching = subscription.verifier.verify(matching);
+                    if (isEmpty(matching)) {
+                        continue;
+                    }
+                }
+                if (subscription.thin) {
+                    List<T> thinChanges = new ArrayList<>(matching.size());
+                    for (T change : matching) {
+                        Alert alert = new Alert((Alert) change);
+                        alert.setDampening(null);
+                        alert.setEvalSets(null);
+                        alert.setResolvedEvalSets(null);
+                        thinChanges.add((T) alert);
+                    }
+                    matching = thinChanges;
+                }
+                subscription.listener.onChange(matching);
+            } catch (Exception e) {
+                log.errorf("Error notifying listener %s. Reason: %s", subscription.listener, e.toString());
+            }
+        }
+    }
+
+    static Predicate<Event> compile(Set<String> tenantIds, AlertsCriteria criteria) {
+        Set<String> tenants = new HashSet<>(tenantIds);
+        Predicate<Event> predicate = e -> e instanceof Alert && tenants.contains(e.getTenantId());
+        if (criteria == null) {
+            return predicate;
+        }
+        Set<String> alertIds = extractAlertIds(criteria);
+        if (!alertIds.isEmpty()) {
+            predicate = predicate.and(e -> alertIds.contains(e.getId()));
+        }
+        Set<String> triggerIds = extractTriggerIds(criteria);
+        if (!triggerIds.isEmpty()) {
+            predicate = predicate.and(e -> triggerIds.contains(triggerId(e)));
+        }
+        Set<Severity> severities = extractSeverities(criteria);
+        if (!severities.isEmpty()) {
+            predicate = predicate.and(e -> severities.contains(((Alert) e).getSeverity()));
+        }
+        Set<Status> statuses = extractStatus(criteria);
+        if (!statuses.isEmpty()) {
+            predicate = predicate.and(e -> statuses.contains(((Alert) e).getStatus()));
+        }
+        return predicate;
+    }
+
+    static Predicate<Event> compile(Set<String> tenantIds, EventsCriteria criteria) {
+        Set<String> tenants = new HashSet<>(tenantIds);
+        Predicate<Event> predicate = e -> tenants.contains(e.getTenantId());
+        if (criteria == null) {
+            return predicate;
+        }
+        if (criteria.hasEventTypeCriteria()) {
+            try {
+                String eventType = EventType.valueOf(criteria.getEventType()).name();
+                predicate = predicate.and(e -> eventType.equals(e.getEventType()));
+            } catch (Exception e) {
+                // Same as queries, an invalid EventType is ignored
+            }
+        }
+        Set<String> eventIds = extractEventIds(criteria);
+        if (!eventIds.isEmpty()) {
+            predicate = predicate.and(e -> eventIds.contains(e.getId()));
+        }
+        Set<String> triggerIds = extractTriggerIds(criteria);
+        if (!triggerIds.isEmpty()) {
+            predicate = predicate.and(e -> triggerIds.contains(triggerId(e)));
+        }
+        Set<String> categories = extractCategories(criteria);
+        if (!categories.isEmpty()) {
+            predicate = predicate.and(e -> categories.contains(e.getCategory()));
+        }
+        return predicate;
+    }
+
+    private static String triggerId(Event e) {
+        return e.getTrigger() != null ? e.getTrigger().getId() : null;
+    }
+
+    private static class Subscription<T extends Event> {
+        EventsChangeListener<T> listener;
+        Predicate<Event> predicate;
+        ChangesVerifier<T> verifier;
+        boolean thin;
+
+        Subscription(EventsChangeListener<T> listener, Predicate<Event> predicate, ChangesVerifier<T> verifier,
+                boolean thin) {
+            this.listener = listener;
+            this.predicate = predicate;
+            this.verifier = verifier;
+            this.thin = thin;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.log.AlertingLogger;
+import org.hawkular.commons.log.MsgLogging;
+
+/**
+ * Write-behind persistence of the Alerts and Events generated by the rules engine.
+ *
+ * The firing threads hand the Alerts and Events to a bounded queue and go on with the rules evaluation.
+ * A writer thread commits them in groups, a group is committed when it reaches the group commit size or when its
+ * oldest element has waited for the group commit latency. A firing thread only blocks when the queue is full.
+ *
+ * With writeBehind disabled the Alerts and Events are persisted synchronously by the caller.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class EventsWriter {
+    private static final AlertingLogger log = MsgLogging.getMsgLogger(AlertingLogger.class, EventsWriter.class);
+
+    private final AlertsService alertsService;
+    private final boolean writeBehind;
+    private final int groupCommitSize;
+    private final long groupCommitLatency;
+    private final BlockingQueue<Write> queue;
+
+    /*
+        Number of Alerts/Events queued and number of Alerts/Events processed, committed or failed.
+        A flush waits until the processed count reaches the queued count observed at the flush call.
+     */
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Object processedLock = new Object();
+    private long processed = 0;
+    private volatile long lastCommit = 0;
+
+    /*
+        Writes hold the read lock from the running check until their Alerts/Events are queued, shutdown takes the
+        write lock to stop the writer, so a write is either rejected or queued before the final drain.
+     */
+    private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private final Thread writerThread;
+
+    /**
+     * @param alertsService the service used to persist the Alerts and Events
+     * @param writeBehind true to persist in background, false to persist on the caller thread
+     * @param capacity max number of Alerts and Events waiting to be persisted
+     * @param groupCommitSize max number of Alerts and Events committed together
+     * @param groupCommitLatency max time in milliseconds an Alert or Event waits to be committed
+     */
+    public EventsWriter(AlertsService alertsService, boolean writeBehind, int capacity, int groupCommitSize,
+            long groupCommitLatency) {
+        if (alertsService == null) {
+            throw new IllegalArgumentException("AlertsService must be not null");
+        }
+        if (capacity < 1 || groupCommitSize < 1 || groupCommitLatency < 0) {
+            throw new IllegalArgumentException("Capacity and group commit size must be positive");
+        }
+        this.alertsService = alertsService;
+        this.writeBehind = writeBehind;
+        this.groupCommitSize = groupCommitSize;
+        this.groupCommitLatency = groupCommitLatency;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        if (writeBehind) {
+            writerThread = new Thread(this::writeLoop, "AlertsEngineImpl-Writer");
+            writerThread.start();
+        } else {
+            writerThread = null;
+        }
+    }
+
+    /**
+     * Persist Alerts and Events. With writeBehind they are queued, blocking while the queue is full.
+     *
+     * @param alerts the Alerts to persist
+     * @param events the Events to persist
+     */
+    public void write(Collection<Alert> alerts, Collection<Event> events) throws Exception {
+        if (!writeBehind) {
+            alertsService.addAlerts(alerts);
+            alertsService.persistEvents(events);
+            long size = alerts.size() + events.size();
+            queued.addAndGet(size);
+            committed.addAndGet(size);
+            if (size > 0) {
+                lastCommit = System.currentTimeMillis();
+            }
+            return;
+        }
+        runningLock.readLock().lockInterruptibly();
+        try {
+            if (!running) {
+                throw new IllegalStateException("EventsWriter is stopped");
+            }
+            for (Alert alert : alerts) {
+                queue.put(new Write(alert, true));
+                queued.incrementAndGet();
+            }
+            for (Event event : events) {
+                queue.put(new Write(event, false));
+                queued.incrementAndGet();
+            }
+        } finally {
+            runningLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Wait until all the Alerts and Events queued before this call are persisted.
+     */
+    public void flush() throws InterruptedException {
+        if (!writeBehind) {
+            return;
+        }
+        long target = queued.get();
+        synchronized (processedLock) {
+            while (processed < target && writerThread.isAlive()) {
+                processedLock.wait(groupCommitLatency + 1);
+            }
+        }
+    }
+
+    /**
+     * Stop the writer once the queued Alerts and Events are persisted. Writes after this call are rejected.
+     */
+    public void shutdown() {
+        if (!writeBehind) {
+            return;
+        }
+        runningLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            runningLock.writeLock().unlock();
+        }
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Map<String, String> getStatus() {
+        Map<String, String> status = new HashMap<>();
+        status.put("engine-write-behind", String.valueOf(writeBehind));
+        status.put("engine-write-pending", String.valueOf(queue.size()));
+        status.put("engine-write-committed", String.valueOf(committed.get()));
+        status.put("engine-write-failed", String.valueOf(failed.get()));
+        status.put("engine-write-last-commit", String.valueOf(lastCommit));
+        return status;
+    }
+
+    private void writeLoop() {
+        List<Write> group = new ArrayList<>(groupCommitSize);
+        while (running) {
+            try {
+                Write first = queue.take();
+                group.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(groupCommitLatency);
+                while (group.size() < groupCommitSize) {
+                    queue.drainTo(group, groupCommitSize - group.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (group.size() >= groupCommitSize || remaining <= 0) {
+                        break;
+                    }
+                    Write next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            }
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+        // No more writes are accepted, commit the Alerts/Events still pending
+        Thread.interrupted();
+        do {
+            queue.drainTo(group, groupCommitSize - group.size());
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        } while (!queue.isEmpty());
+        log.debug("EventsWriter stopped");
+    }
+
+    private void commit(List<Write> group) {
+        List<Alert> alerts = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        for (Write write : group) {
+            if (write.alert) {
+                alerts.add((Alert) write.event);
+            } else {
+                events.add(write.event);
+            }
+        }
+        try {
+            alertsService.addAlerts(alerts);
+            alertsService.persistEvents(events);
+            committed.addAndGet(group.size());
+            lastCommit = System.currentTimeMillis();
+            log.debugf("Committed %s alerts and %s events", alerts.size(), events.size());
+        } catch (Exception e) {
+            failed.addAndGet(group.size());
+            log.debug(e.getMessage(), e);
+            log.errorf("Failed to persist %s alerts and %s events: %s", alerts.size(), events.size(),
+                    e.getMessage());
+        }
+        synchronized (processedLock) {
+            processed += group.size();
+            processedLock.notifyAll();
+        }
+    }
+
+    private static class Write {
+        private final Event event;
+        private final boolean alert;
+
+        Write(Event event, boolean alert) {
+            this.event = event;
+            this.alert = alert;
+        }
+    }
+}
@@ -19,33 +19,32 @@ package org.hawkular.alerts.engine.impl;
 import static org.hawkular.alerts.api.util.Util.isEmpty;
 
 import java.util.Collection;
-import java.util.Iterator;
 import java.util.Set;
-import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
 
+import org.hawkular.alerts.api.exception.OverflowException;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.services.DefinitionsService;
 import org.hawkular.alerts.engine.service.AlertsEngine;
 import org.hawkular.alerts.engine.service.IncomingDataManager;
 import org.hawkular.alerts.engine.service.PartitionManager;
-import org.hawkular.alerts.engine.service.RulesEngine;
 import org.hawkular.alerts.filter.CacheClient;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
-import org.hawkular.commons.properties.HawkularProperties;
 
 /**
+ * Incoming Data and Events are filtered and handed to the AlertsEngine asynchronously.
+ *
+ * Data and Events are not ordered here, the minReportingInterval and the ordering are applied downstream, once,
+ * before the rules are fired.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
 public class IncomingDataManagerImpl implements IncomingDataManager {
     private final MsgLogger log = MsgLogging.getMsgLogger(IncomingDataManagerImpl.class);
 
-    private int minReportingIntervalData;
-    private int minReportingIntervalEvents;
-
     private ExecutorService executor;
 
     DataDrivenGroupCacheManager dataDrivenGroupCacheManager;
@@ -82,27 +81,17 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
         this.dataIdCache = dataIdCache;
     }
 
-    public void init() {
-        try {
-            minReportingIntervalData = new Integer(
-                    HawkularProperties.getProperty(RulesEngine.MIN_REPORTING_INTERVAL_DATA,
-                            RulesEngine.MIN_REPORTING_INTERVAL_DATA_ENV,
-                            RulesEngine.MIN_REPORTING_INTERVAL_DATA_DEFAULT));
-
-            minReportingIntervalEvents = new Integer(
-                    HawkularProperties.getProperty(RulesEngine.MIN_REPORTING_INTERVAL_EVENTS,
-                            RulesEngine.MIN_REPORTING_INTERVAL_EVENTS_ENV,
-                            RulesEngine.MIN_REPORTING_INTERVAL_EVENTS_DEFAULT));
-        } catch (Throwable t) {
-            if (log.isDebugEnabled()) {
-                t.printStackTrace();
-            }
-            log.errorf("Failed to initialize: %s", t.getMessage());
-        }
-    }
-
     @Override
     public void bufferData(IncomingData incomingData) {
+        if (!alertsEngine.isAcceptingData()) {
+            throw new OverflowException("AlertsEngine is full, rejecting [" + incomingData.incomingData.size()
+                    + "] datums");
+        }
+        if (alertsEngine.rejectsOnOverflow()) {
+            // The engine accepts or rejects the Data on the caller thread, so an overflow is reported to the caller
+            processData(incomingData);
+            return;
+        }
         executor.submit(() -> {
             processData(incomingData);
         });
@@ -110,6 +99,15 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
 
     @Override
     public void bufferEvents(IncomingEvents incomingEvents) {
+        if (!alertsEngine.isAcceptingData()) {
+            throw new OverflowException("AlertsEngine is full, rejecting [" + incomingEvents.incomingEvents.size()
+                    + "] events");
+        }
+        if (alertsEngine.rejectsOnOverflow()) {
+            // The engine accepts or rejects the Events on the caller thread, so an overflow is reported to the caller
+            processEvents(incomingEvents);
+            return;
+        }
         executor.submit(() -> {
             processEvents(incomingEvents);
         });
@@ -119,12 +117,7 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
         log.debugf("Processing [%s] datums for AlertsEngine.", incomingData.incomingData.size());
 
         // remove data not needed by the defined triggers
-        // remove duplicates and apply natural ordering
-        TreeSet<Data> filteredData = new TreeSet<Data>(filterIncomingData(incomingData));
-
-        // remove offenders of minReportingInterval. Note, this filters only this incoming batch, this is
-        // performed again, downstream,after data has been "stitched together" for evaluation.
-        enforceMinReportingInterval(filteredData);
+        Collection<Data> filteredData = filterIncomingData(incomingData);
 
         // check to see if any data can be used to generate data-driven group members
         checkDataDrivenGroupTriggers(filteredData);
@@ -133,6 +126,8 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
             log.debugf("Sending [%s] datums to AlertsEngine.", filteredData.size());
             alertsEngine.sendData(filteredData);
 
+        } catch (OverflowException e) {
+            throw e;
         } catch (Exception e) {
             log.errorf("Failed to send [%s] datums:", filteredData.size(), e.getMessage());
         }
@@ -142,15 +137,12 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
         log.debugf("Processing [%s] events to AlertsEngine.", incomingEvents.incomingEvents.size());
 
         // remove events not needed by the defined triggers
-        // remove duplicates and apply natural ordering
-        TreeSet<Event> filteredEvents = new TreeSet<Event>(filterIncomingEvents(incomingEvents));
-
-        // remove offenders of minReportingInterval. Note, this filters only this incoming batch, this is
-        // performed again, downstream,after data has been "stitched together" for evaluation.
-        enforceMinReportingIntervalEvents(filteredEvents);
+        Collection<Event> filteredEvents = filterIncomingEvents(incomingEvents);
 
         try {
             alertsEngine.sendEvents(filteredEvents);
+        } catch (OverflowException e) {
+            throw e;
         } catch (Exception e) {
             log.errorf("Failed sending [%s] events: %s", filteredEvents.size(), e.getMessage());
         }
@@ -170,44 +162,6 @@ public class IncomingDataManagerImpl implements IncomingDataManager {
         return events;
     }
 
-    private void enforceMinReportingInterval(TreeSet<Data> orderedData) {
-        int beforeSize = orderedData.size();
-        Data prev = null;
-        for (Iterator<Data> i = orderedData.iterator(); i.hasNext();) {
-            Data d = i.next();
-            if (!d.same(prev)) {
-                prev = d;
-            } else {
-                if ((d.getTimestamp() - prev.getTimestamp()) < minReportingIntervalData) {
-                    log.tracef("MinReportingInterval violation, prev: %s, removed: %s", prev, d);
-                    i.remove();
-                }
-            }
-        }
-        if (log.isDebugEnabled() && beforeSize != orderedData.size()) {
-            log.debugf("MinReportingInterval Data violations: [%s]", beforeSize - orderedData.size());
-        }
-    }
-
-    private void enforceMinReportingIntervalEvents(TreeSet<Event> orderedEvents) {
-        int beforeSize = orderedEvents.size();
-        Event prev = null;
-        for (Iterator<Event> i = orderedEvents.iterator(); i.hasNext();) {
-            Event e = i.next();
-            if (!e.same(prev)) {
-                prev = e;
-            } else {
-                if ((e.getCtime() - prev.getCtime()) < minReportingIntervalEvents) {
-                    log.tracef("MinReportingInterval violation, prev: %s, removed: %s", prev, e);
-                    i.remove();
-                }
-            }
-        }
-        if (log.isDebugEnabled() && beforeSize != orderedEvents.size()) {
-            log.debugf("MinReportingInterval Events violations: [%s]", beforeSize - orderedEvents.size());
-        }
-    }
-
     private void checkDataDrivenGroupTriggers(Collection<Data> data) {
         if (!dataDrivenGroupCacheManager.isCacheActive()) {
             return;
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.AvailabilityConditionEval;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.StringCondition;
+import org.hawkular.alerts.api.model.condition.StringConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdRangeConditionEval;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.event.EventType;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.ActionsService;
+import org.hawkular.alerts.log.AlertingLogger;
+import org.hawkular.commons.log.MsgLogging;
+
+/**
+ * Evaluates simple triggers without the rules engine.
+ *
+ * A trigger is evaluated natively when it has a single FIRING condition (and at most one AUTORESOLVE condition) of
+ * type THRESHOLD, RANGE, AVAILABILITY or STRING, and default dampening. These triggers are indexed by
+ * (tenantId, dataId) so every Data is matched only against the conditions on its dataId, without the
+ * Trigger/Condition/Data joins and the ConditionEval facts of the rules. ConditionEvals are created only on a match.
+ *
+ * The rest of the triggers are loaded into the RulesEngine. The evaluator keeps track of the dataIds used by them,
+ * so Data only relevant to native triggers is not inserted into the rules engine. Events generated natively are
+ * passed to the rules engine when a rules trigger may chain on them.
+ *
+ * The behavior mimics the ConditionMatch.drl rules: Alerts/Events generation, actions, AutoDisable and AutoResolve.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class NativeTriggerEvaluator {
+    private final AlertingLogger log = MsgLogging.getMsgLogger(AlertingLogger.class, NativeTriggerEvaluator.class);
+
+    private final ActionsService actions;
+    private final List<Alert> alerts;
+    private final List<Event> events;
+    private final Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers;
+    private final Set<Trigger> disabledTriggers;
+
+    /*
+        Same batching of the incoming Data as in the rules engine
+     */
+    private final DataBatcher batcher;
+
+    /*
+        tenantId -> dataId -> matchers of the native triggers
+     */
+    private final Map<String, Map<String, List<NativeMatcher>>> matchers = new HashMap<>();
+
+    /*
+        tenantId -> dataId -> number of rules engine triggers using the dataId
+     */
+    private final Map<String, Map<String, Integer>> rulesDataIds = new HashMap<>();
+
+    /*
+        tenantId -> triggerId -> loaded trigger
+     */
+    private final Map<String, Map<String, LoadedTrigger>> triggers = new HashMap<>();
+
+    public NativeTriggerEvaluator(ActionsService actions, List<Alert> alerts, List<Event> events,
+            Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers, Set<Trigger> disabledTriggers) {
+        this(actions, alerts, events, autoResolvedTriggers, disabledTriggers, new DataBatcher());
+    }
+
+    public NativeTriggerEvaluator(ActionsService actions, List<Alert> alerts, List<Event> events,
+            Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers, Set<Trigger> disabledTriggers,
+            DataBatcher batcher) {
+        this.actions = actions;
+        this.alerts = alerts;
+        this.events = events;
+        this.autoResolvedTriggers = autoResolvedTriggers;
+        this.disabledTriggers = disabledTriggers;
+        this.batcher = batcher;
+    }
+
+    /**
+     * @param trigger the trigger
+     * @param conditions all the conditions of the trigger
+     * @param dampenings all the dampenings of the trigger
+     * @return true if the trigger can be evaluated natively
+     */
+    public static boolean isNative(Trigger trigger, Collection<Condition> conditions,
+            Collection<Dampening> dampenings) {
+        int numFiring = 0;
+        int numAutoResolve = 0;
+        for (Condition c : conditions) {
+            switch (c.getType()) {
+                case THRESHOLD:
+                case RANGE:
+                case AVAILABILITY:
+                case STRING:
+                    break;
+                default:
+                    return false;
+            }
+            if (c.getTriggerMode() == Mode.FIRING) {
+                numFiring++;
+            } else {
+                numAutoResolve++;
+            }
+        }
+        if (numFiring != 1 || numAutoResolve > 1) {
+            return false;
+        }
+        if (null != dampenings) {
+            for (Dampening d : dampenings) {
+                if (d.getType() != Dampening.Type.STRICT || d.getEvalTrueSetting() != 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Load a trigger into the evaluator. If the trigger can not be evaluated natively then it is recorded as a
+     * rules engine trigger, and the caller is responsible to load it into the rules engine.
+     *
+     * @param trigger the trigger
+     * @param conditions all the conditions of the trigger
+     * @param dampenings all the dampenings of the trigger
+     * @return true if the trigger is evaluated natively, false if it must be loaded into the rules engine
+     */
+    public synchronized boolean addTrigger(Trigger trigger, Collection<Condition> conditions,
+            Collection<Dampening> dampenings) {
+        removeTrigger(trigger.getTenantId(), trigger.getId());
+
+        boolean isNative = isNative(trigger, conditions, dampenings);
+        LoadedTrigger loaded = new LoadedTrigger(trigger, isNative);
+        if (isNative) {
+            for (Condition c : conditions) {
+                Dampening dampening = null;
+                if (null != dampenings) {
+                    for (Dampening d : dampenings) {
+                        if (d.getTriggerMode() == c.getTriggerMode()) {
+                            dampening = d;
+                        }
+                    }
+                }
+                if (null == dampening) {
+                    dampening = Dampening.forStrict(trigger.getTenantId(), trigger.getId(), c.getTriggerMode(), 1);
+                }
+                NativeMatcher matcher = new NativeMatcher(loaded, c, dampening);
+                loaded.matchers.add(matcher);
+                matchers.computeIfAbsent(trigger.getTenantId(), t -> new HashMap<>())
+                        .computeIfAbsent(c.getDataId(), d -> new ArrayList<>(1))
+                        .add(matcher);
+            }
+        } else {
+            for (Condition c : conditions) {
+                loaded.dataIds.add(c.getDataId());
+                if (Condition.Type.COMPARE == c.getType()) {
+                    loaded.dataIds.add(((CompareCondition) c).getData2Id());
+                }
+            }
+            Map<String, Integer> tenantDataIds = rulesDataIds.computeIfAbsent(trigger.getTenantId(),
+                    t -> new HashMap<>());
+            for (String dataId : loaded.dataIds) {
+                tenantDataIds.merge(dataId, 1, Integer::sum);
+            }
+        }
+        triggers.computeIfAbsent(trigger.getTenantId(), t -> new HashMap<>()).put(trigger.getId(), loaded);
+        return isNative;
+    }
+
+    /**
+     * Remove a trigger from the evaluator, native or not.
+     *
+     * @param tenantId the tenantId
+     * @param triggerId the triggerId
+     */
+    public synchronized void removeTrigger(String tenantId, String triggerId) {
+        Map<String, LoadedTrigger> tenantTriggers = triggers.get(tenantId);
+        if (null == tenantTriggers) {
+            return;
+        }
+        LoadedTrigger loaded = tenantTriggers.remove(triggerId);
+        if (null == loaded) {
+            return;
+        }
+        if (tenantTriggers.isEmpty()) {
+            triggers.remove(tenantId);
+        }
+        if (loaded.isNative) {
+            Map<String, List<NativeMatcher>> tenantMatchers = matchers.get(tenantId);
+            if (null != tenantMatchers) {
+                for (NativeMatcher matcher : loaded.matchers) {
+                    List<NativeMatcher> dataIdMatchers = tenantMatchers.get(matcher.condition.getDataId());
+                    if (null != dataIdMatchers) {
+                        dataIdMatchers.remove(matcher);
+                        if (dataIdMatchers.isEmpty()) {
+                            tenantMatchers.remove(matcher.condition.getDataId());
+                        }
+                    }
+                }
+                if (tenantMatchers.isEmpty()) {
+                    matchers.remove(tenantId);
+                }
+            }
+        } else {
+            Map<String, Integer> tenantDataIds = rulesDataIds.get(tenantId);
+            if (null != tenantDataIds) {
+                for (String dataId : loaded.dataIds) {
+                    tenantDataIds.computeIfPresent(dataId, (d, n) -> n > 1 ? n - 1 : null);
+                }
+                if (tenantDataIds.isEmpty()) {
+                    rulesDataIds.remove(tenantId);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param tenantId the tenantId
+     * @param triggerId the triggerId
+     * @return the trigger if it is loaded and evaluated natively, null otherwise
+     */
+    public synchronized Trigger getNativeTrigger(String tenantId, String triggerId) {
+        Map<String, LoadedTrigger> tenantTriggers = triggers.get(tenantId);
+        LoadedTrigger loaded = null == tenantTriggers ? null : tenantTriggers.get(triggerId);
+        return null != loaded && loaded.isNative ? loaded.trigger : null;
+    }
+
+    public synchronized void clear() {
+        matchers.clear();
+        rulesDataIds.clear();
+        triggers.clear();
+    }
+
+    /**
+     * Evaluate the native triggers with the incoming Data and split the incoming Data/Events needed by the rules
+     * engine. Generated Alerts/Events are added to the shared alerts/events lists and, if a rules engine trigger
+     * is interested on them, to <code>rulesEvents</code>.
+     *
+     * The incoming Data is evaluated in firing cycles as in the rules engine: duplicates and minReportingInterval
+     * violators are removed and only the least recent datum of a dataId is evaluated per cycle. The rules engine
+     * applies its own batching on <code>rulesData</code>.
+     *
+     * @param data the incoming Data, sorted
+     * @param incomingEvents the incoming Events
+     * @param rulesData output, the incoming Data to be processed by the rules engine
+     * @param rulesEvents output, the incoming and generated Events to be processed by the rules engine
+     */
+    public synchronized void evaluate(Collection<Data> data, Collection<Event> incomingEvents, List<Data> rulesData,
+            List<Event> rulesEvents) {
+        List<Data> nativeData = new ArrayList<>();
+        for (Data d : data) {
+            if (isRulesDataId(d.getTenantId(), d.getId())) {
+                rulesData.add(d);
+            }
+            Map<String, List<NativeMatcher>> tenantMatchers = matchers.get(d.getTenantId());
+            if (null != tenantMatchers && tenantMatchers.containsKey(d.getId())) {
+                nativeData.add(d);
+            }
+        }
+        while (!nativeData.isEmpty()) {
+            List<Data> deferred = new ArrayList<>();
+            evaluateCycle(batcher.batchData(nativeData, deferred), rulesEvents);
+            nativeData = deferred;
+        }
+        for (Event e : incomingEvents) {
+            if (isRulesDataId(e.getTenantId(), e.getDataId())) {
+                rulesEvents.add(e);
+            }
+        }
+    }
+
+    private void evaluateCycle(List<Data> data, List<Event> rulesEvents) {
+        List<Trigger> removedTriggers = null;
+        for (Data d : data) {
+            Map<String, List<NativeMatcher>> tenantMatchers = matchers.get(d.getTenantId());
+            List<NativeMatcher> dataIdMatchers = null == tenantMatchers ? null : tenantMatchers.get(d.getId());
+            if (null == dataIdMatchers) {
+                continue;
+            }
+            for (int i = 0; i < dataIdMatchers.size(); i++) {
+                NativeMatcher matcher = dataIdMatchers.get(i);
+                try {
+                    // Triggers retracted by AutoDisable/AutoResolve are removed from the index after the cycle
+                    if (matcher.evaluate(d, rulesEvents)) {
+                        if (null == removedTriggers) {
+                            removedTriggers = new ArrayList<>();
+                        }
+                        removedTriggers.add(matcher.loaded.trigger);
+                    }
+                } catch (Exception e) {
+                    log.debugf("Native evaluation failed for %s on %s: %s", matcher.condition, d, e);
+                    log.errorProcessingRules(e.getMessage());
+                }
+            }
+        }
+        if (null != removedTriggers) {
+            for (Trigger t : removedTriggers) {
+                removeTrigger(t.getTenantId(), t.getId());
+            }
+        }
+    }
+
+    private boolean isRulesDataId(String tenantId, String dataId) {
+        Map<String, Integer> tenantDataIds = rulesDataIds.get(tenantId);
+        return null != tenantDataIds && tenantDataIds.containsKey(dataId);
+    }
+
+    private static class LoadedTrigger {
+        private final Trigger trigger;
+        private final boolean isNative;
+        private final List<NativeMatcher> matchers = new ArrayList<>(2);
+        private boolean removed = false;
+        private final Set<String> dataIds = new HashSet<>();
+
+        LoadedTrigger(Trigger trigger, boolean isNative) {
+            this.trigger = trigger;
+            this.isNative = isNative;
+        }
+    }
+
+    /*
+        A condition of a native trigger with its dampening. It plays the Threshold/ThresholdRange/Availability/String
+        rules, DampenTrigger rule and the AlertOnSatisfiedDampening and SetFiringModeOnSatisfiedDampening rules.
+     */
+    private class NativeMatcher {
+        private final LoadedTrigger loaded;
+        private final Condition condition;
+        private final Dampening dampening;
+
+        NativeMatcher(LoadedTrigger loaded, Condition condition, Dampening dampening) {
+            this.loaded = loaded;
+            this.condition = condition;
+            this.dampening = dampening;
+        }
+
+        /*
+            @return true if the trigger must be removed from the evaluator
+         */
+        boolean evaluate(Data data, List<Event> rulesEvents) {
+            Trigger trigger = loaded.trigger;
+            if (loaded.removed || trigger.getMode() != condition.getTriggerMode()
+                    || !trigger.getSource().equals(data.getSource())) {
+                return false;
+            }
+            if (!match(data)) {
+                // Default dampening is reset on a false evaluation, there is nothing to track
+                return false;
+            }
+
+            ConditionEval eval = newEval(data);
+            if (log.isDebugEnabled()) {
+                log.debugf("Native Eval: Match! %s", eval.getDisplayString());
+            }
+            dampening.perform(trigger.getMatch(), Collections.singleton(eval));
+            if (!dampening.isSatisfied()) {
+                return false;
+            }
+
+            if (trigger.getMode() == Mode.FIRING) {
+                return fire(trigger, rulesEvents);
+            }
+
+            if (log.isDebugEnabled()) {
+                log.debugf("SetFiringModeOnSatisfiedDampening! %s", dampening.log());
+            }
+            // As in the rules, the autoResolved trigger handling will result in a trigger reload
+            trigger.setMode(Mode.FIRING);
+            autoResolvedTriggers.put(trigger, dampening.getSatisfyingEvals());
+            loaded.removed = true;
+            return true;
+        }
+
+        private boolean fire(Trigger trigger, List<Event> rulesEvents) {
+            Event newEvent;
+            if (trigger.getEventType() == EventType.ALERT) {
+                if (log.isDebugEnabled()) {
+                    log.debugf("Alert! Dampening Satisfied! %s", dampening.log());
+                }
+                newEvent = new Alert(trigger.getTenantId(), trigger, dampening, dampening.getSatisfyingEvals());
+                alerts.add((Alert) newEvent);
+            } else {
+                if (log.isDebugEnabled()) {
+                    log.debugf("Event! Dampening Satisfied! %s", dampening.log());
+                }
+                newEvent = new Event(trigger.getTenantId(), trigger, dampening, dampening.getSatisfyingEvals());
+                events.add(newEvent);
+            }
+
+            // Generated events are passed to the rules to allow chained conditions
+            if (isRulesDataId(newEvent.getTenantId(), newEvent.getDataId())) {
+                rulesEvents.add(newEvent);
+            }
+
+            if (actions != null) {
+                actions.send(trigger, newEvent);
+            }
+
+            dampening.reset();
+
+            if (trigger.isAutoResolve()) {
+                log.debugf("Setting Trigger to AutoResolve Mode! %s", trigger);
+                trigger.setMode(Mode.AUTORESOLVE);
+                return false;
+            }
+            if (trigger.isAutoDisable()) {
+                if (log.isDebugEnabled()) {
+                    log.debugf("Setting Trigger Disabled! %s", trigger);
+                }
+                // As in the rules, the autoDisable trigger handling will result in a trigger reload
+                disabledTriggers.add(trigger);
+                loaded.removed = true;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean match(Data data) {
+            switch (condition.getType()) {
+                case THRESHOLD:
+                    return ((ThresholdCondition) condition).match(data.getNumericValue());
+                case RANGE:
+                    return ((ThresholdRangeCondition) condition).match(data.getNumericValue());
+                case AVAILABILITY:
+                    return ((AvailabilityCondition) condition).match(AvailabilityType.valueOf(data.getValue()));
+                case STRING:
+                    return ((StringCondition) condition).match(data.getValue());
+                default:
+                    throw new IllegalStateException("Unexpected native condition: " + condition);
+            }
+        }
+
+        private ConditionEval newEval(Data data) {
+            switch (condition.getType()) {
+                case THRESHOLD:
+                    return new ThresholdConditionEval((ThresholdCondition) condition, data);
+                case RANGE:
+                    return new ThresholdRangeConditionEval((ThresholdRangeCondition) condition, data);
+                case AVAILABILITY:
+                    return new AvailabilityConditionEval((AvailabilityCondition) condition, data);
+                case STRING:
+                    return new StringConditionEval((StringCondition) condition, data);
+                default:
+                    throw new IllegalStateException("Unexpected native condition: " + condition);
+            }
+        }
+    }
+}
@@ -21,6 +21,7 @@ import static org.hawkular.alerts.api.util.Util.isEmpty;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -28,21 +29,32 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.condition.CompareCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.services.DefinitionsService;
 import org.hawkular.alerts.cache.IspnCacheManager;
 import org.hawkular.alerts.engine.service.PartitionDataListener;
+import org.hawkular.alerts.engine.service.PartitionEventsChangeListener;
 import org.hawkular.alerts.engine.service.PartitionManager;
 import org.hawkular.alerts.engine.service.PartitionTriggerListener;
 import org.hawkular.alerts.log.AlertingLogger;
 import org.hawkular.commons.log.MsgLogging;
 import org.hawkular.commons.properties.HawkularProperties;
 import org.infinispan.Cache;
+import org.infinispan.affinity.KeyAffinityService;
+import org.infinispan.affinity.KeyAffinityServiceFactory;
 import org.infinispan.context.Flag;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.infinispan.notifications.Listener;
@@ -52,6 +64,7 @@ import org.infinispan.notifications.cachelistener.event.CacheEntryCreatedEvent;
 import org.infinispan.notifications.cachelistener.event.CacheEntryModifiedEvent;
 import org.infinispan.notifications.cachemanagerlistener.annotation.ViewChanged;
 import org.infinispan.notifications.cachemanagerlistener.event.ViewChangedEvent;
+import org.infinispan.remoting.transport.Address;
 
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
@@ -70,6 +83,7 @@ import com.google.common.hash.Hashing;
  *          <local-cache name="partition"/>
  *          <local-cache name="triggers"/>
  *          <local-cache name="data"/>
+ *          <local-cache name="changes"/>
  *       </cache-container>
  * [...]
  *
@@ -84,12 +98,22 @@ import com.google.common.hash.Hashing;
  *          <replicated-cache name="triggers" mode="ASYNC">
  *              <transaction mode="BATCH"/>
  *          </replicated-cache>
- *          <replicated-cache name="data" mode="ASYNC">
- *              <transaction mode="BATCH"/>
- *          </replicated-cache>
+ *          <distributed-cache name="data" mode="ASYNC" owners="1"/>
+ *          <replicated-cache name="changes" mode="ASYNC"/>
  *       </cache-container>
  * [...]
  *
+ * Data and events are not broadcasted to all nodes.
+ * Each node publishes the dataIds used by its triggers, and new data is only sent to the nodes using its dataId.
+ * The dataIds of an added or updated trigger travel with its notification, they are routed to the target node until
+ * it publishes them. After a partition change, all nodes receive the data with any dataId until they publish again.
+ * The "data" cache is distributed with a single owner, the entries are placed on the target node with keys
+ * generated by a {@link KeyAffinityService}, so a notification travels from the sender to the target node only.
+ *
+ * Alerts and events stored or modified on a node are broadcasted to all nodes through the "changes" cache, so the
+ * listeners watching them are notified wherever the change happens. Each node publishes if it has listeners
+ * registered, changes are not broadcasted while no other node is watching them.
+ *
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
@@ -109,6 +133,10 @@ public class PartitionManagerImpl implements PartitionManager {
     public static final String PREVIOUS = "previousPartition";
     public static final String CURRENT = "currentPartition";
     public static final String PARTITION_CHANGE = "partitionChangeFlag";
+    public static final String DATA_IDS = "dataIds_";
+    public static final String WATCHING = "watching_";
+
+    private static final int DATA_KEYS_BUFFER = 100;
 
     private static final AlertingLogger log = MsgLogging.getMsgLogger(AlertingLogger.class, PartitionManagerImpl.class);
 
@@ -152,6 +180,48 @@ public class PartitionManagerImpl implements PartitionManager {
      */
     private Cache dataCache;
 
+    /**
+     * This cache will be used to propagate alerts and events changes to all nodes.
+     * It will hold listeners to notify the change.
+     */
+    private Cache changesCache;
+
+    /**
+     * Generate keys of the "data" cache owned by a specific node.
+     */
+    private KeyAffinityService<Long> dataKeys;
+
+    private ExecutorService dataKeysExecutor;
+
+    /**
+     * Index of the nodes with triggers using a dataId.
+     * It is rebuilt from the dataIds published by each node on the "partition" cache.
+     */
+    private volatile Map<PartitionDataId, Set<Integer>> dataIdsIndex = new HashMap<>();
+
+    /**
+     * Nodes that have not published their dataIds since the last partition change.
+     * All data and events are also sent to these nodes until they publish them.
+     */
+    private final Set<Integer> pendingDataIdsNodes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Added or updated triggers whose dataIds have not been published yet by their target node.
+     * The value holds the target node and the dataIds not found on the index for that node.
+     */
+    private final Map<PartitionEntry, NotifyTrigger> pendingTriggers = new HashMap<>();
+
+    /**
+     * Index of the target nodes of the pending triggers using a dataId.
+     */
+    private volatile Map<PartitionDataId, Set<Integer>> pendingDataIdsIndex = new HashMap<>();
+
+    /**
+     * Nodes with listeners watching alerts and events changes.
+     * It is rebuilt from the flags published by each node on the "partition" cache.
+     */
+    private volatile Set<Integer> watchingNodes = new HashSet<>();
+
     /**
      * Representation of the current node in a cluster environment.
      * Computed from Address.hashCode,
@@ -168,10 +238,16 @@ public class PartitionManagerImpl implements PartitionManager {
      */
     private Set<PartitionDataListener> dataListeners = new HashSet<>();
 
+    /**
+     * Listeners used to interact with the alerts/events changes on other nodes
+     */
+    private Set<PartitionEventsChangeListener> eventsChangeListeners = new HashSet<>();
+
     private TopologyChangeListener topologyChangeListener = new TopologyChangeListener();
     private PartitionChangeListener partitionChangeListener = new PartitionChangeListener();
     private NewTriggerListener newTriggerListener = new NewTriggerListener();
     private NewDataListener newDataListener = new NewDataListener();
+    private NewChangesListener newChangesListener = new NewChangesListener();
 
 
     public void setDefinitionsService(DefinitionsService definitionsService) {
@@ -204,17 +280,24 @@ public class PartitionManagerImpl implements PartitionManager {
             partitionCache = cacheManager.getCache("partition");
             triggersCache = cacheManager.getCache("triggers");
             dataCache = cacheManager.getCache("data");
+            changesCache = cacheManager.getCache("changes");
+            dataKeysExecutor = Executors.newSingleThreadExecutor();
+            dataKeys = KeyAffinityServiceFactory.newKeyAffinityService(dataCache, dataKeysExecutor,
+                    () -> ThreadLocalRandom.current().nextLong(), DATA_KEYS_BUFFER);
             status.put("currentNode", cacheManager.getAddress().toString());
             currentNode = cacheManager.getAddress().hashCode();
             cacheManager.addListener(topologyChangeListener);
             partitionCache.addListener(partitionChangeListener);
             triggersCache.addListener(newTriggerListener);
             dataCache.addListener(newDataListener);
+            changesCache.addListener(newChangesListener);
             /*
                 Initial partition
              */
             log.debugf("Initial partition for node: %s",currentNode);
             processTopologyChange();
+            refreshDataIdsIndex();
+            refreshWatchingNodes();
             log.infoPartitionManagerEnabled();
         }
     }
@@ -225,8 +308,13 @@ public class PartitionManagerImpl implements PartitionManager {
             partitionCache.removeListener(partitionChangeListener);
             triggersCache.removeListener(newTriggerListener);
             dataCache.removeListener(newDataListener);
+            changesCache.removeListener(newChangesListener);
+
+            dataKeys.stop();
+            dataKeysExecutor.shutdown();
 
             dataCache.stop();
+            changesCache.stop();
             triggersCache.stop();
             partitionCache.stop();
             cacheManager.stop();
@@ -240,46 +328,142 @@ public class PartitionManagerImpl implements PartitionManager {
             PartitionEntry newEntry = new PartitionEntry(tenantId, triggerId);
             int toNode = calculateNewEntry(newEntry, (Map<Integer, Integer>)partitionCache.get(BUCKETS));
             NotifyTrigger nTrigger = new NotifyTrigger(currentNode, toNode, operation, tenantId, triggerId);
+            if (!operation.equals(Operation.REMOVE)) {
+                nTrigger.setDataIds(getTriggerDataIds(tenantId, triggerId));
+            }
             Integer key = nTrigger.hashCode();
             triggersCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
                     .putAsync(key, nTrigger, LIFESPAN, TimeUnit.MILLISECONDS);
         }
     }
 
+    /*
+        DataIds used by the conditions of a loadable trigger, other nodes route them to the target node of the
+        trigger until it publishes them.
+     */
+    private HashSet<PartitionDataId> getTriggerDataIds(String tenantId, String triggerId) {
+        HashSet<PartitionDataId> dataIds = new HashSet<>();
+        if (definitionsService == null) {
+            return dataIds;
+        }
+        try {
+            Trigger trigger = definitionsService.getTrigger(tenantId, triggerId);
+            if (trigger != null && trigger.isLoadable()) {
+                for (Condition c : definitionsService.getTriggerConditions(tenantId, triggerId, null)) {
+                    dataIds.add(new PartitionDataId(tenantId, c.getDataId()));
+                    if (Condition.Type.COMPARE == c.getType()) {
+                        dataIds.add(new PartitionDataId(tenantId, ((CompareCondition) c).getData2Id()));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.debugf("DataIds of trigger %s/%s not resolved: %s", tenantId, triggerId, e.toString());
+        }
+        return dataIds;
+    }
+
     @Override
     public void registerTriggerListener(PartitionTriggerListener triggerListener) {
         triggerListeners.add(triggerListener);
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void notifyData(Collection<Data> data) {
         if (distributed) {
-            NotifyData nData = new NotifyData(currentNode, data, Data.class);
-            Integer key = nData.hashCode();
-            log.debugf("Sending data [%s]", nData);
-            dataCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
-                    .putAsync(key, nData, LIFESPAN, TimeUnit.MILLISECONDS);
+            Map<Integer, List<Data>> nodesData = getNodesData(data,
+                    d -> new PartitionDataId(d.getTenantId(), d.getId()), dataIdsIndex, pendingDataIdsIndex,
+                    pendingDataIdsNodes, currentNode);
+            nodesData.entrySet().stream().forEach(nodeData -> {
+                NotifyData nData = new NotifyData(currentNode, nodeData.getKey(), nodeData.getValue(), Data.class);
+                log.debugf("Sending data [%s]", nData);
+                sendNotifyData(nData);
+            });
         }
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public void notifyEvents(Collection<Event> events) {
         if (distributed) {
-            NotifyData nEvent = new NotifyData(currentNode, events, Event.class);
-            Integer key = nEvent.hashCode();
-            log.debugf("Sending events [%s]", nEvent);
-            dataCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
-                    .putAsync(key, nEvent, LIFESPAN, TimeUnit.MILLISECONDS);
+            Map<Integer, List<Event>> nodesEvents = getNodesData(events,
+                    e -> new PartitionDataId(e.getTenantId(), e.getDataId()), dataIdsIndex, pendingDataIdsIndex,
+                    pendingDataIdsNodes, currentNode);
+            nodesEvents.entrySet().stream().forEach(nodeEvents -> {
+                NotifyData nEvent = new NotifyData(currentNode, nodeEvents.getKey(), nodeEvents.getValue(),
+                        Event.class);
+                log.debugf("Sending events [%s]", nEvent);
+                sendNotifyData(nEvent);
+            });
         }
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public void notifyDataIds(Map<String, Set<String>> dataIds) {
+        if (distributed) {
+            HashSet<PartitionDataId> nodeDataIds = new HashSet<>();
+            dataIds.entrySet().stream().forEach(tenantDataIds -> {
+                tenantDataIds.getValue().stream().forEach(dataId -> {
+                    nodeDataIds.add(new PartitionDataId(tenantDataIds.getKey(), dataId));
+                });
+            });
+            log.debugf("Publishing [%s] dataIds for node: %s", nodeDataIds.size(), currentNode);
+            partitionCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+                    .put(DATA_IDS + currentNode, nodeDataIds);
+        }
+    }
+
+    /*
+        Send a notification to the node that owns the key, the rest of the nodes do not receive it.
+     */
+    @SuppressWarnings("unchecked")
+    private void sendNotifyData(NotifyData notifyData) {
+        Address toAddress = null;
+        for (Address member : cacheManager.getMembers()) {
+            if (notifyData.getToNode().equals(member.hashCode())) {
+                toAddress = member;
+                break;
+            }
+        }
+        if (toAddress == null) {
+            log.debugf("Node %s is not a member, discarding [%s]", notifyData.getToNode(), notifyData);
+            return;
+        }
+        Long key = dataKeys.getKeyForAddress(toAddress);
+        dataCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+                .putAsync(key, notifyData, LIFESPAN, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void registerDataListener(PartitionDataListener dataListener) {
         dataListeners.add(dataListener);
     }
 
+    @SuppressWarnings("unchecked")
+    @Override
+    public void notifyEventsChange(Collection<Alert> alerts, Collection<? extends Event> events) {
+        if (distributed && (!isEmpty(alerts) || !isEmpty(events))
+                && watchingNodes.stream().anyMatch(node -> !node.equals(currentNode))) {
+            NotifyChanges nChanges = new NotifyChanges(currentNode, alerts, events);
+            log.debugf("Sending changes [%s]", nChanges);
+            changesCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+                    .putAsync(ThreadLocalRandom.current().nextLong(), nChanges, LIFESPAN, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void registerEventsChangeListener(PartitionEventsChangeListener eventsChangeListener) {
+        eventsChangeListeners.add(eventsChangeListener);
+    }
+
+    @Override
+    public void notifyWatching(boolean watching) {
+        if (distributed && watching != watchingNodes.contains(currentNode)) {
+            log.debugf("Publishing watching [%s] for node: %s", watching, currentNode);
+            partitionCache.getAdvancedCache().withFlags(Flag.IGNORE_RETURN_VALUES)
+                    .put(WATCHING + currentNode, watching);
+        }
+    }
+
     /*
         Calculate a new partition based on the current topology.
         It should be invoked as a result of a topology event and it is executed by the coordinator node.
@@ -340,11 +524,175 @@ public class PartitionManagerImpl implements PartitionManager {
                 partitionCache.put(PREVIOUS, oldPartition);
             }
             partitionCache.put(CURRENT, newPartition);
+            if (oldBuckets != null) {
+                oldBuckets.values().stream()
+                        .filter(node -> !members.contains(node))
+                        .forEach(node -> {
+                            partitionCache.remove(DATA_IDS + node);
+                            partitionCache.remove(WATCHING + node);
+                        });
+            }
             partitionCache.endBatch(true);
             partitionCache.put(PARTITION_CHANGE, new Date(), LIFESPAN, TimeUnit.MILLISECONDS);
         }
     }
 
+    /**
+     * Group data or events by the nodes with triggers using their dataIds.
+     * The sender node is excluded, as it processes the data locally.
+     *
+     * Data is sent to the union of the nodes found on the index, the target nodes of the pending triggers using its
+     * dataId, and the nodes that have not published their dataIds since the last partition change. A node already
+     * on the index for a dataId can have a trigger on another dataId pending, so the index alone is not enough.
+     *
+     * @param data the data or events to route
+     * @param toDataId a function to extract the dataId
+     * @param dataIdsIndex a map of the nodes using a dataId
+     * @param pendingIndex a map of the target nodes of pending triggers using a dataId
+     * @param pendingNodes the nodes that receive all the data until they publish their dataIds
+     * @param fromNode the sender node
+     * @return a map of data or events indexed by the target node
+     */
+    public <T> Map<Integer, List<T>> getNodesData(Collection<T> data, Function<T, PartitionDataId> toDataId,
+                                                  Map<PartitionDataId, Set<Integer>> dataIdsIndex,
+                                                  Map<PartitionDataId, Set<Integer>> pendingIndex,
+                                                  Set<Integer> pendingNodes,
+                                                  Integer fromNode) {
+        Map<Integer, List<T>> nodesData = new HashMap<>();
+        for (T d : data) {
+            PartitionDataId dataId = toDataId.apply(d);
+            Set<Integer> nodes = new HashSet<>(pendingNodes);
+            nodes.addAll(dataIdsIndex.getOrDefault(dataId, Collections.emptySet()));
+            nodes.addAll(pendingIndex.getOrDefault(dataId, Collections.emptySet()));
+            nodes.remove(fromNode);
+            for (Integer node : nodes) {
+                nodesData.computeIfAbsent(node, n -> new ArrayList<>()).add(d);
+            }
+        }
+        return nodesData;
+    }
+
+    /**
+     * Keep the dataIds of a pending trigger that are not yet published by its target node.
+     * DataIds published before the trigger notification is received are not kept, so the order of a trigger
+     * notification and the publication of the target node does not matter.
+     *
+     * @param pendingTrigger the trigger notification with the dataIds of the trigger
+     * @param dataIdsIndex a map of the nodes using a dataId
+     * @return the trigger notification with the dataIds not published, null if all of them are published
+     */
+    public NotifyTrigger getPendingTrigger(NotifyTrigger pendingTrigger,
+                                           Map<PartitionDataId, Set<Integer>> dataIdsIndex) {
+        if (isEmpty(pendingTrigger.getDataIds())) {
+            return null;
+        }
+        HashSet<PartitionDataId> pending = new HashSet<>();
+        for (PartitionDataId dataId : pendingTrigger.getDataIds()) {
+            if (!dataIdsIndex.getOrDefault(dataId, Collections.emptySet()).contains(pendingTrigger.getToNode())) {
+                pending.add(dataId);
+            }
+        }
+        if (pending.isEmpty()) {
+            return null;
+        }
+        NotifyTrigger result = new NotifyTrigger(pendingTrigger.getFromNode(), pendingTrigger.getToNode(),
+                pendingTrigger.getOperation(), pendingTrigger.getTenantId(), pendingTrigger.getTriggerId());
+        result.setDataIds(pending);
+        return result;
+    }
+
+    /**
+     * Build an index of the nodes using a dataId from the dataIds published per node.
+     *
+     * @param nodesDataIds a map of dataIds indexed by node
+     * @return a map of the nodes using a dataId
+     */
+    public Map<PartitionDataId, Set<Integer>> getDataIdsIndex(Map<Integer, Set<PartitionDataId>> nodesDataIds) {
+        Map<PartitionDataId, Set<Integer>> index = new HashMap<>();
+        if (nodesDataIds != null) {
+            for (Entry<Integer, Set<PartitionDataId>> nodeDataIds : nodesDataIds.entrySet()) {
+                for (PartitionDataId dataId : nodeDataIds.getValue()) {
+                    index.computeIfAbsent(dataId, d -> new HashSet<>()).add(nodeDataIds.getKey());
+                }
+            }
+        }
+        return index;
+    }
+
+    /*
+        Rebuild the dataIds index from the dataIds published by the current members.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized void refreshDataIdsIndex() {
+        Map<Integer, Set<PartitionDataId>> nodesDataIds = new HashMap<>();
+        cacheManager.getMembers().stream().forEach(a -> {
+            Set<PartitionDataId> nodeDataIds = (Set<PartitionDataId>) partitionCache.get(DATA_IDS + a.hashCode());
+            if (nodeDataIds != null) {
+                nodesDataIds.put(a.hashCode(), nodeDataIds);
+            }
+        });
+        dataIdsIndex = getDataIdsIndex(nodesDataIds);
+        Set<Integer> members = cacheManager.getMembers().stream()
+                .map(Address::hashCode)
+                .collect(Collectors.toSet());
+        pendingDataIdsNodes.retainAll(members);
+        Map<PartitionEntry, NotifyTrigger> stillPending = new HashMap<>();
+        pendingTriggers.entrySet().stream()
+                .filter(pendingTrigger -> members.contains(pendingTrigger.getValue().getToNode()))
+                .forEach(pendingTrigger -> {
+                    NotifyTrigger notPublished = getPendingTrigger(pendingTrigger.getValue(), dataIdsIndex);
+                    if (notPublished != null) {
+                        stillPending.put(pendingTrigger.getKey(), notPublished);
+                    }
+                });
+        pendingTriggers.clear();
+        pendingTriggers.putAll(stillPending);
+        refreshPendingDataIdsIndex();
+        log.debugf("DataIds index refreshed on node %s with [%s] dataIds", currentNode, dataIdsIndex.size());
+    }
+
+    /*
+        Rebuild the watching nodes from the flags published by the current members.
+     */
+    private void refreshWatchingNodes() {
+        watchingNodes = cacheManager.getMembers().stream()
+                .map(Address::hashCode)
+                .filter(node -> Boolean.TRUE.equals(partitionCache.get(WATCHING + node)))
+                .collect(Collectors.toSet());
+        log.debugf("Watching nodes refreshed on node %s: %s", currentNode, watchingNodes);
+    }
+
+    /*
+        Track the dataIds of an added or updated trigger until its target node publishes them.
+     */
+    private synchronized void processPendingTrigger(NotifyTrigger notifyTrigger) {
+        PartitionEntry entry = new PartitionEntry(notifyTrigger.getTenantId(), notifyTrigger.getTriggerId());
+        NotifyTrigger pendingTrigger = notifyTrigger.getOperation().equals(Operation.REMOVE) ? null
+                : getPendingTrigger(notifyTrigger, dataIdsIndex);
+        if (pendingTrigger == null) {
+            pendingTriggers.remove(entry);
+        } else {
+            pendingTriggers.put(entry, pendingTrigger);
+        }
+        refreshPendingDataIdsIndex();
+    }
+
+    private void refreshPendingDataIdsIndex() {
+        Map<Integer, Set<PartitionDataId>> nodesDataIds = new HashMap<>();
+        pendingTriggers.values().stream().forEach(pendingTrigger -> nodesDataIds
+                .computeIfAbsent(pendingTrigger.getToNode(), node -> new HashSet<>())
+                .addAll(pendingTrigger.getDataIds()));
+        pendingDataIdsIndex = getDataIdsIndex(nodesDataIds);
+    }
+
+    /*
+        A node has published its dataIds, they are found on the index from now on.
+     */
+    private void processDataIdsPublished(String key) {
+        refreshDataIdsIndex();
+        pendingDataIdsNodes.remove(Integer.valueOf(key.substring(DATA_IDS.length())));
+    }
+
     /**
      * Update a nodes table.
      * This table is represented as a Map<Integer, Integer> where:
@@ -555,6 +903,8 @@ public class PartitionManagerImpl implements PartitionManager {
                 When a node is joining/leaving the cluster partition needs to be re-calculated and updated
              */
             processTopologyChange();
+            refreshDataIdsIndex();
+            refreshWatchingNodes();
         }
     }
 
@@ -572,8 +922,37 @@ public class PartitionManagerImpl implements PartitionManager {
                 Listener should be invoked once Partition has been modified by a topology change
              */
             if (cacheEvent.getKey().equals(PARTITION_CHANGE)) {
+                /*
+                    All nodes reload their triggers and publish their dataIds
+                 */
+                cacheManager.getMembers().stream().forEach(a -> pendingDataIdsNodes.add(a.hashCode()));
                 invokePartitionChangeListener();
             }
+            if (cacheEvent.getKey().toString().startsWith(DATA_IDS)) {
+                processDataIdsPublished(cacheEvent.getKey().toString());
+            }
+            if (cacheEvent.getKey().toString().startsWith(WATCHING)) {
+                refreshWatchingNodes();
+            }
+        }
+
+        @CacheEntryModified
+        public void onDataIdsModified(CacheEntryModifiedEvent cacheEvent) {
+            if (cacheEvent.isPre()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Discarding pre onDataIdsModified(@CacheEntryModified) event");
+                }
+                return;
+            }
+            /*
+                A node has published the dataIds used by its triggers or if it is watching changes
+             */
+            if (cacheEvent.getKey().toString().startsWith(DATA_IDS)) {
+                processDataIdsPublished(cacheEvent.getKey().toString());
+            }
+            if (cacheEvent.getKey().toString().startsWith(WATCHING)) {
+                refreshWatchingNodes();
+            }
         }
     }
 
@@ -621,6 +1000,12 @@ public class PartitionManagerImpl implements PartitionManager {
          */
         @SuppressWarnings("unchecked")
         private void processNotifyTrigger(NotifyTrigger notifyTrigger) {
+            /*
+                The dataIds of an added or updated trigger are not on the index until the target node publishes them
+             */
+            if (null != notifyTrigger.toNode) {
+                processPendingTrigger(notifyTrigger);
+            }
             /*
                 A trigger should be processed on the target node
              */
@@ -695,7 +1080,7 @@ public class PartitionManagerImpl implements PartitionManager {
                 log.debug("Discarding pre onNewNotifyData(@CacheEntryCreated) event");
                 return;
             }
-            NotifyData notifyData = (NotifyData)dataCache.get(cacheEvent.getKey());
+            NotifyData notifyData = (NotifyData)cacheEvent.getValue();
             if (log.isDebugEnabled()) {
                 log.debug("onNewNotifyData(@CacheEntryCreated) received.");
                 log.debugf("NotifyData: %s", notifyData);
@@ -709,7 +1094,7 @@ public class PartitionManagerImpl implements PartitionManager {
                 log.debug("Discarding pre onModifiedNotifyData(@CacheEntryModified) event");
                 return;
             }
-            NotifyData notifyData = (NotifyData)dataCache.get(cacheEvent.getKey());
+            NotifyData notifyData = (NotifyData)cacheEvent.getValue();
             if (log.isDebugEnabled()) {
                 log.debug("onModifiedNotifyData(@CacheEntryModified) received.");
                 log.debugf("NotifyData: %s", notifyData);
@@ -719,15 +1104,15 @@ public class PartitionManagerImpl implements PartitionManager {
 
             /*
                 When a new data/event is added it should be notified on the PartitionManager.
-                PartitionManager adds an entry on "data" cache to fire an event that will propagate the
-                across the nodes invoking previously registered PartitionDataListener.
+                PartitionManager adds an entry on "data" cache owned by the target node to fire an event that will
+                invoke the previously registered PartitionDataListener on that node.
              */
 
         private void processNotifyData(NotifyData notifyData) {
             /*
-                Finally invoke listener on non-sender nodes
+                Finally invoke listener on the target node
              */
-            if (!dataListeners.isEmpty() && notifyData.getFromNode() != currentNode) {
+            if (!dataListeners.isEmpty() && null != notifyData && currentNode.equals(notifyData.getToNode())) {
                 if (notifyData.getDataCollection() != null) {
                     dataListeners.stream().forEach(dataListener -> {
                         log.debugf("processNotifyData [%s]", notifyData);
@@ -742,6 +1127,42 @@ public class PartitionManagerImpl implements PartitionManager {
         }
     }
 
+    @Listener
+    public class NewChangesListener {
+
+        @CacheEntryCreated
+        public void onNewNotifyChanges(CacheEntryCreatedEvent cacheEvent) {
+            if (cacheEvent.isPre()) {
+                log.debug("Discarding pre onNewNotifyChanges(@CacheEntryCreated) event");
+                return;
+            }
+            NotifyChanges notifyChanges = (NotifyChanges)cacheEvent.getValue();
+            if (log.isDebugEnabled()) {
+                log.debug("onNewNotifyChanges(@CacheEntryCreated) received.");
+                log.debugf("NotifyChanges: %s", notifyChanges);
+            }
+            processNotifyChanges(notifyChanges);
+        }
+    }
+
+    /*
+        Changes are broadcasted to all nodes, the node where they happened has already notified its listeners.
+     */
+    void processNotifyChanges(NotifyChanges notifyChanges) {
+        if (eventsChangeListeners.isEmpty() || null == notifyChanges
+                || notifyChanges.getFromNode().equals(currentNode)) {
+            return;
+        }
+        eventsChangeListeners.stream().forEach(eventsChangeListener -> {
+            if (!isEmpty(notifyChanges.getAlerts())) {
+                eventsChangeListener.onAlertsChange(notifyChanges.getAlerts());
+            }
+            if (!isEmpty(notifyChanges.getEvents())) {
+                eventsChangeListener.onEventsChange(notifyChanges.getEvents());
+            }
+        });
+    }
+
     /**
      * Auxiliary class to store in the cache an operation for a Trigger.
      * Used internally in the context of the PartitionManager services.
@@ -752,6 +1173,7 @@ public class PartitionManagerImpl implements PartitionManager {
         private Operation operation;
         private String tenantId;
         private String triggerId;
+        private HashSet<PartitionDataId> dataIds;
 
         public NotifyTrigger(Integer fromNode, Integer toNode, Operation operation, String tenantId, String triggerId) {
             this.fromNode = fromNode;
@@ -801,6 +1223,14 @@ public class PartitionManagerImpl implements PartitionManager {
             this.triggerId = triggerId;
         }
 
+        public HashSet<PartitionDataId> getDataIds() {
+            return dataIds;
+        }
+
+        public void setDataIds(HashSet<PartitionDataId> dataIds) {
+            this.dataIds = dataIds;
+        }
+
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -844,6 +1274,7 @@ public class PartitionManagerImpl implements PartitionManager {
      */
     public static class NotifyData implements Serializable {
         private Integer fromNode = null;
+        private Integer toNode = null;
         private Data data = null;
         private Event event = null;
         private Collection<Data> dataCollection = null;
@@ -861,7 +1292,13 @@ public class PartitionManagerImpl implements PartitionManager {
 
         @SuppressWarnings("unchecked")
         public NotifyData(Integer fromNode, Collection collection, Class c) {
+            this(fromNode, null, collection, c);
+        }
+
+        @SuppressWarnings("unchecked")
+        public NotifyData(Integer fromNode, Integer toNode, Collection collection, Class c) {
             this.fromNode = fromNode;
+            this.toNode = toNode;
             if (Data.class.equals(c)) {
                 dataCollection = collection;
             } else if (Event.class.equals(c)) {
@@ -877,6 +1314,14 @@ public class PartitionManagerImpl implements PartitionManager {
             this.fromNode = fromNode;
         }
 
+        public Integer getToNode() {
+            return toNode;
+        }
+
+        public void setToNode(Integer toNode) {
+            this.toNode = toNode;
+        }
+
         public Data getData() {
             return data;
         }
@@ -917,6 +1362,7 @@ public class PartitionManagerImpl implements PartitionManager {
             NotifyData that = (NotifyData) o;
 
             if (fromNode != null ? !fromNode.equals(that.fromNode) : that.fromNode != null) return false;
+            if (toNode != null ? !toNode.equals(that.toNode) : that.toNode != null) return false;
             if (data != null ? !data.equals(that.data) : that.data != null) return false;
             if (event != null ? !event.equals(that.event) : that.event != null) return false;
             if (dataCollection != null ? !dataCollection.equals(that.dataCollection) : that.dataCollection != null)
@@ -929,6 +1375,7 @@ public class PartitionManagerImpl implements PartitionManager {
         @Override
         public int hashCode() {
             int result = fromNode != null ? fromNode.hashCode() : 0;
+            result = 31 * result + (toNode != null ? toNode.hashCode() : 0);
             result = 31 * result + (data != null ? data.hashCode() : 0);
             result = 31 * result + (event != null ? event.hashCode() : 0);
             result = 31 * result + (dataCollection != null ? dataCollection.hashCode() : 0);
@@ -940,6 +1387,7 @@ public class PartitionManagerImpl implements PartitionManager {
         public String toString() {
             return "NotifyData" + '[' +
                     "fromNode=" + fromNode +
+                    ", toNode=" + toNode +
                     ", data=" + data +
                     ", event=" + event +
                     ", dataCollection=" + dataCollection +
@@ -948,6 +1396,112 @@ public class PartitionManagerImpl implements PartitionManager {
         }
     }
 
+    /**
+     * Auxiliary class to store in the cache the alerts and events changed on a node.
+     * Used internally in the context of the PartitionManager services.
+     */
+    public static class NotifyChanges implements Serializable {
+        private Integer fromNode = null;
+        private List<Alert> alerts = null;
+        private List<Event> events = null;
+
+        public NotifyChanges(Integer fromNode, Collection<Alert> alerts, Collection<? extends Event> events) {
+            this.fromNode = fromNode;
+            this.alerts = isEmpty(alerts) ? null : new ArrayList<>(alerts);
+            this.events = isEmpty(events) ? null : new ArrayList<>(events);
+        }
+
+        public Integer getFromNode() {
+            return fromNode;
+        }
+
+        public void setFromNode(Integer fromNode) {
+            this.fromNode = fromNode;
+        }
+
+        public List<Alert> getAlerts() {
+            return alerts;
+        }
+
+        public void setAlerts(List<Alert> alerts) {
+            this.alerts = alerts;
+        }
+
+        public List<Event> getEvents() {
+            return events;
+        }
+
+        public void setEvents(List<Event> events) {
+            this.events = events;
+        }
+
+        @Override
+        public String toString() {
+            return "NotifyChanges" + '[' +
+                    "fromNode=" + fromNode +
+                    ", alerts=" + alerts +
+                    ", events=" + events +
+                    ']';
+        }
+    }
+
+    /**
+     * Auxiliary class to store in the cache a dataId used by the triggers of a node.
+     * Used internally in the context of the PartitionManager services.
+     */
+    public static class PartitionDataId implements Serializable {
+        private String tenantId;
+        private String dataId;
+
+        public PartitionDataId(String tenantId, String dataId) {
+            this.tenantId = tenantId;
+            this.dataId = dataId;
+        }
+
+        public String getTenantId() {
+            return tenantId;
+        }
+
+        public void setTenantId(String tenantId) {
+            this.tenantId = tenantId;
+        }
+
+        public String getDataId() {
+            return dataId;
+        }
+
+        public void setDataId(String dataId) {
+            this.dataId = dataId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            PartitionDataId that = (PartitionDataId) o;
+
+            if (tenantId != null ? !tenantId.equals(that.tenantId) : that.tenantId != null) return false;
+            return !(dataId != null ? !dataId.equals(that.dataId) : that.dataId != null);
+
+        }
+
+        @Override
+        public int hashCode() {
+            int result = tenantId != null ? tenantId.hashCode() : 0;
+            result = 31 * result + (dataId != null ? dataId.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "PartitionDataId" + '[' +
+                    "tenantId='" + tenantId + '\'' +
+                    ", dataId='" + dataId + '\'' +
+                    ']';
+        }
+    }
+
     /**
      * Auxiliary class to store in the cache a Trigger entry.
      * Used internally in the context of the PartitionManager services.
@@ -16,10 +16,14 @@
  */
 package org.hawkular.alerts.engine.impl;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import org.hawkular.alerts.api.services.StatusService;
+import org.hawkular.alerts.engine.impl.ispn.IspnActionsServiceImpl;
+import org.hawkular.alerts.engine.service.AlertsEngine;
 import org.hawkular.alerts.engine.service.PartitionManager;
+import org.hawkular.alerts.extensions.CepEngine;
 
 /**
  * An implementation of {@link org.hawkular.alerts.api.services.StatusService}.
@@ -31,10 +35,28 @@ public class StatusServiceImpl implements StatusService {
 
     PartitionManager partitionManager;
 
+    AlertsEngine alertsEngine;
+
+    IspnActionsServiceImpl actionsService;
+
+    CepEngine cepEngine;
+
     public void setPartitionManager(PartitionManager partitionManager) {
         this.partitionManager = partitionManager;
     }
 
+    public void setAlertsEngine(AlertsEngine alertsEngine) {
+        this.alertsEngine = alertsEngine;
+    }
+
+    public void setActionsService(IspnActionsServiceImpl actionsService) {
+        this.actionsService = actionsService;
+    }
+
+    public void setCepEngine(CepEngine cepEngine) {
+        this.cepEngine = cepEngine;
+    }
+
     @Override
     public boolean isStarted() {
         // TODO [lponce] this test is quite simple and with a different backend perhaps it doesnt give enough info
@@ -52,4 +74,16 @@ public class StatusServiceImpl implements StatusService {
     public Map<String, String> getDistributedStatus() {
         return partitionManager.getStatus();
     }
+
+    @Override
+    public Map<String, String> getEngineStatus() {
+        Map<String, String> status = new HashMap<>(alertsEngine.getStatus());
+        if (actionsService != null) {
+            status.putAll(actionsService.getStatus());
+        }
+        if (cepEngine != null) {
+            status.putAll(cepEngine.getStatus());
+        }
+        return status;
+    }
 }
@@ -18,6 +18,7 @@ package org.hawkular.alerts.engine.impl.ispn;
 
 import static org.hawkular.alerts.api.util.Util.isEmpty;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -43,11 +44,13 @@ import org.hawkular.alerts.api.services.ActionsService;
 import org.hawkular.alerts.api.services.DefinitionsService;
 import org.hawkular.alerts.cache.IspnCacheManager;
 import org.hawkular.alerts.engine.cache.ActionsCacheManager;
+import org.hawkular.alerts.engine.impl.ActionsDispatcher;
 import org.hawkular.alerts.engine.impl.AlertsContext;
 import org.hawkular.alerts.engine.impl.ispn.model.IspnAction;
 import org.hawkular.alerts.engine.util.ActionsValidator;
 import org.hawkular.alerts.log.AlertingLogger;
 import org.hawkular.commons.log.MsgLogging;
+import org.hawkular.commons.properties.HawkularProperties;
 import org.infinispan.Cache;
 import org.infinispan.query.Search;
 import org.infinispan.query.dsl.QueryFactory;
@@ -64,6 +67,37 @@ public class IspnActionsServiceImpl implements ActionsService {
     private static final String WAITING_RESULT = "WAITING";
     private static final String UNKNOWN_RESULT = "UNKNOWN";
 
+    /*
+        ENGINE_ACTIONS_ASYNC dispatches the actions in background instead of on the rules firing threads
+     */
+    private static final String ENGINE_ACTIONS_ASYNC = "hawkular-alerts.engine-actions-async";
+    private static final String ENGINE_ACTIONS_ASYNC_ENV = "HAWKULAR_ENGINE_ACTIONS_ASYNC";
+    private static final String ENGINE_ACTIONS_ASYNC_DEFAULT = "true";
+
+    /*
+        ENGINE_ACTIONS_QUEUE_SIZE defines the max number of trigger events waiting for its actions to be dispatched.
+        Firing threads block when the queue is full.
+     */
+    private static final String ENGINE_ACTIONS_QUEUE_SIZE = "hawkular-alerts.engine-actions-queue-size";
+    private static final String ENGINE_ACTIONS_QUEUE_SIZE_ENV = "HAWKULAR_ENGINE_ACTIONS_QUEUE_SIZE";
+    private static final String ENGINE_ACTIONS_QUEUE_SIZE_DEFAULT = "10000";
+
+    /*
+        ENGINE_ACTIONS_BATCH_SIZE defines the max number of trigger events whose actions are stored in a single
+        backend batch
+     */
+    private static final String ENGINE_ACTIONS_BATCH_SIZE = "hawkular-alerts.engine-actions-batch-size";
+    private static final String ENGINE_ACTIONS_BATCH_SIZE_ENV = "HAWKULAR_ENGINE_ACTIONS_BATCH_SIZE";
+    private static final String ENGINE_ACTIONS_BATCH_SIZE_DEFAULT = "500";
+
+    /*
+        ENGINE_ACTIONS_PLUGIN_WORKERS defines the number of threads sending actions to the listeners, per plugin.
+        The actions of a trigger are always sent by the same thread, in order.
+     */
+    private static final String ENGINE_ACTIONS_PLUGIN_WORKERS = "hawkular-alerts.engine-actions-plugin-workers";
+    private static final String ENGINE_ACTIONS_PLUGIN_WORKERS_ENV = "HAWKULAR_ENGINE_ACTIONS_PLUGIN_WORKERS";
+    private static final String ENGINE_ACTIONS_PLUGIN_WORKERS_DEFAULT = "2";
+
     AlertsContext alertsContext;
 
     DefinitionsService definitions;
@@ -74,6 +108,8 @@ public class IspnActionsServiceImpl implements ActionsService {
 
     QueryFactory queryFactory;
 
+    ActionsDispatcher dispatcher;
+
     public void init() {
         backend = IspnCacheManager.getCacheManager().getCache("backend");
         if (backend == null) {
@@ -81,6 +117,33 @@ public class IspnActionsServiceImpl implements ActionsService {
             throw new RuntimeException("backend cache not found");
         }
         queryFactory = Search.getQueryFactory(backend);
+        boolean async = Boolean.parseBoolean(HawkularProperties.getProperty(ENGINE_ACTIONS_ASYNC,
+                ENGINE_ACTIONS_ASYNC_ENV, ENGINE_ACTIONS_ASYNC_DEFAULT));
+        int queueSize = new Integer(HawkularProperties.getProperty(ENGINE_ACTIONS_QUEUE_SIZE,
+                ENGINE_ACTIONS_QUEUE_SIZE_ENV, ENGINE_ACTIONS_QUEUE_SIZE_DEFAULT));
+        int batchSize = new Integer(HawkularProperties.getProperty(ENGINE_ACTIONS_BATCH_SIZE,
+                ENGINE_ACTIONS_BATCH_SIZE_ENV, ENGINE_ACTIONS_BATCH_SIZE_DEFAULT));
+        int pluginWorkers = new Integer(HawkularProperties.getProperty(ENGINE_ACTIONS_PLUGIN_WORKERS,
+                ENGINE_ACTIONS_PLUGIN_WORKERS_ENV, ENGINE_ACTIONS_PLUGIN_WORKERS_DEFAULT));
+        dispatcher = new ActionsDispatcher(this::resolveActions, this::storeActions,
+                () -> alertsContext.getActionsListeners(), async, queueSize, batchSize, pluginWorkers);
+    }
+
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    /**
+     * Wait until the actions of the events sent before this call are stored and sent to the listeners.
+     */
+    public void flush() throws InterruptedException {
+        dispatcher.flush();
+    }
+
+    public Map<String, String> getStatus() {
+        return dispatcher.getStatus();
     }
 
     public void setAlertsContext(AlertsContext alertsContext) {
@@ -100,19 +163,14 @@ public class IspnActionsServiceImpl implements ActionsService {
         if (trigger == null) {
             throw new IllegalArgumentException("Trigger must be not null");
         }
-
-        if (!isEmpty(trigger.getActions())) {
-            for (TriggerAction triggerAction : trigger.getActions()) {
-                send(triggerAction, event);
-            }
+        if (event == null || isEmpty(event.getTenantId())) {
+            throw new IllegalArgumentException("Event must be not null");
         }
-
-        if (actionsCacheManager.hasGlobalActions()) {
-            Collection<ActionDefinition> globalActions = actionsCacheManager.getGlobalActions(trigger.getTenantId());
-            for (ActionDefinition globalAction : globalActions) {
-                send(globalAction, event);
-            }
+        if (isEmpty(trigger.getActions()) && !actionsCacheManager.hasGlobalActions()) {
+            return;
         }
+
+        dispatcher.dispatch(trigger, event);
     }
 
     @Override
@@ -155,18 +213,18 @@ public class IspnActionsServiceImpl implements ActionsService {
             log.debugf("getActions criteria: %s", criteria);
         }
 
-        StringBuilder query = new StringBuilder("from org.hawkular.alerts.engine.impl.ispn.model.IspnAction where");
-        query.append(String.format(" tenantId = '%s'", tenantId));
+        IspnQueryBuilder query = new IspnQueryBuilder(IspnAction.class)
+                .eq("tenantId", tenantId);
 
         if (filter) {
             if (criteria.hasCTimeCriteria()) {
                 if (criteria.hasRangeCriteria()) {
-                    query.append(String.format(" and ctime between %d and %d", criteria.getStartTime(),
-                            criteria.getEndTime()));
+                    query.ge("ctime", criteria.getStartTime());
+                    query.le("ctime", criteria.getEndTime());
                 } else if (criteria.hasStartCriteria()) {
-                    query.append(String.format(" and ctime >= %d", criteria.getStartTime()));
+                    query.ge("ctime", criteria.getStartTime());
                 } else {
-                    query.append(String.format(" and ctime <= %d", criteria.getEndTime()));
+                    query.le("ctime", criteria.getEndTime());
                 }
             }
             if (criteria.hasActionIdCriteria()) {
@@ -178,7 +236,7 @@ public class IspnActionsServiceImpl implements ActionsService {
                     actionIds.add(criteria.getActionId());
                 }
 
-                query.append(inClause("actionId", actionIds));
+                query.in("actionId", actionIds);
             }
             if (criteria.hasActionPluginCriteria()) {
                 Set<String> actionPlugins = new HashSet<>();
@@ -188,7 +246,7 @@ public class IspnActionsServiceImpl implements ActionsService {
                 if (null != criteria.getActionPlugin()) {
                     actionPlugins.add(criteria.getActionPlugin());
                 }
-                query.append(inClause("actionPlugin", actionPlugins));
+                query.in("actionPlugin", actionPlugins);
             }
             if (criteria.hasEventIdCriteria()) {
                 Set<String> eventIds = new HashSet<>();
@@ -198,7 +256,7 @@ public class IspnActionsServiceImpl implements ActionsService {
                 if (null != criteria.getEventId()) {
                     eventIds.add(criteria.getEventId());
                 }
-                query.append(inClause("eventId", eventIds));
+                query.in("eventId", eventIds);
             }
             if (criteria.hasResultCriteria()) {
                 Set<String> results = new HashSet<>();
@@ -208,11 +266,11 @@ public class IspnActionsServiceImpl implements ActionsService {
                 if (null != criteria.getResult()) {
                     results.add(criteria.getResult());
                 }
-                query.append(inClause("result", results));
+                query.in("result", results);
             }
         }
 
-        List<IspnAction> ispnActions = queryFactory.create(query.toString()).list();
+        List<IspnAction> ispnActions = query.build(queryFactory).list();
         return prepareActionsPage(ispnActions.stream().map(ispnAction -> {
             if (criteria != null && criteria.isThin()) {
                 Action action = new Action(ispnAction.getAction());
@@ -223,19 +281,6 @@ public class IspnActionsServiceImpl implements ActionsService {
         }).collect(Collectors.toList()), pager);
     }
 
-    // An exploded "in" clause because the actual one seems not to work
-    private String inClause(String field, Set<String> values) {
-        String separator = "";
-        StringBuffer sb = new StringBuffer(" and (");
-        for (String v : values) {
-            sb.append(separator);
-            sb.append(String.format("%s = '%s'", field, v));
-            separator = " or ";
-        }
-        sb.append(")");
-        return sb.toString();
-    }
-
     @Override
     public int deleteActions(String tenantId, ActionsCriteria criteria) throws Exception {
         if (isEmpty(tenantId)) {
@@ -305,7 +350,33 @@ public class IspnActionsServiceImpl implements ActionsService {
         }
     }
 
-    private void send(final TriggerAction triggerAction, final Event event) {
+    /*
+        Invoked by the dispatcher, it resolves the actions to send for an event of a trigger
+     */
+    private List<Action> resolveActions(Trigger trigger, Event event) {
+        List<Action> actions = new ArrayList<>();
+        if (!isEmpty(trigger.getActions())) {
+            for (TriggerAction triggerAction : trigger.getActions()) {
+                Action action = resolve(triggerAction, event);
+                if (action != null) {
+                    actions.add(action);
+                }
+            }
+        }
+
+        if (actionsCacheManager.hasGlobalActions()) {
+            Collection<ActionDefinition> globalActions = actionsCacheManager.getGlobalActions(trigger.getTenantId());
+            for (ActionDefinition globalAction : globalActions) {
+                Action action = resolve(globalAction, event);
+                if (action != null) {
+                    actions.add(action);
+                }
+            }
+        }
+        return actions;
+    }
+
+    private Action resolve(final TriggerAction triggerAction, final Event event) {
         if (triggerAction == null || isEmpty(triggerAction.getTenantId()) ||
                 isEmpty(triggerAction.getActionPlugin()) || isEmpty(triggerAction.getActionId())) {
             throw new IllegalArgumentException("TriggerAction must be not null");
@@ -319,36 +390,31 @@ public class IspnActionsServiceImpl implements ActionsService {
         Action action = new Action(triggerAction.getTenantId(), triggerAction.getActionPlugin(),
                 triggerAction.getActionId(), event);
         try {
-            ActionDefinition actionDefinition = definitions.getActionDefinition(triggerAction.getTenantId(),
+            ActionDefinition actionDefinition = actionsCacheManager.getResolvedAction(triggerAction.getTenantId(),
                     triggerAction.getActionPlugin(), triggerAction.getActionId());
-            Map<String, String> defaultProperties = definitions
-                    .getDefaultActionPlugin(triggerAction.getActionPlugin());
-            if (actionDefinition != null && defaultProperties != null) {
-                Map<String, String> mixedProps = mixProperties(actionDefinition.getProperties(),
-                        defaultProperties);
-                action.setProperties(mixedProps);
+            if (actionDefinition != null) {
+                action.setProperties(new HashMap<>(actionDefinition.getProperties()));
             } else {
                 log.debugf("Action %s has not an ActionDefinition", action);
             }
             //  If no constraints defined at TriggerAction level, ActionDefinition constraints are used.
             if (isEmpty(triggerAction.getStates()) && triggerAction.getCalendar() == null) {
-                triggerAction.setStates(actionDefinition.getStates());
+                // The resolved ActionDefinition is shared through the cache
+                triggerAction.setStates(new HashSet<>(actionDefinition.getStates()));
                 triggerAction.setCalendar(actionDefinition.getCalendar());
                 log.debugf("Using ActionDefinition constraints: %s", actionDefinition);
             }
             if (ActionsValidator.validate(triggerAction, event)) {
-                for (ActionListener listener : alertsContext.getActionsListeners()) {
-                    listener.process(action);
-                }
-                insertAction(action);
+                return action;
             }
         } catch (Exception e) {
             log.debug(e.getMessage(), e);
             log.errorCannotUpdateAction(e.getMessage());
         }
+        return null;
     }
 
-    private void send(final ActionDefinition globalActionDefinition, final Event event) {
+    private Action resolve(final ActionDefinition globalActionDefinition, final Event event) {
         if (globalActionDefinition == null || isEmpty(globalActionDefinition.getTenantId()) ||
                 isEmpty(globalActionDefinition.getActionPlugin()) || isEmpty(globalActionDefinition.getActionId())) {
             throw new IllegalArgumentException("ActionDefinition must be not null");
@@ -365,38 +431,47 @@ public class IspnActionsServiceImpl implements ActionsService {
         Action action = new Action(globalTriggerAction.getTenantId(), globalTriggerAction.getActionPlugin(),
                 globalTriggerAction.getActionId(), event);
         try {
-            Map<String, String> defaultProperties = definitions
-                    .getDefaultActionPlugin(globalTriggerAction.getActionPlugin());
-            if (defaultProperties != null) {
-                Map<String, String> mixedProps = mixProperties(globalActionDefinition.getProperties(),
-                        defaultProperties);
-                action.setProperties(mixedProps);
+            ActionDefinition resolved = actionsCacheManager.getResolvedAction(globalActionDefinition.getTenantId(),
+                    globalActionDefinition.getActionPlugin(), globalActionDefinition.getActionId());
+            if (resolved != null) {
+                action.setProperties(new HashMap<>(resolved.getProperties()));
             }
             globalTriggerAction.setStates(globalActionDefinition.getStates());
             globalTriggerAction.setCalendar(globalActionDefinition.getCalendar());
             if (ActionsValidator.validate(globalTriggerAction, event)) {
-                for (ActionListener listener : alertsContext.getActionsListeners()) {
-                    listener.process(action);
-                }
-                insertAction(action);
+                return action;
             }
         } catch (Exception e) {
             log.debug(e.getMessage(), e);
             log.errorCannotUpdateAction(e.getMessage());
         }
+        return null;
     }
 
-    private Map<String, String> mixProperties(Map<String, String> props, Map<String, String> defProps) {
-        Map<String, String> mixed = new HashMap<>();
-        if (props != null) {
-            mixed.putAll(props);
+
+    /*
+        Invoked by the dispatcher, it stores the actions of a dispatch batch in a single backend batch
+     */
+    private void storeActions(List<Action> actions) throws Exception {
+        Map<String, IspnAction> ispnActions = new HashMap<>();
+        for (Action action : actions) {
+            if (action.getResult() == null) {
+                action.setResult(WAITING_RESULT);
+            }
+            ispnActions.put(IspnPk.pk(action), new IspnAction(action));
         }
-        if (defProps != null) {
-            for (String defKey : defProps.keySet()) {
-                mixed.putIfAbsent(defKey, defProps.get(defKey));
+        try {
+            backend.startBatch();
+            backend.putAll(ispnActions);
+            backend.endBatch(true);
+        } catch (Exception e) {
+            try {
+                backend.endBatch(false);
+            } catch (Exception e2) {
+                log.errorDatabaseException(e2.getMessage());
             }
+            throw e;
         }
-        return mixed;
     }
 
     private void insertAction(Action action) {
@@ -24,19 +24,22 @@ import static org.hawkular.alerts.engine.tags.ExpressionTagQueryParser.Expressio
 import static org.hawkular.alerts.engine.util.Utils.extractAlertIds;
 import static org.hawkular.alerts.engine.util.Utils.extractCategories;
 import static org.hawkular.alerts.engine.util.Utils.extractEventIds;
+import static org.hawkular.alerts.engine.util.Utils.extractSeverities;
 import static org.hawkular.alerts.engine.util.Utils.extractStatus;
 import static org.hawkular.alerts.engine.util.Utils.extractTriggerIds;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.EnumSet;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.condition.ConditionEval;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Alert;
@@ -54,18 +57,24 @@ import org.hawkular.alerts.api.services.ActionsService;
 import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.api.services.EventsChangeListener;
 import org.hawkular.alerts.api.services.EventsCriteria;
 import org.hawkular.alerts.api.services.PropertiesService;
 import org.hawkular.alerts.cache.IspnCacheManager;
+import org.hawkular.alerts.engine.impl.EventsChangeNotifier;
+import org.hawkular.alerts.engine.impl.EventsChangeNotifier.ChangesVerifier;
 import org.hawkular.alerts.engine.impl.IncomingDataManagerImpl;
 import org.hawkular.alerts.engine.impl.ispn.model.IspnEvent;
 import org.hawkular.alerts.engine.impl.ispn.model.TagsBridge;
 import org.hawkular.alerts.engine.service.AlertsEngine;
 import org.hawkular.alerts.engine.service.IncomingDataManager;
+import org.hawkular.alerts.engine.service.PartitionEventsChangeListener;
+import org.hawkular.alerts.engine.service.PartitionManager;
 import org.hawkular.alerts.log.AlertingLogger;
 import org.hawkular.commons.log.MsgLogging;
 import org.infinispan.Cache;
 import org.infinispan.query.Search;
+import org.infinispan.query.dsl.Query;
 import org.infinispan.query.dsl.QueryFactory;
 
 /**
@@ -85,12 +94,37 @@ public class IspnAlertsServiceImpl implements AlertsService {
 
     PropertiesService properties;
 
+    PartitionManager partitionManager;
+
     Cache<String, Object> backend;
 
     QueryFactory queryFactory;
 
     IspnExpressionTagQueryParser parser;
 
+    /*
+        Comparator fields that can be sorted by the index, mapped to the IspnEvent fields
+     */
+    private static final Map<AlertComparator.Field, String> ALERTS_INDEX_ORDER =
+            new EnumMap<>(AlertComparator.Field.class);
+    private static final Map<EventComparator.Field, String> EVENTS_INDEX_ORDER =
+            new EnumMap<>(EventComparator.Field.class);
+
+    static {
+        ALERTS_INDEX_ORDER.put(AlertComparator.Field.ALERT_ID, "id");
+        ALERTS_INDEX_ORDER.put(AlertComparator.Field.TRIGGER_ID, "triggerId");
+        ALERTS_INDEX_ORDER.put(AlertComparator.Field.CTIME, "ctime");
+        ALERTS_INDEX_ORDER.put(AlertComparator.Field.STIME, "stime");
+        ALERTS_INDEX_ORDER.put(AlertComparator.Field.SEVERITY, "severityOrdinal");
+        ALERTS_INDEX_ORDER.put(AlertComparator.Field.STATUS, "statusOrdinal");
+        EVENTS_INDEX_ORDER.put(EventComparator.Field.ID, "id");
+        EVENTS_INDEX_ORDER.put(EventComparator.Field.TRIGGER_ID, "triggerId");
+        EVENTS_INDEX_ORDER.put(EventComparator.Field.CTIME, "ctime");
+        EVENTS_INDEX_ORDER.put(EventComparator.Field.CATEGORY, "category");
+    }
+
+    EventsChangeNotifier eventsChangeNotifier = new EventsChangeNotifier();
+
     public void init() {
         backend = IspnCacheManager.getCacheManager().getCache("backend");
         if (backend == null) {
@@ -98,6 +132,20 @@ public class IspnAlertsServiceImpl implements AlertsService {
             throw new RuntimeException("backend cache not found");
         }
         queryFactory = Search.getQueryFactory(backend);
+        if (partitionManager != null) {
+            // Alerts and events changed on other nodes are notified to the listeners of this node
+            partitionManager.registerEventsChangeListener(new PartitionEventsChangeListener() {
+                @Override
+                public void onAlertsChange(Collection<Alert> alerts) {
+                    eventsChangeNotifier.notifyAlerts(alerts);
+                }
+
+                @Override
+                public void onEventsChange(Collection<Event> events) {
+                    eventsChangeNotifier.notifyEvents(events);
+                }
+            });
+        }
         parser = new IspnExpressionTagQueryParser((tokens, query) -> {
             if (tokens != null) {
                 String tag;
@@ -203,6 +251,10 @@ public class IspnAlertsServiceImpl implements AlertsService {
         this.properties = properties;
     }
 
+    public void setPartitionManager(PartitionManager partitionManager) {
+        this.partitionManager = partitionManager;
+    }
+
     @Override
     public void ackAlerts(String tenantId, Collection<String> alertIds, String ackBy, String ackNotes) throws Exception {
         if (isEmpty(tenantId)) {
@@ -229,6 +281,7 @@ public class IspnAlertsServiceImpl implements AlertsService {
             backend.put(pk(alert), new IspnEvent(alert));
             sendAction(alert);
         }
+        notifyChanges(alertsToAck, null);
     }
 
     @Override
@@ -240,9 +293,8 @@ public class IspnAlertsServiceImpl implements AlertsService {
             return;
         }
         log.debugf("Adding %s alerts", alerts.size());
-        for (Alert alert : alerts) {
-            backend.put(pk(alert), new IspnEvent(alert));
-        }
+        storeEvents(alerts);
+        notifyChanges(alerts, alerts);
     }
 
     @Override
@@ -307,8 +359,26 @@ public class IspnAlertsServiceImpl implements AlertsService {
             return;
         }
         log.debugf("Adding %s events", events.size());
+        storeEvents(events);
+        notifyChanges(null, events);
+    }
+
+    /*
+        All the events are written with a single putAll inside a batch, so they are committed together instead of
+        paying a commit per event.
+     */
+    private void storeEvents(Collection<? extends Event> events) throws Exception {
+        Map<String, Object> ispnEvents = new HashMap<>(events.size());
         for (Event event : events) {
-            backend.put(pk(event), new IspnEvent(event));
+            ispnEvents.put(pk(event), new IspnEvent(event));
+        }
+        try {
+            backend.startBatch();
+            backend.putAll(ispnEvents);
+            backend.endBatch(true);
+        } catch (Exception e) {
+            backend.endBatch(false);
+            throw e;
         }
     }
 
@@ -419,129 +489,69 @@ public class IspnAlertsServiceImpl implements AlertsService {
             log.debugf("getAlerts criteria: %s", criteria.toString());
         }
 
-        StringBuilder query = new StringBuilder("from org.hawkular.alerts.engine.impl.ispn.model.IspnEvent where ");
-        query.append("eventType = 'ALERT' and ");
-        query.append("(");
-        Iterator<String> iter = tenantIds.iterator();
-        while (iter.hasNext()) {
-            String tenantId = iter.next();
-            query.append("tenantId = '").append(tenantId).append("' ");
-            if (iter.hasNext()) {
-                query.append("or ");
-            }
-        }
-        query.append(") ");
+        IspnQueryBuilder query = new IspnQueryBuilder(IspnEvent.class)
+                .eq("eventType", EventType.ALERT.name())
+                .in("tenantId", tenantIds);
 
         if (filter) {
-           if (criteria.hasAlertIdCriteria()) {
-               query.append("and (");
-               iter = extractAlertIds(criteria).iterator();
-               while (iter.hasNext()) {
-                   String alertId = iter.next();
-                   query.append("id = '").append(alertId).append("' ");
-                   if (iter.hasNext()) {
-                       query.append("or ");
-                   }
-               }
-               query.append(") ");
-           }
-           if (criteria.hasTagQueryCriteria()) {
-               query.append("and (tags : ");
-               parseTagQuery(criteria.getTagQuery(), query);
-               query.append(") ");
-           }
-           if (criteria.hasTriggerIdCriteria()) {
-                query.append("and (");
-                iter = extractTriggerIds(criteria).iterator();
-                while (iter.hasNext()) {
-                    String triggerId = iter.next();
-                    query.append("triggerId = '").append(triggerId).append("' ");
-                    if (iter.hasNext()) {
-                        query.append("or ");
-                    }
-                }
-                query.append(") ");
-           }
-           if (criteria.hasCTimeCriteria()) {
-                query.append("and (");
+            if (criteria.hasAlertIdCriteria()) {
+                query.in("id", extractAlertIds(criteria));
+            }
+            if (criteria.hasTagQueryCriteria()) {
+                StringBuilder tagQuery = new StringBuilder("tags : ");
+                parseTagQuery(criteria.getTagQuery(), tagQuery);
+                query.condition(tagQuery.toString());
+            }
+            if (criteria.hasTriggerIdCriteria()) {
+                query.in("triggerId", extractTriggerIds(criteria));
+            }
+            if (criteria.hasCTimeCriteria()) {
                 if (criteria.getStartTime() != null) {
-                    query.append("ctime >= ").append(criteria.getStartTime()).append(" ");
+                    query.ge("ctime", criteria.getStartTime());
                 }
                 if (criteria.getEndTime() != null) {
-                    if (criteria.getStartTime() != null) {
-                        query.append("and ");
-                    }
-                    query.append("ctime <= ").append(criteria.getEndTime()).append(" ");
+                    query.le("ctime", criteria.getEndTime());
                 }
-                query.append(") ");
-           }
-           if (criteria.hasResolvedTimeCriteria()) {
-               query.append("and (status = '").append(Status.RESOLVED.name()).append("' and ");
-               if (criteria.getStartResolvedTime() != null) {
-                   query.append("stime >= ").append(criteria.getStartResolvedTime()).append(" ");
-               }
-               if (criteria.getEndResolvedTime() != null) {
-                   if (criteria.getStartResolvedTime() != null) {
-                       query.append("and ");
-                   }
-                   query.append("stime <= ").append(criteria.getEndResolvedTime()).append(" ");
-               }
-               query.append(") ");
-           }
-           if (criteria.hasAckTimeCriteria()) {
-               query.append("and (status = '").append(Status.ACKNOWLEDGED.name()).append("' and ");
-               if (criteria.getStartAckTime() != null) {
-                   query.append("stime >= ").append(criteria.getStartAckTime()).append(" ");
-               }
-               if (criteria.getEndAckTime() != null) {
-                   if (criteria.getStartAckTime() != null) {
-                       query.append("and ");
-                   }
-                   query.append("stime <= ").append(criteria.getEndAckTime()).append(" ");
-               }
-               query.append(") ");
-           }
-           if (criteria.hasStatusTimeCriteria()) {
-               query.append("and (");
-               if (criteria.getStartStatusTime() != null) {
-                   query.append("stime >= ").append(criteria.getStartStatusTime()).append(" ");
-               }
-               if (criteria.getEndTime() != null) {
-                   if (criteria.getStartTime() != null) {
-                       query.append("and ");
-                   }
-                   query.append("stime <= ").append(criteria.getEndStatusTime()).append(" ");
-               }
-               query.append(") ");
-           }
-           if (criteria.hasSeverityCriteria()) {
-               query.append("and (");
-               Iterator<Severity> iterSev = criteria.getSeverities().iterator();
-               while (iterSev.hasNext()) {
-                   Severity severity = iterSev.next();
-                   query.append("severity = '").append(severity.name()).append("' ");
-                   if (iterSev.hasNext()) {
-                       query.append(" or ");
-                   }
-               }
-               query.append(") ");
-           }
-           if (criteria.hasStatusCriteria()) {
-               query.append("and (");
-               Iterator<Status> iterStatus = extractStatus(criteria).iterator();
-               while (iterStatus.hasNext()) {
-                   Status status = iterStatus.next();
-                   query.append("status = '").append(status.name()).append("' ");
-                   if (iterStatus.hasNext()) {
-                       query.append(" or ");
-                   }
-               }
-               query.append(") ");
-           }
-        }
-
-        List<IspnEvent> ispnEvents = queryFactory.create(query.toString()).list();
-        List<Alert> alerts = ispnEvents.stream().map(ispnEvent -> {
+            }
+            if (criteria.hasResolvedTimeCriteria()) {
+                query.eq("status", Status.RESOLVED.name());
+                if (criteria.getStartResolvedTime() != null) {
+                    query.ge("stime", criteria.getStartResolvedTime());
+                }
+                if (criteria.getEndResolvedTime() != null) {
+                    query.le("stime", criteria.getEndResolvedTime());
+                }
+            }
+            if (criteria.hasAckTimeCriteria()) {
+                query.eq("status", Status.ACKNOWLEDGED.name());
+                if (criteria.getStartAckTime() != null) {
+                    query.ge("stime", criteria.getStartAckTime());
+                }
+                if (criteria.getEndAckTime() != null) {
+                    query.le("stime", criteria.getEndAckTime());
+                }
+            }
+            if (criteria.hasStatusTimeCriteria()) {
+                if (criteria.getStartStatusTime() != null) {
+                    query.ge("stime", criteria.getStartStatusTime());
+                }
+                if (criteria.getEndStatusTime() != null) {
+                    query.le("stime", criteria.getEndStatusTime());
+                }
+            }
+            if (criteria.hasSeverityCriteria()) {
+                query.in("severity", extractSeverities(criteria).stream()
+                        .map(severity -> severity.name())
+                        .collect(Collectors.toList()));
+            }
+            if (criteria.hasStatusCriteria()) {
+                query.in("status", extractStatus(criteria).stream()
+                        .map(status -> status.name())
+                        .collect(Collectors.toList()));
+            }
+        }
+
+        Function<IspnEvent, Alert> toAlert = ispnEvent -> {
             if (criteria != null && criteria.isThin()) {
                 Alert alert = new Alert((Alert) ispnEvent.getEvent());
                 alert.setDampening(null);
@@ -550,7 +560,18 @@ public class IspnAlertsServiceImpl implements AlertsService {
                 return alert;
             }
             return (Alert) ispnEvent.getEvent();
-        }).collect(Collectors.toList());
+        };
+
+        String orderBy = orderBy(pager, AlertComparator.Field::getField, ALERTS_INDEX_ORDER,
+                AlertComparator.Field.ALERT_ID.getText());
+        if (orderBy != null) {
+            return queryPage(query.orderBy(orderBy), pager, toAlert,
+                    new Order(AlertComparator.Field.ALERT_ID.getText(), Order.Direction.ASCENDING));
+        }
+
+        // The ordering is not supported by the index, all results are sorted in memory
+        List<IspnEvent> ispnEvents = query.build(queryFactory).list();
+        List<Alert> alerts = ispnEvents.stream().map(toAlert).collect(Collectors.toList());
         if (alerts.isEmpty()) {
             return new Page<>(alerts, pager, 0);
         } else {
@@ -587,84 +608,51 @@ public class IspnAlertsServiceImpl implements AlertsService {
             log.debugf("getEvents criteria: %s", criteria.toString());
         }
 
-        StringBuilder query = new StringBuilder("from org.hawkular.alerts.engine.impl.ispn.model.IspnEvent where ");
-        query.append("(");
-        Iterator<String> iter = tenantIds.iterator();
-        while (iter.hasNext()) {
-            String tenantId = iter.next();
-            query.append("tenantId = '").append(tenantId).append("' ");
-            if (iter.hasNext()) {
-                query.append("or ");
-            }
-        }
-        query.append(") ");
+        IspnQueryBuilder query = new IspnQueryBuilder(IspnEvent.class)
+                .in("tenantId", tenantIds);
 
         if (filter) {
             if (criteria.hasEventTypeCriteria()) {
                 try {
                     EventType eventType = EventType.valueOf(criteria.getEventType());
-                    query.append("and eventType = '").append(eventType.name()).append("' ");
+                    query.eq("eventType", eventType.name());
                 } catch (Exception e) {
                     log.debugf("EventType [%s] is not valid, ignoring this criteria", criteria.getEventType());
                 }
             }
             if (criteria.hasEventIdCriteria()) {
-                query.append("and (");
-                iter = extractEventIds(criteria).iterator();
-                while (iter.hasNext()) {
-                    String eventId = iter.next();
-                    query.append("id = '").append(eventId).append("' ");
-                    if (iter.hasNext()) {
-                        query.append("or ");
-                    }
-                }
-                query.append(") ");
+                query.in("id", extractEventIds(criteria));
             }
             if (criteria.hasTagQueryCriteria()) {
-                query.append("and (tags : ");
-                parseTagQuery(criteria.getTagQuery(), query);
-                query.append(") ");
+                StringBuilder tagQuery = new StringBuilder("tags : ");
+                parseTagQuery(criteria.getTagQuery(), tagQuery);
+                query.condition(tagQuery.toString());
             }
             if (criteria.hasTriggerIdCriteria()) {
-                query.append("and (");
-                iter = extractTriggerIds(criteria).iterator();
-                while (iter.hasNext()) {
-                    String triggerId = iter.next();
-                    query.append("triggerId = '").append(triggerId).append("' ");
-                    if (iter.hasNext()) {
-                        query.append("or ");
-                    }
-                }
-                query.append(") ");
+                query.in("triggerId", extractTriggerIds(criteria));
             }
             if (criteria.hasCTimeCriteria()) {
-                query.append("and (");
                 if (criteria.getStartTime() != null) {
-                    query.append("ctime >= ").append(criteria.getStartTime()).append(" ");
+                    query.ge("ctime", criteria.getStartTime());
                 }
                 if (criteria.getEndTime() != null) {
-                    if (criteria.getStartTime() != null) {
-                        query.append("and ");
-                    }
-                    query.append("ctime <= ").append(criteria.getEndTime()).append(" ");
+                    query.le("ctime", criteria.getEndTime());
                 }
-                query.append(") ");
             }
             if (criteria.hasCategoryCriteria()) {
-                query.append("and (");
-                iter = extractCategories(criteria).iterator();
-                while (iter.hasNext()) {
-                    String category = iter.next();
-                    query.append("category = '").append(category).append("' ");
-                    if (iter.hasNext()) {
-                        query.append(" or ");
-                    }
-                }
-                query.append(") ");
+                query.in("category", extractCategories(criteria));
             }
         }
 
-        List<IspnEvent> ispnEvents = queryFactory.create(query.toString()).list();
+        String orderBy = orderBy(pager, EventComparator.Field::getField, EVENTS_INDEX_ORDER,
+                EventComparator.Field.ID.getName());
+        if (orderBy != null) {
+            return queryPage(query.orderBy(orderBy), pager, e -> e.getEvent(),
+                    new Order(EventComparator.Field.ID.getName(), Order.Direction.ASCENDING));
+        }
+
+        // The ordering is not supported by the index, all results are sorted in memory
+        List<IspnEvent> ispnEvents = query.build(queryFactory).list();
         List<Event> events = ispnEvents.stream().map(e -> e.getEvent()).collect(Collectors.toList());
         if (events.isEmpty()) {
             return new Page<>(events, pager, 0);
@@ -673,6 +661,42 @@ public class IspnAlertsServiceImpl implements AlertsService {
         }
     }
 
+    @Override
+    public void registerListener(EventsChangeListener<Alert> listener, Set<String> tenantIds,
+            AlertsCriteria criteria) {
+        ChangesVerifier<Alert> verifier = null;
+        if (criteria != null && criteria.hasTagQueryCriteria()) {
+            // Tags are only resolved by the backend, confirm the candidates with a query restricted to their ids
+            String tagQuery = criteria.getTagQuery();
+            verifier = candidates -> {
+                AlertsCriteria verifyCriteria = new AlertsCriteria();
+                verifyCriteria.setTagQuery(tagQuery);
+                verifyCriteria.setAlertIds(candidates.stream().map(a -> a.getId()).collect(Collectors.toSet()));
+                return getAlerts(tenantIds, verifyCriteria, null);
+            };
+        }
+        eventsChangeNotifier.registerAlertsListener(listener, tenantIds, criteria, verifier);
+        notifyWatching();
+    }
+
+    @Override
+    public void registerListener(EventsChangeListener<Event> listener, Set<String> tenantIds,
+            EventsCriteria criteria) {
+        ChangesVerifier<Event> verifier = null;
+        if (criteria != null && criteria.hasTagQueryCriteria()) {
+            // Tags are only resolved by the backend, confirm the candidates with a query restricted to their ids
+            String tagQuery = criteria.getTagQuery();
+            verifier = candidates -> {
+                EventsCriteria verifyCriteria = new EventsCriteria();
+                verifyCriteria.setTagQuery(tagQuery);
+                verifyCriteria.setEventIds(candidates.stream().map(e -> e.getId()).collect(Collectors.toSet()));
+                return getEvents(tenantIds, verifyCriteria, null);
+            };
+        }
+        eventsChangeNotifier.registerEventsListener(listener, tenantIds, criteria, verifier);
+        notifyWatching();
+    }
+
     @Override
     public void removeAlertTags(String tenantId, Collection<String> alertIds, Collection<String> tags) throws Exception {
         if (isEmpty(tenantId)) {
@@ -763,6 +787,7 @@ public class IspnAlertsServiceImpl implements AlertsService {
             backend.put(pk(alert), new IspnEvent(alert));
             sendAction(alert);
         }
+        notifyChanges(alertsToResolve, null);
 
         // gather the triggerIds of the triggers we need to check for resolve options
         Set<String> triggerIds = alertsToResolve.stream().map(alert -> alert.getTriggerId()).collect(Collectors.toSet());
@@ -800,6 +825,7 @@ public class IspnAlertsServiceImpl implements AlertsService {
             backend.put(pk(alert), new IspnEvent(alert));
             sendAction(alert);
         }
+        notifyChanges(alertsToResolve, null);
 
         handleResolveOptions(tenantId, triggerId, false);
 
@@ -843,12 +869,116 @@ public class IspnAlertsServiceImpl implements AlertsService {
         incomingDataManager.bufferEvents(new IncomingDataManagerImpl.IncomingEvents(events, !ignoreFiltering));
     }
 
+    @Override
+    public void unregisterListener(EventsChangeListener<?> listener) {
+        eventsChangeNotifier.unregisterListener(listener);
+        notifyWatching();
+    }
+
     protected void parseTagQuery(String tagQuery, StringBuilder query) throws Exception {
         parser.resolveQuery(tagQuery, query);
     }
 
     // Private methods
 
+    /*
+        Listeners are notified on the node where the change happens, in distributed mode the change is also sent to
+        the rest of the nodes.
+     */
+    private void notifyChanges(Collection<Alert> alerts, Collection<? extends Event> events) {
+        if (!isEmpty(alerts)) {
+            eventsChangeNotifier.notifyAlerts(alerts);
+        }
+        if (!isEmpty(events)) {
+            eventsChangeNotifier.notifyEvents(events);
+        }
+        if (partitionManager != null && partitionManager.isDistributed()) {
+            partitionManager.notifyEventsChange(alerts, events);
+        }
+    }
+
+    /*
+        Other nodes only send their changes while some node is watching them.
+     */
+    private synchronized void notifyWatching() {
+        if (partitionManager != null && partitionManager.isDistributed()) {
+            partitionManager.notifyWatching(eventsChangeNotifier.hasListeners());
+        }
+    }
+
+    /**
+     * Build the order by clause of a query from the pager, same ordering than preparePage() and prepareEventsPage().
+     * Comparators are applied one after the other, so the last order of the pager is the primary one, and always
+     * compare the tenantId first.
+     *
+     * @return the order by clause or null if some order field is not sortable by the index.
+     */
+    private <F extends Enum<F>> String orderBy(Pager pager, Function<String, F> toField, Map<F, String> indexFields,
+            String defaultField) {
+        List<Order> orders = new ArrayList<>();
+        if (pager == null) {
+            orders.add(new Order(defaultField, Order.Direction.ASCENDING));
+        } else if (pager.getOrder() != null && !pager.getOrder().isEmpty()
+                && pager.getOrder().get(0).getField() == null) {
+            orders.add(new Order(defaultField, Order.Direction.DESCENDING));
+        } else if (pager.getOrder() != null) {
+            pager.getOrder().stream()
+                    .filter(o -> o.getField() != null && o.getDirection() != null)
+                    .forEach(o -> orders.add(0, o));
+        }
+        if (orders.isEmpty()) {
+            orders.add(new Order(defaultField, Order.Direction.ASCENDING));
+        }
+        StringBuilder orderBy = new StringBuilder("tenantId ")
+                .append(orders.get(0).getDirection().getShortString());
+        boolean byId = false;
+        for (Order order : orders) {
+            String indexField = indexFields.get(toField.apply(order.getField()));
+            if (indexField == null) {
+                return null;
+            }
+            byId = byId || "id".equals(indexField);
+            orderBy.append(", ").append(indexField).append(" ").append(order.getDirection().getShortString());
+        }
+        if (!byId) {
+            // Stable ordering between pages
+            orderBy.append(", id asc");
+        }
+        return orderBy.toString();
+    }
+
+    /**
+     * Run a query with the paging performed by the index, only the requested page is fetched from the backend.
+     */
+    private <T extends Event> Page<T> queryPage(IspnQueryBuilder query, Pager pager, Function<IspnEvent, T> mapper,
+            Order defaultOrder) {
+        Query indexQuery = query.build(queryFactory);
+        boolean limited = pager != null && pager.isLimited();
+        if (limited) {
+            indexQuery.startOffset(pager.getStart());
+            indexQuery.maxResults(pager.getPageSize());
+        }
+        List<IspnEvent> ispnEvents = indexQuery.list();
+        int total = indexQuery.getResultSize();
+        if (total == 0) {
+            return new Page<>(new ArrayList<>(), pager, 0);
+        }
+        if (limited && total < pager.getStart()) {
+            // Same as preparePage(), a start beyond the results returns all the results
+            ispnEvents = query.build(queryFactory).list();
+            total = ispnEvents.size();
+            limited = false;
+        }
+        List<T> results = ispnEvents.stream().map(mapper).collect(Collectors.toList());
+        if (pager == null) {
+            pager = Pager.builder().withPageSize(total)
+                    .orderBy(defaultOrder.getField(), defaultOrder.getDirection()).build();
+        } else if (!limited) {
+            pager = new Pager(0, total, pager.getOrder());
+        }
+        return new Page<>(results, pager, total);
+    }
+
     private Page<Alert> preparePage(List<Alert> alerts, Pager pager) {
         if (pager != null) {
             if (pager.getOrder() != null
@@ -19,6 +19,7 @@ package org.hawkular.alerts.engine.impl.ispn;
 import static org.hawkular.alerts.api.services.DefinitionsEvent.Type.ACTION_DEFINITION_CREATE;
 import static org.hawkular.alerts.api.services.DefinitionsEvent.Type.ACTION_DEFINITION_REMOVE;
 import static org.hawkular.alerts.api.services.DefinitionsEvent.Type.ACTION_DEFINITION_UPDATE;
+import static org.hawkular.alerts.api.services.DefinitionsEvent.Type.ACTION_PLUGIN_CHANGE;
 import static org.hawkular.alerts.api.util.Util.isEmpty;
 import static org.hawkular.alerts.engine.impl.ispn.IspnPk.pk;
 import static org.hawkular.alerts.engine.impl.ispn.IspnPk.pkFromDampeningId;
@@ -31,7 +32,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -85,8 +85,6 @@ import org.hawkular.alerts.log.AlertingLogger;
 import org.hawkular.commons.log.MsgLogging;
 import org.infinispan.Cache;
 import org.infinispan.query.Search;
-import org.infinispan.query.dsl.FilterConditionContext;
-import org.infinispan.query.dsl.QueryBuilder;
 import org.infinispan.query.dsl.QueryFactory;
 
 /**
@@ -723,48 +721,19 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
 
         List<IspnTrigger> triggers;
         if (filter) {
-            StringBuilder query = new StringBuilder(
-                    "from org.hawkular.alerts.engine.impl.ispn.model.IspnTrigger where ");
-            query.append("tenantId = '").append(tenantId).append("' and ");
+            IspnQueryBuilder query = new IspnQueryBuilder(IspnTrigger.class)
+                    .eq("tenantId", tenantId);
             if (criteria.hasTriggerIdCriteria()) {
-                Set<String> triggerIds = filterByTriggers(criteria);
-                query.append("(");
-                Iterator<String> iter = triggerIds.iterator();
-                while (iter.hasNext()) {
-                    String triggerId = iter.next();
-                    query.append("triggerId = '").append(triggerId).append("' ");
-                    if (iter.hasNext()) {
-                        query.append("or ");
-                    }
-                }
-                query.append(") ");
-                if (criteria.hasTagCriteria()) {
-                    query.append("and ");
-                }
+                query.in("triggerId", filterByTriggers(criteria));
             }
             if (criteria.hasTagCriteria()) {
-                Map<String, String> tags = criteria.getTags();
-                query.append("(");
-                Iterator<Map.Entry<String, String>> iter = tags.entrySet().iterator();
-                while (iter.hasNext()) {
-                    Map.Entry<String, String> tag = iter.next();
-                    query.append("tags like '")
-                            .append(tag.getKey())
-                            .append(TagsBridge.VALUE)
-                            .append(tag.getValue().equals("*") ? "%" : tag.getValue())
-                            .append("' ");
-                    if (iter.hasNext()) {
-                        query.append("or ");
-                    }
-                }
-                query.append(") ");
+                query.likeAny("tags", tagPatterns(criteria.getTags()));
             }
-            triggers = queryFactory.create(query.toString()).list();
+            triggers = query.build(queryFactory).list();
         } else {
-            triggers = queryFactory.from(IspnTrigger.class)
-                    .having("tenantId")
-                    .eq(tenantId)
-                    .build()
+            triggers = new IspnQueryBuilder(IspnTrigger.class)
+                    .eq("tenantId", tenantId)
+                    .build(queryFactory)
                     .list();
         }
         return prepareTriggersPage(triggers.stream().map(t -> t.getTrigger()).collect(Collectors.toList()), pager);
@@ -773,10 +742,10 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
     @Override
     public Collection<Trigger> getMemberTriggers(String tenantId, String groupId, boolean includeOrphans)
             throws Exception {
-        Collection<IspnTrigger> ispnTriggers = queryFactory.from(IspnTrigger.class)
-                .having("tenantId").eq(tenantId).and()
-                .having("memberOf").eq(groupId)
-                .build().list();
+        Collection<IspnTrigger> ispnTriggers = new IspnQueryBuilder(IspnTrigger.class)
+                .eq("tenantId", tenantId)
+                .eq("memberOf", groupId)
+                .build(queryFactory).list();
         return ispnTriggers.stream()
                 .map(t -> t.getTrigger())
                 .filter(t -> includeOrphans || TriggerType.MEMBER == t.getType())
@@ -799,13 +768,10 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
         if (isEmpty(value)) {
             throw new IllegalArgumentException("value must be not null (use '*' for all");
         }
-        StringBuilder query = new StringBuilder(
-                "from org.hawkular.alerts.engine.impl.ispn.model.IspnTrigger where tags like '")
-                        .append(name)
-                        .append(TagsBridge.VALUE)
-                        .append(value.equals("*") ? "%" : value)
-                        .append("'");
-        List<IspnTrigger> triggers = queryFactory.create(query.toString()).list();
+        List<IspnTrigger> triggers = new IspnQueryBuilder(IspnTrigger.class)
+                .likeAny("tags", tagPatterns(Collections.singletonMap(name, value)))
+                .build(queryFactory)
+                .list();
         return triggers.stream().map(t -> t.getTrigger()).collect(Collectors.toList());
     }
 
@@ -1087,21 +1053,21 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
 
     @Override
     public Collection<Dampening> getDampenings(String tenantId) throws Exception {
-        return mapDampenings(queryFactory.from(IspnDampening.class)
-                .having("tenantId").eq(tenantId)
-                .build().list());
+        return mapDampenings(new IspnQueryBuilder(IspnDampening.class)
+                .eq("tenantId", tenantId)
+                .build(queryFactory).list());
     }
 
     @Override
     public Collection<Dampening> getTriggerDampenings(String tenantId, String triggerId, Mode triggerMode)
             throws Exception {
-        FilterConditionContext qb = queryFactory.from(IspnDampening.class)
-                .having("tenantId").eq(tenantId).and()
-                .having("triggerId").eq(triggerId);
+        IspnQueryBuilder query = new IspnQueryBuilder(IspnDampening.class)
+                .eq("tenantId", tenantId)
+                .eq("triggerId", triggerId);
         if (null != triggerMode) {
-            qb = qb.and().having("triggerMode").eq(triggerMode.name());
+            query.eq("triggerMode", triggerMode.name());
         }
-        return mapDampenings(((QueryBuilder) qb).build().list());
+        return mapDampenings(query.build(queryFactory).list());
     }
 
     @Override
@@ -1335,21 +1301,21 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
 
     @Override
     public Collection<Condition> getConditions(String tenantId) throws Exception {
-        return mapConditions(queryFactory.from(IspnCondition.class)
-                .having("tenantId").eq(tenantId)
-                .build().list());
+        return mapConditions(new IspnQueryBuilder(IspnCondition.class)
+                .eq("tenantId", tenantId)
+                .build(queryFactory).list());
     }
 
     @Override
     public Collection<Condition> getTriggerConditions(String tenantId, String triggerId, Mode triggerMode)
             throws Exception {
-        FilterConditionContext qb = queryFactory.from(IspnCondition.class)
-                .having("tenantId").eq(tenantId).and()
-                .having("triggerId").eq(triggerId);
+        IspnQueryBuilder query = new IspnQueryBuilder(IspnCondition.class)
+                .eq("tenantId", tenantId)
+                .eq("triggerId", triggerId);
         if (null != triggerMode) {
-            qb = qb.and().having("triggerMode").eq(triggerMode.name());
+            query.eq("triggerMode", triggerMode.name());
         }
-        return mapConditions(((QueryBuilder) qb).build().list());
+        return mapConditions(query.build(queryFactory).list());
     }
 
     @Override
@@ -1375,6 +1341,7 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
             throw new FoundException(pk);
         }
         backend.put(pk, new IspnActionPlugin(actionPlugin, defaultProperties));
+        notifyListeners(new DefinitionsEvent(ACTION_PLUGIN_CHANGE, actionPlugin));
     }
 
     @Override
@@ -1383,6 +1350,7 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
             throw new IllegalArgumentException("actionPlugin must be not null");
         }
         backend.remove(pk(actionPlugin));
+        notifyListeners(new DefinitionsEvent(ACTION_PLUGIN_CHANGE, actionPlugin));
     }
 
     @Override
@@ -1410,6 +1378,7 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
         }
         found.setDefaultProperties(defaultProperties);
         backend.put(pk, found);
+        notifyListeners(new DefinitionsEvent(ACTION_PLUGIN_CHANGE, actionPlugin));
     }
 
     @Override
@@ -1525,10 +1494,9 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
     @Override
     public Map<String, Set<String>> getActionDefinitionIds(String tenantId) throws Exception {
         Map<String, Set<String>> actionIds = new HashMap<>();
-        List<IspnActionDefinition> actionDefinitions = queryFactory.from(IspnActionDefinition.class)
-                .having("tenantId")
-                .eq(tenantId)
-                .build()
+        List<IspnActionDefinition> actionDefinitions = new IspnQueryBuilder(IspnActionDefinition.class)
+                .eq("tenantId", tenantId)
+                .build(queryFactory)
                 .list();
         for (IspnActionDefinition action : actionDefinitions) {
             String actionPlugin = action.getActionPlugin();
@@ -1544,13 +1512,10 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
     @Override
     public Collection<String> getActionDefinitionIds(String tenantId, String actionPlugin) throws Exception {
         Set<String> actionIds = new HashSet<>();
-        List<IspnActionDefinition> actionDefinitions = queryFactory.from(IspnActionDefinition.class)
-                .having("tenantId")
-                .eq(tenantId)
-                .and()
-                .having("actionPlugin")
-                .eq(actionPlugin)
-                .build()
+        List<IspnActionDefinition> actionDefinitions = new IspnQueryBuilder(IspnActionDefinition.class)
+                .eq("tenantId", tenantId)
+                .eq("actionPlugin", actionPlugin)
+                .build(queryFactory)
                 .list();
         for (IspnActionDefinition action : actionDefinitions) {
             actionIds.add(action.getActionId());
@@ -2133,11 +2098,16 @@ public class IspnDefinitionsServiceImpl implements DefinitionsService {
         return fullTriggers;
     }
 
+    private List<String> tagPatterns(Map<String, String> tags) {
+        return tags.entrySet().stream()
+                .map(tag -> tag.getKey() + TagsBridge.VALUE + (tag.getValue().equals("*") ? "%" : tag.getValue()))
+                .collect(Collectors.toList());
+    }
+
     private List<ActionDefinition> getActionDefinitions(String tenantId) throws Exception {
-        List<IspnActionDefinition> actionDefinitions = queryFactory.from(IspnActionDefinition.class)
-                .having("tenantId")
-                .eq(tenantId)
-                .build()
+        List<IspnActionDefinition> actionDefinitions = new IspnQueryBuilder(IspnActionDefinition.class)
+                .eq("tenantId", tenantId)
+                .build(queryFactory)
                 .list();
         return actionDefinitions.stream().map(a -> a.getActionDefinition()).collect(Collectors.toList());
     }
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl.ispn;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.infinispan.query.dsl.Query;
+import org.infinispan.query.dsl.QueryFactory;
+
+/**
+ * Build Ickle queries with named parameters instead of literals.
+ *
+ * Parameters are named by position, so criteria with the same shape generate the same query string whatever
+ * their values are. Infinispan caches the parsing of a query by its string, identical shapes reuse the cached plan
+ * and the values are bound at execution.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class IspnQueryBuilder {
+
+    private final StringBuilder query;
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+    private boolean where = false;
+
+    public IspnQueryBuilder(Class<?> entity) {
+        query = new StringBuilder("from ").append(entity.getName());
+    }
+
+    public IspnQueryBuilder eq(String field, Object value) {
+        return compare(field, "=", value);
+    }
+
+    public IspnQueryBuilder ge(String field, Object value) {
+        return compare(field, ">=", value);
+    }
+
+    public IspnQueryBuilder le(String field, Object value) {
+        return compare(field, "<=", value);
+    }
+
+    /**
+     * An exploded "in" clause, one "or" comparison for each value.
+     */
+    public IspnQueryBuilder in(String field, Collection<?> values) {
+        if (values == null || values.isEmpty()) {
+            throw new IllegalArgumentException("Values for field [" + field + "] must be not empty");
+        }
+        condition();
+        query.append("(");
+        String separator = "";
+        for (Object value : values) {
+            query.append(separator).append(field).append(" = ").append(parameter(value));
+            separator = " or ";
+        }
+        query.append(")");
+        return this;
+    }
+
+    /**
+     * An "or" of like comparisons, one for each pattern.
+     * Ickle does not accept parameters on like comparisons, patterns are added as literals.
+     */
+    public IspnQueryBuilder likeAny(String field, Collection<String> patterns) {
+        if (patterns == null || patterns.isEmpty()) {
+            throw new IllegalArgumentException("Patterns for field [" + field + "] must be not empty");
+        }
+        condition();
+        query.append("(");
+        String separator = "";
+        for (String pattern : patterns) {
+            query.append(separator).append(field).append(" like '").append(pattern.replace("'", "''")).append("'");
+            separator = " or ";
+        }
+        query.append(")");
+        return this;
+    }
+
+    /**
+     * Add a condition that can not be parameterized, as full-text predicates.
+     */
+    public IspnQueryBuilder condition(String fragment) {
+        condition();
+        query.append("(").append(fragment).append(")");
+        return this;
+    }
+
+    public IspnQueryBuilder orderBy(String orderBy) {
+        query.append(" order by ").append(orderBy);
+        return this;
+    }
+
+    public String getQuery() {
+        return query.toString();
+    }
+
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+
+    public Query build(QueryFactory queryFactory) {
+        Query built = queryFactory.create(query.toString());
+        parameters.entrySet().stream().forEach(p -> built.setParameter(p.getKey(), p.getValue()));
+        return built;
+    }
+
+    @Override
+    public String toString() {
+        return "IspnQueryBuilder{" +
+                "query=" + query +
+                ", parameters=" + parameters +
+                '}';
+    }
+
+    private IspnQueryBuilder compare(String field, String operator, Object value) {
+        condition();
+        query.append(field).append(" ").append(operator).append(" ").append(parameter(value));
+        return this;
+    }
+
+    private void condition() {
+        query.append(where ? " and " : " where ");
+        where = true;
+    }
+
+    private String parameter(Object value) {
+        String name = "p" + parameters.size();
+        parameters.put(name, value);
+        return ":" + name;
+    }
+}
@@ -4,13 +4,16 @@ import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Alert.Status;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hibernate.search.annotations.Analyze;
 import org.hibernate.search.annotations.Analyzer;
 import org.hibernate.search.annotations.Field;
 import org.hibernate.search.annotations.FieldBridge;
 import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.annotations.SortableField;
 import org.hibernate.search.annotations.Store;
 
 /**
@@ -24,9 +27,11 @@ public class IspnEvent implements Serializable {
     private String eventType;
 
     @Field(store = Store.YES, analyze = Analyze.NO)
+    @SortableField
     private String tenantId;
 
     @Field(store = Store.YES, analyze = Analyze.NO)
+    @SortableField
     private String id;
 
     @Field(store = Store.YES, analyze = Analyze.YES)
@@ -35,21 +40,25 @@ public class IspnEvent implements Serializable {
     private Map<String, String> tags;
 
     @Field(store = Store.YES, analyze = Analyze.NO)
+    @SortableField
     private String triggerId;
 
     @Field(store = Store.YES, analyze = Analyze.NO)
+    @SortableField
     private long ctime;
 
     @Field(store = Store.YES, analyze = Analyze.NO)
     private String status;
 
     @Field(store = Store.YES, analyze = Analyze.NO)
+    @SortableField
     private long stime;
 
     @Field(store = Store.YES, analyze = Analyze.NO)
     private String severity;
 
     @Field(store = Store.YES, analyze = Analyze.NO)
+    @SortableField
     private String category;
 
     private Event event;
@@ -165,6 +174,23 @@ public class IspnEvent implements Serializable {
         this.severity = severity;
     }
 
+    /*
+        Severity and status are sorted by their enum order, not alphabetically.
+        Ordinals are derived from the stored names, so a reindex of the backend computes them also for the entries
+        stored before these fields were indexed.
+     */
+    @Field(store = Store.NO, analyze = Analyze.NO)
+    @SortableField
+    public int getSeverityOrdinal() {
+        return severity != null ? Severity.valueOf(severity).ordinal() : 0;
+    }
+
+    @Field(store = Store.NO, analyze = Analyze.NO)
+    @SortableField
+    public int getStatusOrdinal() {
+        return status != null ? Status.valueOf(status).ordinal() : 0;
+    }
+
     public String getCategory() {
         return category;
     }
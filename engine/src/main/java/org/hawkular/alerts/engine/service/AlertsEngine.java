@@ -16,7 +16,8 @@
  */
 package org.hawkular.alerts.engine.service;
 
-import java.util.TreeSet;
+import java.util.Collection;
+import java.util.Map;
 
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Event;
@@ -48,7 +49,7 @@ public interface AlertsEngine {
      * @param data Not Null.  The data to be evaluated by the alerting engine.
      * @throws Exception any problem.
      */
-    void sendData(TreeSet<Data> data) throws Exception;
+    void sendData(Collection<Data> data) throws Exception;
 
     /**
      * Send event into the alerting system for evaluation. Events are persisted after inference.
@@ -57,7 +58,34 @@ public interface AlertsEngine {
      * @param events Not Null. The events to be evaluated and persisted by the alerting engine.
      * @throws Exception any problem
      */
-    void sendEvents(TreeSet<Event> events) throws Exception;
+    void sendEvents(Collection<Event> events) throws Exception;
+
+    /**
+     * Check if the engine can accept more incoming Data/Events. This is used to reject incoming Data/Events
+     * early when the engine buffers are full and the engine is configured to reject them on overflow.
+     *
+     * @return false if new incoming Data/Events should be rejected, true otherwise
+     */
+    boolean isAcceptingData();
+
+    /**
+     * Check if the engine rejects incoming Data/Events that do not fit on its buffers. In that case
+     * {@link #sendData(Collection)} and {@link #sendEvents(Collection)} throw an
+     * {@link org.hawkular.alerts.api.exception.OverflowException} and none of the Data/Events of the call is
+     * accepted, so they must be sent from the thread of the caller to report the overflow.
+     *
+     * @return true if the engine rejects incoming Data/Events on overflow, false otherwise
+     */
+    boolean rejectsOnOverflow();
+
+    /**
+     * Show information about the engine buffers.
+     * It contains the number of shards, the depth of the incoming Data/Events buffers and the number of
+     * Data/Events dropped or rejected because of buffer overflow.
+     *
+     * @return Map with engine status information
+     */
+    Map<String, String> getStatus();
 
     /**
      * Reload all Triggers.
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.service;
+
+import java.util.Collection;
+
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+
+/**
+ * A listener for reacting to alerts and events stored or modified on other nodes of the partition.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public interface PartitionEventsChangeListener {
+
+    /**
+     * Invoked when alerts have been added, acknowledged or resolved on a different node.
+     *
+     * @param alerts the alerts changed
+     */
+    void onAlertsChange(Collection<Alert> alerts);
+
+    /**
+     * Invoked when events or alerts have been stored for the first time on a different node.
+     *
+     * @param events the events stored
+     */
+    void onEventsChange(Collection<Event> events);
+}
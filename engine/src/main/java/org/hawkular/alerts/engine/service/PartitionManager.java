@@ -18,8 +18,10 @@ package org.hawkular.alerts.engine.service;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 
 import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.event.Event;
 
 /**
@@ -115,10 +117,45 @@ public interface PartitionManager {
      */
     void notifyEvents(Collection<Event> events);
 
+    /**
+     * Notify partition manager the dataIds used by the triggers loaded on the current node.
+     * PartitionManager sends new data and events only to the nodes with triggers using their dataIds.
+     *
+     * @param dataIds a map of dataIds used on the current node, indexed by tenantId
+     */
+    void notifyDataIds(Map<String, Set<String>> dataIds);
+
     /**
      * Register a listener to process partition events linked with data or events.
      *
      * @param dataListener the listener
      */
     void registerDataListener(PartitionDataListener dataListener);
+
+    /**
+     * Notify partition manager when alerts or events have been stored or modified on the current node.
+     * They are sent to the rest of the nodes, so the listeners watching alerts and events are notified wherever
+     * the change happens.
+     * Changes are not sent while no other node has listeners watching them.
+     *
+     * @param alerts the alerts added, acknowledged or resolved
+     * @param events the events or alerts stored for the first time
+     */
+    void notifyEventsChange(Collection<Alert> alerts, Collection<? extends Event> events);
+
+    /**
+     * Register a listener to process alerts and events changed on other nodes.
+     *
+     * @param eventsChangeListener the listener
+     */
+    void registerEventsChangeListener(PartitionEventsChangeListener eventsChangeListener);
+
+    /**
+     * Notify partition manager if the current node has listeners watching alerts and events changes.
+     * Other nodes only send their changes to the cluster while at least one node is watching them.
+     *
+     * @param watching true if the current node has listeners registered
+     *                 false otherwise
+     */
+    void notifyWatching(boolean watching);
 }
@@ -17,7 +17,6 @@
 package org.hawkular.alerts.engine.service;
 
 import java.util.Collection;
-import java.util.TreeSet;
 import java.util.function.Predicate;
 
 import org.hawkular.alerts.api.model.data.Data;
@@ -94,17 +93,19 @@ public interface RulesEngine {
 
     /**
      * Add to the accumulated <code>Data</code> to be processed the next time {@link #fire()} is called. After the
-     * rules are fired on the accumulated <code>Data</code> it will be cleared.
+     * rules are fired on the accumulated <code>Data</code> it will be cleared. The <code>Data</code> does not need
+     * to be ordered, it is sorted before the firing if it is not ordered yet.
      * @param data the data
      */
-    void addData(TreeSet<Data> data);
+    void addData(Collection<Data> data);
 
     /**
      * Add to the accumulated <code>Event</code> to be processed the next time {@link #fire()} is called. After the
-     * rules are fired on the accumulated <code>Event</code> it will be cleared.
+     * rules are fired on the accumulated <code>Event</code> it will be cleared. The <code>Event</code> does not need
+     * to be ordered, it is sorted before the firing if it is not ordered yet.
      * @param events the events
      */
-    void addEvents(TreeSet<Event> events);
+    void addEvents(Collection<Event> events);
 
     /**
      * Fire all rules given the current set of added definitions and the currently accumulated <code>Data</code>.
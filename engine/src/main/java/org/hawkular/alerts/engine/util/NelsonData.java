@@ -107,13 +107,11 @@ public class NelsonData {
             return;
         }
 
-        Double sample;
-        try {
-            sample = Double.valueOf(data.getValue());
-        } catch (Exception e) {
+        if (!data.isNumeric()) {
             // not a valid numeric data
             return;
         }
+        double sample = data.getNumericValue();
 
         if (!isValid(sample)) {
             // not a valid Double
@@ -129,7 +127,7 @@ public class NelsonData {
         // violationsData.stream().forEach(d -> System.out.printf(" \n%d %s", d.getTimestamp(), d.getValue()));
         // System.out.println("");
 
-        addSample(sample.doubleValue());
+        addSample(sample);
     }
 
     private void addSample(double sample) {
@@ -361,8 +359,8 @@ public class NelsonData {
         return rule8Count >= 8;
     }
 
-    private boolean isValid(Double d) {
-        return null != d && !d.isNaN() && !d.isInfinite();
+    private boolean isValid(double d) {
+        return !Double.isNaN(d) && !Double.isInfinite(d);
     }
 
     public NelsonCondition getCondition() {
@@ -24,6 +24,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.action.ActionDefinition;
 import org.hawkular.alerts.api.model.dampening.Dampening;
 import org.hawkular.alerts.api.model.event.Alert;
@@ -121,6 +122,17 @@ public class Utils {
         return statuses;
     }
 
+    public static Set<Severity> extractSeverities(AlertsCriteria criteria) {
+        Set<Severity> severities = new HashSet<>();
+        if (criteria.getSeverity() != null) {
+            severities.add(criteria.getSeverity());
+        }
+        if (!isEmpty(criteria.getSeverities())) {
+            severities.addAll(criteria.getSeverities());
+        }
+        return severities;
+    }
+
     public static Set<String> extractCategories(EventsCriteria criteria) {
         Set<String> categories = new HashSet<>();
         if (!isEmpty(criteria.getCategory())) {
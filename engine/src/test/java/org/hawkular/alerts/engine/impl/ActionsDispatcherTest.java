@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.ActionListener;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class ActionsDispatcherTest {
+
+    /*
+        Two Actions per event, one per plugin
+     */
+    private List<Action> resolve(Trigger trigger, Event event) {
+        List<Action> actions = new ArrayList<>();
+        actions.add(new Action(trigger.getTenantId(), "email", "action-1", event));
+        actions.add(new Action(trigger.getTenantId(), "webhook", "action-2", event));
+        return actions;
+    }
+
+    @Test
+    public void batchedDispatch() throws Exception {
+        List<Integer> storeCalls = Collections.synchronizedList(new ArrayList<>());
+        List<Action> processed = Collections.synchronizedList(new ArrayList<>());
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        ActionListener listener = action -> {
+            threads.add(Thread.currentThread().getName());
+            processed.add(action);
+        };
+        ActionsDispatcher dispatcher = new ActionsDispatcher(this::resolve, actions -> storeCalls.add(actions.size()),
+                () -> Collections.singletonList(listener), true, 1000, 10, 2);
+
+        Trigger trigger = new Trigger("tenant", "trigger-1", "Trigger 1");
+        for (int i = 0; i < 50; i++) {
+            dispatcher.dispatch(trigger, new Event("tenant", "event-" + i, "category", "text"));
+        }
+        dispatcher.flush();
+
+        assertEquals(100, processed.size());
+        assertEquals(100, storeCalls.stream().mapToInt(Integer::intValue).sum());
+        // Actions of several events are stored together, up to the batch size
+        assertTrue(storeCalls.stream().allMatch(size -> size <= 20));
+        // Listeners are invoked on the plugin workers, not on the caller thread
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("AlertsEngineImpl-Actions-")));
+        assertEquals("100", dispatcher.getStatus().get("engine-actions-dispatched"));
+        assertEquals("0", dispatcher.getStatus().get("engine-actions-pending"));
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void triggerActionsKeepOrder() throws Exception {
+        Map<String, List<String>> processed = new ConcurrentHashMap<>();
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        ActionListener listener = action -> {
+            threads.add(Thread.currentThread().getName());
+            processed.computeIfAbsent(action.getActionPlugin() + "|" + action.getEvent().getDataId(),
+                    key -> Collections.synchronizedList(new ArrayList<>())).add(action.getEventId());
+            LockSupport.parkNanos(1000000);
+        };
+        // Small plugin queues, the dispatcher waits for the slow listeners
+        ActionsDispatcher dispatcher = new ActionsDispatcher(this::resolve, actions -> { },
+                () -> Collections.singletonList(listener), true, 5, 5, 2);
+
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 4; j++) {
+                Event event = new Event("tenant", "event-" + i + "-" + j, "category", "text");
+                event.setDataId("trigger-" + j);
+                dispatcher.dispatch(new Trigger("tenant", "trigger-" + j, "Trigger " + j), event);
+                if (j == 0) {
+                    sent.add(event.getId());
+                }
+            }
+        }
+        dispatcher.flush();
+
+        // The Actions of a Trigger reach each plugin in the order they were dispatched
+        assertEquals(8, processed.size());
+        assertEquals(sent, processed.get("email|trigger-0"));
+        assertEquals(sent, processed.get("webhook|trigger-0"));
+        processed.values().forEach(ids -> assertEquals(20, ids.size()));
+        // Listeners never run on the dispatcher thread, even when the plugins are full
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("AlertsEngineImpl-Actions-")));
+        assertEquals("160", dispatcher.getStatus().get("engine-actions-dispatched"));
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void syncDispatch() throws Exception {
+        List<Action> processed = new ArrayList<>();
+        ActionsDispatcher dispatcher = new ActionsDispatcher(this::resolve, actions -> { },
+                () -> Collections.singletonList(processed::add), false, 10, 10, 1);
+
+        dispatcher.dispatch(new Trigger("tenant", "trigger-1", "Trigger 1"),
+                new Event("tenant", "event-1", "category", "text"));
+
+        assertEquals(2, processed.size());
+        assertEquals("false", dispatcher.getStatus().get("engine-actions-async"));
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void failuresDoNotStopDispatch() throws Exception {
+        List<Action> processed = Collections.synchronizedList(new ArrayList<>());
+        ActionsDispatcher dispatcher = new ActionsDispatcher((trigger, event) -> {
+            if (event.getId().equals("event-0")) {
+                throw new IllegalStateException("Invalid event");
+            }
+            return resolve(trigger, event);
+        }, actions -> {
+            throw new IllegalStateException("Backend not available");
+        }, () -> Collections.singletonList(processed::add), true, 10, 10, 1);
+
+        Trigger trigger = new Trigger("tenant", "trigger-1", "Trigger 1");
+        for (int i = 0; i < 3; i++) {
+            dispatcher.dispatch(trigger, new Event("tenant", "event-" + i, "category", "text"));
+        }
+        dispatcher.flush();
+
+        // Actions not stored are still sent to the plugins
+        assertEquals(4, processed.size());
+        assertEquals("1", dispatcher.getStatus().get("engine-actions-failed"));
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,479 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.hawkular.alerts.api.model.condition.ThresholdCondition.Operator.GT;
+import static org.hawkular.alerts.api.model.trigger.Mode.FIRING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.hawkular.alerts.api.exception.OverflowException;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.EventCondition;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.services.ActionsService;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.DefinitionsService;
+import org.hawkular.alerts.engine.service.PartitionManager;
+import org.hawkular.alerts.engine.service.RulesEngine;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Testing the assignment of triggers to AlertsEngine shards, the routing of Data and Events to the shards and the
+ * overflow policies of the pending buffers.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class AlertsEngineShardTest {
+
+    private static final String TENANT = "tenant";
+    private static final long TIMEOUT = 10000;
+
+    private static final String[] PROPERTIES = {
+            "hawkular-alerts.engine-shards",
+            "hawkular-alerts.engine-max-pending",
+            "hawkular-alerts.engine-overflow-policy",
+            "hawkular-alerts.engine-native-triggers",
+            "hawkular-alerts.engine-write-behind",
+            "hawkular-alerts.engine-extensions"
+    };
+
+    private AlertsEngineImpl engine;
+    private ExecutorService executor;
+    private List<TestRulesEngine> rules;
+    private final Map<String, Trigger> triggers = new HashMap<>();
+    private final Map<String, Collection<Condition>> conditions = new HashMap<>();
+
+    @Test
+    public void singleShardTest() {
+        for (int i = 0; i < 100; i++) {
+            assertEquals(0, AlertsEngineImpl.shardIndex("tenant" + i, "trigger" + i, 1));
+        }
+    }
+
+    @Test
+    public void stableShardTest() {
+        int numShards = 8;
+        for (int i = 0; i < 1000; i++) {
+            int shard = AlertsEngineImpl.shardIndex("tenant", "trigger" + i, numShards);
+            assertTrue(shard >= 0 && shard < numShards);
+            assertEquals(shard, AlertsEngineImpl.shardIndex("tenant", "trigger" + i, numShards));
+        }
+    }
+
+    @Test
+    public void distributionTest() {
+        int numShards = 8;
+        int numTriggers = 8000;
+        int[] triggersPerShard = new int[numShards];
+        for (int i = 0; i < numTriggers; i++) {
+            triggersPerShard[AlertsEngineImpl.shardIndex("tenant" + (i % 10), "trigger" + i, numShards)]++;
+        }
+        for (int i = 0; i < numShards; i++) {
+            // Every shard should get a fair share of the triggers
+            assertTrue("Shard " + i + " has " + triggersPerShard[i] + " triggers",
+                    triggersPerShard[i] > (numTriggers / numShards) / 2);
+        }
+    }
+
+    @Test
+    public void routingTest() throws Exception {
+        int numShards = 4;
+        startEngine(numShards, 1000, "BLOCK");
+
+        List<Data> data = new ArrayList<>();
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            addTrigger("trigger" + i, "data" + i, "event" + i);
+            data.add(Data.forNumeric(TENANT, "data" + i, i + 1, 10.0));
+            events.add(new Event(TENANT, "event-id" + i, i + 1, "event" + i, "category", "text"));
+        }
+        // Not used by any trigger
+        data.add(Data.forNumeric(TENANT, "unknown", 1, 10.0));
+        events.add(new Event(TENANT, "event-unknown", 1, "unknown", "category", "text"));
+
+        engine.sendData(data);
+        engine.sendEvents(events);
+
+        for (int i = 0; i < 8; i++) {
+            int shard = AlertsEngineImpl.shardIndex(TENANT, "trigger" + i, numShards);
+            String dataId = "data" + i;
+            String eventDataId = "event" + i;
+            awaitData(rules.get(shard), d -> d.getId().equals(dataId));
+            awaitEvents(rules.get(shard), e -> e.getDataId().equals(eventDataId));
+        }
+        for (int i = 0; i < numShards; i++) {
+            TestRulesEngine shardRules = rules.get(i);
+            for (Data d : shardRules.getData()) {
+                int trigger = Integer.parseInt(d.getId().substring("data".length()));
+                assertEquals(i, AlertsEngineImpl.shardIndex(TENANT, "trigger" + trigger, numShards));
+            }
+            for (Event e : shardRules.getEvents()) {
+                int trigger = Integer.parseInt(e.getDataId().substring("event".length()));
+                assertEquals(i, AlertsEngineImpl.shardIndex(TENANT, "trigger" + trigger, numShards));
+            }
+        }
+        assertEquals(8, rules.stream().mapToInt(r -> r.getData().size()).sum());
+        assertEquals(8, rules.stream().mapToInt(r -> r.getEvents().size()).sum());
+    }
+
+    @Test
+    public void shardCacheTest() throws Exception {
+        int numShards = 4;
+        startEngine(numShards, 1000, "BLOCK");
+
+        addTrigger("trigger", "data-a", "event-a");
+        TestRulesEngine shardRules = rules.get(AlertsEngineImpl.shardIndex(TENANT, "trigger", numShards));
+        // Another trigger on the same shard, its Data is sent to know when the shard has processed previous Data
+        String sentinel = sameShardTrigger("trigger", numShards);
+        addTrigger(sentinel, "sentinel", "sentinel");
+
+        engine.sendData(Arrays.asList(Data.forNumeric(TENANT, "data-a", 1, 10.0)));
+        awaitData(shardRules, d -> d.getId().equals("data-a"));
+
+        // Update of the trigger, the shard should route only the new dataId
+        addTrigger("trigger", "data-b", "event-b");
+        engine.sendData(Arrays.asList(Data.forNumeric(TENANT, "data-a", 2, 10.0),
+                Data.forNumeric(TENANT, "data-b", 2, 10.0),
+                Data.forNumeric(TENANT, "sentinel", 2, 10.0)));
+        awaitData(shardRules, d -> d.getId().equals("sentinel") && d.getTimestamp() == 2);
+        assertEquals(1, count(shardRules, "data-a"));
+        assertEquals(1, count(shardRules, "data-b"));
+
+        // Removal of the trigger, its dataIds should not be routed anymore
+        engine.removeTrigger(TENANT, "trigger");
+        engine.sendData(Arrays.asList(Data.forNumeric(TENANT, "data-b", 3, 10.0),
+                Data.forNumeric(TENANT, "sentinel", 3, 10.0)));
+        awaitData(shardRules, d -> d.getId().equals("sentinel") && d.getTimestamp() == 3);
+        assertEquals(1, rules.stream().mapToLong(r -> count(r, "data-b")).sum());
+    }
+
+    @Test
+    public void blockPolicyTest() throws Exception {
+        startEngine(1, 2, "BLOCK");
+        TestRulesEngine shardRules = rules.get(0);
+        shardRules.close();
+
+        engine.sendData(Arrays.asList(datum(1)));
+        shardRules.awaitEntered();
+
+        // The buffer holds 2 datums, the producer blocks on the third one until the shard fires again
+        Thread producer = new Thread(() -> engine.sendData(Arrays.asList(datum(2), datum(3), datum(4))));
+        producer.start();
+        long start = System.currentTimeMillis();
+        while (producer.getState() != Thread.State.TIMED_WAITING) {
+            assertTrue("Producer should block", System.currentTimeMillis() - start < TIMEOUT);
+            Thread.sleep(10);
+        }
+        assertTrue(producer.isAlive());
+        assertTrue(engine.isAcceptingData());
+
+        shardRules.open();
+        producer.join(TIMEOUT);
+        assertFalse(producer.isAlive());
+        awaitData(shardRules, d -> d.getTimestamp() == 4);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), timestamps(shardRules));
+        assertEquals("0", engine.getStatus().get("engine-dropped-data"));
+    }
+
+    @Test
+    public void dropOldestPolicyTest() throws Exception {
+        startEngine(1, 2, "DROP_OLDEST");
+        TestRulesEngine shardRules = rules.get(0);
+        shardRules.close();
+
+        engine.sendData(Arrays.asList(datum(1)));
+        shardRules.awaitEntered();
+
+        // The buffer holds 2 datums, the third one pushes out the oldest pending one
+        engine.sendData(Arrays.asList(datum(2), datum(3), datum(4)));
+        assertTrue(engine.isAcceptingData());
+        assertEquals("1", engine.getStatus().get("engine-dropped-data"));
+
+        shardRules.open();
+        awaitData(shardRules, d -> d.getTimestamp() == 4);
+
+        assertEquals(Arrays.asList(1L, 3L, 4L), timestamps(shardRules));
+    }
+
+    @Test
+    public void rejectPolicyTest() throws Exception {
+        startEngine(1, 2, "REJECT");
+        TestRulesEngine shardRules = rules.get(0);
+        shardRules.close();
+
+        engine.sendData(Arrays.asList(datum(1)));
+        shardRules.awaitEntered();
+
+        // The buffer holds 2 datums, a batch of 3 is rejected as a whole to the caller
+        try {
+            engine.sendData(Arrays.asList(datum(2), datum(3), datum(4)));
+            fail("OverflowException expected");
+        } catch (OverflowException e) {
+            // expected
+        }
+        assertEquals("3", engine.getStatus().get("engine-dropped-data"));
+        assertTrue(engine.isAcceptingData());
+
+        // A batch that fits is accepted, then no more Data is accepted until the shard fires
+        engine.sendData(Arrays.asList(datum(2), datum(3)));
+        assertFalse(engine.isAcceptingData());
+
+        shardRules.open();
+        awaitData(shardRules, d -> d.getTimestamp() == 3);
+        assertTrue(engine.isAcceptingData());
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), timestamps(shardRules));
+    }
+
+    @After
+    public void stopEngine() {
+        if (null != engine) {
+            for (TestRulesEngine shardRules : rules) {
+                shardRules.open();
+            }
+            engine.shutdown();
+            executor.shutdown();
+        }
+        for (String property : PROPERTIES) {
+            System.clearProperty(property);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void startEngine(int numShards, int maxPending, String overflowPolicy) throws Exception {
+        System.setProperty("hawkular-alerts.engine-shards", String.valueOf(numShards));
+        System.setProperty("hawkular-alerts.engine-max-pending", String.valueOf(maxPending));
+        System.setProperty("hawkular-alerts.engine-overflow-policy", overflowPolicy);
+        System.setProperty("hawkular-alerts.engine-native-triggers", "false");
+        System.setProperty("hawkular-alerts.engine-write-behind", "false");
+        System.setProperty("hawkular-alerts.engine-extensions", "false");
+
+        executor = Executors.newSingleThreadExecutor();
+        rules = Collections.synchronizedList(new ArrayList<>());
+        engine = new AlertsEngineImpl();
+        engine.setExecutor(executor);
+        engine.setRulesFactory(() -> {
+            TestRulesEngine shardRules = new TestRulesEngine();
+            rules.add(shardRules);
+            return shardRules;
+        });
+        engine.setDefinitions(proxy(DefinitionsService.class, (method, args) -> {
+            switch (method) {
+                case "getAllTriggers":
+                    return new ArrayList<>(triggers.values());
+                case "getTrigger":
+                    return triggers.get((String) args[1]);
+                case "getTriggerConditions":
+                    return conditions.getOrDefault((String) args[1], Collections.emptyList());
+                case "getTriggerDampenings":
+                    return Collections.emptyList();
+                default:
+                    return null;
+            }
+        }));
+        engine.setAlertsService(proxy(AlertsService.class, (method, args) -> null));
+        engine.setActions(proxy(ActionsService.class, (method, args) -> null));
+        engine.setPartitionManager(proxy(PartitionManager.class,
+                (method, args) -> method.equals("isDistributed") ? false : null));
+        engine.initServices();
+        // Wait for the initial reload
+        executor.submit(() -> { }).get();
+    }
+
+    private void addTrigger(String triggerId, String dataId, String eventDataId) {
+        Trigger trigger = new Trigger(TENANT, triggerId, triggerId);
+        trigger.setEnabled(true);
+        triggers.put(triggerId, trigger);
+        conditions.put(triggerId, Arrays.asList(
+                new ThresholdCondition(TENANT, triggerId, FIRING, 2, 1, dataId, GT, 5.0),
+                new EventCondition(TENANT, triggerId, FIRING, 2, 2, eventDataId)));
+        engine.reloadTrigger(TENANT, triggerId);
+    }
+
+    private String sameShardTrigger(String triggerId, int numShards) {
+        int shard = AlertsEngineImpl.shardIndex(TENANT, triggerId, numShards);
+        for (int i = 0;; i++) {
+            if (AlertsEngineImpl.shardIndex(TENANT, "sentinel" + i, numShards) == shard) {
+                return "sentinel" + i;
+            }
+        }
+    }
+
+    private static Data datum(long timestamp) {
+        return Data.forNumeric(TENANT, "data", timestamp, 10.0);
+    }
+
+    private static List<Long> timestamps(TestRulesEngine shardRules) {
+        return shardRules.getData().stream().map(Data::getTimestamp).sorted().collect(Collectors.toList());
+    }
+
+    private static long count(TestRulesEngine shardRules, String dataId) {
+        return shardRules.getData().stream().filter(d -> d.getId().equals(dataId)).count();
+    }
+
+    private static void awaitData(TestRulesEngine shardRules, Predicate<Data> predicate) throws Exception {
+        long start = System.currentTimeMillis();
+        while (shardRules.getData().stream().noneMatch(predicate)) {
+            assertTrue("Data not received by the shard", System.currentTimeMillis() - start < TIMEOUT);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitEvents(TestRulesEngine shardRules, Predicate<Event> predicate) throws Exception {
+        long start = System.currentTimeMillis();
+        while (shardRules.getEvents().stream().noneMatch(predicate)) {
+            assertTrue("Events not received by the shard", System.currentTimeMillis() - start < TIMEOUT);
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> service, Handler handler) {
+        return (T) Proxy.newProxyInstance(service.getClassLoader(), new Class[]{service},
+                (proxy, method, args) -> handler.invoke(method.getName(), args));
+    }
+
+    /*
+        Records the Data and Events received by a shard. When it is closed the firing thread is blocked on addData()
+        so the pending buffers of the shard can be filled.
+     */
+    private static class TestRulesEngine implements RulesEngine {
+        private final List<Data> data = new ArrayList<>();
+        private final List<Event> events = new ArrayList<>();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private final CountDownLatch entered = new CountDownLatch(1);
+
+        void close() {
+            gate = new CountDownLatch(1);
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        void awaitEntered() throws InterruptedException {
+            assertTrue(entered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        }
+
+        synchronized List<Data> getData() {
+            return new ArrayList<>(data);
+        }
+
+        synchronized List<Event> getEvents() {
+            return new ArrayList<>(events);
+        }
+
+        @Override
+        public void addData(Collection<Data> newData) {
+            entered.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (this) {
+                data.addAll(newData);
+            }
+        }
+
+        @Override
+        public synchronized void addEvents(Collection<Event> newEvents) {
+            events.addAll(newEvents);
+        }
+
+        @Override
+        public void addGlobal(String name, Object global) {
+        }
+
+        @Override
+        public void removeGlobal(String name) {
+        }
+
+        @Override
+        public void addFact(Object fact) {
+        }
+
+        @Override
+        public Object getFact(Object fact) {
+            return null;
+        }
+
+        @Override
+        public void removeFact(Object fact) {
+        }
+
+        @Override
+        public void updateFact(Object fact) {
+        }
+
+        @Override
+        public void addFacts(Collection facts) {
+        }
+
+        @Override
+        public void removeFacts(Collection facts) {
+        }
+
+        @Override
+        public void removeFacts(Predicate<Object> factFilter) {
+        }
+
+        @Override
+        public void fire() {
+        }
+
+        @Override
+        public void fireNoData() {
+        }
+
+        @Override
+        public void clear() {
+        }
+
+        @Override
+        public void reset() {
+        }
+    }
+}
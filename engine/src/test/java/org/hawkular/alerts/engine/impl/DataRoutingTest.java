@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.NotifyTrigger;
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.PartitionDataId;
+import org.hawkular.alerts.engine.service.PartitionManager.Operation;
+import org.junit.Test;
+
+/**
+ * Testing the routing of data to the nodes with triggers using its dataId.
+ *
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class DataRoutingTest {
+
+    @Test
+    public void routeDataToOwnerNodes() {
+        PartitionManagerImpl pm = new PartitionManagerImpl();
+
+        Map<Integer, Set<PartitionDataId>> nodesDataIds = new HashMap<>();
+        nodesDataIds.put(2001, new HashSet<>(Arrays.asList(new PartitionDataId("tenant1", "data1"),
+                new PartitionDataId("tenant1", "data2"))));
+        nodesDataIds.put(3002, new HashSet<>(Arrays.asList(new PartitionDataId("tenant1", "data2"))));
+        nodesDataIds.put(4003, new HashSet<>(Arrays.asList(new PartitionDataId("tenant2", "data1"))));
+
+        Map<PartitionDataId, Set<Integer>> index = pm.getDataIdsIndex(nodesDataIds);
+        assertEquals(3, index.size());
+        assertEquals(2, index.get(new PartitionDataId("tenant1", "data2")).size());
+
+        List<Data> data = Arrays.asList(Data.forNumeric("tenant1", "data1", 1, 1d),
+                Data.forNumeric("tenant1", "data2", 1, 1d),
+                Data.forNumeric("tenant1", "data3", 1, 1d),
+                Data.forNumeric("tenant2", "data1", 1, 1d));
+
+        Map<Integer, List<Data>> nodesData = pm.getNodesData(data,
+                d -> new PartitionDataId(d.getTenantId(), d.getId()), index, Collections.emptyMap(),
+                Collections.emptySet(), 2001);
+
+        // The sender processes its data locally and data3 is not used by any node
+        assertFalse(nodesData.containsKey(2001));
+        assertEquals(2, nodesData.size());
+        assertEquals(1, nodesData.get(3002).size());
+        assertEquals("data2", nodesData.get(3002).get(0).getId());
+        assertEquals(1, nodesData.get(4003).size());
+        assertEquals("tenant2", nodesData.get(4003).get(0).getTenantId());
+    }
+
+    @Test
+    public void emptyIndex() {
+        PartitionManagerImpl pm = new PartitionManagerImpl();
+
+        Map<PartitionDataId, Set<Integer>> index = pm.getDataIdsIndex(null);
+        assertTrue(index.isEmpty());
+
+        Map<Integer, List<Data>> nodesData = pm.getNodesData(Arrays.asList(Data.forNumeric("tenant1", "data1", 1, 1d)),
+                d -> new PartitionDataId(d.getTenantId(), d.getId()), index, Collections.emptyMap(),
+                Collections.emptySet(), 2001);
+        assertTrue(nodesData.isEmpty());
+    }
+
+    @Test
+    public void routeDataToPendingNodes() {
+        PartitionManagerImpl pm = new PartitionManagerImpl();
+
+        Map<Integer, Set<PartitionDataId>> nodesDataIds = new HashMap<>();
+        nodesDataIds.put(3002, new HashSet<>(Arrays.asList(new PartitionDataId("tenant1", "data1"))));
+        Map<PartitionDataId, Set<Integer>> index = pm.getDataIdsIndex(nodesDataIds);
+
+        List<Data> data = Arrays.asList(Data.forNumeric("tenant1", "data1", 1, 1d),
+                Data.forNumeric("tenant1", "data2", 1, 1d),
+                Data.forNumeric("tenant1", "data3", 1, 1d));
+
+        // A trigger using data1 and data2 has been added on 4003, it has not published its dataIds yet
+        Map<Integer, Set<PartitionDataId>> pendingDataIds = new HashMap<>();
+        pendingDataIds.put(4003, new HashSet<>(Arrays.asList(new PartitionDataId("tenant1", "data1"),
+                new PartitionDataId("tenant1", "data2"))));
+        Map<PartitionDataId, Set<Integer>> pendingIndex = pm.getDataIdsIndex(pendingDataIds);
+        Map<Integer, List<Data>> nodesData = pm.getNodesData(data,
+                d -> new PartitionDataId(d.getTenantId(), d.getId()), index, pendingIndex, Collections.emptySet(),
+                2001);
+
+        // data1 is indexed for 3002 and pending for 4003, it is sent to both
+        assertEquals(2, nodesData.size());
+        assertEquals(1, nodesData.get(3002).size());
+        assertEquals("data1", nodesData.get(3002).get(0).getId());
+        assertEquals(2, nodesData.get(4003).size());
+
+        // 5004 has not published its dataIds after a partition change, it receives all the data
+        nodesData = pm.getNodesData(data, d -> new PartitionDataId(d.getTenantId(), d.getId()), index,
+                pendingIndex, new HashSet<>(Arrays.asList(2001, 5004)), 2001);
+        assertFalse(nodesData.containsKey(2001));
+        assertEquals(3, nodesData.size());
+        assertEquals(3, nodesData.get(5004).size());
+    }
+
+    @Test
+    public void pendingTriggerIsIndependentOfPublicationOrder() {
+        PartitionManagerImpl pm = new PartitionManagerImpl();
+
+        NotifyTrigger notifyTrigger = new NotifyTrigger(2001, 4003, Operation.ADD, "tenant1", "trigger1");
+        notifyTrigger.setDataIds(new HashSet<>(Arrays.asList(new PartitionDataId("tenant1", "data1"),
+                new PartitionDataId("tenant1", "data2"))));
+
+        // The notification is received before 4003 publishes its dataIds
+        Map<Integer, Set<PartitionDataId>> nodesDataIds = new HashMap<>();
+        nodesDataIds.put(3002, new HashSet<>(Arrays.asList(new PartitionDataId("tenant1", "data1"))));
+        NotifyTrigger pending = pm.getPendingTrigger(notifyTrigger, pm.getDataIdsIndex(nodesDataIds));
+        assertEquals(2, pending.getDataIds().size());
+        assertEquals(4003, pending.getToNode().intValue());
+
+        // 4003 publishes only data1, data2 is still pending
+        nodesDataIds.put(4003, new HashSet<>(Arrays.asList(new PartitionDataId("tenant1", "data1"))));
+        pending = pm.getPendingTrigger(pending, pm.getDataIdsIndex(nodesDataIds));
+        assertEquals(Collections.singleton(new PartitionDataId("tenant1", "data2")), pending.getDataIds());
+
+        // The notification is received after 4003 has published all the dataIds, nothing is left pending
+        nodesDataIds.get(4003).add(new PartitionDataId("tenant1", "data2"));
+        assertNull(pm.getPendingTrigger(notifyTrigger, pm.getDataIdsIndex(nodesDataIds)));
+
+        // Triggers without dataIds are not pending
+        assertNull(pm.getPendingTrigger(new NotifyTrigger(2001, 4003, Operation.UPDATE, "tenant1", "trigger2"),
+                pm.getDataIdsIndex(nodesDataIds)));
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.services.AlertsService;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class EventsWriterTest {
+
+    /*
+        An AlertsService that records the size of every addAlerts/persistEvents call
+     */
+    @SuppressWarnings("unchecked")
+    private AlertsService recorder(List<Integer> alertsCalls, List<Integer> eventsCalls) {
+        return (AlertsService) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class[] { AlertsService.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("addAlerts")) {
+                        alertsCalls.add(((Collection<Alert>) args[0]).size());
+                    } else if (method.getName().equals("persistEvents")) {
+                        eventsCalls.add(((Collection<Event>) args[0]).size());
+                    }
+                    return null;
+                });
+    }
+
+    private List<Event> events(int size) {
+        List<Event> events = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            events.add(new Event("tenant", "event-" + i, "category", "text"));
+        }
+        return events;
+    }
+
+    @Test
+    public void groupCommit() throws Exception {
+        List<Integer> alertsCalls = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> eventsCalls = Collections.synchronizedList(new ArrayList<>());
+        EventsWriter writer = new EventsWriter(recorder(alertsCalls, eventsCalls), true, 1000, 100, 1000);
+
+        for (int i = 0; i < 5; i++) {
+            writer.write(Collections.emptyList(), events(50));
+        }
+        writer.flush();
+
+        int total = eventsCalls.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(250, total);
+        // Events of several writes are committed together, up to the group commit size
+        assertTrue(eventsCalls.size() < 5);
+        assertTrue(eventsCalls.stream().allMatch(size -> size <= 100));
+        assertEquals("250", writer.getStatus().get("engine-write-committed"));
+        assertEquals("0", writer.getStatus().get("engine-write-pending"));
+
+        writer.shutdown();
+    }
+
+    @Test
+    public void shutdownCommitsAcceptedWrites() throws Exception {
+        List<Integer> alertsCalls = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> eventsCalls = Collections.synchronizedList(new ArrayList<>());
+        EventsWriter writer = new EventsWriter(recorder(alertsCalls, eventsCalls), true, 50, 100, 1000);
+
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    while (true) {
+                        writer.write(Collections.emptyList(), events(10));
+                        accepted.incrementAndGet();
+                    }
+                } catch (IllegalStateException e) {
+                    // stopped
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            writers.add(t);
+            t.start();
+        }
+        Thread.sleep(200);
+        writer.shutdown();
+        for (Thread t : writers) {
+            t.join(5000);
+            assertTrue(!t.isAlive());
+        }
+
+        // Every write racing with the shutdown is either rejected or committed
+        int total = eventsCalls.stream().mapToInt(Integer::intValue).sum();
+        assertTrue(accepted.get() > 0);
+        assertEquals(accepted.get() * 10, total);
+        assertEquals(String.valueOf(total), writer.getStatus().get("engine-write-committed"));
+        assertEquals("0", writer.getStatus().get("engine-write-pending"));
+    }
+
+    @Test
+    public void synchronousWrite() throws Exception {
+        List<Integer> alertsCalls = new ArrayList<>();
+        List<Integer> eventsCalls = new ArrayList<>();
+        EventsWriter writer = new EventsWriter(recorder(alertsCalls, eventsCalls), false, 1000, 100, 1000);
+
+        writer.write(Collections.emptyList(), events(10));
+
+        assertEquals(1, eventsCalls.size());
+        assertEquals(10, eventsCalls.get(0).intValue());
+        assertEquals("false", writer.getStatus().get("engine-write-behind"));
+        assertEquals("10", writer.getStatus().get("engine-write-committed"));
+    }
+}
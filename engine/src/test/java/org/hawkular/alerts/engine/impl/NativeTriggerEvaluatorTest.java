@@ -0,0 +1,225 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hawkular.alerts.api.model.condition.AvailabilityCondition;
+import org.hawkular.alerts.api.model.condition.Condition;
+import org.hawkular.alerts.api.model.condition.ConditionEval;
+import org.hawkular.alerts.api.model.condition.ThresholdCondition;
+import org.hawkular.alerts.api.model.dampening.Dampening;
+import org.hawkular.alerts.api.model.data.AvailabilityType;
+import org.hawkular.alerts.api.model.data.Data;
+import org.hawkular.alerts.api.model.event.Alert;
+import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.event.EventType;
+import org.hawkular.alerts.api.model.trigger.Mode;
+import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class NativeTriggerEvaluatorTest {
+
+    private List<Alert> alerts = new ArrayList<>();
+    private List<Event> events = new ArrayList<>();
+    private Map<Trigger, List<Set<ConditionEval>>> autoResolvedTriggers = new HashMap<>();
+    private Set<Trigger> disabledTriggers = new HashSet<>();
+    private NativeTriggerEvaluator evaluator;
+
+    @Before
+    public void before() {
+        alerts.clear();
+        events.clear();
+        autoResolvedTriggers.clear();
+        disabledTriggers.clear();
+        evaluator = new NativeTriggerEvaluator(null, alerts, events, autoResolvedTriggers, disabledTriggers);
+    }
+
+    @Test
+    public void isNativeTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Native");
+        List<Condition> single = Collections.singletonList(new ThresholdCondition("tenant", "trigger-1",
+                Mode.FIRING, "X", ThresholdCondition.Operator.GT, 10.0));
+        assertTrue(NativeTriggerEvaluator.isNative(t1, single, Collections.emptyList()));
+        assertTrue(NativeTriggerEvaluator.isNative(t1, single,
+                Collections.singletonList(Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 1))));
+        assertFalse(NativeTriggerEvaluator.isNative(t1, single,
+                Collections.singletonList(Dampening.forStrict("tenant", "trigger-1", Mode.FIRING, 2))));
+
+        List<Condition> multi = Arrays.asList(
+                new ThresholdCondition("tenant", "trigger-1", 2, 1, "X", ThresholdCondition.Operator.GT, 10.0),
+                new ThresholdCondition("tenant", "trigger-1", 2, 2, "Y", ThresholdCondition.Operator.GT, 10.0));
+        assertFalse(NativeTriggerEvaluator.isNative(t1, multi, Collections.emptyList()));
+    }
+
+    @Test
+    public void thresholdTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Native");
+        assertTrue(evaluator.addTrigger(t1, Collections.singletonList(new ThresholdCondition("tenant",
+                "trigger-1", Mode.FIRING, "X", ThresholdCondition.Operator.GT, 10.0)), Collections.emptyList()));
+        assertNotNull(evaluator.getNativeTrigger("tenant", "trigger-1"));
+
+        List<Data> rulesData = new ArrayList<>();
+        List<Event> rulesEvents = new ArrayList<>();
+        evaluator.evaluate(Arrays.asList(
+                Data.forNumeric("tenant", "X", 1000, 5.0),
+                Data.forNumeric("tenant", "X", 2000, 15.0),
+                Data.forNumeric("tenant", "X", 3000, 20.0),
+                Data.forNumeric("other-tenant", "X", 4000, 20.0)), Collections.emptyList(), rulesData, rulesEvents);
+
+        assertEquals(2, alerts.size());
+        assertEquals("trigger-1", alerts.get(0).getTriggerId());
+        assertEquals(1, alerts.get(0).getEvalSets().size());
+        assertTrue(rulesData.isEmpty());
+        assertTrue(rulesEvents.isEmpty());
+    }
+
+    @Test
+    public void rulesDataTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Native");
+        t1.setEventType(EventType.EVENT);
+        evaluator.addTrigger(t1, Collections.singletonList(new AvailabilityCondition("tenant", "trigger-1",
+                "X", AvailabilityCondition.Operator.DOWN)), Collections.emptyList());
+
+        // trigger-2 chains on the events of trigger-1 and uses Y, it must be evaluated by the rules engine
+        Trigger t2 = new Trigger("tenant", "trigger-2", "Rules");
+        assertFalse(evaluator.addTrigger(t2, Arrays.asList(
+                new ThresholdCondition("tenant", "trigger-2", 2, 1, "trigger-1", ThresholdCondition.Operator.GT,
+                        10.0),
+                new ThresholdCondition("tenant", "trigger-2", 2, 2, "Y", ThresholdCondition.Operator.GT, 10.0)),
+                Collections.emptyList()));
+        assertNull(evaluator.getNativeTrigger("tenant", "trigger-2"));
+
+        List<Data> rulesData = new ArrayList<>();
+        List<Event> rulesEvents = new ArrayList<>();
+        evaluator.evaluate(Arrays.asList(
+                Data.forAvailability("tenant", "X", 1000, AvailabilityType.DOWN),
+                Data.forNumeric("tenant", "Y", 1000, 20.0)),
+                Collections.singletonList(new Event("tenant", "event-1", "Z", "category", "text")),
+                rulesData, rulesEvents);
+
+        assertEquals(1, events.size());
+        assertEquals(1, rulesData.size());
+        assertEquals("Y", rulesData.get(0).getId());
+        assertEquals(1, rulesEvents.size());
+        assertEquals("trigger-1", rulesEvents.get(0).getDataId());
+
+        evaluator.removeTrigger("tenant", "trigger-2");
+        rulesData.clear();
+        evaluator.evaluate(Collections.singletonList(Data.forNumeric("tenant", "Y", 2000, 20.0)),
+                Collections.emptyList(), rulesData, rulesEvents);
+        assertTrue(rulesData.isEmpty());
+    }
+
+    @Test
+    public void autoDisableTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Native");
+        t1.setAutoDisable(true);
+        evaluator.addTrigger(t1, Collections.singletonList(new ThresholdCondition("tenant", "trigger-1",
+                Mode.FIRING, "X", ThresholdCondition.Operator.GT, 10.0)), Collections.emptyList());
+
+        evaluator.evaluate(Arrays.asList(
+                Data.forNumeric("tenant", "X", 1000, 15.0),
+                Data.forNumeric("tenant", "X", 2000, 20.0)), Collections.emptyList(), new ArrayList<>(),
+                new ArrayList<>());
+
+        assertEquals(1, alerts.size());
+        assertEquals(1, disabledTriggers.size());
+        assertNull(evaluator.getNativeTrigger("tenant", "trigger-1"));
+    }
+
+    @Test
+    public void autoResolveTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Native");
+        t1.setAutoResolve(true);
+        evaluator.addTrigger(t1, Arrays.asList(
+                new ThresholdCondition("tenant", "trigger-1", Mode.FIRING, "X", ThresholdCondition.Operator.GT,
+                        10.0),
+                new ThresholdCondition("tenant", "trigger-1", Mode.AUTORESOLVE, "X",
+                        ThresholdCondition.Operator.LTE, 10.0)), Collections.emptyList());
+
+        evaluator.evaluate(Arrays.asList(
+                Data.forNumeric("tenant", "X", 1000, 15.0),
+                Data.forNumeric("tenant", "X", 2000, 20.0),
+                Data.forNumeric("tenant", "X", 3000, 5.0),
+                Data.forNumeric("tenant", "X", 4000, 25.0)), Collections.emptyList(), new ArrayList<>(),
+                new ArrayList<>());
+
+        assertEquals(1, alerts.size());
+        assertEquals(1, autoResolvedTriggers.size());
+        assertEquals(Mode.FIRING, autoResolvedTriggers.keySet().iterator().next().getMode());
+        assertNull(evaluator.getNativeTrigger("tenant", "trigger-1"));
+    }
+
+    @Test
+    public void batchingTest() {
+        Trigger t1 = new Trigger("tenant", "trigger-1", "Native");
+        evaluator.addTrigger(t1, Collections.singletonList(new ThresholdCondition("tenant", "trigger-1",
+                Mode.FIRING, "X", ThresholdCondition.Operator.GT, 10.0)), Collections.emptyList());
+
+        // As in the rules engine, duplicates and Data reported within the default 1000ms interval are removed
+        evaluator.evaluate(Arrays.asList(
+                Data.forNumeric("tenant", "X", 1000, 15.0),
+                Data.forNumeric("tenant", "X", 1000, 15.0),
+                Data.forNumeric("tenant", "X", 1500, 20.0),
+                Data.forNumeric("tenant", "X", 2000, 25.0),
+                Data.forNumeric("tenant", "X", 2100, 30.0)), Collections.emptyList(), new ArrayList<>(),
+                new ArrayList<>());
+
+        assertEquals(2, alerts.size());
+        assertEquals(1000, dataTimestamp(alerts.get(0)));
+        assertEquals(2000, dataTimestamp(alerts.get(1)));
+
+        alerts.clear();
+        evaluator = new NativeTriggerEvaluator(null, alerts, events, autoResolvedTriggers, disabledTriggers,
+                new DataBatcher(0, 0));
+        evaluator.addTrigger(t1, Collections.singletonList(new ThresholdCondition("tenant", "trigger-1",
+                Mode.FIRING, "X", ThresholdCondition.Operator.GT, 10.0)), Collections.emptyList());
+
+        evaluator.evaluate(Arrays.asList(
+                Data.forNumeric("tenant", "X", 1000, 15.0),
+                Data.forNumeric("tenant", "X", 1000, 15.0),
+                Data.forNumeric("tenant", "X", 1001, 20.0)), Collections.emptyList(), new ArrayList<>(),
+                new ArrayList<>());
+
+        assertEquals(2, alerts.size());
+        assertEquals(1000, dataTimestamp(alerts.get(0)));
+        assertEquals(1001, dataTimestamp(alerts.get(1)));
+    }
+
+    private static long dataTimestamp(Alert alert) {
+        return alert.getEvalSets().get(0).iterator().next().getDataTimestamp();
+    }
+}
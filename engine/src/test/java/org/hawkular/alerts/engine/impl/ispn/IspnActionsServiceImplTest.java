@@ -18,12 +18,16 @@ package org.hawkular.alerts.engine.impl.ispn;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.hawkular.alerts.api.model.action.Action;
+import org.hawkular.alerts.api.model.action.ActionDefinition;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.model.trigger.TriggerAction;
@@ -44,6 +48,8 @@ import org.junit.Test;
 public class IspnActionsServiceImplTest extends IspnBaseServiceImplTest {
     static final MsgLogger log = MsgLogging.getMsgLogger(IspnActionsServiceImplTest.class);
 
+    static ActionsCacheManager actionsCacheManager;
+
     @BeforeClass
     public static void init() {
         try {
@@ -61,9 +67,10 @@ public class IspnActionsServiceImplTest extends IspnBaseServiceImplTest {
             actions = new IspnActionsServiceImpl();
             actions.init();
 
-            ActionsCacheManager actionsCacheManager = new ActionsCacheManager();
+            actionsCacheManager = new ActionsCacheManager();
             actionsCacheManager.setDefinitions(definitions);
             actionsCacheManager.setGlobalActionsCache(IspnCacheManager.getCacheManager().getCache("globalActions"));
+            actionsCacheManager.setActionsCache(IspnCacheManager.getCacheManager().getCache("actions"));
 
             actions.setActionsCacheManager(actionsCacheManager);
             actions.setAlertsContext(alertsContext);
@@ -117,6 +124,7 @@ public class IspnActionsServiceImplTest extends IspnBaseServiceImplTest {
             assertEquals(1, existingAlerts.size());
 
             actions.send(updated, existingAlerts.get(0));
+            actions.flush();
 
             List<Action> existingActions = actions.getActions("tenant0", null, null);
             assertNotNull(existingActions);
@@ -214,4 +222,40 @@ public class IspnActionsServiceImplTest extends IspnBaseServiceImplTest {
 
     }
 
+    @Test
+    public void resolvedActionsTest() throws Exception {
+        try {
+            createTestPluginsAndActions(1, 1, 1);
+
+            ActionDefinition resolved = actionsCacheManager.getResolvedAction("tenant0", "plugin0", "action0");
+            assertNotNull(resolved);
+            assertEquals(3, resolved.getProperties().size());
+
+            Map<String, String> defaultProperties = new HashMap<>();
+            defaultProperties.put("prop1", "");
+            defaultProperties.put("prop2", "");
+            defaultProperties.put("prop3", "");
+            defaultProperties.put("prop4", "default4");
+            definitions.updateActionPlugin("plugin0", defaultProperties);
+
+            resolved = actionsCacheManager.getResolvedAction("tenant0", "plugin0", "action0");
+            assertEquals(4, resolved.getProperties().size());
+            assertEquals("default4", resolved.getProperties().get("prop4"));
+
+            ActionDefinition actionDefinition = definitions.getActionDefinition("tenant0", "plugin0", "action0");
+            actionDefinition.getProperties().put("prop4", "action4");
+            definitions.updateActionDefinition("tenant0", actionDefinition);
+
+            resolved = actionsCacheManager.getResolvedAction("tenant0", "plugin0", "action0");
+            assertEquals("action4", resolved.getProperties().get("prop4"));
+
+            deleteTestPluginsAndActions(1, 1, 1);
+
+            assertNull(actionsCacheManager.getResolvedAction("tenant0", "plugin0", "action0"));
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
 }
@@ -22,6 +22,7 @@ import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -31,8 +32,15 @@ import java.util.Set;
 import org.hawkular.alerts.api.model.Severity;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.event.Event;
+import org.hawkular.alerts.api.model.paging.Order;
+import org.hawkular.alerts.api.model.paging.Page;
+import org.hawkular.alerts.api.model.paging.Pager;
+import org.hawkular.alerts.api.model.trigger.Trigger;
 import org.hawkular.alerts.api.services.AlertsCriteria;
+import org.hawkular.alerts.api.services.EventsChangeListener;
 import org.hawkular.alerts.api.services.EventsCriteria;
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl;
+import org.hawkular.alerts.engine.impl.PartitionManagerImpl.NotifyChanges;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
 import org.junit.BeforeClass;
@@ -490,6 +498,40 @@ public class IspnAlertsServiceImplTest extends IspnBaseServiceImplTest {
         deleteTestAlerts(numTenants);
     }
 
+    @Test
+    public void queryAlertsPaged() throws Exception {
+        int numTenants = 1;
+        int numTriggers = 1;
+        int numAlerts = 20;
+        createTestAlerts(numTenants, numTriggers, numAlerts);
+
+        Pager pager = Pager.builder().withPageSize(5).withStartPage(1)
+                .orderBy("ctime", Order.Direction.DESCENDING).build();
+        Page<Alert> page = alerts.getAlerts("tenant0", null, pager);
+        assertEquals(5, page.size());
+        assertEquals(20, page.getTotalSize());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(15 - i, page.get(i).getCtime());
+        }
+
+        // Severities are sorted by enum order, the last order is the primary one as in the comparators
+        pager = Pager.builder().withPageSize(3).withStartPage(0)
+                .orderBy("ctime", Order.Direction.ASCENDING)
+                .orderBy("severity", Order.Direction.DESCENDING).build();
+        page = alerts.getAlerts("tenant0", null, pager);
+        assertEquals(3, page.size());
+        assertEquals(Severity.CRITICAL, page.get(0).getSeverity());
+        assertEquals(3, page.get(0).getCtime());
+        assertEquals(6, page.get(1).getCtime());
+
+        // Not sortable by the index
+        pager = Pager.builder().withPageSize(5).withStartPage(0)
+                .orderBy("trigger.name", Order.Direction.ASCENDING).build();
+        assertEquals(5, alerts.getAlerts("tenant0", null, pager).size());
+
+        deleteTestAlerts(numTenants);
+    }
+
     @Test
     public void ackAlert() throws Exception {
         int numTenants = 1;
@@ -586,6 +628,79 @@ public class IspnAlertsServiceImplTest extends IspnBaseServiceImplTest {
         deleteTestAlerts(numTenants);
     }
 
+    @Test
+    public void alertsChangeListener() throws Exception {
+        List<Alert> critical = new ArrayList<>();
+        EventsChangeListener<Alert> listener = changes -> critical.addAll(changes);
+        AlertsCriteria criteria = new AlertsCriteria();
+        criteria.setSeverities(Arrays.asList(Severity.CRITICAL));
+        alerts.registerListener(listener, Collections.singleton("tenant0"), criteria);
+
+        int numTenants = 2;
+        int numTriggers = 1;
+        int numAlerts = 5;
+        createTestAlerts(numTenants, numTriggers, numAlerts);
+        assertEquals(1, critical.size());
+        assertEquals("tenant0", critical.get(0).getTenantId());
+
+        String alertId = critical.get(0).getAlertId();
+        alerts.ackAlerts("tenant0", Arrays.asList(alertId), "test", "ACK from alertsChangeListener() test");
+        assertEquals(2, critical.size());
+        assertEquals(Alert.Status.ACKNOWLEDGED, critical.get(1).getStatus());
+
+        alerts.unregisterListener(listener);
+        alerts.resolveAlerts("tenant0", Arrays.asList(alertId), "test", "RESOLVED from alertsChangeListener() test",
+                null);
+        assertEquals(2, critical.size());
+
+        deleteTestAlerts(numTenants);
+    }
+
+    @Test
+    public void remoteChangesListener() throws Exception {
+        // The service of this node, other nodes send their changes through the PartitionManager
+        PartitionManagerImpl partitionManager = new PartitionManagerImpl();
+        IspnAlertsServiceImpl nodeAlerts = new IspnAlertsServiceImpl();
+        nodeAlerts.setPartitionManager(partitionManager);
+        nodeAlerts.init();
+
+        List<Alert> critical = new ArrayList<>();
+        EventsChangeListener<Alert> alertsListener = changes -> critical.addAll(changes);
+        AlertsCriteria alertsCriteria = new AlertsCriteria();
+        alertsCriteria.setSeverities(Arrays.asList(Severity.CRITICAL));
+        nodeAlerts.registerListener(alertsListener, Collections.singleton("tenant0"), alertsCriteria);
+
+        List<Event> stored = new ArrayList<>();
+        EventsChangeListener<Event> eventsListener = changes -> stored.addAll(changes);
+        nodeAlerts.registerListener(eventsListener, Collections.singleton("tenant0"), null);
+
+        Trigger trigger = new Trigger("tenant0", "trigger0", "Trigger trigger0");
+        Alert criticalAlert = new Alert("tenant0", trigger, null);
+        criticalAlert.setSeverity(Severity.CRITICAL);
+        Alert lowAlert = new Alert("tenant0", trigger, null);
+        lowAlert.setSeverity(Severity.LOW);
+        Alert otherTenantAlert = new Alert("tenant1", new Trigger("tenant1", "trigger0", "Trigger trigger0"), null);
+        otherTenantAlert.setSeverity(Severity.CRITICAL);
+        Event event = new Event("tenant0", "event0", "dataId0", "category0", "text0");
+
+        // Simulate alerts and events stored on a remote node
+        Integer remoteNode = 1;
+        List<Alert> remoteAlerts = Arrays.asList(criticalAlert, lowAlert, otherTenantAlert);
+        partitionManager.processNotifyChanges(new NotifyChanges(remoteNode, remoteAlerts, remoteAlerts));
+        partitionManager.processNotifyChanges(new NotifyChanges(remoteNode, null, Arrays.asList(event)));
+
+        assertEquals(1, critical.size());
+        assertEquals(criticalAlert.getAlertId(), critical.get(0).getAlertId());
+        assertEquals(3, stored.size());
+        assertEquals("event0", stored.get(2).getId());
+
+        nodeAlerts.unregisterListener(alertsListener);
+        nodeAlerts.unregisterListener(eventsListener);
+        partitionManager.processNotifyChanges(new NotifyChanges(remoteNode, remoteAlerts, remoteAlerts));
+        assertEquals(1, critical.size());
+        assertEquals(3, stored.size());
+    }
+
     @Test
     public void addRemoveAlertTag() throws Exception {
         int numTenants = 1;
@@ -649,6 +764,30 @@ public class IspnAlertsServiceImplTest extends IspnBaseServiceImplTest {
         deleteTestEvents(numTenants);
     }
 
+    @Test
+    public void eventsChangeListener() throws Exception {
+        List<Event> category0 = new ArrayList<>();
+        EventsChangeListener<Event> listener = changes -> category0.addAll(changes);
+        EventsCriteria criteria = new EventsCriteria();
+        criteria.setCategory("category0");
+        criteria.setTriggerId("trigger1");
+        alerts.registerListener(listener, Collections.singleton("tenant1"), criteria);
+
+        int numTenants = 2;
+        int numTriggers = 2;
+        int numEvents = 4;
+        createTestEvents(numTenants, numTriggers, numEvents);
+        alerts.unregisterListener(listener);
+
+        assertEquals(2, category0.size());
+        category0.stream().forEach(e -> {
+            assertEquals("tenant1", e.getTenantId());
+            assertEquals("category0", e.getCategory());
+        });
+
+        deleteTestEvents(numTenants);
+    }
+
     @Test
     public void queryEventsByTriggerId() throws Exception {
         int numTenants = 2;
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.impl.ispn;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.hawkular.alerts.engine.impl.ispn.model.IspnEvent;
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class IspnQueryBuilderTest {
+
+    @Test
+    public void sameShapeSameQuery() {
+        IspnQueryBuilder q1 = new IspnQueryBuilder(IspnEvent.class)
+                .in("tenantId", Arrays.asList("tenant1", "tenant2"))
+                .ge("ctime", 10L)
+                .orderBy("ctime desc");
+        IspnQueryBuilder q2 = new IspnQueryBuilder(IspnEvent.class)
+                .in("tenantId", Arrays.asList("tenant3", "tenant4"))
+                .ge("ctime", 20L)
+                .orderBy("ctime desc");
+
+        assertEquals("from org.hawkular.alerts.engine.impl.ispn.model.IspnEvent " +
+                "where (tenantId = :p0 or tenantId = :p1) and ctime >= :p2 order by ctime desc", q1.getQuery());
+        assertEquals(q1.getQuery(), q2.getQuery());
+        assertEquals("tenant3", q2.getParameters().get("p0"));
+        assertEquals(20L, q2.getParameters().get("p2"));
+    }
+
+    @Test
+    public void literalConditions() {
+        IspnQueryBuilder q = new IspnQueryBuilder(IspnEvent.class)
+                .eq("tenantId", "tenant1")
+                .condition("tags : ('tagA')")
+                .likeAny("category", Arrays.asList("it's%"));
+
+        assertEquals("from org.hawkular.alerts.engine.impl.ispn.model.IspnEvent " +
+                "where tenantId = :p0 and (tags : ('tagA')) and (category like 'it''s%')", q.getQuery());
+        assertEquals(1, q.getParameters().size());
+    }
+}
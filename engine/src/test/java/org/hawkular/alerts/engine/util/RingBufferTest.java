@@ -0,0 +1,115 @@
+/*
+ * Copyright 2015-2017 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.hawkular.alerts.engine.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @author Jay Shaughnessy
+ * @author Lucas Ponce
+ */
+public class RingBufferTest {
+
+    @Test
+    public void capacityTest() {
+        assertEquals(2, new RingBuffer<String>(1).capacity());
+        assertEquals(8, new RingBuffer<String>(8).capacity());
+        assertEquals(16, new RingBuffer<String>(9).capacity());
+    }
+
+    @Test
+    public void fifoTest() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        assertTrue(buffer.isEmpty());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained));
+        assertEquals(4, drained.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i + 1), drained.get(i));
+        }
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void clearTest() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        buffer.offer(1);
+        buffer.offer(2);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        assertTrue(buffer.offer(3));
+        assertEquals(Integer.valueOf(3), buffer.poll());
+    }
+
+    @Test
+    public void concurrentProducersTest() throws Exception {
+        final int producers = 4;
+        final int perProducer = 10000;
+        final RingBuffer<Integer> buffer = new RingBuffer<>(128);
+        final CountDownLatch done = new CountDownLatch(producers);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            executor.submit(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        Set<Integer> received = new HashSet<>();
+        List<Integer> drained = new ArrayList<>();
+        while (done.getCount() > 0 || !buffer.isEmpty()) {
+            drained.clear();
+            if (buffer.drainTo(drained) == 0) {
+                Thread.yield();
+            }
+            received.addAll(drained);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(producers * perProducer, received.size());
+    }
+}
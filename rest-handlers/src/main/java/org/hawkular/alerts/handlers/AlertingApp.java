@@ -7,6 +7,7 @@ import org.hawkular.alerts.actions.standalone.StandaloneActionPluginRegister;
 import org.hawkular.alerts.alerters.standalone.StandaloneAlerterPluginRegister;
 import org.hawkular.alerts.engine.StandaloneAlerts;
 import org.hawkular.alerts.handlers.util.AlertingThreadFactory;
+import org.hawkular.alerts.vertx.VertxManager;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
 import org.hawkular.commons.properties.HawkularProperties;
@@ -40,8 +41,12 @@ public class AlertingApp implements BaseApplication {
 
     @Override
     public void stop() {
-        StandaloneActionPluginRegister.stop();
+        // Alerters stop feeding the engine, the engine flushes its pending actions into the action plugins before
+        // they are closed, the plugins use the shared Vertx until then
+        StandaloneAlerterPluginRegister.stop();
         StandaloneAlerts.stop();
+        StandaloneActionPluginRegister.stop();
+        VertxManager.stop();
         log.infof("Alerting app stopped", baseUrl());
     }
 
@@ -1,8 +1,9 @@
 package org.hawkular.alerts.handlers;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
-import static org.hawkular.alerts.api.json.JsonUtil.collectionFromJson;
+import static org.hawkular.alerts.api.json.JsonStreamReader.readData;
 import static org.hawkular.alerts.api.json.JsonUtil.toJson;
+import static org.hawkular.alerts.api.util.BinaryUtil.dataFromBinary;
 import static org.hawkular.alerts.api.util.Util.isEmpty;
 import static org.hawkular.alerts.api.doc.DocConstants.DELETE;
 import static org.hawkular.alerts.api.doc.DocConstants.GET;
@@ -20,7 +21,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
+import org.hawkular.alerts.api.exception.OverflowException;
 import org.hawkular.alerts.api.model.data.Data;
 import org.hawkular.alerts.api.model.event.Alert;
 import org.hawkular.alerts.api.model.paging.Page;
@@ -28,6 +32,8 @@ import org.hawkular.alerts.api.model.paging.Pager;
 import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.engine.StandaloneAlerts;
+import org.hawkular.alerts.filter.CacheClient;
+import org.hawkular.alerts.filter.CacheKey;
 import org.hawkular.alerts.api.doc.DocEndpoint;
 import org.hawkular.alerts.api.doc.DocParameter;
 import org.hawkular.alerts.api.doc.DocParameters;
@@ -36,11 +42,13 @@ import org.hawkular.alerts.api.doc.DocResponse;
 import org.hawkular.alerts.api.doc.DocResponses;
 import org.hawkular.alerts.handlers.util.ResponseUtil;
 import org.hawkular.alerts.handlers.util.ResponseUtil.ApiError;
+import org.hawkular.alerts.handlers.util.ResponseUtil.ApiSent;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
 import org.hawkular.handlers.RestEndpoint;
 import org.hawkular.handlers.RestHandler;
 
+import io.netty.buffer.ByteBufInputStream;
 import io.vertx.core.MultiMap;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
@@ -81,6 +89,8 @@ public class AlertsHandler implements RestHandler {
     protected static final String FIND_ALERTS = "findAlerts";
     protected static final String WATCH_ALERTS = "watchAlerts";
     private static final String DELETE_ALERTS = "deleteAlerts";
+    // Max number of Data sent to the engine at once while reading a json request
+    private static final int CHUNK_SIZE = 1000;
     protected static final Map<String, Set<String>> queryParamValidationMap = new HashMap<>();
     static {
         Collection<String> ALERTS_CRITERIA = Arrays.asList(PARAM_START_TIME,
@@ -107,9 +117,11 @@ public class AlertsHandler implements RestHandler {
     }
 
     AlertsService alertsService;
+    CacheClient dataIdCache;
 
     public AlertsHandler() {
         alertsService = StandaloneAlerts.getAlertsService();
+        dataIdCache = StandaloneAlerts.getDataIdCache();
     }
 
     @Override
@@ -301,7 +313,7 @@ public class AlertsHandler implements RestHandler {
                     description = "Filter out alerts with some lifecycle after this time.",
                     allowableValues = "Timestamp in millisecond since epoch."),
             @DocParameter(name = "watchInterval", type = Long.class,
-                    description = "Define interval when watcher notifications will be sent.",
+                    description = "Deprecated. Ignored, watcher notifications are sent as soon as changes happen.",
                     allowableValues = "Interval in seconds"),
             @DocParameter(name = "thin", type = Boolean.class,
                     description = "Return only thin alerts, do not include: evalSets, resolvedEvalSets.")
@@ -319,10 +331,6 @@ public class AlertsHandler implements RestHandler {
             return;
         }
         AlertsCriteria criteria = buildCriteria(routing.request().params());
-        Long watchInterval = null;
-        if (routing.request().params().get(PARAM_WATCH_INTERVAL) != null) {
-            watchInterval = Long.valueOf(routing.request().params().get(PARAM_WATCH_INTERVAL));
-        }
         routing.response()
                 .putHeader(ACCEPT, ResponseUtil.APPLICATION_JSON)
                 .putHeader(CONTENT_TYPE, ResponseUtil.APPLICATION_JSON)
@@ -333,8 +341,11 @@ public class AlertsHandler implements RestHandler {
             routing.response().write(toJson(alert) + "\r\n");
         };
         String channelId = routing.request().connection().remoteAddress().toString();
-        AlertsWatcher watcher = new AlertsWatcher(channelId, listener, Collections.singleton(tenantId), criteria, watchInterval);
-        watcher.start();
+        AlertsWatcher watcher = new AlertsWatcher(channelId, listener, Collections.singleton(tenantId), criteria);
+        routing.vertx().executeBlocking(future -> {
+            watcher.start();
+            future.complete();
+        }, res -> { });
         log.infof("AlertsWatcher [%s] created", channelId);
         routing.response().closeHandler(e -> {
             watcher.dispose();
@@ -673,26 +684,37 @@ public class AlertsHandler implements RestHandler {
 
     @DocPath(method = POST,
             path = "/data",
-            name = "Set one or more alerts resolved.")
+            name = "Send data to the engine for processing/condition evaluation.",
+            notes = "Data with a dataId not used by any trigger is discarded. + \n" +
+                    "Json Data is sent to the engine in chunks, a json request is validated before any chunk " +
+                    "is sent. If the engine is full the chunks already sent are not revoked, the error reports " +
+                    "how much data was sent.")
     @DocParameters(
             @DocParameter(required = true, body = true, type = Data.class, typeContainer = "List",
-                    description = "Data to be processed by alerting.")
+                    description = "Data to be processed by alerting. + \n" +
+                            "JSON by default, or a binary batch with Content-Type " +
+                            "application/x-hawkular-data+binary.")
     )
     @DocResponses(value = {
-            @DocResponse(code = 200, message = "Success, data added."),
+            @DocResponse(code = 200, message = "Success, data added.", response = ApiSent.class),
             @DocResponse(code = 400, message = "Bad Request/Invalid Parameters.", response = ApiError.class),
+            @DocResponse(code = 429, message = "Engine is full, data rejected.", response = ApiError.class),
             @DocResponse(code = 500, message = "Internal server error.", response = ApiError.class)
     })
     public void sendData(RoutingContext routing) {
         routing.vertx()
                 .executeBlocking(future -> {
                     String tenantId = checkTenant(routing);
-                    String json = routing.getBodyAsString();
+                    if (!isBinary(routing)) {
+                        future.complete(streamData(routing, tenantId));
+                        return;
+                    }
                     Collection<Data> datums;
                     try {
-                        datums = collectionFromJson(json, Data.class);
+                        datums = dataFromBinary(routing.getBody().getBytes());
                     } catch (Exception e) {
-                        log.errorf("Error parsing Datums json: %s. Reason: %s", json, e.toString());
+                        log.errorf("Error parsing Datums binary batch of %s bytes. Reason: %s",
+                                routing.getBody().length(), e.toString());
                         throw new BadRequestException(e.toString());
                     }
                     if (isEmpty(datums)) {
@@ -702,15 +724,59 @@ public class AlertsHandler implements RestHandler {
                         datums.stream().forEach(d -> d.setTenantId(tenantId));
                         alertsService.sendData(datums);
                         log.debugf("Datums: %s", datums);
-                        future.complete();
+                        future.complete(new ApiSent(datums.size(), datums.size()));
                     } catch (IllegalArgumentException e) {
                         throw new BadRequestException("Bad arguments: " + e.getMessage());
+                    } catch (OverflowException e) {
+                        throw new TooManyRequestsException(e.getMessage());
                     } catch (Exception e) {
                         throw new InternalServerException(e.toString());
                     }
                 }, res -> result(routing, res));
     }
 
+    /*
+        Json Data is read incrementally. Data with a dataId not used by any trigger is discarded while reading, the
+        rest is sent to the engine in chunks, already filtered. Only the counts are returned, so the memory used beyond
+        the request body is a chunk.
+
+        The body is read twice, the first pass only validates it. An invalid element rejects the whole request before
+        any chunk is sent. The engine accepts or rejects each chunk whole; if a chunk is rejected the chunks already
+        sent are not revoked, the error reports how many Data were sent.
+     */
+    private ApiSent streamData(RoutingContext routing, String tenantId) {
+        Predicate<String> filter = dataId -> dataIdCache.containsKey(new CacheKey(tenantId, dataId));
+        int read;
+        try {
+            read = readData(new ByteBufInputStream(routing.getBody().getByteBuf()), tenantId, filter, CHUNK_SIZE,
+                    chunk -> {});
+        } catch (IllegalArgumentException e) {
+            log.errorf("Error processing Datums json. Reason: %s", e.toString());
+            throw new BadRequestException(e.toString());
+        } catch (Exception e) {
+            throw new InternalServerException(e.toString());
+        }
+        if (read == 0) {
+            throw new BadRequestException("Data is empty");
+        }
+        AtomicInteger sent = new AtomicInteger();
+        try {
+            readData(new ByteBufInputStream(routing.getBody().getByteBuf()), tenantId, filter, CHUNK_SIZE,
+                    chunk -> {
+                        alertsService.sendData(chunk, true);
+                        sent.addAndGet(chunk.size());
+                        log.debugf("Datums: %s", chunk);
+                    });
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Bad arguments: " + e.getMessage() + ". Data sent: " + sent.get());
+        } catch (OverflowException e) {
+            throw new TooManyRequestsException(e.getMessage() + ". Data sent: " + sent.get());
+        } catch (Exception e) {
+            throw new InternalServerException(e.toString() + ". Data sent: " + sent.get());
+        }
+        return new ApiSent(read, sent.get());
+    }
+
     @DocPath(method = PUT,
             path = "/alert/{alertId}",
             name = "Get an existing Alert.")
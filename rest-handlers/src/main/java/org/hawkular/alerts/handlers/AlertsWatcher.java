@@ -12,6 +12,7 @@ import org.hawkular.alerts.api.model.paging.PageContext;
 import org.hawkular.alerts.api.model.paging.Pager;
 import org.hawkular.alerts.api.services.AlertsCriteria;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.EventsChangeListener;
 import org.hawkular.alerts.engine.StandaloneAlerts;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
@@ -20,12 +21,9 @@ import org.hawkular.commons.log.MsgLogging;
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
-public class AlertsWatcher extends Thread {
+public class AlertsWatcher implements EventsChangeListener<Alert> {
     private static final MsgLogger log = MsgLogging.getMsgLogger(AlertsWatcher.class);
     private static final Pager stimePager;
-    private static final long WATCHER_INTERVAL_DEFAULT = 5 * 1000;
-    private static final long CLEAN_INTERVAL = 10 * 1000;
-    private static final long LEAP_INTERVAL = 1 * 1000;
 
     static {
         List<Order> ordering = new ArrayList<>();
@@ -39,88 +37,78 @@ public class AlertsWatcher extends Thread {
     AlertsService alertsService;
     Set<String> tenantIds;
 
-    Long watchInterval;
-    boolean running = true;
+    /*
+        Changes pushed while the initial alerts are fetched, null once the initial alerts are sent.
+     */
+    List<Alert> pending = new ArrayList<>();
+    boolean disposed = false;
 
-    public AlertsWatcher(String id, AlertsListener listener, Set<String> tenantIds, AlertsCriteria criteria, Long watchInterval) {
-        super("AlertsWatcher[" + id + "]");
+    public AlertsWatcher(String id, AlertsListener listener, Set<String> tenantIds, AlertsCriteria criteria) {
         this.id = id;
         this.listener = listener;
         this.criteria = criteria;
-        this.watchInterval = watchInterval;
         this.tenantIds = tenantIds;
         alertsService = StandaloneAlerts.getAlertsService();
     }
 
-    public void dispose() {
-        running = false;
-    }
-
-    @Override
-    public void run() {
+    /**
+     * Send the alerts matching the criteria and subscribe to the next changes.
+     * It performs a blocking query, it should not be invoked from an event loop thread.
+     */
+    public void start() {
         if (listener == null) {
             log.error("Listener is null");
             return;
         }
-        Long startWatchTime = criteria.getEndStatusTime();
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            /*
+                Watcher subscribes before the initial query to not miss changes happening meanwhile.
+                Time constraints of the criteria only apply to the initial query.
+             */
+            alertsService.registerListener(this, tenantIds, criteria);
+        }
         Page<Alert> initialAlerts;
         try {
             initialAlerts = alertsService.getAlerts(tenantIds, criteria, stimePager);
         } catch (Exception e) {
             log.error(e);
+            dispose();
             return;
         }
-        if (initialAlerts == null) {
-            log.error("initialAlerts is null");
-            return;
-        }
-        Set<WatchedId> watchedIds = new HashSet<>();
-        initialAlerts.forEach(a -> {
-            listener.onAlert(a);
-            watchedIds.add(new WatchedId(a.getId(), a.getCurrentLifecycle().getStime()));
-        });
-        startWatchTime = startWatchTime == null ? System.currentTimeMillis() : startWatchTime;
-        long sleepWatcher = watchInterval == null ? WATCHER_INTERVAL_DEFAULT : watchInterval * 1000;
-        /*
-            Watcher will reuse the AlertsCriteria but without time constraints.
-            Time constraints are defined by the watcher on stime via regular intervals.
-         */
-        criteria.setStartTime(null);
-        criteria.setEndTime(null);
-        criteria.setStartAckTime(null);
-        criteria.setEndAckTime(null);
-        criteria.setStartResolvedTime(null);
-        criteria.setEndResolvedTime(null);
-        long lastWatched = System.currentTimeMillis();
-        Set<WatchedId> newWatchedIds = new HashSet<>();
-        while (running) {
-            startWatchTime = criteria.getEndStatusTime() == null ? startWatchTime : criteria.getEndStatusTime();
-            criteria.setStartStatusTime(startWatchTime);
-            criteria.setEndStatusTime(System.currentTimeMillis());
-            try {
-                Thread.sleep(LEAP_INTERVAL);
-                log.debugf("Query timestamp %s. startStatusTime: %s endStatusTime: %s",
-                        System.currentTimeMillis(), criteria.getStartStatusTime(), criteria.getEndStatusTime());
-                Page<Alert> watchedAlerts = alertsService.getAlerts(tenantIds, criteria, stimePager);
-                for (Alert alert : watchedAlerts) {
-                    WatchedId watchedId = new WatchedId(alert.getId(), alert.getCurrentLifecycle().getStime());
-                    if (!watchedIds.contains(watchedId)) {
-                        listener.onAlert(alert);
-                        newWatchedIds.add(watchedId);
-                    }
-                }
-                if (System.currentTimeMillis() - lastWatched > CLEAN_INTERVAL) {
-                    watchedIds.clear();
-                    lastWatched = System.currentTimeMillis();
-                }
-                watchedIds.addAll(newWatchedIds);
-                Thread.sleep(sleepWatcher);
-            } catch (Exception e) {
-                log.error(e);
+        synchronized (this) {
+            if (disposed) {
                 return;
             }
+            Set<WatchedId> watchedIds = new HashSet<>();
+            initialAlerts.forEach(a -> {
+                listener.onAlert(a);
+                watchedIds.add(new WatchedId(a.getId(), a.getCurrentLifecycle().getStime()));
+            });
+            pending.stream()
+                    .filter(a -> !watchedIds.contains(new WatchedId(a.getId(), a.getCurrentLifecycle().getStime())))
+                    .forEach(a -> listener.onAlert(a));
+            pending = null;
+        }
+    }
+
+    public synchronized void dispose() {
+        disposed = true;
+        alertsService.unregisterListener(this);
+    }
+
+    @Override
+    public synchronized void onChange(List<Alert> changes) {
+        if (disposed) {
+            return;
+        }
+        if (pending != null) {
+            pending.addAll(changes);
+            return;
         }
-        log.infof("AlertsWatcher[%s] finished", id);
+        changes.forEach(a -> listener.onAlert(a));
     }
 
     public interface AlertsListener {
@@ -39,7 +39,6 @@ import io.vertx.ext.web.RoutingContext;
 @DocEndpoint(value = "/admin", description = "Cross tenant Operations")
 public class CrossTenantHandler implements RestHandler {
     private static final MsgLogger log = MsgLogging.getMsgLogger(CrossTenantHandler.class);
-    private static final String PARAM_WATCH_INTERVAL = "watchInterval";
 
     AlertsService alertsService;
 
@@ -311,7 +310,7 @@ public class CrossTenantHandler implements RestHandler {
                     description = "Filter out alerts with some lifecycle after this time.",
                     allowableValues = "Timestamp in millisecond since epoch."),
             @DocParameter(name = "watchInterval", type = Long.class,
-                    description = "Define interval when watcher notifications will be sent.",
+                    description = "Deprecated. Ignored, watcher notifications are sent as soon as changes happen.",
                     allowableValues = "Interval in seconds"),
             @DocParameter(name = "thin", type = Boolean.class,
                     description = "Return only thin alerts, do not include: evalSets, resolvedEvalSets.")
@@ -330,10 +329,6 @@ public class CrossTenantHandler implements RestHandler {
             return;
         }
         AlertsCriteria criteria = AlertsHandler.buildCriteria(routing.request().params());
-        Long watchInterval = null;
-        if (routing.request().params().get(PARAM_WATCH_INTERVAL) != null) {
-            watchInterval = Long.valueOf(routing.request().params().get(PARAM_WATCH_INTERVAL));
-        }
         routing.response()
                 .putHeader(ResponseUtil.ACCEPT, ResponseUtil.APPLICATION_JSON)
                 .putHeader(ResponseUtil.CONTENT_TYPE, ResponseUtil.APPLICATION_JSON)
@@ -344,8 +339,11 @@ public class CrossTenantHandler implements RestHandler {
             routing.response().write(toJson(alert) + "\r\n");
         };
         String channelId = routing.request().connection().remoteAddress().toString();
-        AlertsWatcher watcher = new AlertsWatcher(channelId, listener, tenantIds, criteria, watchInterval);
-        watcher.start();
+        AlertsWatcher watcher = new AlertsWatcher(channelId, listener, tenantIds, criteria);
+        routing.vertx().executeBlocking(future -> {
+            watcher.start();
+            future.complete();
+        }, res -> { });
         log.infof("AlertsWatcher [%s] created", channelId);
         routing.response().closeHandler(e -> {
             watcher.dispose();
@@ -411,7 +409,7 @@ public class CrossTenantHandler implements RestHandler {
                     description = "Filter out events for unspecified tags.",
                     allowableValues = "A tag query expression."),
             @DocParameter(name = "watchInterval", type = Long.class,
-                    description = "Define interval when watcher notifications will be sent.",
+                    description = "Deprecated. Ignored, watcher notifications are sent as soon as changes happen.",
                     allowableValues = "Interval in seconds"),
             @DocParameter(name = "thin", type = Boolean.class,
                     description = "Return only thin events, do not include: evalSets.")
@@ -430,10 +428,6 @@ public class CrossTenantHandler implements RestHandler {
             return;
         }
         EventsCriteria criteria = EventsHandler.buildCriteria(routing.request().params());
-        Long watchInterval = null;
-        if (routing.request().params().get(PARAM_WATCH_INTERVAL) != null) {
-            watchInterval = Long.valueOf(routing.request().params().get(PARAM_WATCH_INTERVAL));
-        }
         routing.response()
                 .putHeader(ResponseUtil.ACCEPT, ResponseUtil.APPLICATION_JSON)
                 .putHeader(ResponseUtil.CONTENT_TYPE, ResponseUtil.APPLICATION_JSON)
@@ -443,8 +437,11 @@ public class CrossTenantHandler implements RestHandler {
             routing.response().write(toJson(event) + "\r\n");
         };
         String channelId = routing.request().connection().remoteAddress().toString();
-        EventsWatcher watcher = new EventsWatcher(channelId, listener, tenantIds, criteria, watchInterval);
-        watcher.start();
+        EventsWatcher watcher = new EventsWatcher(channelId, listener, tenantIds, criteria);
+        routing.vertx().executeBlocking(future -> {
+            watcher.start();
+            future.complete();
+        }, res -> { });
         log.infof("EventsWatcher [%s] created", channelId);
         routing.response().closeHandler(e -> {
             watcher.dispose();
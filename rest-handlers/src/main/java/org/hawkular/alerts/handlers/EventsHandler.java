@@ -1,9 +1,10 @@
 package org.hawkular.alerts.handlers;
 
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
-import static org.hawkular.alerts.api.json.JsonUtil.collectionFromJson;
+import static org.hawkular.alerts.api.json.JsonStreamReader.readEvents;
 import static org.hawkular.alerts.api.json.JsonUtil.fromJson;
 import static org.hawkular.alerts.api.json.JsonUtil.toJson;
+import static org.hawkular.alerts.api.util.BinaryUtil.eventsFromBinary;
 import static org.hawkular.alerts.api.util.Util.isEmpty;
 import static org.hawkular.alerts.api.doc.DocConstants.DELETE;
 import static org.hawkular.alerts.api.doc.DocConstants.GET;
@@ -20,13 +21,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
+import org.hawkular.alerts.api.exception.OverflowException;
 import org.hawkular.alerts.api.model.event.Event;
 import org.hawkular.alerts.api.model.paging.Page;
 import org.hawkular.alerts.api.model.paging.Pager;
 import org.hawkular.alerts.api.services.AlertsService;
 import org.hawkular.alerts.api.services.EventsCriteria;
 import org.hawkular.alerts.engine.StandaloneAlerts;
+import org.hawkular.alerts.filter.CacheClient;
+import org.hawkular.alerts.filter.CacheKey;
 import org.hawkular.alerts.api.doc.DocEndpoint;
 import org.hawkular.alerts.api.doc.DocParameter;
 import org.hawkular.alerts.api.doc.DocParameters;
@@ -36,11 +42,13 @@ import org.hawkular.alerts.api.doc.DocResponses;
 import org.hawkular.alerts.handlers.util.ResponseUtil;
 import org.hawkular.alerts.handlers.util.ResponseUtil.ApiDeleted;
 import org.hawkular.alerts.handlers.util.ResponseUtil.ApiError;
+import org.hawkular.alerts.handlers.util.ResponseUtil.ApiSent;
 import org.hawkular.handlers.RestEndpoint;
 import org.hawkular.handlers.RestHandler;
 import org.hawkular.commons.log.MsgLogger;
 import org.hawkular.commons.log.MsgLogging;
 
+import io.netty.buffer.ByteBufInputStream;
 import io.vertx.core.MultiMap;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
@@ -69,6 +77,8 @@ public class EventsHandler implements RestHandler {
     protected static final String FIND_EVENTS = "findEvents";
     protected static final String WATCH_EVENTS = "watchEvents";
     private static final String DELETE_EVENTS = "deleteEvents";
+    // Max number of Events sent to the engine at once while reading a json request
+    private static final int CHUNK_SIZE = 1000;
     protected static final Map<String, Set<String>> queryParamValidationMap = new HashMap<>();
     static {
         Collection<String> EVENTS_CRITERIA = Arrays.asList(PARAM_START_TIME,
@@ -89,9 +99,11 @@ public class EventsHandler implements RestHandler {
     }
 
     AlertsService alertsService;
+    CacheClient dataIdCache;
 
     public EventsHandler() {
         alertsService = StandaloneAlerts.getAlertsService();
+        dataIdCache = StandaloneAlerts.getDataIdCache();
     }
 
     @Override
@@ -173,26 +185,37 @@ public class EventsHandler implements RestHandler {
             path = "/data",
             name = "Send events to the engine for processing/condition evaluation. ",
             notes = "Only events generated by the engine are persisted. + \n" +
-                    "Input events are treated as external data and those are not persisted into the system.")
+                    "Input events are treated as external data and those are not persisted into the system. + \n" +
+                    "Events with a dataId not used by any trigger are discarded. + \n" +
+                    "Json Events are sent to the engine in chunks, a json request is validated before any chunk " +
+                    "is sent. If the engine is full the chunks already sent are not revoked, the error reports " +
+                    "how many events were sent.")
     @DocParameters(value = {
             @DocParameter(required = true, body = true, type = Event.class, typeContainer = "List",
-                    description = "Events to be processed by alerting.")
+                    description = "Events to be processed by alerting. + \n" +
+                            "JSON by default, or a binary batch with Content-Type " +
+                            "application/x-hawkular-data+binary.")
     })
     @DocResponses(value = {
-            @DocResponse(code = 200, message = "Success, Events Sent.", response = Event.class),
+            @DocResponse(code = 200, message = "Success, Events Sent.", response = ApiSent.class),
             @DocResponse(code = 400, message = "Bad Request/Invalid Parameters.", response = ApiError.class),
+            @DocResponse(code = 429, message = "Engine is full, events rejected.", response = ApiError.class),
             @DocResponse(code = 500, message = "Internal server error.", response = ApiError.class)
     })
     public void sendEvents(RoutingContext routing) {
         routing.vertx()
                 .executeBlocking(future -> {
                     String tenantId = ResponseUtil.checkTenant(routing);
-                    String json = routing.getBodyAsString();
+                    if (!ResponseUtil.isBinary(routing)) {
+                        future.complete(streamEvents(routing, tenantId));
+                        return;
+                    }
                     Collection<Event> events;
                     try {
-                        events = collectionFromJson(json, Event.class);
+                        events = eventsFromBinary(routing.getBody().getBytes());
                     } catch (Exception e) {
-                        log.errorf("Error parsing Event json: %s. Reason: %s", json, e.toString());
+                        log.errorf("Error parsing Events binary batch of %s bytes. Reason: %s",
+                                routing.getBody().length(), e.toString());
                         throw new ResponseUtil.BadRequestException(e.toString());
                     }
                     if (isEmpty(events)) {
@@ -202,15 +225,60 @@ public class EventsHandler implements RestHandler {
                         events.stream().forEach(ev -> ev.setTenantId(tenantId));
                         alertsService.sendEvents(events);
                         log.debugf("Events: ", events);
-                        future.complete(events);
+                        future.complete(new ApiSent(events.size(), events.size()));
                     } catch (IllegalArgumentException e) {
                         throw new ResponseUtil.BadRequestException("Bad arguments: " + e.getMessage());
+                    } catch (OverflowException e) {
+                        throw new ResponseUtil.TooManyRequestsException(e.getMessage());
                     } catch (Exception e) {
                         throw new ResponseUtil.InternalServerException(e.toString());
                     }
                 }, res -> ResponseUtil.result(routing, res));
     }
 
+    /*
+        Json Events are read incrementally. Events with a dataId not used by any trigger are discarded while reading,
+        the rest are sent to the engine in chunks, already filtered. Only the counts are returned, so the memory used
+        beyond the request body is a chunk.
+
+        The body is read twice, the first pass only validates it. An invalid element rejects the whole request before
+        any chunk is sent. The engine accepts or rejects each chunk whole; if a chunk is rejected the chunks already
+        sent are not revoked, the error reports how many Events were sent.
+     */
+    private ApiSent streamEvents(RoutingContext routing, String tenantId) {
+        Predicate<String> filter = dataId -> dataIdCache.containsKey(new CacheKey(tenantId, dataId));
+        int read;
+        try {
+            read = readEvents(new ByteBufInputStream(routing.getBody().getByteBuf()), tenantId, filter, CHUNK_SIZE,
+                    chunk -> {});
+        } catch (IllegalArgumentException e) {
+            log.errorf("Error processing Events json. Reason: %s", e.toString());
+            throw new ResponseUtil.BadRequestException(e.toString());
+        } catch (Exception e) {
+            throw new ResponseUtil.InternalServerException(e.toString());
+        }
+        if (read == 0) {
+            throw new ResponseUtil.BadRequestException("Events is empty");
+        }
+        AtomicInteger sent = new AtomicInteger();
+        try {
+            readEvents(new ByteBufInputStream(routing.getBody().getByteBuf()), tenantId, filter, CHUNK_SIZE,
+                    chunk -> {
+                        alertsService.sendEvents(chunk, true);
+                        sent.addAndGet(chunk.size());
+                        log.debugf("Events: %s", chunk);
+                    });
+        } catch (IllegalArgumentException e) {
+            throw new ResponseUtil.BadRequestException("Bad arguments: " + e.getMessage() + ". Events sent: " +
+                    sent.get());
+        } catch (OverflowException e) {
+            throw new ResponseUtil.TooManyRequestsException(e.getMessage() + ". Events sent: " + sent.get());
+        } catch (Exception e) {
+            throw new ResponseUtil.InternalServerException(e.toString() + ". Events sent: " + sent.get());
+        }
+        return new ApiSent(read, sent.get());
+    }
+
     @DocPath(method = PUT,
             path = "/tags",
             name = "Add tags to existing Events.")
@@ -425,7 +493,7 @@ public class EventsHandler implements RestHandler {
                     description = "Filter out events for unspecified tags.",
                     allowableValues = "A tag query expression."),
             @DocParameter(name = "watchInterval", type = Long.class,
-                    description = "Define interval when watcher notifications will be sent.",
+                    description = "Deprecated. Ignored, watcher notifications are sent as soon as changes happen.",
                     allowableValues = "Interval in seconds"),
             @DocParameter(name = "thin", type = Boolean.class,
                     description = "Return only thin events, do not include: evalSets.")
@@ -443,10 +511,6 @@ public class EventsHandler implements RestHandler {
             return;
         }
         EventsCriteria criteria = buildCriteria(routing.request().params());
-        Long watchInterval = null;
-        if (routing.request().params().get(PARAM_WATCH_INTERVAL) != null) {
-            watchInterval = Long.valueOf(routing.request().params().get(PARAM_WATCH_INTERVAL));
-        }
         routing.response()
                 .putHeader(ResponseUtil.ACCEPT, ResponseUtil.APPLICATION_JSON)
                 .putHeader(ResponseUtil.CONTENT_TYPE, ResponseUtil.APPLICATION_JSON)
@@ -457,8 +521,11 @@ public class EventsHandler implements RestHandler {
             routing.response().write(toJson(event) + "\r\n");
         };
         String channelId = routing.request().connection().remoteAddress().toString();
-        EventsWatcher watcher = new EventsWatcher(channelId, listener, Collections.singleton(tenantId), criteria, watchInterval);
-        watcher.start();
+        EventsWatcher watcher = new EventsWatcher(channelId, listener, Collections.singleton(tenantId), criteria);
+        routing.vertx().executeBlocking(future -> {
+            watcher.start();
+            future.complete();
+        }, res -> { });
         log.infof("EventsWatcher [%s] created", channelId);
         routing.response().closeHandler(e -> {
             watcher.dispose();
@@ -11,6 +11,7 @@ import org.hawkular.alerts.api.model.paging.Page;
 import org.hawkular.alerts.api.model.paging.PageContext;
 import org.hawkular.alerts.api.model.paging.Pager;
 import org.hawkular.alerts.api.services.AlertsService;
+import org.hawkular.alerts.api.services.EventsChangeListener;
 import org.hawkular.alerts.api.services.EventsCriteria;
 import org.hawkular.alerts.engine.StandaloneAlerts;
 import org.hawkular.commons.log.MsgLogger;
@@ -20,12 +21,9 @@ import org.hawkular.commons.log.MsgLogging;
  * @author Jay Shaughnessy
  * @author Lucas Ponce
  */
-public class EventsWatcher extends Thread {
+public class EventsWatcher implements EventsChangeListener<Event> {
     private static final MsgLogger log = MsgLogging.getMsgLogger(EventsWatcher.class);
     private static final Pager ctimePager;
-    private static final long WATCHER_INTERVAL_DEFAULT = 5 * 1000;
-    private static final long CLEAN_INTERVAL = 10 * 1000;
-    private static final long LEAP_INTERVAL = 1 * 1000;
 
     static {
         List<Order> ordering = new ArrayList<>();
@@ -39,84 +37,78 @@ public class EventsWatcher extends Thread {
     AlertsService alertsService;
     Set<String> tenantIds;
 
-    Long watchInterval;
-    boolean running = true;
+    /*
+        Changes pushed while the initial events are fetched, null once the initial events are sent.
+     */
+    List<Event> pending = new ArrayList<>();
+    boolean disposed = false;
 
-    public EventsWatcher(String id, EventsListener listener, Set<String> tenantIds, EventsCriteria criteria, Long watchInterval) {
-        super("EventsWatcher[" + id + "]");
+    public EventsWatcher(String id, EventsListener listener, Set<String> tenantIds, EventsCriteria criteria) {
         this.id = id;
         this.listener = listener;
         this.criteria = criteria;
-        this.watchInterval = watchInterval;
         this.tenantIds = tenantIds;
         alertsService = StandaloneAlerts.getAlertsService();
     }
 
-    public void dispose() {
-        running = false;
-    }
-
-    @Override
-    public void run() {
+    /**
+     * Send the events matching the criteria and subscribe to the next changes.
+     * It performs a blocking query, it should not be invoked from an event loop thread.
+     */
+    public void start() {
         if (listener == null) {
             log.error("Listener is null");
             return;
         }
-        Long startWatchTime = criteria.getEndTime();
+        synchronized (this) {
+            if (disposed) {
+                return;
+            }
+            /*
+                Watcher subscribes before the initial query to not miss changes happening meanwhile.
+                Time constraints of the criteria only apply to the initial query.
+             */
+            alertsService.registerListener(this, tenantIds, criteria);
+        }
         Page<Event> initialEvents;
         try {
             initialEvents = alertsService.getEvents(tenantIds, criteria, ctimePager);
         } catch (Exception e) {
             log.error(e);
+            dispose();
             return;
         }
-        if (initialEvents == null) {
-            log.error("initialEvents is null");
-            return;
-        }
-        Set<WatchedId> watchedIds = new HashSet<>();
-        initialEvents.forEach(ev -> {
-            listener.onEvent(ev);
-            watchedIds.add(new WatchedId(ev.getId(), ev.getCtime()));
-        });
-        startWatchTime = startWatchTime == null ? System.currentTimeMillis() : startWatchTime;
-        long sleepWatcher = watchInterval == null ? WATCHER_INTERVAL_DEFAULT : watchInterval * 1000;
-        /*
-            Watcher will reuse the EventsCriteria but without time constraints.
-            Time constraints are defined by the watcher on ctime via regular intervals.
-         */
-        criteria.setStartTime(null);
-        criteria.setEndTime(null);
-        long lastWatched = System.currentTimeMillis();
-        Set<WatchedId> newWatchedIds = new HashSet<>();
-        while (running) {
-            startWatchTime = criteria.getEndTime() == null ? startWatchTime : criteria.getEndTime();
-            criteria.setStartTime(startWatchTime);
-            criteria.setEndTime(System.currentTimeMillis());
-            try {
-                Thread.sleep(LEAP_INTERVAL);
-                log.debugf("Query timestamp %s. startTime: %s endTime: %s",
-                        System.currentTimeMillis(), criteria.getStartTime(), criteria.getEndTime());
-                Page<Event> watchedEvents = alertsService.getEvents(tenantIds, criteria, ctimePager);
-                for (Event event : watchedEvents) {
-                    WatchedId watchedId = new WatchedId(event.getId(), event.getCtime());
-                    if (!watchedIds.contains(watchedId)) {
-                        listener.onEvent(event);
-                        newWatchedIds.add(watchedId);
-                    }
-                }
-                if (System.currentTimeMillis() - lastWatched > CLEAN_INTERVAL) {
-                    watchedIds.clear();
-                    lastWatched = System.currentTimeMillis();
-                }
-                watchedIds.addAll(newWatchedIds);
-                Thread.sleep(sleepWatcher);
-            } catch (Exception e) {
-                log.error(e);
+        synchronized (this) {
+            if (disposed) {
                 return;
             }
+            Set<WatchedId> watchedIds = new HashSet<>();
+            initialEvents.forEach(e -> {
+                listener.onEvent(e);
+                watchedIds.add(new WatchedId(e.getId(), e.getCtime()));
+            });
+            pending.stream()
+                    .filter(e -> !watchedIds.contains(new WatchedId(e.getId(), e.getCtime())))
+                    .forEach(e -> listener.onEvent(e));
+            pending = null;
+        }
+    }
+
+    public synchronized void dispose() {
+        disposed = true;
+        alertsService.unregisterListener(this);
+    }
+
+    @Override
+    public synchronized void onChange(List<Event> changes) {
+        if (disposed) {
+            return;
+        }
+        if (pending != null) {
+            pending.addAll(changes);
+            return;
         }
-        log.infof("EventsWatcher[%s] finished", id);
+        changes.forEach(e -> listener.onEvent(e));
     }
 
     public interface EventsListener {
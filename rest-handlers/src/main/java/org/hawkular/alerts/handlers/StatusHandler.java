@@ -59,7 +59,38 @@ public class StatusHandler implements RestHandler {
                     "\"Implementation-Version\":\"<Version>\", + \n" +
                     "\"Built-From-Git-SHA1\":\"<Git-SHA1>\", + \n" +
                     "\"distributed\":\"<true|false>\", + \n" +
-                    "\"members\":\"<comma list of nodes IDs>\" + \n" +
+                    "\"members\":\"<comma list of nodes IDs>\", + \n" +
+                    "\"engine-shards\":\"<Number of rules engine shards>\", + \n" +
+                    "\"engine-pending-data\":\"<Data waiting for evaluation>\", + \n" +
+                    "\"engine-pending-events\":\"<Events waiting for evaluation>\", + \n" +
+                    "\"engine-dropped-data\":\"<Data dropped on overflow>\", + \n" +
+                    "\"engine-dropped-events\":\"<Events dropped on overflow>\", + \n" +
+                    "\"engine-write-behind\":\"<true|false>\", + \n" +
+                    "\"engine-write-pending\":\"<Alerts/Events waiting to be persisted>\", + \n" +
+                    "\"engine-write-committed\":\"<Alerts/Events persisted>\", + \n" +
+                    "\"engine-write-failed\":\"<Alerts/Events failed to persist>\", + \n" +
+                    "\"engine-write-last-commit\":\"<Time of the last persisted group>\", + \n" +
+                    "\"engine-actions-async\":\"<true|false>\", + \n" +
+                    "\"engine-actions-pending\":\"<Events waiting for its actions>\", + \n" +
+                    "\"engine-actions-dispatched\":\"<Actions sent to the plugins>\", + \n" +
+                    "\"engine-actions-failed\":\"<Actions failed to dispatch>\", + \n" +
+                    "\"engine-actions-latency\":\"<Average dispatch latency in ms>\", + \n" +
+                    "\"engine-cep-triggers\":\"<Triggers with aggregation rules deployed>\", + \n" +
+                    "\"engine-cep-updates\":\"<Aggregation rules updates>\", + \n" +
+                    "\"engine-cep-update-time-last\":\"<Last rules update time in ms>\", + \n" +
+                    "\"engine-cep-update-time-max\":\"<Max rules update time in ms>\", + \n" +
+                    "\"engine-cep-rebuilds\":\"<CEP sessions built from scratch>\", + \n" +
+                    "\"engine-cep-packages-added\":\"<Trigger rule packages added>\", + \n" +
+                    "\"engine-cep-packages-removed\":\"<Trigger rule packages removed>\", + \n" +
+                    "\"engine-cep-packages-failed\":\"<Trigger rule packages failed to compile>\", + \n" +
+                    "\"engine-cep-lost-events\":\"<Events discarded with a CEP session>\" + \n" +
+                    "or with hawkular-alerts.extension-cep-engine=window: + \n" +
+                    "\"engine-cep-partitions\":\"<Partitions of the aggregation groups>\", + \n" +
+                    "\"engine-cep-rules\":\"<Aggregation expressions evaluated>\", + \n" +
+                    "\"engine-cep-rules-failed\":\"<Aggregation expressions failed to compile>\", + \n" +
+                    "\"engine-cep-groups\":\"<Aggregation groups with events>\", + \n" +
+                    "\"engine-cep-events\":\"<Events processed>\", + \n" +
+                    "\"engine-cep-results\":\"<Events resulted from aggregations>\" + \n" +
                     "}")
     @DocResponses(value = {
             @DocResponse(code = 200, message = "Success, Event Created.", response = String.class, responseContainer = "Map"),
@@ -80,6 +111,7 @@ public class StatusHandler implements RestHandler {
                     if (distributed) {
                         status.putAll(statusService.getDistributedStatus());
                     }
+                    status.putAll(statusService.getEngineStatus());
                     future.complete(status);
                 }, res -> ResponseUtil.result(routing, res));
     }
@@ -4,6 +4,7 @@ import static io.netty.handler.codec.http.HttpResponseStatus.BAD_REQUEST;
 import static io.netty.handler.codec.http.HttpResponseStatus.INTERNAL_SERVER_ERROR;
 import static io.netty.handler.codec.http.HttpResponseStatus.NOT_FOUND;
 import static io.netty.handler.codec.http.HttpResponseStatus.OK;
+import static io.netty.handler.codec.http.HttpResponseStatus.TOO_MANY_REQUESTS;
 import static org.hawkular.alerts.api.json.JsonUtil.toJson;
 import static org.hawkular.alerts.api.util.Util.isEmpty;
 
@@ -29,6 +30,7 @@ import org.hawkular.alerts.api.model.paging.Page;
 import org.hawkular.alerts.api.model.paging.PageContext;
 import org.hawkular.alerts.api.model.paging.Pager;
 import org.hawkular.alerts.api.model.trigger.Trigger;
+import org.hawkular.alerts.api.util.BinaryUtil;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import io.vertx.core.AsyncResult;
@@ -86,6 +88,32 @@ public class ResponseUtil {
         }
     }
 
+    @DocModel(description = "Payload for a REST ingestion response.")
+    public static class ApiSent {
+
+        @DocModelProperty(description = "Items read from the request.")
+        @JsonInclude
+        private final int read;
+
+        @DocModelProperty(description = "Items sent to the engine, items with a dataId not used by any trigger " +
+                "are discarded.")
+        @JsonInclude
+        private final int sent;
+
+        public ApiSent(int read, int sent) {
+            this.read = read;
+            this.sent = sent;
+        }
+
+        public int getRead() {
+            return read;
+        }
+
+        public int getSent() {
+            return sent;
+        }
+    }
+
     public static void badRequest(RoutingContext routing, String errorMsg) {
         routing.response()
                 .putHeader(ACCEPT, APPLICATION_JSON)
@@ -110,6 +138,14 @@ public class ResponseUtil {
                 .end(toJson(new ApiError(errorMsg)));
     }
 
+    public static void tooManyRequests(RoutingContext routing, String errorMsg) {
+        routing.response()
+                .putHeader(ACCEPT, APPLICATION_JSON)
+                .putHeader(CONTENT_TYPE, APPLICATION_JSON)
+                .setStatusCode(TOO_MANY_REQUESTS.code())
+                .end(toJson(new ApiError(errorMsg)));
+    }
+
     public static void ok(RoutingContext routing, Object o) {
         routing.response()
                 .putHeader(ACCEPT, APPLICATION_JSON)
@@ -139,6 +175,14 @@ public class ResponseUtil {
         return routing.request().getHeader(TENANT_HEADER_NAME);
     }
 
+    /**
+     * @return true if the request body uses the binary batch format of BinaryUtil instead of JSON
+     */
+    public static boolean isBinary(RoutingContext routing) {
+        String contentType = routing.request().getHeader(CONTENT_TYPE);
+        return contentType != null && contentType.startsWith(BinaryUtil.APPLICATION_BINARY);
+    }
+
     public static <T> void createPagingHeaders(RoutingContext routing, Page<T> resultList) {
 
         String uri = routing.request().uri();
@@ -368,6 +412,10 @@ public class ResponseUtil {
                 notFound(routing, result.cause().getMessage());
                 return;
             }
+            if (result.cause() instanceof TooManyRequestsException) {
+                tooManyRequests(routing, result.cause().getMessage());
+                return;
+            }
             internalServerError(routing, result.cause().getMessage());
         }
     }
@@ -416,4 +464,19 @@ public class ResponseUtil {
             super(message, cause);
         }
     }
+
+    public static class TooManyRequestsException extends RuntimeException {
+
+        public TooManyRequestsException(String message) {
+            super(message);
+        }
+
+        public TooManyRequestsException(Throwable cause) {
+            super(cause);
+        }
+
+        public TooManyRequestsException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
 }